@@ -0,0 +1,210 @@
+package com.sap.adapter.adk.genericapi;
+
+import com.sap.adapter.adk.common.metrics.OperationMetrics;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorSettings;
+import com.sap.adapter.adk.genericapi.exception.CircuitOpenException;
+import com.sap.adapter.adk.genericapi.exception.ProxyAuthenticationException;
+import com.sap.adapter.adk.genericapi.exception.ServerErrorException;
+import com.sap.adapter.adk.genericapi.httpclient.AsyncHttpClientHandler;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import com.sap.adapter.adk.genericapi.resilience.CallGuard;
+import com.sap.adapter.adk.genericapi.resilience.CircuitBreaker;
+import com.sap.adapter.adk.genericapi.resilience.Deadline;
+import com.sap.it.api.ccs.adapter.ConnectionType;
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.Exchange;
+import org.apache.camel.support.DefaultAsyncProducer;
+import org.apache.http.client.methods.HttpGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Producer that does not block the route thread. Buffered HTTP calls are completed through the {@link AsyncCallback}
+ * from the I/O reactor of the endpoint's {@link AsyncHttpClientHandler}, TCP sessions run on the endpoint's TCP
+ * session executor.
+ * <p>
+ * Calls the endpoint has no executor or client for, streamed responses and HTTP calls with other methods than GET,
+ * whose request bodies would be read on the I/O reactor, are processed synchronously by a
+ * {@link GenericAPIProducer}. Asynchronous HTTP calls go through the circuit breaker of the endpoint but are not
+ * retried, retries would block the I/O reactor or the housekeeping thread.
+ */
+public class GenericAPIAsyncProducer extends DefaultAsyncProducer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenericAPIAsyncProducer.class);
+    private final GenericAPIEndpoint endpoint;
+    private final GenericAPIProducer syncProducer;
+
+    public GenericAPIAsyncProducer(GenericAPIEndpoint endpoint) {
+        super(endpoint);
+        this.endpoint = endpoint;
+        this.syncProducer = new GenericAPIProducer(endpoint);
+    }
+
+    @Override
+    public boolean process(final Exchange exchange, final AsyncCallback callback) {
+        boolean tcp = "tcp".equals(endpoint.getConnectionType());
+        try {
+            if (tcp && endpoint.getTcpSessionExecutor() != null) {
+                endpoint.getTcpSessionExecutor().execute(() -> runTcpSession(exchange, callback));
+                return false;
+            }
+            if (!tcp && !endpoint.isStreamResponse() && endpoint.getAsyncHttpClientHandler() != null
+                    && HttpGet.METHOD_NAME.equals(endpoint.getHttpMethod(exchange))) {
+                // only loaded synchronously on the first call, afterwards the settings come from the cache
+                CloudConnectorSettings cloudConnectorSettings = endpoint.getCloudConnectorPropertiesCache()
+                        .get(ConnectionType.HTTP, endpoint.getLocationId());
+                AsyncCallback measuredCallback = measured(exchange, callback);
+                CircuitBreaker breaker = getBreaker();
+                try {
+                    CallGuard.checkPermitted(breaker);
+                } catch (CircuitOpenException e) {
+                    exchange.setProperty("ON_PREMISE_CONNECTION_STATUS", GenericAPIProducer.CIRCUIT_OPEN_STATUS);
+                    exchange.setException(e);
+                    measuredCallback.done(true);
+                    return true;
+                }
+                GuardedCallback guardedCallback = new GuardedCallback(breaker, exchange, measuredCallback);
+                try {
+                    callServer(exchange, guardedCallback, cloudConnectorSettings, endpoint.createDeadline(exchange), true);
+                } catch (RuntimeException e) {
+                    exchange.setException(e);
+                    guardedCallback.done(true);
+                    return true;
+                }
+                return false;
+            }
+            syncProducer.process(exchange);
+        } catch (Exception e) {
+            exchange.setException(e);
+        }
+        callback.done(true);
+        return true;
+    }
+
+    /**
+     * The synchronous producer measures the calls it processes itself, the asynchronous ones are measured until the
+     * callback is done.
+     */
+    private AsyncCallback measured(final Exchange exchange, final AsyncCallback callback) {
+        if (endpoint.getMetrics() == null) {
+            return callback;
+        }
+        final OperationMetrics processMetrics = endpoint.getMetrics().operation(GenericAPIMetrics.PROCESS);
+        final long start = processMetrics.start();
+        return doneSync -> {
+            processMetrics.stop(start, exchange.getException() != null);
+            callback.done(doneSync);
+        };
+    }
+
+    private CircuitBreaker getBreaker() {
+        CallGuard callGuard = endpoint.getCallGuard();
+        return callGuard != null ? callGuard.getBreaker(endpoint.getLocationId(),
+                GenericAPIProducer.getCallTarget(endpoint, ConnectionType.HTTP)) : null;
+    }
+
+    /**
+     * Reports the outcome of a call the breaker permitted once the callback is done. A server error fails the call
+     * for the breaker, though the exchange completes with the response.
+     */
+    private static final class GuardedCallback implements AsyncCallback {
+
+        private final CircuitBreaker breaker;
+        private final Exchange exchange;
+        private final AsyncCallback callback;
+        private final long start = System.nanoTime();
+        private volatile boolean serverError;
+
+        GuardedCallback(CircuitBreaker breaker, Exchange exchange, AsyncCallback callback) {
+            this.breaker = breaker;
+            this.exchange = exchange;
+            this.callback = callback;
+        }
+
+        void serverError() {
+            serverError = true;
+        }
+
+        @Override
+        public void done(boolean doneSync) {
+            if (breaker != null) {
+                long duration = System.nanoTime() - start;
+                Exception exception = exchange.getException();
+                if (exception instanceof ProxyAuthenticationException) {
+                    breaker.onIgnored();
+                } else if (exception != null || serverError) {
+                    breaker.onFailure(duration);
+                } else {
+                    breaker.onSuccess(duration);
+                }
+            }
+            callback.done(doneSync);
+        }
+    }
+
+    private void runTcpSession(Exchange exchange, AsyncCallback callback) {
+        try {
+            syncProducer.process(exchange);
+        } catch (Exception e) {
+            exchange.setException(e);
+        }
+        callback.done(false);
+    }
+
+    private void callServer(final Exchange exchange, final GuardedCallback callback,
+                            CloudConnectorSettings cloudConnectorSettings, final Deadline deadline,
+                            final boolean retryOnAuthFailure) {
+        AsyncHttpClientHandler handler = endpoint.getAsyncHttpClientHandler();
+        handler.callServer(endpoint.getEndpointUrl(), endpoint.getLocationId(), cloudConnectorSettings, deadline)
+                .whenComplete((res, failure) -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    if (cause instanceof ProxyAuthenticationException && retryOnAuthFailure) {
+                        LOGGER.warn("Retrying with refreshed connectivity properties: {}", cause.getMessage());
+                        retryWithRefreshedSettings(exchange, callback, deadline);
+                    } else if (cause instanceof ServerErrorException) {
+                        callback.serverError();
+                        complete(exchange, callback, ((ServerErrorException) cause).getResult());
+                    } else if (cause != null) {
+                        exchange.setException(cause);
+                        callback.done(false);
+                    } else {
+                        complete(exchange, callback, res);
+                    }
+                });
+    }
+
+    private static void complete(Exchange exchange, AsyncCallback callback, String res) {
+        exchange.setProperty("ON_PREMISE_CONNECTION_STATUS", res);
+        exchange.getIn().setBody(res);
+        LOGGER.debug("GenericAPI completed asynchronously with: {}", res);
+        callback.done(false);
+    }
+
+    private void retryWithRefreshedSettings(final Exchange exchange, final GuardedCallback callback,
+                                            final Deadline deadline) {
+        // loading the settings calls the platform API and blocks, which must not happen on the I/O reactor
+        ScheduledExecutorService scheduler = endpoint.getHousekeepingScheduler();
+        try {
+            if (scheduler == null) {
+                throw new RejectedExecutionException("Endpoint is stopped: " + endpoint.getEndpointUri());
+            }
+            scheduler.execute(() -> {
+                try {
+                    CloudConnectorSettings refreshed = endpoint.getCloudConnectorPropertiesCache()
+                            .refresh(ConnectionType.HTTP, endpoint.getLocationId());
+                    callServer(exchange, callback, refreshed, deadline, false);
+                } catch (Exception e) {
+                    exchange.setException(e);
+                    callback.done(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            exchange.setException(e);
+            callback.done(false);
+        }
+    }
+}
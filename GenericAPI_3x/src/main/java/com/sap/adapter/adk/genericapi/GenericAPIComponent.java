@@ -1,5 +1,9 @@
 package com.sap.adapter.adk.genericapi;
 
+import com.sap.adapter.adk.common.cache.KeyMaterialCache;
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsDrainer;
+import com.sap.adapter.adk.genericapi.conn.Socks5HandshakeEngine;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
 import org.apache.camel.CamelContext;
 import org.apache.camel.Endpoint;
 import org.apache.camel.support.DefaultComponent;
@@ -15,6 +19,8 @@ public class GenericAPIComponent extends DefaultComponent {
 
     private static final Logger LOG = LoggerFactory.getLogger(GenericAPIComponent.class);
 
+    static final String DIAGNOSTICS_THREAD_NAME = "GenericAPIDiagnosticsDrainer";
+
 
     protected Endpoint createEndpoint(final String uri, final String remaining, final Map<String, Object> parameters) throws Exception {
         LOG.info("Creating the end point with camel 3x: {}", uri);
@@ -23,4 +29,22 @@ public class GenericAPIComponent extends DefaultComponent {
         setProperties(endpoint, parameters);
         return endpoint;
     }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        Socks5HandshakeEngine.retainDefault();
+        DiagnosticsDrainer.retainDefault(DIAGNOSTICS_THREAD_NAME);
+        KeyMaterialCache.retainDefault(GenericAPIMetrics.JMX_DOMAIN);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        // the selector threads of the shared engine and the diagnostics thread are stopped, and the cached key
+        // material is dropped, with the last component of the bundle
+        Socks5HandshakeEngine.releaseDefault();
+        DiagnosticsDrainer.releaseDefault();
+        KeyMaterialCache.releaseDefault();
+        super.doStop();
+    }
 }
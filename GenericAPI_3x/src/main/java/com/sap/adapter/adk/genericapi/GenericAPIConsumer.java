@@ -1,30 +1,43 @@
 package com.sap.adapter.adk.genericapi;
 
+import com.sap.adapter.adk.common.cache.KeyMaterialCache;
+import com.sap.adapter.adk.common.metrics.OperationMetrics;
 import com.sap.adapter.adk.genericapi.exception.GenericAPIException;
-import com.sap.it.api.ITApiFactory;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import com.sap.adapter.adk.genericapi.poll.AdaptivePollScheduler;
 import com.sap.it.api.exception.InvalidContextException;
-import com.sap.it.api.keystore.KeystoreService;
 import com.sap.it.api.keystore.exception.KeystoreException;
-import com.sap.it.api.securestore.SecureStoreService;
 import com.sap.it.api.securestore.UserCredential;
 import com.sap.it.api.securestore.exception.SecureStoreException;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
-import org.apache.camel.support.ScheduledPollConsumer;
+import org.apache.camel.spi.ScheduledPollConsumerScheduler;
+import org.apache.camel.support.ScheduledBatchPollingConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.Key;
 import java.security.KeyPair;
 import java.security.cert.Certificate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The Sample.com consumer.
+ * <p>
+ * Each poll builds a batch of {@code maxMessagesPerPoll} exchanges, so the scheduler overhead is paid once per
+ * batch. Unlike Camel's batch consumers, 0 does not mean unlimited: the greeting source never runs dry, so the
+ * endpoint rejects values below 1. With {@code greedy} the next poll runs right away as long as a poll returned
+ * messages. With {@code adaptivePolling} the outcome of each poll is reported to the {@link AdaptivePollScheduler}.
  */
-public class GenericAPIConsumer extends ScheduledPollConsumer {
+public class GenericAPIConsumer extends ScheduledBatchPollingConsumer {
     private static final Logger LOG = LoggerFactory.getLogger(GenericAPIConsumer.class);
+    static final String PRIVATE_KEY_ALIAS = "picouser";
 
     private final GenericAPIEndpoint endpoint;
 
@@ -33,28 +46,97 @@ public class GenericAPIConsumer extends ScheduledPollConsumer {
         this.endpoint = endpoint;
     }
 
+    @Override
+    protected void doStart() throws Exception {
+        // a (re)deployed iFlow picks up security material that was updated since it was cached
+        KeyMaterialCache keyMaterialCache = KeyMaterialCache.getDefault();
+        if (endpoint.getCredential() != null) {
+            keyMaterialCache.invalidateCredential(endpoint.getCredential());
+        }
+        keyMaterialCache.invalidateKeyMaterial(PRIVATE_KEY_ALIAS);
+        super.doStart();
+    }
+
     @Override
     protected int poll() throws Exception {
-        Exchange exchange = endpoint.createExchange();
-        LOG.error("3.x camel exchange");
         String greetingsMessage = endpoint.getGreetingsMessage();
         if (greetingsMessage == null || greetingsMessage.isEmpty()) {
             LOG.error("The message is empty! Default one will be used");
             greetingsMessage = "Hello There!!";
         }
 
-        String builder = greetingsMessage + " Now it is with camel3x " + new Date();
-        exchange.getIn().setBody(builder);
-        addPublicApiHeaders(exchange, endpoint);
-
+        // the greeting source never runs dry, so every poll fills a whole batch
+        int batchSize = getMaxMessagesPerPoll();
+        List<Exchange> batch = new ArrayList<>(batchSize);
+        OperationMetrics pollMetrics = endpoint.getMetrics() != null
+                ? endpoint.getMetrics().operation(GenericAPIMetrics.POLL) : null;
+        long start = pollMetrics != null ? pollMetrics.start() : System.nanoTime();
+        int processed = 0;
+        boolean failed = true;
         try {
-            getProcessor().process(exchange);
-            return 1;
+            for (int i = 0; i < batchSize; i++) {
+                Exchange exchange = endpoint.createExchange();
+                String builder = greetingsMessage + " Now it is with camel3x " + new Date();
+                exchange.getIn().setBody(builder);
+                addPublicApiHeaders(exchange, endpoint);
+                batch.add(exchange);
+            }
+            LOG.debug("Polled {} camel 3.x exchanges", batchSize);
+            processed = processBatch(new ArrayDeque<Object>(batch));
+            failed = hasFailed(batch);
+            return processed;
         } finally {
+            if (pollMetrics != null) {
+                pollMetrics.stop(start, failed);
+            }
+            AdaptivePollScheduler adaptivePollScheduler = getAdaptivePollScheduler();
+            if (adaptivePollScheduler != null) {
+                adaptivePollScheduler.pollCompleted(processed,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed);
+            }
+        }
+    }
+
+    /**
+     * @return the scheduler of this consumer if it adapts the poll delay, null otherwise
+     */
+    public AdaptivePollScheduler getAdaptivePollScheduler() {
+        ScheduledPollConsumerScheduler scheduler = getScheduler();
+        return scheduler instanceof AdaptivePollScheduler ? (AdaptivePollScheduler) scheduler : null;
+    }
+
+    private static boolean hasFailed(List<Exchange> batch) {
+        for (Exchange exchange : batch) {
+            if (exchange.getException() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int processBatch(Queue<Object> exchanges) throws Exception {
+        int total = exchanges.size();
+        int processed = 0;
+        for (int index = 0; index < total && isBatchAllowed(); index++) {
+            Exchange exchange = (Exchange) exchanges.poll();
+            exchange.setProperty(Exchange.BATCH_INDEX, index);
+            exchange.setProperty(Exchange.BATCH_SIZE, total);
+            exchange.setProperty(Exchange.BATCH_COMPLETE, index == total - 1);
+            // update pending number of exchanges
+            pendingExchanges = total - index - 1;
+            try {
+                getProcessor().process(exchange);
+            } catch (Exception e) {
+                exchange.setException(e);
+            }
             if (exchange.getException() != null) {
                 getExceptionHandler().handleException("Error processing exchange", exchange, exchange.getException());
             }
+            processed++;
         }
+        pendingExchanges = 0;
+        return processed;
     }
 
     private void addPublicApiHeaders(Exchange exchange, GenericAPIEndpoint endpoint) {
@@ -69,9 +151,8 @@ public class GenericAPIConsumer extends ScheduledPollConsumer {
 
     private void checkSecureStoreService(Exchange exchange, GenericAPIEndpoint endpoint)
             throws InvalidContextException, SecureStoreException {
-        SecureStoreService secureStoreService = ITApiFactory.getService(SecureStoreService.class, null);
         String string = endpoint.getCredential();
-        UserCredential userCredential = secureStoreService.getUserCredential(string);
+        UserCredential userCredential = KeyMaterialCache.getDefault().getUserCredential(string);
         if (userCredential != null) {
             char[] password = userCredential.getPassword();
             String passphrase = new String(password);
@@ -86,22 +167,22 @@ public class GenericAPIConsumer extends ScheduledPollConsumer {
     }
 
     private void checkKeyStoreService() throws InvalidContextException, KeystoreException {
-        KeystoreService keystoreService = ITApiFactory.getService(KeystoreService.class, null);
-        String privateKey = "picouser";
-        Key key = keystoreService.getKey(privateKey);
+        KeyMaterialCache keyMaterialCache = KeyMaterialCache.getDefault();
+        String privateKey = PRIVATE_KEY_ALIAS;
+        Key key = keyMaterialCache.getKey(privateKey);
         String errorFormat = "Error in keystoreService while getting %s: %s";
         if (key == null) {
             String error = String.format(errorFormat, "key", privateKey);
             LOG.error(error);
             throw new GenericAPIException(error);
         }
-        Certificate certificate = keystoreService.getCertificate(privateKey);
+        Certificate certificate = keyMaterialCache.getCertificate(privateKey);
         if (certificate == null) {
             String error = String.format(errorFormat, "certificate", privateKey);
             LOG.error(error);
             throw new GenericAPIException(error);
         }
-        KeyPair keyPair = keystoreService.getKeyPair(privateKey);
+        KeyPair keyPair = keyMaterialCache.getKeyPair(privateKey);
         if (keyPair == null) {
             String error = String.format(errorFormat, "key pair", privateKey);
             LOG.error(error);
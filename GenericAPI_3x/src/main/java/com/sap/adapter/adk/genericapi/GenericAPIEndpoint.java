@@ -1,11 +1,38 @@
 package com.sap.adapter.adk.genericapi;
 
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorPropertiesCache;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorSettings;
+import com.sap.adapter.adk.genericapi.conn.ConnectionWarmUp;
+import com.sap.adapter.adk.genericapi.conn.TunnelFraming;
+import com.sap.adapter.adk.genericapi.conn.TunnelPool;
+import com.sap.adapter.adk.genericapi.conn.TunnelSessionExecutors;
+import com.sap.adapter.adk.genericapi.httpclient.AsyncHttpClientHandler;
+import com.sap.adapter.adk.genericapi.httpclient.HttpClientHandler;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import com.sap.adapter.adk.genericapi.poll.AdaptivePollScheduler;
+import com.sap.adapter.adk.genericapi.resilience.CallGuard;
+import com.sap.adapter.adk.genericapi.resilience.Deadline;
+import com.sap.adapter.adk.genericapi.resilience.RetryPolicy;
+import com.sap.it.api.ccs.adapter.ConnectionType;
 import org.apache.camel.Consumer;
+import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.Producer;
+import org.apache.camel.StreamCache;
 import org.apache.camel.spi.UriEndpoint;
 import org.apache.camel.spi.UriParam;
 import org.apache.camel.support.DefaultPollingEndpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a www.Sample.com Camel endpoint.
@@ -13,6 +40,9 @@ import org.apache.camel.support.DefaultPollingEndpoint;
 @UriEndpoint(scheme = "sap-generic", syntax = "", title = "")
 public class GenericAPIEndpoint extends DefaultPollingEndpoint {
 
+    private static final Logger LOG = LoggerFactory.getLogger(GenericAPIEndpoint.class);
+    private static final String TCP_SESSION_THREAD_NAME = "GenericAPITcpSession";
+
     @UriParam
     private String greetingsMessage;
     
@@ -29,6 +59,156 @@ public class GenericAPIEndpoint extends DefaultPollingEndpoint {
 
     private String proxyPort;
 
+    @UriParam(label = "consumer", defaultValue = "1")
+    private int maxMessagesPerPoll = 1;
+
+    @UriParam(label = "consumer", defaultValue = "false")
+    private boolean adaptivePolling;
+
+    @UriParam(label = "consumer", defaultValue = "100")
+    private long minPollDelay = 100L;
+
+    @UriParam(label = "consumer", defaultValue = "60000")
+    private long maxPollDelay = 60000L;
+
+    @UriParam(label = "consumer", defaultValue = "10")
+    private int pollJitterPercent = 10;
+
+    @UriParam(defaultValue = "20")
+    private int maxTotalConnections = HttpClientHandler.DEFAULT_MAX_TOTAL_CONNECTIONS;
+
+    @UriParam(defaultValue = "10")
+    private int maxConnectionsPerRoute = HttpClientHandler.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    @UriParam(defaultValue = "30000")
+    private long keepAliveDuration = HttpClientHandler.DEFAULT_KEEP_ALIVE_DURATION;
+
+    @UriParam(defaultValue = "60000")
+    private long idleConnectionTimeout = HttpClientHandler.DEFAULT_IDLE_CONNECTION_TIMEOUT;
+
+    @UriParam(defaultValue = "GET")
+    private String httpMethod = "GET";
+
+    @UriParam(defaultValue = "false")
+    private boolean httpMethodFromHeader;
+
+    @UriParam(defaultValue = "false")
+    private boolean streamResponse;
+
+    @UriParam(defaultValue = "131072")
+    private long spoolThreshold = StreamCache.DEFAULT_SPOOL_THRESHOLD;
+
+    @UriParam(defaultValue = "false")
+    private boolean reuseTunnels;
+
+    @UriParam(defaultValue = "10")
+    private int maxPooledTunnels = 10;
+
+    @UriParam(defaultValue = "60000")
+    private long tunnelMaxIdleTime = 60000L;
+
+    @UriParam(defaultValue = "false")
+    private boolean asyncHttp;
+
+    @UriParam(defaultValue = "0")
+    private int ioThreadCount;
+
+    @UriParam(defaultValue = "false")
+    private boolean tcpVirtualThreads;
+
+    @UriParam(defaultValue = "50")
+    private int maxTcpSessionThreads = 50;
+
+    @UriParam(defaultValue = "0")
+    private double diagnosticsSamplingRate;
+
+    @UriParam(defaultValue = "256")
+    private int diagnosticsBufferSize = 256;
+
+    @UriParam(defaultValue = "false")
+    private boolean circuitBreaker;
+
+    @UriParam(defaultValue = "50")
+    private int failureRateThreshold = 50;
+
+    @UriParam(defaultValue = "100")
+    private int slowCallRateThreshold = 100;
+
+    @UriParam(defaultValue = "10000")
+    private long slowCallDuration = 10000L;
+
+    @UriParam(defaultValue = "20")
+    private int circuitWindowSize = 20;
+
+    @UriParam(defaultValue = "30000")
+    private long circuitOpenDuration = 30000L;
+
+    @UriParam(defaultValue = "0")
+    private int maxRetries;
+
+    @UriParam(defaultValue = "100")
+    private long retryBaseDelay = 100L;
+
+    @UriParam(defaultValue = "2000")
+    private long retryMaxDelay = 2000L;
+
+    @UriParam(defaultValue = "30000")
+    private long connectTimeout = 30000L;
+
+    @UriParam(defaultValue = "30000")
+    private long handshakeTimeout = 30000L;
+
+    @UriParam(defaultValue = "60000")
+    private long readTimeout = 60000L;
+
+    @UriParam(defaultValue = "0")
+    private long requestTimeout;
+
+    @UriParam(defaultValue = "false")
+    private boolean tcpStreaming;
+
+    @UriParam(defaultValue = "length")
+    private String tcpFraming = "length";
+
+    @UriParam(defaultValue = "\\n")
+    private String tcpDelimiter = "\\n";
+
+    @UriParam(defaultValue = "false")
+    private boolean warmUp;
+
+    @UriParam(defaultValue = "1")
+    private int warmUpConnections = 1;
+
+    @UriParam(defaultValue = "2")
+    private int warmUpConcurrency = 2;
+
+    @UriParam(defaultValue = "10000")
+    private long warmUpTimeout = 10000L;
+
+    private EndpointMetrics metrics;
+
+    private DiagnosticsRecorder diagnostics;
+
+    private HttpClientHandler httpClientHandler;
+
+    private AsyncHttpClientHandler asyncHttpClientHandler;
+
+    private TunnelPool tunnelPool;
+
+    private ExecutorService tcpSessionExecutor;
+    private ExecutorService tcpWriterExecutor;
+    private TunnelFraming tunnelFraming;
+
+    private CloudConnectorPropertiesCache cloudConnectorPropertiesCache;
+
+    private ScheduledExecutorService scheduler;
+
+    private AdaptivePollScheduler adaptivePollScheduler;
+
+    private CallGuard callGuard;
+
+    private ConnectionWarmUp.Report warmUpReport;
+
     public String getConnectionType() {
         return connectionType;
     }
@@ -69,6 +249,469 @@ public class GenericAPIEndpoint extends DefaultPollingEndpoint {
         this.locationId = locationId;
     }
 
+    /**
+     * @return the number of exchanges each poll creates, at least 1, there is no unlimited setting as the greeting
+     * source never runs dry
+     */
+    public int getMaxMessagesPerPoll() {
+        return maxMessagesPerPoll;
+    }
+
+    public void setMaxMessagesPerPoll(int maxMessagesPerPoll) {
+        this.maxMessagesPerPoll = maxMessagesPerPoll;
+    }
+
+    public boolean isAdaptivePolling() {
+        return adaptivePolling;
+    }
+
+    public void setAdaptivePolling(boolean adaptivePolling) {
+        this.adaptivePolling = adaptivePolling;
+    }
+
+    public long getMinPollDelay() {
+        return minPollDelay;
+    }
+
+    public void setMinPollDelay(long minPollDelay) {
+        this.minPollDelay = minPollDelay;
+    }
+
+    public long getMaxPollDelay() {
+        return maxPollDelay;
+    }
+
+    public void setMaxPollDelay(long maxPollDelay) {
+        this.maxPollDelay = maxPollDelay;
+    }
+
+    public int getPollJitterPercent() {
+        return pollJitterPercent;
+    }
+
+    public void setPollJitterPercent(int pollJitterPercent) {
+        this.pollJitterPercent = pollJitterPercent;
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public void setMaxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public long getKeepAliveDuration() {
+        return keepAliveDuration;
+    }
+
+    public void setKeepAliveDuration(long keepAliveDuration) {
+        this.keepAliveDuration = keepAliveDuration;
+    }
+
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public String getHttpMethod() {
+        return httpMethod;
+    }
+
+    public void setHttpMethod(String httpMethod) {
+        this.httpMethod = httpMethod;
+    }
+
+    public boolean isHttpMethodFromHeader() {
+        return httpMethodFromHeader;
+    }
+
+    public void setHttpMethodFromHeader(boolean httpMethodFromHeader) {
+        this.httpMethodFromHeader = httpMethodFromHeader;
+    }
+
+    public boolean isStreamResponse() {
+        return streamResponse;
+    }
+
+    public void setStreamResponse(boolean streamResponse) {
+        this.streamResponse = streamResponse;
+    }
+
+    public long getSpoolThreshold() {
+        return spoolThreshold;
+    }
+
+    public void setSpoolThreshold(long spoolThreshold) {
+        this.spoolThreshold = spoolThreshold;
+    }
+
+    public boolean isReuseTunnels() {
+        return reuseTunnels;
+    }
+
+    public void setReuseTunnels(boolean reuseTunnels) {
+        this.reuseTunnels = reuseTunnels;
+    }
+
+    public int getMaxPooledTunnels() {
+        return maxPooledTunnels;
+    }
+
+    public void setMaxPooledTunnels(int maxPooledTunnels) {
+        this.maxPooledTunnels = maxPooledTunnels;
+    }
+
+    public long getTunnelMaxIdleTime() {
+        return tunnelMaxIdleTime;
+    }
+
+    public void setTunnelMaxIdleTime(long tunnelMaxIdleTime) {
+        this.tunnelMaxIdleTime = tunnelMaxIdleTime;
+    }
+
+    public boolean isAsyncHttp() {
+        return asyncHttp;
+    }
+
+    public void setAsyncHttp(boolean asyncHttp) {
+        this.asyncHttp = asyncHttp;
+    }
+
+    public int getIoThreadCount() {
+        return ioThreadCount;
+    }
+
+    public void setIoThreadCount(int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+    }
+
+    public boolean isTcpVirtualThreads() {
+        return tcpVirtualThreads;
+    }
+
+    public void setTcpVirtualThreads(boolean tcpVirtualThreads) {
+        this.tcpVirtualThreads = tcpVirtualThreads;
+    }
+
+    public int getMaxTcpSessionThreads() {
+        return maxTcpSessionThreads;
+    }
+
+    public void setMaxTcpSessionThreads(int maxTcpSessionThreads) {
+        this.maxTcpSessionThreads = maxTcpSessionThreads;
+    }
+
+    public double getDiagnosticsSamplingRate() {
+        return diagnosticsSamplingRate;
+    }
+
+    public void setDiagnosticsSamplingRate(double diagnosticsSamplingRate) {
+        this.diagnosticsSamplingRate = diagnosticsSamplingRate;
+    }
+
+    public int getDiagnosticsBufferSize() {
+        return diagnosticsBufferSize;
+    }
+
+    public void setDiagnosticsBufferSize(int diagnosticsBufferSize) {
+        this.diagnosticsBufferSize = diagnosticsBufferSize;
+    }
+
+    public boolean isCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(boolean circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public int getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public long getSlowCallDuration() {
+        return slowCallDuration;
+    }
+
+    public void setSlowCallDuration(long slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    public int getCircuitWindowSize() {
+        return circuitWindowSize;
+    }
+
+    public void setCircuitWindowSize(int circuitWindowSize) {
+        this.circuitWindowSize = circuitWindowSize;
+    }
+
+    public long getCircuitOpenDuration() {
+        return circuitOpenDuration;
+    }
+
+    public void setCircuitOpenDuration(long circuitOpenDuration) {
+        this.circuitOpenDuration = circuitOpenDuration;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    public void setRetryBaseDelay(long retryBaseDelay) {
+        this.retryBaseDelay = retryBaseDelay;
+    }
+
+    public long getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    public void setRetryMaxDelay(long retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getHandshakeTimeout() {
+        return handshakeTimeout;
+    }
+
+    public void setHandshakeTimeout(long handshakeTimeout) {
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    public long getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(long readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public boolean isTcpStreaming() {
+        return tcpStreaming;
+    }
+
+    public void setTcpStreaming(boolean tcpStreaming) {
+        this.tcpStreaming = tcpStreaming;
+    }
+
+    public String getTcpFraming() {
+        return tcpFraming;
+    }
+
+    public void setTcpFraming(String tcpFraming) {
+        this.tcpFraming = tcpFraming;
+    }
+
+    public String getTcpDelimiter() {
+        return tcpDelimiter;
+    }
+
+    public void setTcpDelimiter(String tcpDelimiter) {
+        this.tcpDelimiter = tcpDelimiter;
+    }
+
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+
+    public void setWarmUpConnections(int warmUpConnections) {
+        this.warmUpConnections = warmUpConnections;
+    }
+
+    public int getWarmUpConcurrency() {
+        return warmUpConcurrency;
+    }
+
+    public void setWarmUpConcurrency(int warmUpConcurrency) {
+        this.warmUpConcurrency = warmUpConcurrency;
+    }
+
+    public long getWarmUpTimeout() {
+        return warmUpTimeout;
+    }
+
+    public void setWarmUpTimeout(long warmUpTimeout) {
+        this.warmUpTimeout = warmUpTimeout;
+    }
+
+    /**
+     * @return the framing of the messages exchanged over TCP tunnels, only available while the endpoint is started
+     * with {@code tcpStreaming}
+     */
+    public TunnelFraming getTunnelFraming() {
+        return tunnelFraming;
+    }
+
+    /**
+     * @return the executor writing the requests into TCP tunnels while the responses are read, only available while
+     * the endpoint is started with {@code tcpStreaming}
+     */
+    public ExecutorService getTcpWriterExecutor() {
+        return tcpWriterExecutor;
+    }
+
+    /**
+     * @return the method of the HTTP call made for the exchange, the method of this endpoint. As in camel-http, the
+     * {@link Exchange#HTTP_METHOD} header of the exchange, which an exchange received by an HTTP sender carries, is
+     * only used if the endpoint has no method or {@code httpMethodFromHeader} is set
+     */
+    public String getHttpMethod(Exchange exchange) {
+        boolean configured = httpMethod != null && !httpMethod.trim().isEmpty();
+        String method = configured ? httpMethod : null;
+        if (httpMethodFromHeader || !configured) {
+            String header = exchange.getIn().getHeader(Exchange.HTTP_METHOD, String.class);
+            if (header != null && !header.trim().isEmpty()) {
+                method = header;
+            }
+        }
+        return method != null ? method.trim().toUpperCase(Locale.ROOT) : "GET";
+    }
+
+    /**
+     * @return the timeouts of the calls made for the exchange, bounded by the request timeout of this endpoint and by
+     * the deadline in the {@link GenericAPIProducer#DEADLINE_HEADER} of the exchange, whichever comes first
+     */
+    public Deadline createDeadline(Exchange exchange) {
+        long budget = requestTimeout > 0 ? requestTimeout : Long.MAX_VALUE;
+        Long deadline = exchange.getIn().getHeader(GenericAPIProducer.DEADLINE_HEADER, Long.class);
+        if (deadline != null) {
+            budget = Math.min(budget, Math.max(deadline - System.currentTimeMillis(), 0L));
+        }
+        return new Deadline(connectTimeout, handshakeTimeout, readTimeout, budget);
+    }
+
+    /**
+     * @return the circuit breakers and retries of the calls of this endpoint, null if the endpoint is stopped or uses
+     * neither
+     */
+    public CallGuard getCallGuard() {
+        return callGuard;
+    }
+
+    /**
+     * @return the pool of TCP tunnels of this endpoint, null if tunnels are not reused
+     */
+    public TunnelPool getTunnelPool() {
+        return tunnelPool;
+    }
+
+    /**
+     * @return the cache of the connectivity properties of this endpoint, only available while the endpoint is started
+     */
+    public CloudConnectorPropertiesCache getCloudConnectorPropertiesCache() {
+        return cloudConnectorPropertiesCache;
+    }
+
+    /**
+     * @return the timing of the warm-up of the last start of this endpoint, null if it had none
+     */
+    public ConnectionWarmUp.Report getWarmUpReport() {
+        return warmUpReport;
+    }
+
+    /**
+     * @return the diagnostics recorder of this endpoint, only available while the endpoint is started
+     */
+    public DiagnosticsRecorder getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return the metrics of this endpoint, only available while the endpoint is started
+     */
+    public EndpointMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the pooled http client of this endpoint, only available while the endpoint is started
+     */
+    public HttpClientHandler getHttpClientHandler() {
+        return httpClientHandler;
+    }
+
+    /**
+     * @return the non-blocking http client of this endpoint, only available while the endpoint is started with
+     * {@code asyncHttp}
+     */
+    public AsyncHttpClientHandler getAsyncHttpClientHandler() {
+        return asyncHttpClientHandler;
+    }
+
+    /**
+     * @return the executor running the TCP sessions of this endpoint, null if they run on the route thread
+     */
+    public ExecutorService getTcpSessionExecutor() {
+        return tcpSessionExecutor;
+    }
+
+    /**
+     * @return the scheduler of the consumer of this endpoint with its current poll delay and backoff state, null if the
+     * consumer does not poll adaptively
+     */
+    public AdaptivePollScheduler getAdaptivePollScheduler() {
+        return adaptivePollScheduler;
+    }
+
+    ScheduledExecutorService getHousekeepingScheduler() {
+        return scheduler;
+    }
+
     public String getCredential() {
 		return credential;
 	}
@@ -94,13 +737,30 @@ public class GenericAPIEndpoint extends DefaultPollingEndpoint {
 
 
     public Producer createProducer() {
+        if (asyncHttp || tcpVirtualThreads) {
+            return new GenericAPIAsyncProducer(this);
+        }
         return new GenericAPIProducer(this);
     }
 
     @Override
     public Consumer createConsumer(Processor processor) throws Exception {
+        if (maxMessagesPerPoll < 1) {
+            throw new IllegalArgumentException("maxMessagesPerPoll must be at least 1: " + maxMessagesPerPoll);
+        }
         final GenericAPIConsumer consumer = new GenericAPIConsumer(this, processor);
+        consumer.setMaxMessagesPerPoll(maxMessagesPerPoll);
         configureConsumer(consumer);
+        // after configuring, which installs the default scheduler
+        if (adaptivePolling) {
+            adaptivePollScheduler = new AdaptivePollScheduler(getCamelContext().getName(), getEndpointBaseUri(),
+                    minPollDelay, maxPollDelay, pollJitterPercent / 100d);
+            // the scheduler backs off in place of the consumer, so the delay is not multiplied twice
+            adaptivePollScheduler.setBackoff(consumer.getBackoffMultiplier(), consumer.getBackoffIdleThreshold(),
+                    consumer.getBackoffErrorThreshold());
+            consumer.setBackoffMultiplier(0);
+            consumer.setScheduler(adaptivePollScheduler);
+        }
         return consumer;
     }
 
@@ -108,4 +768,145 @@ public class GenericAPIEndpoint extends DefaultPollingEndpoint {
         return true;
     }
 
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        metrics = new GenericAPIMetrics(getCamelContext().getName(), getEndpointBaseUri());
+        metrics.register();
+        diagnostics = new DiagnosticsRecorder(GenericAPIMetrics.JMX_DOMAIN, getCamelContext().getName(), getEndpointBaseUri(),
+                diagnosticsSamplingRate, diagnosticsBufferSize);
+        diagnostics.start();
+        httpClientHandler = new HttpClientHandler(maxTotalConnections, maxConnectionsPerRoute, keepAliveDuration,
+                idleConnectionTimeout, metrics, diagnostics);
+        scheduler = getCamelContext().getExecutorServiceManager()
+                .newSingleThreadScheduledExecutor(this, "GenericAPIHousekeeping");
+        cloudConnectorPropertiesCache = new CloudConnectorPropertiesCache(scheduler);
+        RetryPolicy retryPolicy = new RetryPolicy(maxRetries, retryBaseDelay, retryMaxDelay);
+        if (circuitBreaker) {
+            callGuard = CallGuard.withBreakers(failureRateThreshold, slowCallRateThreshold, slowCallDuration,
+                    circuitWindowSize, circuitOpenDuration, retryPolicy);
+        } else if (maxRetries > 0) {
+            callGuard = CallGuard.withoutBreakers(retryPolicy);
+        }
+        if (reuseTunnels) {
+            tunnelPool = new TunnelPool(maxPooledTunnels, tunnelMaxIdleTime);
+            long evictionInterval = Math.max(tunnelMaxIdleTime / 2, 1000L);
+            scheduler.scheduleWithFixedDelay(tunnelPool::evictExpired, evictionInterval, evictionInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (asyncHttp) {
+            asyncHttpClientHandler = new AsyncHttpClientHandler(maxTotalConnections, maxConnectionsPerRoute,
+                    keepAliveDuration, idleConnectionTimeout, ioThreadCount, metrics, diagnostics);
+            long evictionInterval = Math.max(idleConnectionTimeout / 2, 1000L);
+            scheduler.scheduleWithFixedDelay(asyncHttpClientHandler::evictIdleConnections, evictionInterval,
+                    evictionInterval, TimeUnit.MILLISECONDS);
+        }
+        if (tcpVirtualThreads) {
+            tcpSessionExecutor = TunnelSessionExecutors.newExecutor(getCamelContext().getExecutorServiceManager(), this,
+                    TCP_SESSION_THREAD_NAME, maxTcpSessionThreads);
+        }
+        if (tcpStreaming) {
+            tunnelFraming = TunnelFraming.of(tcpFraming, tcpDelimiter);
+            // not bounded, a queued writer would leave its reader waiting for a response that cannot come
+            tcpWriterExecutor = getCamelContext().getExecutorServiceManager().newCachedThreadPool(this,
+                    "GenericAPITcpWriter");
+        }
+        warmUpReport = warmUp ? warmUp() : null;
+    }
+
+    /**
+     * Resolves the connectivity properties and the proxy address and opens {@code warmUpConnections} connections, or
+     * tunnels if they are reused, see {@link ConnectionWarmUp}. Holds up the start for {@code warmUpTimeout} at most.
+     * Connections of the asynchronous http client are not opened in advance.
+     */
+    private ConnectionWarmUp.Report warmUp() {
+        final ConnectionType type = "tcp".equals(connectionType) ? ConnectionType.TCP : ConnectionType.HTTP;
+        int connections;
+        if (type == ConnectionType.TCP) {
+            // a tunnel that is not reused is closed after its exchange, there is nothing to keep it for
+            connections = tunnelPool != null ? Math.min(warmUpConnections, maxPooledTunnels) : 0;
+        } else {
+            connections = Math.min(warmUpConnections, maxConnectionsPerRoute);
+        }
+        final Deadline deadline = new Deadline(connectTimeout, handshakeTimeout, readTimeout, warmUpTimeout);
+        final GenericAPIProducer producer = new GenericAPIProducer(this);
+        ExecutorService executor = getCamelContext().getExecutorServiceManager().newFixedThreadPool(this,
+                "GenericAPIWarmUp", Math.max(warmUpConcurrency, 1));
+        ConnectionWarmUp.Report report;
+        try {
+            report = new ConnectionWarmUp<CloudConnectorSettings>(() -> resolveConnectivity(type),
+                    settings -> producer.preOpenConnection(settings, deadline))
+                    .run(Math.max(connections, 0), executor, warmUpTimeout);
+        } finally {
+            // connections still queued are not opened anymore, those being opened are kept
+            getCamelContext().getExecutorServiceManager().shutdownNow(executor);
+        }
+        LOG.info("Warm-up of {} {}", getEndpointBaseUri(), report);
+        metrics.operation(GenericAPIMetrics.WARM_UP).record(TimeUnit.MILLISECONDS.toNanos(report.getElapsed()),
+                report.getFailure() != null || report.isTimedOut());
+        return report;
+    }
+
+    private CloudConnectorSettings resolveConnectivity(ConnectionType type) throws Exception { //NOSONAR
+        CloudConnectorSettings settings = cloudConnectorPropertiesCache.get(type, locationId);
+        if (settings.getProxyHost() != null) {
+            // cached by the JVM for the connections to the proxy
+            InetAddress.getByName(settings.getProxyHost());
+        }
+        return settings;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        callGuard = null;
+        warmUpReport = null;
+        if (scheduler != null) {
+            getCamelContext().getExecutorServiceManager().shutdown(scheduler);
+            scheduler = null;
+        }
+        if (cloudConnectorPropertiesCache != null) {
+            cloudConnectorPropertiesCache.close();
+            cloudConnectorPropertiesCache = null;
+        }
+        if (tcpSessionExecutor != null) {
+            // running sessions are finished, their tunnels are closed by the pool below
+            getCamelContext().getExecutorServiceManager().shutdown(tcpSessionExecutor);
+            tcpSessionExecutor = null;
+        }
+        if (tcpWriterExecutor != null) {
+            // writers still running are aborted when their tunnels are closed below
+            getCamelContext().getExecutorServiceManager().shutdown(tcpWriterExecutor);
+            tcpWriterExecutor = null;
+        }
+        if (tunnelPool != null) {
+            tunnelPool.close();
+            tunnelPool = null;
+        }
+        if (httpClientHandler != null) {
+            try {
+                httpClientHandler.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close the http client: {}", e.getMessage(), e);
+            }
+            httpClientHandler = null;
+        }
+        if (asyncHttpClientHandler != null) {
+            try {
+                asyncHttpClientHandler.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close the async http client: {}", e.getMessage(), e);
+            }
+            asyncHttpClientHandler = null;
+        }
+        if (metrics != null) {
+            metrics.close();
+            metrics = null;
+        }
+        if (diagnostics != null) {
+            diagnostics.close();
+            diagnostics = null;
+        }
+        super.doStop();
+    }
+
 }
@@ -1,29 +1,76 @@
 package com.sap.adapter.adk.genericapi;
 
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.OperationMetrics;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorPropertiesCache;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorSettings;
+import com.sap.adapter.adk.genericapi.conn.AdapterSocketCF;
+import com.sap.adapter.adk.genericapi.conn.Socks5AuthenticationException;
+import com.sap.adapter.adk.genericapi.conn.TunnelFraming;
+import com.sap.adapter.adk.genericapi.conn.TunnelKey;
+import com.sap.adapter.adk.genericapi.conn.TunnelPool;
+import com.sap.adapter.adk.genericapi.conn.TunnelPool.PooledTunnel;
+import com.sap.adapter.adk.genericapi.conn.TunnelStreamSession;
+import com.sap.adapter.adk.genericapi.exception.CircuitOpenException;
+import com.sap.adapter.adk.genericapi.exception.ProxyAuthenticationException;
+import com.sap.adapter.adk.genericapi.exception.ServerErrorException;
 import com.sap.adapter.adk.genericapi.factory.AdapterSocketFactory;
 import com.sap.adapter.adk.genericapi.httpclient.HttpClientHandler;
-import com.sap.it.api.ITApiFactory;
-import com.sap.it.api.ccs.adapter.CloudConnectorContext;
-import com.sap.it.api.ccs.adapter.CloudConnectorProperties;
+import com.sap.adapter.adk.genericapi.httpclient.RequestEntities;
+import com.sap.adapter.adk.genericapi.httpclient.ResponseStreamCache;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import com.sap.adapter.adk.genericapi.resilience.CallGuard;
+import com.sap.adapter.adk.genericapi.resilience.Deadline;
 import com.sap.it.api.ccs.adapter.ConnectionType;
-import com.sap.it.api.ccs.adapter.exception.CloudConnectorPropertiesException;
 import org.apache.camel.Exchange;
+import org.apache.camel.ExtendedExchange;
+import org.apache.camel.InvalidPayloadException;
+import org.apache.camel.StreamCache;
+import org.apache.camel.WrappedFile;
+import org.apache.camel.converter.stream.CachedOutputStream;
+import org.apache.camel.spi.StreamCachingStrategy;
 import org.apache.camel.support.DefaultProducer;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.apache.camel.util.IOHelper;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The www.Sample.com producer.
  */
 public class GenericAPIProducer extends DefaultProducer {
     private static final Logger LOGGER = LoggerFactory.getLogger(GenericAPIProducer.class);
+
+    /**
+     * {@code ON_PREMISE_CONNECTION_STATUS} of an exchange that was failed fast because the circuit breaker of its
+     * target is open.
+     */
+    public static final String CIRCUIT_OPEN_STATUS = "circuitOpen";
+
+    /**
+     * Header with the deadline of the exchange in epoch milliseconds. The calls made for the exchange end at the
+     * deadline at the latest, see {@link GenericAPIEndpoint#createDeadline(Exchange)}.
+     */
+    public static final String DEADLINE_HEADER = "GenericAPIDeadline";
+
     private final GenericAPIEndpoint endpoint;
 
     public GenericAPIProducer(GenericAPIEndpoint endpoint) {
@@ -32,39 +79,190 @@ public class GenericAPIProducer extends DefaultProducer {
     }
 
     public void process(final Exchange exchange) throws Exception {
-        CloudConnectorContext context = new CloudConnectorContext();
+        OperationMetrics processMetrics = endpoint.getMetrics() != null
+                ? endpoint.getMetrics().operation(GenericAPIMetrics.PROCESS) : null;
+        if (processMetrics == null) {
+            doProcess(exchange);
+            return;
+        }
+        long start = processMetrics.start();
+        boolean failed = true;
+        try {
+            doProcess(exchange);
+            failed = exchange.getException() != null;
+        } finally {
+            processMetrics.stop(start, failed);
+        }
+    }
 
-        ConnectionType connectionType = getConnectionType();
-        context.setConnectionType(connectionType);
-        CloudConnectorProperties cloudConnectorProperties = ITApiFactory.getService(CloudConnectorProperties.class, context);
+    private void doProcess(final Exchange exchange) throws Exception {
+        try {
+            doProcess(exchange, getConnectionType());
+        } catch (CircuitOpenException e) {
+            exchange.setProperty("ON_PREMISE_CONNECTION_STATUS", CIRCUIT_OPEN_STATUS);
+            throw e;
+        }
+    }
+
+    private void doProcess(final Exchange exchange, ConnectionType connectionType) throws Exception {
+        final CloudConnectorSettings cloudConnectorSettings = endpoint.getCloudConnectorPropertiesCache()
+                .get(connectionType, endpoint.getLocationId());
+        String target = getCallTarget(endpoint, connectionType);
+        final Deadline deadline = endpoint.createDeadline(exchange);
+        final String method = endpoint.getHttpMethod(exchange);
+        final HttpEntity entity = connectionType.equals(ConnectionType.HTTP) && hasRequestBody(method)
+                ? RequestEntities.create(exchange) : null;
+        // a body that can be read only once is sent once, it is neither retried nor sent with refreshed credentials
+        final boolean repeatable = entity == null || entity.isRepeatable();
+
+        if (connectionType.equals(ConnectionType.HTTP) && endpoint.isStreamResponse()) {
+            try {
+                guarded(target, deadline, repeatable, () -> {
+                    int statusCode;
+                    try {
+                        statusCode = processHttpStreamRequest(exchange, method, entity, cloudConnectorSettings,
+                                deadline);
+                    } catch (ProxyAuthenticationException e) {
+                        if (!repeatable) {
+                            throw e;
+                        }
+                        LOGGER.warn("Retrying with refreshed connectivity properties: {}", e.getMessage());
+                        statusCode = processHttpStreamRequest(exchange, method, entity,
+                                refreshCloudConnectorSettings(ConnectionType.HTTP), deadline);
+                    }
+                    if (statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                        throw new ServerErrorException(statusCode, "failure");
+                    }
+                    return null;
+                });
+            } catch (ServerErrorException e) {
+                // counted by the breaker, the exchange already holds the response
+                LOGGER.debug("Streamed response with status code {}", e.getStatusCode());
+            }
+            return;
+        }
+
+        if (connectionType.equals(ConnectionType.TCP) && endpoint.isTcpStreaming()) {
+            processTCPStreamRequest(exchange, target, cloudConnectorSettings, deadline);
+            return;
+        }
 
         String res;
         if (connectionType.equals(ConnectionType.HTTP)) {
-            res = processHttpRequest(cloudConnectorProperties);
+            try {
+                res = guarded(target, deadline, repeatable, () -> {
+                    try {
+                        return processHttpRequest(method, entity, cloudConnectorSettings, deadline);
+                    } catch (ProxyAuthenticationException e) {
+                        if (!repeatable) {
+                            throw e;
+                        }
+                        LOGGER.warn("Retrying with refreshed connectivity properties: {}", e.getMessage());
+                        return processHttpRequest(method, entity, refreshCloudConnectorSettings(ConnectionType.HTTP),
+                                deadline);
+                    }
+                });
+            } catch (ServerErrorException e) {
+                // counted by the breaker, the exchange is completed with the response as for other status codes
+                res = e.getResult();
+            }
         } else {
-            res = processTCPRequest(cloudConnectorProperties);
+            res = processTCPRequest(target, cloudConnectorSettings, deadline);
         }
 
         exchange.setProperty("ON_PREMISE_CONNECTION_STATUS", res);
-        LOGGER.error("Got response: with camel 3x {}", res);
+        LOGGER.debug("Got response: with camel 3x {}", res);
+        DiagnosticsRecorder diagnostics = endpoint.getDiagnostics();
+        if (diagnostics != null && diagnostics.sample()) {
+            diagnostics.record("exchange", "Exchange " + exchange.getExchangeId() + " completed with: " + res);
+        }
         exchange.getIn().setBody(res);
-        LOGGER.error("GenericAPI completed");
     }
 
-    private String processHttpRequest(CloudConnectorProperties cloudConnectorProperties)
-            throws CloudConnectorPropertiesException, IOException {
-        HttpClientHandler handler = new HttpClientHandler();
-        return handler.callServer(endpoint.getEndpointUrl(), endpoint.getLocationId(), cloudConnectorProperties);
+    /**
+     * Makes the call through the circuit breaker and with the retries of the endpoint, if it has any.
+     */
+    private <T> T guarded(String target, Deadline deadline, CallGuard.Call<T> call) throws Exception { //NOSONAR
+        return guarded(target, deadline, true, call);
     }
 
-    private String processTCPRequest(CloudConnectorProperties cloudConnectorProperties) {
-        try (Socket socket = AdapterSocketFactory.getSocket(cloudConnectorProperties, endpoint.getLocationId())) {
-            InetSocketAddress unresolvedSocketAddress = InetSocketAddress.createUnresolved(endpoint.getProxyHost(), Integer.parseInt(endpoint.getProxyPort()));
-            socket.connect(unresolvedSocketAddress, 30000);
+    /**
+     * @param retryable false if the call must not be retried
+     */
+    private <T> T guarded(String target, Deadline deadline, boolean retryable, CallGuard.Call<T> call)
+            throws Exception { //NOSONAR
+        CallGuard callGuard = endpoint.getCallGuard();
+        return callGuard != null ? callGuard.call(endpoint.getLocationId(), target, deadline, retryable, call)
+                : call.call();
+    }
 
-            try (DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
-                out.writeUTF("Test message from GenericAPI adapter. At: " + LocalDateTime.now());
+    /**
+     * @return true if the HTTP calls with the method send the body of the exchange
+     */
+    static boolean hasRequestBody(String method) {
+        return "POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method);
+    }
+
+    /**
+     * @return the target the circuit breaker of a call is kept for, the URL of HTTP calls and the virtual host of TCP
+     * calls
+     */
+    static String getCallTarget(GenericAPIEndpoint endpoint, ConnectionType connectionType) {
+        return connectionType == ConnectionType.HTTP ? endpoint.getEndpointUrl()
+                : endpoint.getProxyHost() + ":" + endpoint.getProxyPort();
+    }
+
+    private CloudConnectorSettings refreshCloudConnectorSettings(ConnectionType connectionType) throws Exception { //NOSONAR
+        return endpoint.getCloudConnectorPropertiesCache().refresh(connectionType, endpoint.getLocationId());
+    }
+
+    private String processHttpRequest(String method, HttpEntity entity, CloudConnectorSettings cloudConnectorSettings,
+                                      Deadline deadline) throws IOException {
+        HttpClientHandler handler = endpoint.getHttpClientHandler();
+        return handler.callServer(method, endpoint.getEndpointUrl(), entity, endpoint.getLocationId(),
+                cloudConnectorSettings, deadline);
+    }
+
+    /**
+     * @return the status code of the response
+     */
+    private int processHttpStreamRequest(Exchange exchange, String method, HttpEntity entity,
+                                         CloudConnectorSettings cloudConnectorSettings, Deadline deadline)
+            throws IOException {
+        HttpClientHandler handler = endpoint.getHttpClientHandler();
+        StreamCachingStrategy strategy = exchange.getContext().getStreamCachingStrategy();
+        final ResponseStreamCache body = handler.callServerForStream(method, endpoint.getEndpointUrl(), entity,
+                endpoint.getLocationId(), cloudConnectorSettings, endpoint.getSpoolThreshold(),
+                strategy.getSpoolDirectory(), deadline);
+        // release the connection and the spool file at the latest when the exchange is done
+        exchange.adapt(ExtendedExchange.class).addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange exchange) {
+                body.discard();
             }
+        });
+
+        String res = body.getStatusCode() == 200 ? "success" : "failure";
+        exchange.setProperty("ON_PREMISE_CONNECTION_STATUS", res);
+        exchange.getIn().setBody(body);
+        LOGGER.debug("GenericAPI completed with streamed response, status: {}", res);
+        return body.getStatusCode();
+    }
+
+    private String processTCPRequest(String target, final CloudConnectorSettings cloudConnectorSettings,
+                                     final Deadline deadline) {
+        final TunnelPool tunnelPool = endpoint.getTunnelPool();
+        try {
+            guarded(target, deadline, () -> {
+                if (tunnelPool != null) {
+                    sendPooledTCPMessage(tunnelPool, cloudConnectorSettings, deadline);
+                } else {
+                    sendTCPMessage(cloudConnectorSettings, deadline);
+                }
+                return null;
+            });
+        } catch (CircuitOpenException e) {
+            throw e;
         } catch (Exception e) {
             LOGGER.error("Could not perform the socket call: " + e.getMessage(), e);
             return "TCP Connection failed! " + e.getMessage();
@@ -72,6 +270,247 @@ public class GenericAPIProducer extends DefaultProducer {
         return "TCP Connection is Successful";
     }
 
+    private void sendTCPMessage(CloudConnectorSettings cloudConnectorSettings, Deadline deadline) throws Exception { //NOSONAR
+        try (Socket socket = openSocket(cloudConnectorSettings, deadline)) {
+            try (DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+                out.writeUTF("Test message from GenericAPI adapter. At: " + LocalDateTime.now());
+            }
+        }
+    }
+
+    private void sendPooledTCPMessage(TunnelPool tunnelPool, CloudConnectorSettings cloudConnectorSettings,
+                                      Deadline deadline) throws Exception { //NOSONAR
+        PooledTunnel tunnel = null;
+        try {
+            tunnel = tunnelPool.borrow(getTunnelKey(cloudConnectorSettings), () -> openSocket(cloudConnectorSettings, deadline));
+            // a reused tunnel still has the read timeout of the exchange it was opened for
+            tunnel.getSocket().setSoTimeout(deadline.getReadTimeout());
+            // the stream must not be closed, that would close the pooled tunnel
+            DataOutputStream out = new DataOutputStream(tunnel.getSocket().getOutputStream());
+            out.writeUTF("Test message from GenericAPI adapter. At: " + LocalDateTime.now());
+            out.flush();
+            tunnelPool.release(tunnel);
+        } catch (Exception e) {
+            if (tunnel != null) {
+                tunnelPool.invalidate(tunnel);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Streams the body of the exchange through the tunnel and sets the response as body, see {@link TunnelStreamSession}.
+     * The tunnel is released when the response has been read, at the latest when the exchange is done.
+     */
+    private void processTCPStreamRequest(Exchange exchange, String target, final CloudConnectorSettings cloudConnectorSettings,
+                                         final Deadline deadline) throws Exception { //NOSONAR
+        final TunnelStreamSession.RequestWriter writer = createRequestWriter(exchange, endpoint.getTunnelFraming());
+        final InputStream response;
+        try {
+            response = guarded(target, deadline, writer.isRepeatable(),
+                    () -> openTCPStream(writer, cloudConnectorSettings, deadline));
+        } catch (CircuitOpenException e) {
+            throw e;
+        } catch (Exception e) {
+            exchange.setProperty("ON_PREMISE_CONNECTION_STATUS", "TCP Connection failed! " + e.getMessage());
+            throw e;
+        }
+        exchange.adapt(ExtendedExchange.class).addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange exchange) {
+                IOHelper.close(response);
+            }
+        });
+        exchange.setProperty("ON_PREMISE_CONNECTION_STATUS", "TCP Connection is Successful");
+        exchange.getIn().setBody(response);
+        LOGGER.debug("GenericAPI completed with streamed TCP response");
+    }
+
+    private InputStream openTCPStream(TunnelStreamSession.RequestWriter writer, CloudConnectorSettings cloudConnectorSettings,
+                                      Deadline deadline) throws Exception { //NOSONAR
+        final TunnelPool tunnelPool = endpoint.getTunnelPool();
+        if (tunnelPool == null) {
+            final Socket socket = openSocket(cloudConnectorSettings, deadline);
+            return TunnelStreamSession.open(socket, endpoint.getTunnelFraming(), writer, endpoint.getTcpWriterExecutor(),
+                    reusable -> IOHelper.close(socket));
+        }
+        final PooledTunnel tunnel = tunnelPool.borrow(getTunnelKey(cloudConnectorSettings),
+                () -> openSocket(cloudConnectorSettings, deadline));
+        try {
+            tunnel.getSocket().setSoTimeout(deadline.getReadTimeout());
+        } catch (IOException | RuntimeException e) {
+            tunnelPool.invalidate(tunnel);
+            throw e;
+        }
+        return TunnelStreamSession.open(tunnel.getSocket(), endpoint.getTunnelFraming(), writer,
+                endpoint.getTcpWriterExecutor(), reusable -> {
+                    if (reusable) {
+                        tunnelPool.release(tunnel);
+                    } else {
+                        tunnelPool.invalidate(tunnel);
+                    }
+                });
+    }
+
+    /**
+     * Files and file streams are transferred from their channel. A stream is written as it is read if its frame does
+     * not need the length in advance or the length is given by the {@code Content-Length} header, such a request is
+     * not retried. Other bodies are cached, so their length is known and they can be sent again by a retry, large ones
+     * are spooled to disk by the stream caching strategy of the context.
+     */
+    private static TunnelStreamSession.RequestWriter createRequestWriter(Exchange exchange, final TunnelFraming framing)
+            throws IOException {
+        Object body = exchange.getIn().getBody();
+        if (body instanceof WrappedFile) {
+            body = ((WrappedFile<?>) body).getFile();
+        }
+        if (body instanceof File || body instanceof Path) {
+            final Path path = body instanceof File ? ((File) body).toPath() : (Path) body;
+            return tunnel -> {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    framing.writeFrame(tunnel, channel, channel.size());
+                }
+            };
+        }
+        if (body instanceof FileInputStream || body instanceof FileChannel) {
+            // the transfer does not move the position of the channel, the stream stays with the exchange
+            final FileChannel channel = body instanceof FileChannel ? (FileChannel) body
+                    : ((FileInputStream) body).getChannel();
+            final long length = channel.size() - channel.position();
+            return tunnel -> framing.writeFrame(tunnel, channel, length);
+        }
+        if (body == null || body instanceof byte[]) {
+            final byte[] bytes = body == null ? new byte[0] : (byte[]) body;
+            return tunnel -> framing.writeFrame(tunnel, new ByteArrayInputStream(bytes), bytes.length);
+        }
+        if (body instanceof StreamCache && body instanceof InputStream && ((StreamCache) body).length() > 0) {
+            final StreamCache cache = (StreamCache) body;
+            return tunnel -> {
+                cache.reset();
+                framing.writeFrame(tunnel, (InputStream) cache, cache.length());
+            };
+        }
+        if (body instanceof InputStream) {
+            boolean delimited = framing.getType() == TunnelFraming.Type.DELIMITER;
+            long length = delimited ? -1L : getContentLength(exchange);
+            if (delimited || length >= 0) {
+                return new StreamWriter(framing, (InputStream) body, length);
+            }
+        }
+        CachedOutputStream cachedBody = new CachedOutputStream(exchange);
+        try (InputStream in = exchange.getIn().getMandatoryBody(InputStream.class)) {
+            IOHelper.copy(in, cachedBody);
+        } catch (InvalidPayloadException e) {
+            throw new IOException("Body cannot be sent over TCP: " + e.getMessage(), e);
+        }
+        final StreamCache cache = cachedBody.newStreamCache();
+        return tunnel -> {
+            cache.reset();
+            framing.writeFrame(tunnel, (InputStream) cache, cache.length());
+        };
+    }
+
+    /**
+     * @return the value of the {@code Content-Length} header, -1 if it is missing or invalid
+     */
+    private static long getContentLength(Exchange exchange) {
+        Object header = exchange.getIn().getHeader(Exchange.CONTENT_LENGTH);
+        if (header == null) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(header.toString().trim());
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Ignoring invalid Content-Length header: {}", header);
+            return -1L;
+        }
+    }
+
+    /**
+     * Writes a stream that can be read only once straight into the tunnel.
+     */
+    private static final class StreamWriter implements TunnelStreamSession.RequestWriter {
+
+        private final TunnelFraming framing;
+        private final InputStream body;
+        private final long length;
+        private final AtomicBoolean written = new AtomicBoolean();
+
+        StreamWriter(TunnelFraming framing, InputStream body, long length) {
+            this.framing = framing;
+            this.body = body;
+            this.length = length;
+        }
+
+        @Override
+        public void write(Socket tunnel) throws IOException {
+            if (!written.compareAndSet(false, true)) {
+                throw new IOException("The body was already sent and cannot be read again");
+            }
+            framing.writeFrame(tunnel, body, length);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a connection, or a tunnel if tunnels are reused, for the next exchanges, see
+     * {@link com.sap.adapter.adk.genericapi.conn.ConnectionWarmUp}.
+     *
+     * @return the connection, handed back to its pool when closed; null if it cannot be opened in advance
+     */
+    Closeable preOpenConnection(final CloudConnectorSettings cloudConnectorSettings, final Deadline deadline)
+            throws Exception { //NOSONAR
+        if (getConnectionType() == ConnectionType.TCP) {
+            final TunnelPool tunnelPool = endpoint.getTunnelPool();
+            if (tunnelPool == null) {
+                return null;
+            }
+            final PooledTunnel tunnel = tunnelPool.borrow(getTunnelKey(cloudConnectorSettings),
+                    () -> openSocket(cloudConnectorSettings, deadline));
+            return () -> tunnelPool.release(tunnel);
+        }
+        return endpoint.getHttpClientHandler().preOpenConnection(endpoint.getEndpointUrl(), endpoint.getLocationId(),
+                cloudConnectorSettings, deadline);
+    }
+
+    private TunnelKey getTunnelKey(CloudConnectorSettings cloudConnectorSettings) {
+        return new TunnelKey(endpoint.getLocationId(), endpoint.getProxyHost(), Integer.parseInt(endpoint.getProxyPort()),
+                cloudConnectorSettings.getAuthType());
+    }
+
+    private Socket openSocket(CloudConnectorSettings cloudConnectorSettings, Deadline deadline) throws Exception { //NOSONAR
+        try {
+            return connectSocket(cloudConnectorSettings, deadline);
+        } catch (Socks5AuthenticationException e) {
+            LOGGER.warn("Retrying with refreshed connectivity properties: {}", e.getMessage());
+            return connectSocket(refreshCloudConnectorSettings(ConnectionType.TCP), deadline);
+        }
+    }
+
+    private Socket connectSocket(CloudConnectorSettings cloudConnectorSettings, Deadline deadline) throws IOException {
+        Socket socket = AdapterSocketFactory.getSocket(cloudConnectorSettings, endpoint.getLocationId(),
+                endpoint.getMetrics(), endpoint.getDiagnostics());
+        try {
+            InetSocketAddress unresolvedSocketAddress = InetSocketAddress.createUnresolved(endpoint.getProxyHost(), Integer.parseInt(endpoint.getProxyPort()));
+            if (socket instanceof AdapterSocketCF) {
+                ((AdapterSocketCF) socket).connect(unresolvedSocketAddress, deadline.getConnectTimeout(),
+                        deadline.getHandshakeTimeout());
+            } else {
+                // the JDK connects to the proxy and performs the SOCKS5 handshake within the one timeout
+                socket.connect(unresolvedSocketAddress, deadline.getHandshakeTimeout());
+            }
+            socket.setSoTimeout(deadline.getReadTimeout());
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
     private ConnectionType getConnectionType() {
         return (endpoint.getConnectionType() != null && endpoint.getConnectionType().equals("tcp")) ?
                 ConnectionType.TCP :
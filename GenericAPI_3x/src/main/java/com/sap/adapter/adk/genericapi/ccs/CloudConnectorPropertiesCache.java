@@ -0,0 +1,219 @@
+package com.sap.adapter.adk.genericapi.ccs;
+
+import com.sap.adapter.adk.genericapi.conn.JwtUtil;
+import com.sap.it.api.ITApiFactory;
+import com.sap.it.api.ccs.adapter.CloudConnectorContext;
+import com.sap.it.api.ccs.adapter.CloudConnectorProperties;
+import com.sap.it.api.ccs.adapter.ConnectionType;
+import com.sap.it.api.ccs.adapter.enums.AuthType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the resolved connectivity properties of an endpoint per connection type and location ID.
+ * <p>
+ * Entries are refreshed in the background shortly before their token expires, so exchanges only call the
+ * platform API on the very first access or after the token was rejected by the proxy.
+ */
+public class CloudConnectorPropertiesCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CloudConnectorPropertiesCache.class);
+
+    static final long REFRESH_MARGIN = 60000L;
+    static final long DEFAULT_REFRESH_INTERVAL = 300000L;
+    static final long RETRY_INTERVAL = 10000L;
+    // a token that lives shorter than the margin, or is handed out again close to its expiry, must not be refreshed
+    // in a loop
+    static final long MIN_REFRESH_DELAY = RETRY_INTERVAL;
+    // a rejected token is only refreshed if the cached one is older than this
+    private static final long MIN_FORCED_REFRESH_AGE = 1000L;
+
+    /**
+     * Resolves the connectivity properties from the platform.
+     */
+    public interface Loader {
+        CloudConnectorSettings load(ConnectionType connectionType, String locationId) throws Exception; //NOSONAR
+    }
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Loader loader;
+    private final ScheduledExecutorService scheduler;
+    private final long minRefreshDelay;
+
+    /**
+     * @param scheduler executor for the background refresh, no background refresh if null
+     */
+    public CloudConnectorPropertiesCache(ScheduledExecutorService scheduler) {
+        this(CloudConnectorPropertiesCache::loadFromPlatform, scheduler);
+    }
+
+    public CloudConnectorPropertiesCache(Loader loader, ScheduledExecutorService scheduler) {
+        this(loader, scheduler, MIN_REFRESH_DELAY);
+    }
+
+    /**
+     * @param minRefreshDelay time in ms a background refresh waits at least after the previous load
+     */
+    CloudConnectorPropertiesCache(Loader loader, ScheduledExecutorService scheduler, long minRefreshDelay) {
+        this.loader = loader;
+        this.scheduler = scheduler;
+        this.minRefreshDelay = minRefreshDelay;
+    }
+
+    /**
+     * @return the cached settings, only loaded synchronously if there are none or they are expired
+     */
+    public CloudConnectorSettings get(ConnectionType connectionType, String locationId) throws Exception { //NOSONAR
+        Entry entry = entries.computeIfAbsent(new Key(connectionType, locationId), Entry::new);
+        CloudConnectorSettings settings = entry.settings;
+        if (settings != null && !isExpired(settings)) {
+            return settings;
+        }
+        synchronized (entry) {
+            settings = entry.settings;
+            if (settings == null || isExpired(settings)) {
+                settings = load(entry);
+            }
+            return settings;
+        }
+    }
+
+    /**
+     * Reloads the settings after the proxy rejected the cached token. Concurrent callers that hit the same rejection
+     * share one reload.
+     */
+    public CloudConnectorSettings refresh(ConnectionType connectionType, String locationId) throws Exception { //NOSONAR
+        Entry entry = entries.computeIfAbsent(new Key(connectionType, locationId), Entry::new);
+        synchronized (entry) {
+            CloudConnectorSettings settings = entry.settings;
+            if (settings != null && System.currentTimeMillis() - settings.getResolvedAt() < MIN_FORCED_REFRESH_AGE) {
+                return settings;
+            }
+            LOG.info("Refreshing connectivity properties for {} after authentication failure", entry.key);
+            return load(entry);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                entry.cancelRefresh();
+            }
+        }
+        entries.clear();
+    }
+
+    private CloudConnectorSettings load(Entry entry) throws Exception { //NOSONAR
+        CloudConnectorSettings settings = loader.load(entry.key.connectionType, entry.key.locationId);
+        entry.settings = settings;
+        scheduleRefresh(entry, getRefreshDelay(settings));
+        return settings;
+    }
+
+    private void scheduleRefresh(Entry entry, long delay) {
+        entry.cancelRefresh();
+        if (scheduler != null && !scheduler.isShutdown()) {
+            entry.refreshTask = scheduler.schedule(() -> backgroundRefresh(entry), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void backgroundRefresh(Entry entry) {
+        synchronized (entry) {
+            if (entries.get(entry.key) != entry) {
+                return;
+            }
+            try {
+                load(entry);
+                LOG.debug("Refreshed connectivity properties for {}", entry.key);
+            } catch (Exception e) {
+                LOG.warn("Could not refresh connectivity properties for {}: {}", entry.key, e.getMessage(), e);
+                scheduleRefresh(entry, RETRY_INTERVAL);
+            }
+        }
+    }
+
+    long getRefreshDelay(CloudConnectorSettings settings) {
+        if (settings.getTokenExpiryTime() == JwtUtil.NO_EXPIRY) {
+            return DEFAULT_REFRESH_INTERVAL;
+        }
+        return Math.max(settings.getTokenExpiryTime() - REFRESH_MARGIN - System.currentTimeMillis(), minRefreshDelay);
+    }
+
+    private static boolean isExpired(CloudConnectorSettings settings) {
+        return settings.getTokenExpiryTime() != JwtUtil.NO_EXPIRY && System.currentTimeMillis() >= settings.getTokenExpiryTime();
+    }
+
+    private static CloudConnectorSettings loadFromPlatform(ConnectionType connectionType, String locationId) throws Exception { //NOSONAR
+        CloudConnectorContext context = new CloudConnectorContext();
+        context.setConnectionType(connectionType);
+        CloudConnectorProperties properties = ITApiFactory.getService(CloudConnectorProperties.class, context);
+        if (ConnectionType.HTTP.equals(connectionType)) {
+            return new CloudConnectorSettings(properties.getProxyHost(), properties.getProxyPort(),
+                    properties.getAdditionalHeaders(), null, null, null);
+        }
+        AuthType authType = properties.getAuthType();
+        if (AuthType.PasswordAuthentication.equals(authType)) {
+            return new CloudConnectorSettings(properties.getProxyHost(), properties.getProxyPort(), null, authType, null,
+                    properties.getUserName(locationId));
+        }
+        return new CloudConnectorSettings(properties.getProxyHost(), properties.getProxyPort(), null, authType,
+                properties.getJWTToken(), null);
+    }
+
+    private static final class Key {
+
+        private final ConnectionType connectionType;
+        private final String locationId;
+
+        Key(ConnectionType connectionType, String locationId) {
+            this.connectionType = connectionType;
+            this.locationId = locationId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return connectionType == other.connectionType && Objects.equals(locationId, other.locationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(connectionType, locationId);
+        }
+
+        @Override
+        public String toString() {
+            return connectionType + "/" + locationId;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Key key;
+        private volatile CloudConnectorSettings settings;
+        private ScheduledFuture<?> refreshTask;
+
+        Entry(Key key) {
+            this.key = key;
+        }
+
+        void cancelRefresh() {
+            if (refreshTask != null) {
+                refreshTask.cancel(false);
+                refreshTask = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.sap.adapter.adk.genericapi.ccs;
+
+import com.sap.adapter.adk.genericapi.conn.JwtUtil;
+import com.sap.it.api.ccs.adapter.enums.AuthType;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of the connectivity properties resolved from {@link com.sap.it.api.ccs.adapter.CloudConnectorProperties}.
+ */
+public class CloudConnectorSettings {
+
+    private static final String PROXY_AUTHORIZATION = "Proxy-Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final String proxyHost;
+    private final int proxyPort;
+    private final Map<String, String> additionalHeaders;
+    private final AuthType authType;
+    private final String jwtToken;
+    private final String userName;
+    private final long tokenExpiryTime;
+    private final long resolvedAt;
+
+    public CloudConnectorSettings(String proxyHost, int proxyPort, Map<String, String> additionalHeaders, AuthType authType,
+                                  String jwtToken, String userName) {
+        this.proxyHost = proxyHost;
+        this.proxyPort = proxyPort;
+        this.additionalHeaders = additionalHeaders == null ? Collections.<String, String>emptyMap()
+                : Collections.unmodifiableMap(new HashMap<>(additionalHeaders));
+        this.authType = authType;
+        this.jwtToken = jwtToken;
+        this.userName = userName;
+        this.tokenExpiryTime = JwtUtil.getExpiryTime(jwtToken != null ? jwtToken : getBearerToken(this.additionalHeaders));
+        this.resolvedAt = System.currentTimeMillis();
+    }
+
+    public String getProxyHost() {
+        return proxyHost;
+    }
+
+    public int getProxyPort() {
+        return proxyPort;
+    }
+
+    public Map<String, String> getAdditionalHeaders() {
+        return additionalHeaders;
+    }
+
+    public AuthType getAuthType() {
+        return authType;
+    }
+
+    public String getJWTToken() {
+        return jwtToken;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * @return the expiry of the token in epoch milliseconds, {@link JwtUtil#NO_EXPIRY} if there is none
+     */
+    public long getTokenExpiryTime() {
+        return tokenExpiryTime;
+    }
+
+    public long getResolvedAt() {
+        return resolvedAt;
+    }
+
+    private static String getBearerToken(Map<String, String> headers) {
+        String value = headers.get(PROXY_AUTHORIZATION);
+        if (value != null && value.startsWith(BEARER_PREFIX)) {
+            return value.substring(BEARER_PREFIX.length());
+        }
+        return null;
+    }
+}
@@ -1,43 +1,79 @@
 package com.sap.adapter.adk.genericapi.conn;
 
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
-import java.nio.ByteBuffer;
-
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Blocking socket that tunnels through the Cloud Connector proxy with SOCKS5 and JWT authentication.
+ * <p>
+ * The handshake is performed by the {@link Socks5HandshakeEngine}, afterwards this socket delegates to the
+ * connected channel.
+ */
 public class AdapterSocketCF extends Socket {
 
     private static final Logger LOG = LoggerFactory.getLogger(AdapterSocketCF.class);
-    private static final byte SOCKS5_VERSION = 0x05;
-    private static final byte SOCKS5_JWT_AUTHENTICATION_METHOD = (byte) 0x80;
-    private static final byte SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION = 0x01;
-    private static final byte SOCKS5_COMMAND_CONNECT_BYTE = 0x01;
-    private static final byte SOCKS5_COMMAND_REQUEST_RESERVED_BYTE = 0x00;
-    private static final byte SOCKS5_COMMAND_ADDRESS_TYPE_IPV4_BYTE = 0x01;
-    private static final byte SOCKS5_COMMAND_ADDRESS_TYPE_DOMAIN_BYTE = 0x03;
-    private static final byte SOCKS5_AUTHENTICATION_METHODS_COUNT = 0x01;
-    private static final int SOCKS5_JWT_AUTHENTICATION_METHOD_UNSIGNED_VALUE = 0x80 & 0xFF;
-    private static final byte SOCKS5_AUTHENTICATION_SUCCESS_BYTE = 0x00;
+    // the engine expires handshakes on its own, the wait only guards against an engine that stopped
+    private static final long HANDSHAKE_WAIT_MARGIN = 1000L;
 
     private final String locationId;
     private final String proxyHost;
     private final int proxyPort;
     private final String jwtToken;
+    private final Socks5HandshakeEngine engine;
+    private final EndpointMetrics metrics;
+    private final DiagnosticsRecorder diagnostics;
+
+    private SocketChannel channel;
+    private Socket tunnel;
+
+    public AdapterSocketCF(String locationId, String proxyHost, int proxyPort, String jwtToken) throws IOException {
+        this(locationId, proxyHost, proxyPort, jwtToken, Socks5HandshakeEngine.getDefault());
+    }
 
-    public AdapterSocketCF(String locationId, String proxyHost, int proxyPort, String jwtToken) {
-        this.locationId = Base64.encodeBase64String(locationId.getBytes());
+    public AdapterSocketCF(String locationId, String proxyHost, int proxyPort, String jwtToken, Socks5HandshakeEngine engine) {
+        this(locationId, proxyHost, proxyPort, jwtToken, engine, null, null);
+    }
+
+    /**
+     * @param metrics     metrics the SOCKS5 phases of the handshake are recorded in, null to not record them
+     * @param diagnostics recorder the steps of sampled handshakes are captured in, null to not capture them
+     */
+    public AdapterSocketCF(String locationId, String proxyHost, int proxyPort, String jwtToken, Socks5HandshakeEngine engine,
+                           EndpointMetrics metrics, DiagnosticsRecorder diagnostics) {
+        this.metrics = metrics;
+        this.diagnostics = diagnostics;
+        this.locationId = Base64.encodeBase64String(locationId.getBytes(StandardCharsets.UTF_8));
         this.proxyHost = proxyHost;
         this.proxyPort = proxyPort;
         this.jwtToken = jwtToken;
+        this.engine = engine;
+    }
+
+    /**
+     * @return the expiry of the JWT token used to authenticate the tunnel in epoch milliseconds
+     */
+    public long getTokenExpiryTime() {
+        return JwtUtil.getExpiryTime(jwtToken);
     }
 
     private InetSocketAddress getProxyAddress() {
@@ -46,204 +82,160 @@ public class AdapterSocketCF extends Socket {
 
     @Override
     public void connect(SocketAddress endpoint, int timeout) throws IOException {
-        LOG.error("[TCP] Started Socket connection");
-        super.connect(getProxyAddress(), timeout);
-        LOG.error("[TCP] Connected to proxy!");
-        OutputStream outputStream = getOutputStream();
-        InputStream inputStream = getInputStream();
-        executeSOCKS5InitialRequest(outputStream, inputStream);
-        executeSOCKS5AuthenticationRequest(outputStream, locationId, jwtToken, inputStream);
-        executeSOCKS5ConnectRequest(outputStream, (InetSocketAddress) endpoint, inputStream);
-    }
-
-    private void executeSOCKS5InitialRequest(OutputStream outputStream, InputStream inputStream) throws IOException {
-        LOG.error("[TCP] executeSocks5init");
-        byte[] initialRequest = createInitialSOCKS5Request();
-        outputStream.write(initialRequest);
-
-        assertServerInitialResponse(inputStream);
-    }
-
-    private byte[] createInitialSOCKS5Request() throws IOException {
-        try (ByteArrayOutputStream byteArraysStream = new ByteArrayOutputStream()) {
-            byteArraysStream.write(SOCKS5_VERSION);
-            byteArraysStream.write(SOCKS5_AUTHENTICATION_METHODS_COUNT);
-            byteArraysStream.write(SOCKS5_JWT_AUTHENTICATION_METHOD);
-            return byteArraysStream.toByteArray();
+        connect(endpoint, timeout, timeout);
+    }
+
+    /**
+     * Opens the tunnel to the target.
+     *
+     * @param connectTimeout timeout in ms for the connection to the proxy, 0 for none
+     * @param timeout        timeout in ms for the whole SOCKS5 handshake including the connection, 0 for none
+     */
+    public void connect(SocketAddress endpoint, int connectTimeout, int timeout) throws IOException {
+        InetSocketAddress target = (InetSocketAddress) endpoint;
+        LOG.debug("[TCP] Opening tunnel to {}:{}", target.getHostString(), target.getPort());
+        CompletableFuture<SocketChannel> handshake = engine.handshake(getProxyAddress(), locationId, jwtToken,
+                target.getHostString(), target.getPort(), connectTimeout, timeout, metrics, diagnostics);
+        try {
+            channel = timeout > 0
+                    ? handshake.get(timeout + HANDSHAKE_WAIT_MARGIN, TimeUnit.MILLISECONDS)
+                    : handshake.get();
+        } catch (TimeoutException e) {
+            // a channel that is handed out later is closed by the engine
+            handshake.cancel(false);
+            throw new SocketTimeoutException("SOCKS5 handshake did not complete within " + timeout + " ms");
+        } catch (InterruptedException e) {
+            handshake.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while opening the tunnel");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new SocketException("Could not open the tunnel: " + cause.getMessage());
         }
+        tunnel = channel.socket();
+        LOG.debug("[TCP] Tunnel established");
     }
 
-    private void assertServerInitialResponse(InputStream inputStream) throws IOException {
+    @Override
+    public SocketChannel getChannel() {
+        return channel;
+    }
 
-        int versionByte = inputStream.read();
-        if (SOCKS5_VERSION != versionByte) {
-            throw new SocketException(
-                    String.format("Unsupported SOCKS version - expected %s, but received %s", SOCKS5_VERSION, versionByte));
-        }
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return getTunnel().getInputStream();
+    }
 
-        int authenticationMethodValue = inputStream.read();
-        if (SOCKS5_JWT_AUTHENTICATION_METHOD_UNSIGNED_VALUE != authenticationMethodValue) {
-            throw new SocketException(String.format("Unsupported authentication method value - expected %s, but received %s",
-                    SOCKS5_JWT_AUTHENTICATION_METHOD_UNSIGNED_VALUE, authenticationMethodValue));
-        }
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return getTunnel().getOutputStream();
     }
 
-    private void executeSOCKS5AuthenticationRequest(OutputStream outputStream, String locationId, String jwtToken, InputStream inputStream) throws IOException {
-        byte[] authenticationRequest = createJWTAuthenticationRequest(locationId, jwtToken);
-        outputStream.write(authenticationRequest);
+    @Override
+    public boolean isConnected() {
+        return tunnel != null && tunnel.isConnected();
+    }
 
-        assertAuthenticationResponse(inputStream);
+    @Override
+    public boolean isBound() {
+        return tunnel != null && tunnel.isBound();
     }
 
-    private byte[] createJWTAuthenticationRequest(String sccLocationId, String jwtToken) throws IOException {
-        try (ByteArrayOutputStream byteArraysStream = new ByteArrayOutputStream()) {
-            byteArraysStream.write(SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION);
-            byteArraysStream.write(ByteBuffer.allocate(4).putInt(jwtToken.getBytes().length).array());
-            byteArraysStream.write(jwtToken.getBytes());
-            byteArraysStream.write(ByteBuffer.allocate(1).put((byte) sccLocationId.getBytes().length).array());
-            byteArraysStream.write(sccLocationId.getBytes());
-            return byteArraysStream.toByteArray();
-        }
+    @Override
+    public boolean isClosed() {
+        return tunnel != null ? tunnel.isClosed() : super.isClosed();
     }
 
-    private void assertAuthenticationResponse(InputStream inputStream) throws IOException {
+    @Override
+    public boolean isInputShutdown() {
+        return tunnel != null && tunnel.isInputShutdown();
+    }
 
-        int authenticationMethodVersion = inputStream.read();
-        LOG.error("[TCP] Authentication Method Version: {}, {}", authenticationMethodVersion, SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION);
-        if (SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION != authenticationMethodVersion) {
-            throw new SocketException(String.format("Unsupported authentication method version - expected %s, but received %s",
-                    SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION, authenticationMethodVersion));
-        }
+    @Override
+    public boolean isOutputShutdown() {
+        return tunnel != null && tunnel.isOutputShutdown();
+    }
 
-        int authenticationStatus = inputStream.read();
-        LOG.error("[TCP] Authentication status: {}, {}", authenticationStatus, SOCKS5_AUTHENTICATION_SUCCESS_BYTE);
-        if (SOCKS5_AUTHENTICATION_SUCCESS_BYTE != authenticationStatus) {
-            throw new SocketException("Authentication failed!");
-        }
+    @Override
+    public void shutdownInput() throws IOException {
+        getTunnel().shutdownInput();
     }
 
-    private void executeSOCKS5ConnectRequest(OutputStream outputStream, InetSocketAddress endpoint, InputStream inputStream) throws IOException {
-        LOG.error("[TCP] createConnectCommand- host: {}, port:{}", endpoint.getHostName(), endpoint.getPort());
-        byte[] commandRequest = createConnectCommandRequest(endpoint);
-        LOG.error("[TCP] Created the command request: {}", new String(commandRequest));
-        outputStream.write(commandRequest);
-
-        assertConnectCommandResponse(inputStream);
-    }
-
-    private byte[] createConnectCommandRequest(InetSocketAddress endpoint) throws IOException {
-        String host = endpoint.getHostName();
-        int port = endpoint.getPort();
-        LOG.error("[TCP] createConnectCommand endpoint - host: {}, port:{}", host, port);
-        try (ByteArrayOutputStream byteArraysStream = new ByteArrayOutputStream()) {
-            byteArraysStream.write(SOCKS5_VERSION);
-            byteArraysStream.write(SOCKS5_COMMAND_CONNECT_BYTE);
-            byteArraysStream.write(SOCKS5_COMMAND_REQUEST_RESERVED_BYTE);
-            byte[] hostToIPv4 = parseHostToIPv4(host);
-            if (hostToIPv4 != null) {
-                byteArraysStream.write(SOCKS5_COMMAND_ADDRESS_TYPE_IPV4_BYTE);
-                byteArraysStream.write(hostToIPv4);
-            } else {
-                byteArraysStream.write(SOCKS5_COMMAND_ADDRESS_TYPE_DOMAIN_BYTE);
-                byteArraysStream.write(ByteBuffer.allocate(1).put((byte) host.getBytes().length).array());
-                byteArraysStream.write(host.getBytes());
-            }
-            byteArraysStream.write(ByteBuffer.allocate(2).putShort((short) port).array());
-            return byteArraysStream.toByteArray();
-        }
+    @Override
+    public void shutdownOutput() throws IOException {
+        getTunnel().shutdownOutput();
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return tunnel != null ? tunnel.getInetAddress() : null;
     }
 
-    private void assertConnectCommandResponse(InputStream inputStream) throws IOException {
+    @Override
+    public int getPort() {
+        return tunnel != null ? tunnel.getPort() : 0;
+    }
 
-        LOG.error("[TCP] Waiting for the versionByte..");
-        int versionByte = inputStream.read();
-        if (SOCKS5_VERSION != versionByte) {
-            throw new SocketException(
-                    String.format("Unsupported SOCKS version - expected %s, but received %s", SOCKS5_VERSION, versionByte));
-        }
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return tunnel != null ? tunnel.getRemoteSocketAddress() : null;
+    }
+
+    @Override
+    public int getLocalPort() {
+        return tunnel != null ? tunnel.getLocalPort() : -1;
+    }
 
-        LOG.error("[TCP] Waiting for the connect status..");
-        int connectStatusByte = inputStream.read();
-        LOG.error("[TCP] Socket connectStatusByte: {}", connectStatusByte);
-        assertConnectStatus(connectStatusByte);
+    @Override
+    public synchronized void setSoTimeout(int timeout) throws SocketException {
+        if (tunnel != null) {
+            tunnel.setSoTimeout(timeout);
+        } else {
+            super.setSoTimeout(timeout);
+        }
+    }
 
-        readRemainingCommandResponseBytes(inputStream);
+    @Override
+    public synchronized int getSoTimeout() throws SocketException {
+        return tunnel != null ? tunnel.getSoTimeout() : super.getSoTimeout();
     }
 
-    private void assertConnectStatus(int commandConnectStatus) throws IOException {
-        if (commandConnectStatus == 0) {
-            return;
+    @Override
+    public void setTcpNoDelay(boolean on) throws SocketException {
+        if (tunnel != null) {
+            tunnel.setTcpNoDelay(on);
+        } else {
+            super.setTcpNoDelay(on);
         }
+    }
 
-        String commandConnectStatusTranslation;
-        switch (commandConnectStatus) {
-        case 1:
-            commandConnectStatusTranslation = "FAILURE";
-            break;
-        case 2:
-            commandConnectStatusTranslation = "FORBIDDEN";
-            break;
-        case 3:
-            commandConnectStatusTranslation = "NETWORK_UNREACHABLE";
-            break;
-        case 4:
-            commandConnectStatusTranslation = "HOST_UNREACHABLE";
-            break;
-        case 5:
-            commandConnectStatusTranslation = "CONNECTION_REFUSED";
-            break;
-        case 6:
-            commandConnectStatusTranslation = "TTL_EXPIRED";
-            break;
-        case 7:
-            commandConnectStatusTranslation = "COMMAND_UNSUPPORTED";
-            break;
-        case 8:
-            commandConnectStatusTranslation = "ADDRESS_UNSUPPORTED";
-            break;
-        default:
-            commandConnectStatusTranslation = "UNKNOWN";
-            break;
+    @Override
+    public void setKeepAlive(boolean on) throws SocketException {
+        if (tunnel != null) {
+            tunnel.setKeepAlive(on);
+        } else {
+            super.setKeepAlive(on);
         }
-        throw new SocketException("SOCKS5 command failed with status: " + commandConnectStatusTranslation);
-    }
-
-    private byte[] parseHostToIPv4(String hostName) {
-        byte[] parsedHostName = null;
-        String[] virtualHostOctets = hostName.split("\\.", -1);
-        int octetsCount = virtualHostOctets.length;
-        if (octetsCount == 4) {
-            try {
-                byte[] ipOctets = new byte[octetsCount];
-                for (int i = 0; i < octetsCount; i++) {
-                    int currentOctet = Integer.parseInt(virtualHostOctets[i]);
-                    if ((currentOctet < 0) || (currentOctet > 255)) {
-                        throw new IllegalArgumentException(String.format("Provided octet %s is not in the range of [0-255]", currentOctet));
-                    }
-                    ipOctets[i] = (byte) currentOctet;
-                }
-                parsedHostName = ipOctets;
-            } catch (IllegalArgumentException ex) {
-                return new byte[0];
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (channel != null) {
+                channel.close();
             }
+        } finally {
+            super.close();
         }
-
-        return parsedHostName;
     }
 
-    private void readRemainingCommandResponseBytes(InputStream inputStream) throws IOException {
-        int read;
-        int addressTypeByte = inputStream.read();
-        if (SOCKS5_COMMAND_ADDRESS_TYPE_IPV4_BYTE == addressTypeByte) {
-            for (int i = 0; i < 6; i++) {
-                read = inputStream.read();
-                LOG.debug("Read: {}", read);
-            }
-        } else if (SOCKS5_COMMAND_ADDRESS_TYPE_DOMAIN_BYTE == addressTypeByte) {
-            int domainNameLength = inputStream.read();
-            int portBytes = 2;
-            read = inputStream.read(new byte[domainNameLength + portBytes], 0, domainNameLength + portBytes);
-            LOG.debug("Read: {}", read);
+    private Socket getTunnel() throws SocketException {
+        if (tunnel == null) {
+            throw new SocketException("Socket is not connected");
         }
+        return tunnel;
     }
 }
@@ -0,0 +1,253 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepares an endpoint for its first exchanges: resolves what the calls need, e.g. the connectivity properties, and
+ * then opens a number of connections or tunnels, so the first exchanges do not pay for their setup.
+ * <p>
+ * The connections are opened on the given executor, whose threads bound how many are opened at once. They are held
+ * until all have been opened, so each one is a new connection, and then handed back to their pool. The warm-up waits
+ * at most for its time budget. Connections still being opened then are handed back as soon as they are open.
+ *
+ * @param <S> what the connections are opened with
+ */
+public class ConnectionWarmUp<S> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionWarmUp.class);
+
+    /**
+     * Resolves what the connections are opened with.
+     */
+    public interface Resolver<S> {
+        S resolve() throws Exception; //NOSONAR
+    }
+
+    /**
+     * Opens a connection.
+     */
+    public interface Opener<S> {
+        /**
+         * @return the opened connection, hands it back to its pool when closed; null if it cannot be opened in advance
+         */
+        Closeable open(S resolved) throws Exception; //NOSONAR
+    }
+
+    private final Resolver<S> resolver;
+    private final Opener<S> opener;
+    private final List<Closeable> openConnections = new ArrayList<>();
+    private final Report report = new Report();
+    private boolean finished;
+
+    public ConnectionWarmUp(Resolver<S> resolver, Opener<S> opener) {
+        this.resolver = resolver;
+        this.opener = opener;
+    }
+
+    /**
+     * Runs the warm-up, a failure is only reported.
+     *
+     * @param connections number of connections to open, 0 to only resolve
+     * @param executor    executor the warm-up runs on
+     * @param budget      time in ms the warm-up is waited for at most
+     */
+    public Report run(final int connections, final Executor executor, long budget) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> done = CompletableFuture.supplyAsync(this::resolve, executor)
+                .thenCompose(resolved -> {
+                    CompletableFuture<?>[] opened = new CompletableFuture<?>[connections];
+                    for (int i = 0; i < connections; i++) {
+                        opened[i] = CompletableFuture.runAsync(() -> open(resolved), executor);
+                    }
+                    return CompletableFuture.allOf(opened);
+                });
+        try {
+            done.get(budget, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            report.timedOut = true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof WarmUpException ? e.getCause().getCause() : e.getCause();
+            report.failure = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+            LOG.debug("Warm-up failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.timedOut = true;
+        } finally {
+            report.elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            report.requested = connections;
+            releaseAll();
+        }
+        return report;
+    }
+
+    private S resolve() {
+        long start = System.nanoTime();
+        try {
+            S resolved = resolver.resolve();
+            report.resolveTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return resolved;
+        } catch (Exception e) {
+            throw new WarmUpException(e);
+        }
+    }
+
+    private void open(S resolved) {
+        long start = System.nanoTime();
+        Closeable connection;
+        try {
+            connection = opener.open(resolved);
+        } catch (Exception e) {
+            report.failed.incrementAndGet();
+            LOG.debug("Could not open connection during warm-up: {}", e.getMessage());
+            return;
+        }
+        if (connection == null) {
+            report.skipped.incrementAndGet();
+            return;
+        }
+        long openTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        report.opened.incrementAndGet();
+        report.totalOpenTime.addAndGet(openTime);
+        report.maxOpenTime.accumulateAndGet(openTime, Math::max);
+        synchronized (this) {
+            if (!finished) {
+                openConnections.add(connection);
+                return;
+            }
+        }
+        // opened after the budget, it is still of use to the next exchange
+        release(connection);
+    }
+
+    private void releaseAll() {
+        List<Closeable> connections;
+        synchronized (this) {
+            finished = true;
+            connections = new ArrayList<>(openConnections);
+            openConnections.clear();
+        }
+        for (Closeable connection : connections) {
+            release(connection);
+        }
+    }
+
+    private static void release(Closeable connection) {
+        try {
+            connection.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Could not release connection opened during warm-up: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Timing of a warm-up. Connections opened after the budget are not counted.
+     */
+    public static class Report {
+
+        private volatile long resolveTime = -1L;
+        private volatile long elapsed;
+        private volatile int requested;
+        private volatile boolean timedOut;
+        private volatile String failure;
+        private final AtomicInteger opened = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicLong totalOpenTime = new AtomicLong();
+        private final AtomicLong maxOpenTime = new AtomicLong();
+
+        /**
+         * @return the time in ms it took to resolve, -1 if it did not finish
+         */
+        public long getResolveTime() {
+            return resolveTime;
+        }
+
+        /**
+         * @return the time in ms the warm-up was waited for
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        public int getOpened() {
+            return opened.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * @return the number of connections that cannot be opened in advance
+         */
+        public int getSkipped() {
+            return skipped.get();
+        }
+
+        /**
+         * @return the longest time in ms it took to open a connection
+         */
+        public long getMaxOpenTime() {
+            return maxOpenTime.get();
+        }
+
+        /**
+         * @return true if the warm-up did not finish within its budget
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return the reason the resolution failed, null if it did not
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            int openedCount = opened.get();
+            StringBuilder result = new StringBuilder("took ").append(elapsed).append(" ms");
+            if (failure != null) {
+                return result.append(", resolution failed: ").append(failure).toString();
+            }
+            result.append(resolveTime >= 0 ? ", resolved in " + resolveTime + " ms" : ", resolution did not finish");
+            result.append(", opened ").append(openedCount).append(" of ").append(requested).append(" connections");
+            if (openedCount > 0) {
+                result.append(" in ").append(totalOpenTime.get() / openedCount).append(" ms on average, ")
+                        .append(maxOpenTime.get()).append(" ms at most");
+            }
+            if (failed.get() > 0) {
+                result.append(", ").append(failed.get()).append(" failed");
+            }
+            if (skipped.get() > 0) {
+                result.append(", ").append(skipped.get()).append(" cannot be opened in advance");
+            }
+            if (timedOut) {
+                result.append(", budget exceeded");
+            }
+            return result.toString();
+        }
+    }
+
+    private static class WarmUpException extends RuntimeException {
+
+        WarmUpException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the claims of the JWT tokens handed out by the connectivity service, the signature is not verified.
+ */
+public class JwtUtil {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JwtUtil.class);
+    private static final Pattern EXPIRY_CLAIM = Pattern.compile("\"exp\"\\s*:\\s*(\\d+)");
+
+    /**
+     * Returned if the token has no readable expiry.
+     */
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private JwtUtil() {
+        // should not be instantiated
+    }
+
+    /**
+     * @param jwtToken the encoded token
+     * @return the expiry of the token in epoch milliseconds, {@link #NO_EXPIRY} if it cannot be read
+     */
+    public static long getExpiryTime(String jwtToken) {
+        if (jwtToken == null) {
+            return NO_EXPIRY;
+        }
+        String[] parts = jwtToken.split("\\.");
+        if (parts.length < 2) {
+            LOG.debug("Token is not a JWT, no expiry available");
+            return NO_EXPIRY;
+        }
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+            Matcher matcher = EXPIRY_CLAIM.matcher(payload);
+            if (matcher.find()) {
+                return Long.parseLong(matcher.group(1)) * 1000L;
+            }
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Could not decode JWT payload: {}", e.getMessage());
+        }
+        return NO_EXPIRY;
+    }
+}
@@ -0,0 +1,13 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import java.net.SocketException;
+
+/**
+ * Thrown if the Cloud Connector proxy rejected the JWT token during the SOCKS5 handshake.
+ */
+public class Socks5AuthenticationException extends SocketException {
+
+    public Socks5AuthenticationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,639 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+import com.sap.adapter.adk.common.metrics.OperationMetrics;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Performs the SOCKS5 handshake with JWT authentication against the Cloud Connector proxy on non-blocking channels.
+ * <p>
+ * Each handshake is a small state machine (connect, method negotiation, authentication, CONNECT command) driven by
+ * one of a few selector threads, so many handshakes can run at the same time without a thread each. The frames are
+ * written from prepared buffers, the authentication frame is built once per location and token, and every server
+ * reply is read in bulk. Reads never go beyond the end of a reply, so no data of the tunnel is consumed.
+ * <p>
+ * A completed handshake hands out the channel in blocking mode, ready to be used as a plain socket.
+ */
+public class Socks5HandshakeEngine implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Socks5HandshakeEngine.class);
+    private static final String DIAGNOSTICS_EVENT = "socks5Handshake";
+
+    private static final byte SOCKS5_VERSION = 0x05;
+    private static final byte SOCKS5_JWT_AUTHENTICATION_METHOD = (byte) 0x80;
+    private static final byte SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION = 0x01;
+    private static final byte SOCKS5_COMMAND_CONNECT_BYTE = 0x01;
+    private static final byte SOCKS5_COMMAND_REQUEST_RESERVED_BYTE = 0x00;
+    private static final byte SOCKS5_COMMAND_ADDRESS_TYPE_IPV4_BYTE = 0x01;
+    private static final byte SOCKS5_COMMAND_ADDRESS_TYPE_DOMAIN_BYTE = 0x03;
+    private static final byte SOCKS5_COMMAND_ADDRESS_TYPE_IPV6_BYTE = 0x04;
+    private static final byte SOCKS5_AUTHENTICATION_METHODS_COUNT = 0x01;
+    private static final byte SOCKS5_AUTHENTICATION_SUCCESS_BYTE = 0x00;
+
+    private static final ByteBuffer INITIAL_REQUEST = ByteBuffer.wrap(new byte[] {
+            SOCKS5_VERSION, SOCKS5_AUTHENTICATION_METHODS_COUNT, SOCKS5_JWT_AUTHENTICATION_METHOD }).asReadOnlyBuffer();
+    // version, status, reserved, address type and the first address byte (the length for domain addresses)
+    private static final int CONNECT_RESPONSE_HEAD_LENGTH = 5;
+    private static final int MAX_RESPONSE_LENGTH = 4 + 1 + 255 + 2;
+    private static final long SELECT_TIMEOUT = 100L;
+
+    private static Socks5HandshakeEngine defaultEngine;
+    private static int defaultEngineUsers;
+
+    private final Map<String, AuthenticationFrame> authenticationFrames = new ConcurrentHashMap<>();
+    private final Worker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+
+    /**
+     * @return the engine shared by all sockets of the bundle, started on first use
+     */
+    public static synchronized Socks5HandshakeEngine getDefault() throws IOException {
+        if (defaultEngine == null) {
+            defaultEngine = new Socks5HandshakeEngine(Math.min(2, Runtime.getRuntime().availableProcessors()));
+        }
+        return defaultEngine;
+    }
+
+    /**
+     * Registers a user of the default engine, such as a started component.
+     */
+    public static synchronized void retainDefault() {
+        defaultEngineUsers++;
+    }
+
+    /**
+     * Unregisters a user of the default engine, the selector threads of the engine are stopped once the last user is
+     * gone, so they do not outlive the bundle. The engine is started again on the next use.
+     */
+    public static synchronized void releaseDefault() {
+        if (defaultEngineUsers > 0 && --defaultEngineUsers == 0 && defaultEngine != null) {
+            defaultEngine.close();
+            defaultEngine = null;
+        }
+    }
+
+    /**
+     * @param threads number of selector threads driving the handshakes
+     */
+    public Socks5HandshakeEngine(int threads) throws IOException {
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(Selector.open());
+            Thread thread = new Thread(workers[i], "GenericAPI-SOCKS5-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Opens a tunnel to the target through the proxy.
+     *
+     * @param proxyAddress     address of the Cloud Connector proxy
+     * @param encodedLocationId the Base64 encoded location ID
+     * @param jwtToken         token to authenticate at the proxy
+     * @param host             the virtual host of the target
+     * @param port             the virtual port of the target
+     * @param timeout          timeout in ms for the whole handshake, 0 for none
+     * @return the connected channel in blocking mode
+     */
+    public CompletableFuture<SocketChannel> handshake(InetSocketAddress proxyAddress, String encodedLocationId, String jwtToken,
+                                                      String host, int port, long timeout) {
+        return handshake(proxyAddress, encodedLocationId, jwtToken, host, port, timeout, null, null);
+    }
+
+    /**
+     * Like {@link #handshake(InetSocketAddress, String, String, String, int, long)}, recording the duration of each
+     * SOCKS5 phase in the given metrics. A failure is counted as error of the phase it occurred in. If the handshake
+     * is sampled by the diagnostics recorder, its steps are captured there.
+     *
+     * @param metrics     metrics of the endpoint, null to not record the phases
+     * @param diagnostics diagnostics recorder of the endpoint, null to not capture the steps
+     */
+    public CompletableFuture<SocketChannel> handshake(InetSocketAddress proxyAddress, String encodedLocationId, String jwtToken,
+                                                      String host, int port, long timeout, EndpointMetrics metrics,
+                                                      DiagnosticsRecorder diagnostics) {
+        return handshake(proxyAddress, encodedLocationId, jwtToken, host, port, timeout, timeout, metrics, diagnostics);
+    }
+
+    /**
+     * Like {@link #handshake(InetSocketAddress, String, String, String, int, long, EndpointMetrics, DiagnosticsRecorder)},
+     * with a separate, usually shorter timeout for the connection to the proxy.
+     *
+     * @param connectTimeout timeout in ms for the connection to the proxy, 0 for none
+     * @param timeout        timeout in ms for the whole handshake including the connection, 0 for none
+     */
+    public CompletableFuture<SocketChannel> handshake(InetSocketAddress proxyAddress, String encodedLocationId, String jwtToken,
+                                                      String host, int port, long connectTimeout, long timeout,
+                                                      EndpointMetrics metrics, DiagnosticsRecorder diagnostics) {
+        CompletableFuture<SocketChannel> future = new CompletableFuture<>();
+        Handshake handshake = null;
+        try {
+            long now = System.currentTimeMillis();
+            long deadline = timeout > 0 ? now + timeout : Long.MAX_VALUE;
+            long connectDeadline = connectTimeout > 0 ? Math.min(now + connectTimeout, deadline) : deadline;
+            handshake = new Handshake(future, getAuthenticationFrame(encodedLocationId, jwtToken),
+                    createConnectCommandRequest(host, port), connectDeadline, deadline,
+                    metrics, diagnostics != null && diagnostics.sample() ? diagnostics : null);
+            handshake.trace("Connecting to proxy " + proxyAddress + " for " + host + ":" + port);
+            handshake.channel = SocketChannel.open();
+            handshake.channel.configureBlocking(false);
+            if (connect(handshake.channel, proxyAddress)) {
+                // connections to a local proxy are often established at once, OP_CONNECT would never be selected
+                handshake.connected();
+            }
+            workers[Math.abs(nextWorker.getAndIncrement() % workers.length)].add(handshake);
+        } catch (IOException | RuntimeException e) {
+            if (handshake != null && handshake.channel != null) {
+                // e.g. an unresolvable proxy host, the opened channel must not leak
+                handshake.fail(e);
+            } else {
+                if (handshake != null) {
+                    handshake.endPhase(true);
+                    handshake.trace("Failed: " + e);
+                }
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Starts connecting the non-blocking channel.
+     *
+     * @return true if the connection is established at once
+     */
+    boolean connect(SocketChannel channel, InetSocketAddress proxyAddress) throws IOException {
+        return channel.connect(proxyAddress);
+    }
+
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            worker.close();
+        }
+    }
+
+    private ByteBuffer getAuthenticationFrame(String encodedLocationId, String jwtToken) {
+        AuthenticationFrame frame = authenticationFrames.get(encodedLocationId);
+        if (frame == null || !frame.jwtToken.equals(jwtToken)) {
+            frame = new AuthenticationFrame(encodedLocationId, jwtToken);
+            authenticationFrames.put(encodedLocationId, frame);
+        }
+        return frame.frame.duplicate();
+    }
+
+    private static ByteBuffer createConnectCommandRequest(String host, int port) {
+        byte[] hostToIPv4 = parseHostToIPv4(host);
+        byte[] hostBytes = hostToIPv4 == null ? host.getBytes(StandardCharsets.US_ASCII) : null;
+        int addressLength = hostToIPv4 != null ? hostToIPv4.length : 1 + hostBytes.length;
+        ByteBuffer request = ByteBuffer.allocate(4 + addressLength + 2);
+        request.put(SOCKS5_VERSION).put(SOCKS5_COMMAND_CONNECT_BYTE).put(SOCKS5_COMMAND_REQUEST_RESERVED_BYTE);
+        if (hostToIPv4 != null) {
+            request.put(SOCKS5_COMMAND_ADDRESS_TYPE_IPV4_BYTE).put(hostToIPv4);
+        } else {
+            request.put(SOCKS5_COMMAND_ADDRESS_TYPE_DOMAIN_BYTE).put((byte) hostBytes.length).put(hostBytes);
+        }
+        request.putShort((short) port);
+        request.flip();
+        return request;
+    }
+
+    private static byte[] parseHostToIPv4(String hostName) {
+        byte[] parsedHostName = null;
+        String[] virtualHostOctets = hostName.split("\\.", -1);
+        int octetsCount = virtualHostOctets.length;
+        if (octetsCount == 4) {
+            try {
+                byte[] ipOctets = new byte[octetsCount];
+                for (int i = 0; i < octetsCount; i++) {
+                    int currentOctet = Integer.parseInt(virtualHostOctets[i]);
+                    if ((currentOctet < 0) || (currentOctet > 255)) {
+                        throw new IllegalArgumentException(String.format("Provided octet %s is not in the range of [0-255]", currentOctet));
+                    }
+                    ipOctets[i] = (byte) currentOctet;
+                }
+                parsedHostName = ipOctets;
+            } catch (IllegalArgumentException ex) {
+                // not an IP address, e.g. a domain name with four labels
+                return null;
+            }
+        }
+
+        return parsedHostName;
+    }
+
+    private static String translateConnectStatus(int commandConnectStatus) {
+        switch (commandConnectStatus) {
+        case 1:
+            return "FAILURE";
+        case 2:
+            return "FORBIDDEN";
+        case 3:
+            return "NETWORK_UNREACHABLE";
+        case 4:
+            return "HOST_UNREACHABLE";
+        case 5:
+            return "CONNECTION_REFUSED";
+        case 6:
+            return "TTL_EXPIRED";
+        case 7:
+            return "COMMAND_UNSUPPORTED";
+        case 8:
+            return "ADDRESS_UNSUPPORTED";
+        default:
+            return "UNKNOWN";
+        }
+    }
+
+    private enum State {
+        CONNECTING, WRITE_INITIAL_REQUEST, READ_INITIAL_RESPONSE, WRITE_AUTHENTICATION, READ_AUTHENTICATION_RESPONSE,
+        WRITE_CONNECT_COMMAND, READ_CONNECT_RESPONSE_HEAD, READ_CONNECT_RESPONSE_ADDRESS, DONE
+    }
+
+    /**
+     * The authentication frame for a location, rebuilt when the token changes.
+     */
+    private static class AuthenticationFrame {
+
+        private final String jwtToken;
+        private final ByteBuffer frame;
+
+        AuthenticationFrame(String encodedLocationId, String jwtToken) {
+            this.jwtToken = jwtToken;
+            byte[] tokenBytes = jwtToken.getBytes(StandardCharsets.US_ASCII);
+            byte[] locationIdBytes = encodedLocationId.getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + tokenBytes.length + 1 + locationIdBytes.length);
+            buffer.put(SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION).putInt(tokenBytes.length).put(tokenBytes)
+                    .put((byte) locationIdBytes.length).put(locationIdBytes);
+            buffer.flip();
+            this.frame = buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * State of a single handshake, only accessed by its worker thread.
+     */
+    private static class Handshake {
+
+        private final CompletableFuture<SocketChannel> future;
+        private final ByteBuffer authenticationRequest;
+        private final ByteBuffer connectCommandRequest;
+        private final ByteBuffer response = ByteBuffer.allocate(MAX_RESPONSE_LENGTH);
+        private final long connectDeadline;
+        private final long deadline;
+        private SocketChannel channel;
+        private final EndpointMetrics metrics;
+        // only set if the handshake is sampled
+        private final DiagnosticsRecorder diagnostics;
+        private State state = State.CONNECTING;
+        private ByteBuffer request;
+        private OperationMetrics phase;
+        private long phaseStart;
+
+        Handshake(CompletableFuture<SocketChannel> future, ByteBuffer authenticationRequest, ByteBuffer connectCommandRequest,
+                  long connectDeadline, long deadline, EndpointMetrics metrics, DiagnosticsRecorder diagnostics) {
+            this.future = future;
+            this.authenticationRequest = authenticationRequest;
+            this.connectCommandRequest = connectCommandRequest;
+            this.connectDeadline = connectDeadline;
+            this.deadline = deadline;
+            this.metrics = metrics;
+            this.diagnostics = diagnostics;
+            startPhase(GenericAPIMetrics.SOCKS5_CONNECT);
+        }
+
+        void trace(String step) {
+            if (diagnostics != null) {
+                diagnostics.record(DIAGNOSTICS_EVENT, step);
+            }
+        }
+
+        private void startPhase(String operation) {
+            if (metrics != null) {
+                phase = metrics.operation(operation);
+                phaseStart = phase.start();
+            }
+        }
+
+        void endPhase(boolean failed) {
+            if (phase != null) {
+                phase.stop(phaseStart, failed);
+                phase = null;
+            }
+        }
+
+        private void nextPhase(String operation) {
+            endPhase(false);
+            startPhase(operation);
+        }
+
+        /**
+         * Advances the handshake as far as the channel allows without blocking.
+         *
+         * @return true once the tunnel is established
+         */
+        boolean onReady(SelectionKey key) throws IOException {
+            if (state == State.CONNECTING) {
+                if (!channel.finishConnect()) {
+                    return false;
+                }
+                connected();
+            }
+            while (true) {
+                if (isWriting()) {
+                    channel.write(request);
+                    if (request.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return false;
+                    }
+                    startRead();
+                }
+                if (channel.read(response) < 0) {
+                    throw new EOFException("Connection closed by proxy during SOCKS5 state " + state);
+                }
+                if (response.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return false;
+                }
+                if (processResponse()) {
+                    return true;
+                }
+            }
+        }
+
+        void connected() {
+            state = State.WRITE_INITIAL_REQUEST;
+            request = INITIAL_REQUEST.duplicate();
+            nextPhase(GenericAPIMetrics.SOCKS5_NEGOTIATION);
+            trace("Connected to proxy, negotiating the authentication method");
+        }
+
+        private boolean processResponse() throws SocketException {
+            switch (state) {
+            case READ_INITIAL_RESPONSE:
+                assertServerInitialResponse();
+                state = State.WRITE_AUTHENTICATION;
+                request = authenticationRequest;
+                nextPhase(GenericAPIMetrics.SOCKS5_AUTHENTICATION);
+                trace("JWT authentication accepted, authenticating");
+                return false;
+            case READ_AUTHENTICATION_RESPONSE:
+                assertAuthenticationResponse();
+                state = State.WRITE_CONNECT_COMMAND;
+                request = connectCommandRequest;
+                nextPhase(GenericAPIMetrics.SOCKS5_CONNECT_COMMAND);
+                trace("Authenticated, sending the connect command");
+                return false;
+            case READ_CONNECT_RESPONSE_HEAD:
+                assertConnectCommandResponse();
+                state = State.READ_CONNECT_RESPONSE_ADDRESS;
+                response.limit(getConnectResponseLength());
+                return false;
+            case READ_CONNECT_RESPONSE_ADDRESS:
+                state = State.DONE;
+                endPhase(false);
+                trace("Tunnel established");
+                return true;
+            default:
+                throw new IllegalStateException("Unexpected SOCKS5 state " + state);
+            }
+        }
+
+        private void startRead() {
+            response.clear();
+            switch (state) {
+            case WRITE_INITIAL_REQUEST:
+                state = State.READ_INITIAL_RESPONSE;
+                response.limit(2);
+                break;
+            case WRITE_AUTHENTICATION:
+                state = State.READ_AUTHENTICATION_RESPONSE;
+                response.limit(2);
+                break;
+            default:
+                state = State.READ_CONNECT_RESPONSE_HEAD;
+                response.limit(CONNECT_RESPONSE_HEAD_LENGTH);
+                break;
+            }
+        }
+
+        private boolean isWriting() {
+            return state == State.WRITE_INITIAL_REQUEST || state == State.WRITE_AUTHENTICATION
+                    || state == State.WRITE_CONNECT_COMMAND;
+        }
+
+        private void assertServerInitialResponse() throws SocketException {
+            int versionByte = response.get(0);
+            if (SOCKS5_VERSION != versionByte) {
+                throw new SocketException(
+                        String.format("Unsupported SOCKS version - expected %s, but received %s", SOCKS5_VERSION, versionByte));
+            }
+            int authenticationMethodValue = response.get(1) & 0xFF;
+            if ((SOCKS5_JWT_AUTHENTICATION_METHOD & 0xFF) != authenticationMethodValue) {
+                throw new SocketException(String.format("Unsupported authentication method value - expected %s, but received %s",
+                        SOCKS5_JWT_AUTHENTICATION_METHOD & 0xFF, authenticationMethodValue));
+            }
+        }
+
+        private void assertAuthenticationResponse() throws SocketException {
+            int authenticationMethodVersion = response.get(0);
+            if (SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION != authenticationMethodVersion) {
+                throw new SocketException(String.format("Unsupported authentication method version - expected %s, but received %s",
+                        SOCKS5_JWT_AUTHENTICATION_METHOD_VERSION, authenticationMethodVersion));
+            }
+            if (SOCKS5_AUTHENTICATION_SUCCESS_BYTE != response.get(1)) {
+                throw new Socks5AuthenticationException("Authentication failed!");
+            }
+        }
+
+        private void assertConnectCommandResponse() throws SocketException {
+            int versionByte = response.get(0);
+            if (SOCKS5_VERSION != versionByte) {
+                throw new SocketException(
+                        String.format("Unsupported SOCKS version - expected %s, but received %s", SOCKS5_VERSION, versionByte));
+            }
+            int connectStatusByte = response.get(1) & 0xFF;
+            if (connectStatusByte != 0) {
+                throw new SocketException("SOCKS5 command failed with status: " + translateConnectStatus(connectStatusByte));
+            }
+        }
+
+        private int getConnectResponseLength() throws SocketException {
+            switch (response.get(3)) {
+            case SOCKS5_COMMAND_ADDRESS_TYPE_IPV4_BYTE:
+                return 4 + 4 + 2;
+            case SOCKS5_COMMAND_ADDRESS_TYPE_DOMAIN_BYTE:
+                return 4 + 1 + (response.get(4) & 0xFF) + 2;
+            case SOCKS5_COMMAND_ADDRESS_TYPE_IPV6_BYTE:
+                return 4 + 16 + 2;
+            default:
+                throw new SocketException("Unsupported address type in SOCKS5 response: " + response.get(3));
+            }
+        }
+
+        void fail(Throwable e) {
+            endPhase(true);
+            trace("Failed in state " + state + ": " + e);
+            try {
+                channel.close();
+            } catch (IOException closeException) {
+                LOG.debug("Could not close channel: {}", closeException.getMessage());
+            }
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Drives the handshakes registered with its selector.
+     */
+    private static class Worker implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Handshake> newHandshakes = new ConcurrentLinkedQueue<>();
+        private volatile boolean running = true;
+
+        Worker(Selector selector) {
+            this.selector = selector;
+        }
+
+        void add(Handshake handshake) {
+            if (!running) {
+                handshake.fail(new SocketException("SOCKS5 handshake engine closed"));
+                return;
+            }
+            newHandshakes.add(handshake);
+            selector.wakeup();
+            // the worker may have drained the queue for the last time in between
+            if (!running && newHandshakes.remove(handshake)) {
+                handshake.fail(new SocketException("SOCKS5 handshake engine closed"));
+            }
+        }
+
+        void close() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            List<Handshake> completed = new ArrayList<>();
+            try {
+                while (running) {
+                    selector.select(SELECT_TIMEOUT);
+                    registerNewHandshakes();
+                    processSelectedKeys(completed);
+                    expireHandshakes();
+                    if (!completed.isEmpty()) {
+                        handOver(completed);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                LOG.error("SOCKS5 handshake worker stopped: {}", e.getMessage(), e);
+            } finally {
+                running = false;
+                shutdown();
+            }
+        }
+
+        private void registerNewHandshakes() {
+            Handshake handshake;
+            while ((handshake = newHandshakes.poll()) != null) {
+                try {
+                    handshake.channel.register(selector, handshake.state == State.CONNECTING
+                            ? SelectionKey.OP_CONNECT : SelectionKey.OP_WRITE, handshake);
+                } catch (IOException e) {
+                    handshake.fail(e);
+                }
+            }
+        }
+
+        private void processSelectedKeys(List<Handshake> completed) {
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+                Handshake handshake = (Handshake) key.attachment();
+                try {
+                    if (key.isValid() && handshake.onReady(key)) {
+                        key.cancel();
+                        completed.add(handshake);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    key.cancel();
+                    handshake.fail(e);
+                }
+            }
+        }
+
+        private void expireHandshakes() {
+            long now = System.currentTimeMillis();
+            for (SelectionKey key : selector.keys()) {
+                Handshake handshake = (Handshake) key.attachment();
+                if (key.isValid() && handshake.state == State.CONNECTING && now > handshake.connectDeadline) {
+                    key.cancel();
+                    handshake.fail(new SocketTimeoutException("Connection to the proxy timed out"));
+                } else if (key.isValid() && now > handshake.deadline) {
+                    key.cancel();
+                    handshake.fail(new SocketTimeoutException("SOCKS5 handshake timed out in state " + handshake.state));
+                }
+            }
+        }
+
+        private void handOver(List<Handshake> completed) throws IOException {
+            // deregisters the cancelled keys, only then the channels can be switched to blocking mode
+            selector.selectNow();
+            for (Handshake handshake : completed) {
+                try {
+                    handshake.channel.configureBlocking(true);
+                    if (!handshake.future.complete(handshake.channel)) {
+                        // the caller stopped waiting for the handshake
+                        handshake.fail(new SocketException("SOCKS5 handshake was abandoned"));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    handshake.fail(e);
+                }
+            }
+            completed.clear();
+        }
+
+        private void shutdown() {
+            for (SelectionKey key : selector.keys()) {
+                ((Handshake) key.attachment()).fail(new SocketException("SOCKS5 handshake engine closed"));
+            }
+            Handshake handshake;
+            while ((handshake = newHandshakes.poll()) != null) {
+                handshake.fail(new SocketException("SOCKS5 handshake engine closed"));
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close selector: {}", e.getMessage());
+            }
+        }
+    }
+}
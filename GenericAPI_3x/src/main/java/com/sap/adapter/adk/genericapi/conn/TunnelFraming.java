@@ -0,0 +1,381 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Framing of the messages exchanged over a TCP tunnel, so the end of a message is known without closing the tunnel.
+ * <ul>
+ * <li>{@link Type#LENGTH}: each message is preceded by its length in bytes as 4 byte big-endian integer.</li>
+ * <li>{@link Type#DELIMITER}: each message is followed by a delimiter, which the message must not contain.</li>
+ * </ul>
+ * Files are written with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} if the
+ * tunnel has a channel, so their content is not copied through the heap.
+ */
+public class TunnelFraming {
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+    private static final int HEAD_LENGTH = 4;
+
+    public enum Type {
+        LENGTH, DELIMITER
+    }
+
+    private final Type type;
+    private final byte[] delimiter;
+    // longest proper prefix of the delimiter that is also a suffix, for each prefix length
+    private final int[] fallback;
+
+    /**
+     * @param delimiter the delimiter of {@link Type#DELIMITER} framing, ignored otherwise
+     */
+    public TunnelFraming(Type type, byte[] delimiter) {
+        this.type = type;
+        if (type == Type.DELIMITER && (delimiter == null || delimiter.length == 0)) {
+            throw new IllegalArgumentException("Delimiter framing needs a delimiter");
+        }
+        this.delimiter = type == Type.DELIMITER ? delimiter.clone() : new byte[0];
+        this.fallback = computeFallback(this.delimiter);
+    }
+
+    /**
+     * @param framing   {@code length} or {@code delimiter}
+     * @param delimiter the delimiter, may contain the escapes {@code \n}, {@code \r}, {@code \t}, {@code \0} and
+     *                  {@code \\}
+     */
+    public static TunnelFraming of(String framing, String delimiter) {
+        if ("length".equalsIgnoreCase(framing)) {
+            return new TunnelFraming(Type.LENGTH, null);
+        }
+        if ("delimiter".equalsIgnoreCase(framing)) {
+            return new TunnelFraming(Type.DELIMITER,
+                    delimiter != null ? unescape(delimiter).getBytes(StandardCharsets.UTF_8) : null);
+        }
+        throw new IllegalArgumentException("Unknown TCP framing: " + framing + ", expected length or delimiter");
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Writes the content of the file as one frame.
+     *
+     * @param length number of bytes from the current position of the file
+     */
+    public void writeFrame(Socket tunnel, FileChannel body, long length) throws IOException {
+        SocketChannel channel = tunnel.getChannel();
+        if (channel == null) {
+            // no channel to transfer to, e.g. a tunnel opened by the JDK's SOCKS implementation
+            writeFrame(tunnel, Channels.newInputStream(body), length);
+            return;
+        }
+        if (type == Type.LENGTH) {
+            writeFully(channel, ByteBuffer.wrap(createHead(length)));
+        }
+        long start = body.position();
+        long transferred = 0;
+        while (transferred < length) {
+            long count = body.transferTo(start + transferred, length - transferred, channel);
+            if (count <= 0 && start + transferred >= body.size()) {
+                throw new EOFException("File ended after " + transferred + " of " + length + " bytes");
+            }
+            transferred += count;
+        }
+        if (type == Type.DELIMITER) {
+            writeFully(channel, ByteBuffer.wrap(delimiter));
+        }
+    }
+
+    /**
+     * Writes the content of the stream as one frame.
+     *
+     * @param length number of bytes of the stream, -1 if unknown, which is only allowed for delimiter framing
+     */
+    public void writeFrame(Socket tunnel, InputStream body, long length) throws IOException {
+        OutputStream out = tunnel.getOutputStream();
+        if (type == Type.LENGTH) {
+            out.write(createHead(length));
+        }
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long written = 0;
+        while (length < 0 || written < length) {
+            int read = body.read(buffer, 0, length < 0 ? buffer.length : (int) Math.min(buffer.length, length - written));
+            if (read == -1) {
+                break;
+            }
+            out.write(buffer, 0, read);
+            written += read;
+        }
+        if (length >= 0 && written < length) {
+            throw new EOFException("Body ended after " + written + " of " + length + " bytes");
+        }
+        if (type == Type.DELIMITER) {
+            out.write(delimiter);
+        }
+        out.flush();
+    }
+
+    /**
+     * Starts reading a frame, blocks until its first byte or, with length framing, its length has been received.
+     */
+    public FrameInputStream readFrame(InputStream in) throws IOException {
+        if (type == Type.LENGTH) {
+            int length = new DataInputStream(in).readInt();
+            if (length < 0) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            return new LengthFrame(in, length);
+        }
+        DelimitedFrame frame = new DelimitedFrame(in);
+        if (!frame.receive()) {
+            throw new EOFException("Tunnel closed before the response");
+        }
+        return frame;
+    }
+
+    private byte[] createHead(long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Body of " + length + " bytes cannot be sent with length framing");
+        }
+        return ByteBuffer.allocate(HEAD_LENGTH).putInt((int) length).array();
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int[] computeFallback(byte[] delimiter) {
+        int[] fallback = new int[delimiter.length];
+        int matched = 0;
+        for (int i = 1; i < delimiter.length; i++) {
+            while (matched > 0 && delimiter[i] != delimiter[matched]) {
+                matched = fallback[matched - 1];
+            }
+            if (delimiter[i] == delimiter[matched]) {
+                matched++;
+            }
+            fallback[i] = matched;
+        }
+        return fallback;
+    }
+
+    static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                result.append(c);
+                continue;
+            }
+            char escaped = value.charAt(++i);
+            switch (escaped) {
+            case 'n':
+                result.append('\n');
+                break;
+            case 'r':
+                result.append('\r');
+                break;
+            case 't':
+                result.append('\t');
+                break;
+            case '0':
+                result.append('\0');
+                break;
+            default:
+                result.append(escaped);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * The content of one received frame. Reading it never goes beyond the end of the frame on the tunnel, except for
+     * the read-ahead of delimiter framing, see {@link #isReusable()}.
+     */
+    public abstract static class FrameInputStream extends InputStream {
+
+        protected final InputStream in;
+        protected boolean complete;
+        private final byte[] single = new byte[1];
+
+        FrameInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return true once the whole frame has been read
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * @return true if the frame has been read and nothing after it, so the tunnel can carry the next message
+         */
+        public boolean isReusable() {
+            try {
+                return complete && in.available() == 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        /**
+         * Does not close the tunnel.
+         */
+        @Override
+        public void close() {
+            // the tunnel is owned by the caller
+        }
+    }
+
+    private static class LengthFrame extends FrameInputStream {
+
+        private long remaining;
+
+        LengthFrame(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+            this.complete = length == 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                throw new EOFException("Tunnel closed with " + remaining + " bytes of the frame missing");
+            }
+            remaining -= read;
+            complete = remaining == 0;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+
+    private class DelimitedFrame extends FrameInputStream {
+
+        // content held back while it could be the start of the delimiter
+        private final byte[] pending = new byte[delimiter.length];
+        private int pendingPosition;
+        private int pendingLength;
+        private int matched;
+        // bytes received from the tunnel that were not scanned yet
+        private final byte[] received = new byte[COPY_BUFFER_SIZE];
+        private int receivedPosition;
+        private int receivedLength;
+
+        DelimitedFrame(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Blocks until the next bytes are received.
+         *
+         * @return false if the tunnel was closed
+         */
+        boolean receive() throws IOException {
+            int read = in.read(received, 0, received.length);
+            if (read == -1) {
+                return false;
+            }
+            receivedPosition = 0;
+            receivedLength = read;
+            return true;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < len) {
+                if (pendingPosition < pendingLength) {
+                    int copied = Math.min(len - count, pendingLength - pendingPosition);
+                    System.arraycopy(pending, pendingPosition, b, off + count, copied);
+                    pendingPosition += copied;
+                    count += copied;
+                    continue;
+                }
+                if (complete) {
+                    break;
+                }
+                if (receivedPosition == receivedLength) {
+                    if (count > 0 && in.available() == 0) {
+                        break;
+                    }
+                    if (!receive()) {
+                        throw new EOFException("Tunnel closed before the delimiter");
+                    }
+                }
+                if (matched == 0) {
+                    // content up to the next possible start of the delimiter is copied at once
+                    int start = receivedPosition;
+                    int end = Math.min(receivedLength, start + len - count);
+                    while (receivedPosition < end && received[receivedPosition] != delimiter[0]) {
+                        receivedPosition++;
+                    }
+                    System.arraycopy(received, start, b, off + count, receivedPosition - start);
+                    count += receivedPosition - start;
+                    if (receivedPosition == end) {
+                        continue;
+                    }
+                }
+                byte c = received[receivedPosition++];
+                pendingPosition = 0;
+                pendingLength = 0;
+                while (matched > 0 && c != delimiter[matched]) {
+                    // the bytes that no longer match are content
+                    int next = fallback[matched - 1];
+                    System.arraycopy(delimiter, 0, pending, pendingLength, matched - next);
+                    pendingLength += matched - next;
+                    matched = next;
+                }
+                if (c == delimiter[matched]) {
+                    if (++matched == delimiter.length) {
+                        complete = true;
+                    }
+                } else {
+                    pending[pendingLength++] = c;
+                }
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        /**
+         * @return false if more than the frame was received
+         */
+        @Override
+        public boolean isReusable() {
+            return receivedPosition == receivedLength && super.isReusable();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import com.sap.it.api.ccs.adapter.enums.AuthType;
+
+import java.util.Objects;
+
+/**
+ * Identifies the tunnels through the Cloud Connector that can be used interchangeably.
+ */
+public final class TunnelKey {
+
+    private final String locationId;
+    private final String host;
+    private final int port;
+    private final AuthType authType;
+
+    public TunnelKey(String locationId, String host, int port, AuthType authType) {
+        this.locationId = locationId;
+        this.host = host;
+        this.port = port;
+        this.authType = authType;
+    }
+
+    public String getLocationId() {
+        return locationId;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public AuthType getAuthType() {
+        return authType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TunnelKey)) {
+            return false;
+        }
+        TunnelKey other = (TunnelKey) o;
+        return port == other.port && Objects.equals(locationId, other.locationId) && Objects.equals(host, other.host)
+                && authType == other.authType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(locationId, host, port, authType);
+    }
+
+    @Override
+    public String toString() {
+        return locationId + "->" + host + ":" + port + "(" + authType + ")";
+    }
+}
@@ -0,0 +1,204 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps connected and authenticated tunnels through the Cloud Connector, so exchanges to the same on-premise
+ * target can skip the SOCKS5 handshake.
+ * <p>
+ * A tunnel is only handed out again if it is still alive, has not been idle for longer than the max idle time
+ * and its JWT token does not expire within the expiry margin. Channel based tunnels are probed with a non-blocking
+ * read, so checking a tunnel never waits for the network.
+ */
+public class TunnelPool implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TunnelPool.class);
+    private static final long TOKEN_EXPIRY_MARGIN = 30000L;
+
+    /**
+     * Opens a new connected tunnel if the pool has none to offer.
+     */
+    public interface TunnelConnector {
+        Socket connect() throws Exception; //NOSONAR
+    }
+
+    private final Map<TunnelKey, Deque<PooledTunnel>> idleTunnels = new ConcurrentHashMap<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maxIdleTunnels;
+    private final long maxIdleTime;
+    private volatile boolean closed;
+
+    /**
+     * @param maxIdleTunnels maximum number of tunnels kept in the pool over all keys
+     * @param maxIdleTime    time in ms after which an unused tunnel is closed
+     */
+    public TunnelPool(int maxIdleTunnels, long maxIdleTime) {
+        this.maxIdleTunnels = maxIdleTunnels;
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public PooledTunnel borrow(TunnelKey key, TunnelConnector connector) throws Exception { //NOSONAR
+        Deque<PooledTunnel> tunnels = idleTunnels.get(key);
+        if (tunnels != null) {
+            PooledTunnel tunnel;
+            while ((tunnel = tunnels.pollFirst()) != null) {
+                idleCount.decrementAndGet();
+                if (isReusable(tunnel, System.currentTimeMillis())) {
+                    LOG.debug("Reusing tunnel {}", key);
+                    return tunnel;
+                }
+                closeQuietly(tunnel);
+            }
+        }
+        LOG.debug("Opening new tunnel {}", key);
+        Socket socket = connector.connect();
+        return new PooledTunnel(key, socket, getTokenExpiryTime(socket));
+    }
+
+    /**
+     * Returns a tunnel that is in a clean state so it can be used by the next exchange.
+     */
+    public void release(PooledTunnel tunnel) {
+        tunnel.lastUsed = System.currentTimeMillis();
+        if (closed || !isReusable(tunnel, tunnel.lastUsed)) {
+            closeQuietly(tunnel);
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdleTunnels) {
+            idleCount.decrementAndGet();
+            closeQuietly(tunnel);
+            return;
+        }
+        // most recently used first, so the least used tunnels run into the idle timeout
+        idleTunnels.computeIfAbsent(tunnel.key, k -> new ConcurrentLinkedDeque<>()).offerFirst(tunnel);
+        if (closed) {
+            close();
+        }
+    }
+
+    /**
+     * Closes a tunnel that failed or is in an undefined state.
+     */
+    public void invalidate(PooledTunnel tunnel) {
+        closeQuietly(tunnel);
+    }
+
+    /**
+     * Closes all idle tunnels that are expired, called periodically by the owning endpoint.
+     */
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Deque<PooledTunnel> tunnels : idleTunnels.values()) {
+            for (PooledTunnel tunnel : tunnels) {
+                if (isExpired(tunnel, now) && tunnels.removeFirstOccurrence(tunnel)) {
+                    idleCount.decrementAndGet();
+                    LOG.debug("Evicting idle tunnel {}", tunnel.key);
+                    closeQuietly(tunnel);
+                }
+            }
+        }
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Deque<PooledTunnel> tunnels : idleTunnels.values()) {
+            PooledTunnel tunnel;
+            while ((tunnel = tunnels.pollFirst()) != null) {
+                idleCount.decrementAndGet();
+                closeQuietly(tunnel);
+            }
+        }
+    }
+
+    private boolean isReusable(PooledTunnel tunnel, long now) {
+        return !isExpired(tunnel, now) && isAlive(tunnel.socket);
+    }
+
+    private boolean isExpired(PooledTunnel tunnel, long now) {
+        return now - tunnel.lastUsed > maxIdleTime || now > tunnel.tokenExpiryTime - TOKEN_EXPIRY_MARGIN;
+    }
+
+    private boolean isAlive(Socket socket) {
+        if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+            return false;
+        }
+        SocketChannel channel = socket.getChannel();
+        try {
+            if (channel == null) {
+                // a plain socket cannot be probed without blocking, it is trusted within the max idle time unless
+                // data is pending
+                return socket.getInputStream().available() == 0;
+            }
+            // the peer closed the tunnel if a read returns end of stream, pending data means the tunnel is not clean
+            synchronized (channel.blockingLock()) {
+                boolean blocking = channel.isBlocking();
+                channel.configureBlocking(false);
+                try {
+                    return channel.read(ByteBuffer.allocate(1)) == 0;
+                } finally {
+                    channel.configureBlocking(blocking);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private long getTokenExpiryTime(Socket socket) {
+        if (socket instanceof AdapterSocketCF) {
+            return ((AdapterSocketCF) socket).getTokenExpiryTime();
+        }
+        return JwtUtil.NO_EXPIRY;
+    }
+
+    private void closeQuietly(PooledTunnel tunnel) {
+        try {
+            tunnel.socket.close();
+        } catch (IOException e) {
+            LOG.debug("Could not close tunnel {}: {}", tunnel.key, e.getMessage());
+        }
+    }
+
+    /**
+     * A connected tunnel leased from the pool.
+     */
+    public static class PooledTunnel {
+
+        private final TunnelKey key;
+        private final Socket socket;
+        private final long tokenExpiryTime;
+        private volatile long lastUsed;
+
+        PooledTunnel(TunnelKey key, Socket socket, long tokenExpiryTime) {
+            this.key = key;
+            this.socket = socket;
+            this.tokenExpiryTime = tokenExpiryTime;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        public TunnelKey getKey() {
+            return key;
+        }
+
+        public Socket getSocket() {
+            return socket;
+        }
+    }
+}
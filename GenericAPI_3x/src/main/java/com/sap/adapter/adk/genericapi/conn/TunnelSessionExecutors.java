@@ -0,0 +1,86 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import org.apache.camel.builder.ThreadPoolProfileBuilder;
+import org.apache.camel.spi.ExecutorServiceManager;
+import org.apache.camel.spi.ThreadPoolProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the executors that run the blocking TCP tunnel sessions of an endpoint.
+ * <p>
+ * Virtual threads are looked up by reflection, the bundle is compiled for Java 8 and has to run on older JVMs as well.
+ */
+public final class TunnelSessionExecutors {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TunnelSessionExecutors.class);
+
+    private TunnelSessionExecutors() {
+    }
+
+    /**
+     * Runs each session on its own virtual thread if the JVM supports them, otherwise on a thread pool of the camel
+     * context.
+     *
+     * @param source             the owner of the executor
+     * @param name               name of the threads, resolved with the thread name pattern of the camel context
+     * @param maxPlatformThreads size of the thread pool used without virtual threads, further sessions are queued
+     * @return an executor that has to be shut down through the executor service manager
+     */
+    public static ExecutorService newExecutor(ExecutorServiceManager manager, Object source, String name,
+                                              int maxPlatformThreads) {
+        ExecutorService executor = newVirtualThreadExecutor(manager.resolveThreadName(name) + "-");
+        if (executor != null) {
+            LOG.debug("Running tunnel sessions on virtual threads");
+            return executor;
+        }
+        LOG.info("Virtual threads are not supported by this JVM, running tunnel sessions on at most {} platform threads",
+                maxPlatformThreads);
+        ThreadPoolProfile profile = new ThreadPoolProfileBuilder(name)
+                .poolSize(maxPlatformThreads)
+                .maxPoolSize(maxPlatformThreads)
+                .maxQueueSize(-1)
+                .allowCoreThreadTimeOut(true)
+                .build();
+        return manager.newThreadPool(source, name, profile);
+    }
+
+    /**
+     * @return whether the JVM supports virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return getVirtualThreadFactory("probe") != null;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor(String threadNamePrefix) {
+        ThreadFactory factory = getVirtualThreadFactory(threadNamePrefix);
+        if (factory == null) {
+            return null;
+        }
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("Could not create a virtual thread executor: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static ThreadFactory getVirtualThreadFactory(String threadNamePrefix) {
+        try {
+            // Thread.ofVirtual().name(prefix, 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not available before Java 21, or a preview feature that is not enabled
+            return null;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import com.sap.adapter.adk.genericapi.conn.TunnelFraming.FrameInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One request and its response over a tunnel, in both directions at once.
+ * <p>
+ * The request is written by a task on the given executor while the caller reads the response, so a server that
+ * starts to answer before it received the whole request cannot block the exchange once the socket buffers are full.
+ * The response is handed out as stream over its frame and read lazily, the tunnel is handed back to its owner when
+ * the frame has been read or the stream is closed, whatever comes first.
+ */
+public final class TunnelStreamSession {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TunnelStreamSession.class);
+
+    /**
+     * Writes the request into the tunnel.
+     */
+    public interface RequestWriter {
+        void write(Socket tunnel) throws IOException;
+
+        /**
+         * @return false if the request can be written only once, so the call must not be retried
+         */
+        default boolean isRepeatable() {
+            return true;
+        }
+    }
+
+    /**
+     * Takes the tunnel back once the session is over.
+     */
+    public interface TunnelRelease {
+        /**
+         * @param reusable true if request and response were transferred completely, so the tunnel can carry the next
+         *                 session
+         */
+        void release(boolean reusable);
+    }
+
+    private TunnelStreamSession() {
+    }
+
+    /**
+     * Starts writing the request and waits until the response starts.
+     *
+     * @return the response, has to be closed
+     * @throws IOException if the request could not be written or the response did not start, the tunnel has been
+     *                     released as not reusable then
+     */
+    public static InputStream open(final Socket tunnel, TunnelFraming framing, final RequestWriter writer,
+                                   Executor executor, TunnelRelease release) throws IOException {
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    writer.write(tunnel);
+                    written.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    written.completeExceptionally(e);
+                    // unblocks the reader, the response cannot come anymore
+                    closeQuietly(tunnel);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release.release(false);
+            throw new IOException("Could not start writing the request: " + e.getMessage(), e);
+        }
+        try {
+            return new ResponseStream(framing.readFrame(tunnel.getInputStream()), written, release);
+        } catch (IOException | RuntimeException e) {
+            release.release(false);
+            IOException writeFailure = getWriteFailure(written);
+            if (writeFailure != null) {
+                writeFailure.addSuppressed(e);
+                throw writeFailure;
+            }
+            throw e;
+        }
+    }
+
+    private static IOException getWriteFailure(CompletableFuture<Void> written) {
+        if (!written.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            written.get();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            return cause instanceof IOException ? (IOException) cause
+                    : new IOException("Could not write the request: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Socket tunnel) {
+        try {
+            tunnel.close();
+        } catch (IOException e) {
+            LOG.debug("Could not close tunnel: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The response frame, releases the tunnel once it has been read or is closed.
+     */
+    private static class ResponseStream extends InputStream {
+
+        private final FrameInputStream frame;
+        private final CompletableFuture<Void> written;
+        private final TunnelRelease release;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ResponseStream(FrameInputStream frame, CompletableFuture<Void> written, TunnelRelease release) {
+            this.frame = frame;
+            this.written = written;
+            this.release = release;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return onRead(frame.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return onRead(frame.read(b, off, len));
+        }
+
+        @Override
+        public int available() throws IOException {
+            return released.get() ? 0 : frame.available();
+        }
+
+        private int onRead(int read) {
+            if (read == -1) {
+                close();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                // a request still being written is aborted by the release
+                boolean reusable = frame.isReusable() && written.isDone() && !written.isCompletedExceptionally();
+                if (!written.isDone() || written.isCompletedExceptionally()) {
+                    LOG.debug("Response ended before the request was written completely");
+                }
+                release.release(reusable);
+            }
+        }
+    }
+}
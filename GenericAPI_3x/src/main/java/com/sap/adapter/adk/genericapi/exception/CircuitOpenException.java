@@ -0,0 +1,11 @@
+package com.sap.adapter.adk.genericapi.exception;
+
+/**
+ * Thrown instead of calling a target whose circuit breaker is open.
+ */
+public class CircuitOpenException extends GenericAPIException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
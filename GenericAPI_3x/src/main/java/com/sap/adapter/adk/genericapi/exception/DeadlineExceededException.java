@@ -0,0 +1,13 @@
+package com.sap.adapter.adk.genericapi.exception;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown instead of starting a phase of a call when the deadline of the exchange has already passed.
+ */
+public class DeadlineExceededException extends SocketTimeoutException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
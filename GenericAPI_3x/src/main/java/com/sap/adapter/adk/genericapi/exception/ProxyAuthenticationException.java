@@ -0,0 +1,11 @@
+package com.sap.adapter.adk.genericapi.exception;
+
+/**
+ * Thrown if the Cloud Connector proxy rejected the credentials of a request.
+ */
+public class ProxyAuthenticationException extends GenericAPIException {
+
+    public ProxyAuthenticationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,28 @@
+package com.sap.adapter.adk.genericapi.exception;
+
+/**
+ * Thrown if the target, or the Cloud Connector proxy in front of it, answered with a server error, so that the call
+ * counts as failed for the circuit breaker. It carries the result the exchange is completed with all the same.
+ */
+public class ServerErrorException extends GenericAPIException {
+
+    private final int statusCode;
+    private final String result;
+
+    public ServerErrorException(int statusCode, String result) {
+        super("Server answered with status code " + statusCode);
+        this.statusCode = statusCode;
+        this.result = result;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the result of the call, as it would have been returned for any other status code
+     */
+    public String getResult() {
+        return result;
+    }
+}
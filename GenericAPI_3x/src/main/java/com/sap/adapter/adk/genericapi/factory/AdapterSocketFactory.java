@@ -1,25 +1,37 @@
 package com.sap.adapter.adk.genericapi.factory;
 
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorSettings;
 import com.sap.adapter.adk.genericapi.conn.AdapterSocketCF;
 import com.sap.adapter.adk.genericapi.conn.AdapterSocketNeo;
-import com.sap.it.api.ccs.adapter.CloudConnectorProperties;
+import com.sap.adapter.adk.genericapi.conn.Socks5HandshakeEngine;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
 import com.sap.it.api.ccs.adapter.enums.AuthType;
-import com.sap.it.api.ccs.adapter.exception.CloudConnectorPropertiesException;
 
+import java.io.IOException;
 import java.net.Socket;
 
 public class AdapterSocketFactory {
 
-    public static Socket getSocket(CloudConnectorProperties cloudConnectorProperties, String locationId)
-            throws CloudConnectorPropertiesException {
+    public static Socket getSocket(CloudConnectorSettings cloudConnectorSettings, String locationId) throws IOException {
+        return getSocket(cloudConnectorSettings, locationId, null, null);
+    }
+
+    /**
+     * @param metrics     metrics the SOCKS5 phases of Cloud Foundry tunnels are recorded in, null to not record them
+     * @param diagnostics recorder the steps of sampled Cloud Foundry handshakes are captured in, null to not capture them
+     */
+    public static Socket getSocket(CloudConnectorSettings cloudConnectorSettings, String locationId, EndpointMetrics metrics,
+                                   DiagnosticsRecorder diagnostics) throws IOException {
         Socket socket;
-        AuthType authType = cloudConnectorProperties.getAuthType();
+        AuthType authType = cloudConnectorSettings.getAuthType();
         if (AuthType.PasswordAuthentication.equals(authType)) {
-            socket = new AdapterSocketNeo(cloudConnectorProperties.getProxyHost(), cloudConnectorProperties.getProxyPort(),
-                    cloudConnectorProperties.getUserName(locationId));
+            socket = new AdapterSocketNeo(cloudConnectorSettings.getProxyHost(), cloudConnectorSettings.getProxyPort(),
+                    cloudConnectorSettings.getUserName());
         } else {
-            socket = new AdapterSocketCF(locationId, cloudConnectorProperties.getProxyHost(), cloudConnectorProperties.getProxyPort(),
-                    cloudConnectorProperties.getJWTToken());
+            socket = new AdapterSocketCF(locationId, cloudConnectorSettings.getProxyHost(), cloudConnectorSettings.getProxyPort(),
+                    cloudConnectorSettings.getJWTToken(), Socks5HandshakeEngine.getDefault(), metrics,
+                    diagnostics);
         }
         return socket;
     }
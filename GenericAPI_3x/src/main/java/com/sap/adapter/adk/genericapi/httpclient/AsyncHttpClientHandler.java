@@ -0,0 +1,208 @@
+package com.sap.adapter.adk.genericapi.httpclient;
+
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+import com.sap.adapter.adk.common.metrics.OperationMetrics;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorSettings;
+import com.sap.adapter.adk.genericapi.exception.DeadlineExceededException;
+import com.sap.adapter.adk.genericapi.exception.ServerErrorException;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import com.sap.adapter.adk.genericapi.resilience.Deadline;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking counterpart of {@link HttpClientHandler}.
+ * <p>
+ * The calls run on the I/O reactor of the handler, so the calling thread is released as soon as the request is
+ * submitted. The result is completed from a reactor thread, callers must not block it. The proxy and the Cloud
+ * Connector headers are set like for the blocking calls.
+ */
+public class AsyncHttpClientHandler implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncHttpClientHandler.class);
+
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpClient;
+    private final long idleConnectionTimeout;
+    private final EndpointMetrics metrics;
+    private final DiagnosticsRecorder diagnostics;
+
+    public AsyncHttpClientHandler() throws IOReactorException {
+        this(HttpClientHandler.DEFAULT_MAX_TOTAL_CONNECTIONS, HttpClientHandler.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                HttpClientHandler.DEFAULT_KEEP_ALIVE_DURATION, HttpClientHandler.DEFAULT_IDLE_CONNECTION_TIMEOUT, 0, null, null);
+    }
+
+    public AsyncHttpClientHandler(int maxTotalConnections, int maxConnectionsPerRoute, long keepAliveDuration,
+                                  long idleConnectionTimeout, int ioThreadCount) throws IOReactorException {
+        this(maxTotalConnections, maxConnectionsPerRoute, keepAliveDuration, idleConnectionTimeout, ioThreadCount, null,
+                null);
+    }
+
+    /**
+     * @param maxTotalConnections    maximum number of pooled connections over all routes
+     * @param maxConnectionsPerRoute maximum number of pooled connections per target route
+     * @param keepAliveDuration      time in ms a connection is kept alive if the server does not send a Keep-Alive header
+     * @param idleConnectionTimeout  time in ms after which idle connections are closed by {@link #evictIdleConnections()}
+     * @param ioThreadCount          number of I/O reactor threads, the number of processors if 0
+     * @param metrics                metrics the upstream calls are recorded in, null to not record them
+     * @param diagnostics            recorder the details of sampled calls are captured in, null to not capture them
+     */
+    public AsyncHttpClientHandler(int maxTotalConnections, int maxConnectionsPerRoute, long keepAliveDuration,
+                                  long idleConnectionTimeout, int ioThreadCount, EndpointMetrics metrics,
+                                  DiagnosticsRecorder diagnostics) throws IOReactorException {
+        this.metrics = metrics;
+        this.diagnostics = diagnostics;
+        IOReactorConfig.Builder reactorConfig = IOReactorConfig.custom();
+        if (ioThreadCount > 0) {
+            reactorConfig.setIoThreadCount(ioThreadCount);
+        }
+        connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig.build()));
+        connectionManager.setMaxTotal(maxTotalConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        this.idleConnectionTimeout = idleConnectionTimeout;
+        LOGGER.debug("Created async connection pool with max total: {}, max per route: {}", maxTotalConnections,
+                maxConnectionsPerRoute);
+
+        httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(HttpClientHandler.createKeepAliveStrategy(keepAliveDuration))
+                .build();
+        httpClient.start();
+    }
+
+    /**
+     * Asynchronous variant of {@link HttpClientHandler#callServer(String, String, CloudConnectorSettings)}.
+     *
+     * @return the result, completed exceptionally with a
+     * {@link com.sap.adapter.adk.genericapi.exception.ProxyAuthenticationException} if the proxy rejected the
+     * credentials
+     */
+    public CompletableFuture<String> callServer(final String address, final String locationId,
+                                                CloudConnectorSettings cloudConnectorSettings) {
+        return callServer(address, locationId, cloudConnectorSettings, Deadline.NONE);
+    }
+
+    /**
+     * Like {@link #callServer(String, String, CloudConnectorSettings)} with the timeouts of the deadline.
+     *
+     * @return the result, completed exceptionally with a
+     * {@link com.sap.adapter.adk.genericapi.exception.DeadlineExceededException} if the deadline passed before the
+     * call was made or with a {@link ServerErrorException} carrying the result if the server answered with a status
+     * code of 500 or above
+     */
+    public CompletableFuture<String> callServer(final String address, final String locationId,
+                                                CloudConnectorSettings cloudConnectorSettings, Deadline deadline) {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        HttpRequestBase request;
+        try {
+            request = HttpClientHandler.createRequest(address, locationId, cloudConnectorSettings, deadline);
+        } catch (DeadlineExceededException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        final boolean sampled = diagnostics != null && diagnostics.sample();
+        if (sampled) {
+            diagnostics.record(HttpClientHandler.HTTP_REQUEST_EVENT,
+                    HttpClientHandler.describeRequest(HttpGet.METHOD_NAME, address, locationId, cloudConnectorSettings));
+        }
+        final OperationMetrics callMetrics = metrics != null ? metrics.operation(GenericAPIMetrics.HTTP_CALL) : null;
+        final long start = callMetrics != null ? callMetrics.start() : 0L;
+        httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                stopMetrics(response.getStatusLine().getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                try {
+                    result.complete(getResult(locationId, response, sampled ? diagnostics : null));
+                } catch (ServerErrorException e) {
+                    result.completeExceptionally(e);
+                } catch (IOException | RuntimeException e) {
+                    if (sampled) {
+                        diagnostics.record(HttpClientHandler.HTTP_FAILURE_EVENT, e.toString());
+                    }
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                stopMetrics(true);
+                if (sampled) {
+                    diagnostics.record(HttpClientHandler.HTTP_FAILURE_EVENT, e.toString());
+                }
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                stopMetrics(true);
+                result.cancel(false);
+            }
+
+            private void stopMetrics(boolean failed) {
+                if (callMetrics != null) {
+                    callMetrics.stop(start, failed);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Closes expired connections and those idle for longer than the idle connection timeout.
+     */
+    public void evictIdleConnections() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleConnectionTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        LOGGER.debug("Closing async http client and connection pool: {}", connectionManager.getTotalStats());
+        // also shuts down the connection manager and its I/O reactor
+        httpClient.close();
+    }
+
+    /**
+     * @param diagnostics recorder to capture the response in, null if the call is not sampled
+     */
+    private static String getResult(String locationId, HttpResponse response, DiagnosticsRecorder diagnostics)
+            throws IOException {
+        HttpClientHandler.assertProxyAuthenticated(locationId, response);
+        int statusCode = response.getStatusLine().getStatusCode();
+        LOGGER.debug("Response Received! status code: {} and reason: {}", statusCode,
+                response.getStatusLine().getReasonPhrase());
+
+        // the default response consumer buffers the entity, reading it does not block
+        String responseBody = response.getEntity() != null
+                ? HttpClientHandler.getString(response.getEntity().getContent()) : "";
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("response: {}", HttpClientHandler.abbreviate(responseBody));
+        }
+        if (diagnostics != null) {
+            diagnostics.record(HttpClientHandler.HTTP_RESPONSE_EVENT, HttpClientHandler.describeResponse(response, responseBody));
+        }
+        String result = HttpClientHandler.getResult(locationId, responseBody,
+                statusCode == HttpStatus.SC_OK ? "success" : "failure");
+        if (statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            throw new ServerErrorException(statusCode, result);
+        }
+        return result;
+    }
+}
@@ -1,60 +1,396 @@
 package com.sap.adapter.adk.genericapi.httpclient;
 
-import com.sap.it.api.ccs.adapter.CloudConnectorProperties;
-import com.sap.it.api.ccs.adapter.exception.CloudConnectorPropertiesException;
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+import com.sap.adapter.adk.common.metrics.OperationMetrics;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorSettings;
+import com.sap.adapter.adk.genericapi.exception.DeadlineExceededException;
+import com.sap.adapter.adk.genericapi.exception.ProxyAuthenticationException;
+import com.sap.adapter.adk.genericapi.exception.ServerErrorException;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import com.sap.adapter.adk.genericapi.resilience.Deadline;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.DefaultRoutePlanner;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
-public class HttpClientHandler {
+/**
+ * Executes the HTTP calls of a {@link com.sap.adapter.adk.genericapi.GenericAPIEndpoint}.
+ * <p>
+ * One handler is created per endpoint and keeps a pool of connections to the Cloud Connector proxy,
+ * so consecutive exchanges reuse already established connections. The handler has to be closed
+ * when the endpoint is stopped.
+ */
+public class HttpClientHandler implements Closeable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientHandler.class);
     private static final String PROXY_AUTHORIZATION = "Proxy-Authorization";
+    private static final int MAX_LOGGED_RESPONSE_LENGTH = 1024;
 
-    public String callServer(String address, String locationId, CloudConnectorProperties cloudConnectorProperties) throws IOException, CloudConnectorPropertiesException {
-
-        try(CloseableHttpClient httpClient = HttpClientBuilder.create().build()) {
-            HttpGet httpGet = new HttpGet(address);
-            if (locationId != null) {
-                LOGGER.info("Retrieved cloud connector properties: host: {}, port: {}",
-                        cloudConnectorProperties.getProxyHost(), cloudConnectorProperties.getProxyPort());
-                LOGGER.info("Additional headers: {}", cloudConnectorProperties.getAdditionalHeaders());
-                HttpHost proxy = new HttpHost(cloudConnectorProperties.getProxyHost(), cloudConnectorProperties.getProxyPort());
-                RequestConfig config = RequestConfig.custom()
-                        .setProxy(proxy)
-                        .build();
-                String value = cloudConnectorProperties.getAdditionalHeaders().get(PROXY_AUTHORIZATION);
-                if (value != null) {
-                    httpGet.setHeader(PROXY_AUTHORIZATION, value);
-                }
-                httpGet.setConfig(config);
-                httpGet.setHeader("SAP-Connectivity-SCC-Location_ID", locationId);
-            }
-            HttpResponse response = httpClient.execute(httpGet);
+    static final String HTTP_REQUEST_EVENT = "httpRequest";
+    static final String HTTP_RESPONSE_EVENT = "httpResponse";
+    static final String HTTP_FAILURE_EVENT = "httpFailure";
+
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 20;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    public static final long DEFAULT_KEEP_ALIVE_DURATION = 30000L;
+    public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 60000L;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final long keepAliveDuration;
+    private final CloseableHttpClient httpClient;
+    private final EndpointMetrics metrics;
+    private final DiagnosticsRecorder diagnostics;
+
+    public HttpClientHandler() {
+        this(DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_KEEP_ALIVE_DURATION,
+                DEFAULT_IDLE_CONNECTION_TIMEOUT, null, null);
+    }
+
+    public HttpClientHandler(int maxTotalConnections, int maxConnectionsPerRoute, long keepAliveDuration,
+                             long idleConnectionTimeout) {
+        this(maxTotalConnections, maxConnectionsPerRoute, keepAliveDuration, idleConnectionTimeout, null, null);
+    }
+
+    /**
+     * @param maxTotalConnections    maximum number of pooled connections over all routes
+     * @param maxConnectionsPerRoute maximum number of pooled connections per target route
+     * @param keepAliveDuration      time in ms a connection is kept alive if the server does not send a Keep-Alive header
+     * @param idleConnectionTimeout  time in ms after which idle connections are evicted from the pool
+     * @param metrics                metrics the upstream calls are recorded in, null to not record them
+     * @param diagnostics            recorder the details of sampled calls are captured in, null to not capture them
+     */
+    public HttpClientHandler(int maxTotalConnections, int maxConnectionsPerRoute, long keepAliveDuration,
+                             long idleConnectionTimeout, EndpointMetrics metrics, DiagnosticsRecorder diagnostics) {
+        this.metrics = metrics;
+        this.diagnostics = diagnostics;
+        this.keepAliveDuration = keepAliveDuration;
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotalConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        LOGGER.debug("Created connection pool with max total: {}, max per route: {}", maxTotalConnections,
+                maxConnectionsPerRoute);
+
+        httpClient = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(createKeepAliveStrategy(keepAliveDuration))
+                .evictExpiredConnections()
+                .evictIdleConnections(idleConnectionTimeout, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public String callServer(String address, String locationId, CloudConnectorSettings cloudConnectorSettings) throws IOException {
+        return callServer(address, locationId, cloudConnectorSettings, Deadline.NONE);
+    }
+
+    /**
+     * Calls the server with the timeouts of the deadline. Reading the response stops once the deadline has passed.
+     *
+     * @throws ServerErrorException if the server answered with a status code of 500 or above, it carries the result
+     */
+    public String callServer(String address, String locationId, CloudConnectorSettings cloudConnectorSettings,
+                             Deadline deadline) throws IOException {
+        return callServer(HttpGet.METHOD_NAME, address, null, locationId, cloudConnectorSettings, deadline);
+    }
+
+    /**
+     * Like {@link #callServer(String, String, CloudConnectorSettings, Deadline)} with the given method and request
+     * entity. The entity is streamed to the server as it is read.
+     *
+     * @param entity the request entity, null for none
+     */
+    public String callServer(String method, String address, HttpEntity entity, String locationId,
+                             CloudConnectorSettings cloudConnectorSettings, Deadline deadline) throws IOException {
+
+        HttpRequestBase request = createRequest(method, address, entity, locationId, cloudConnectorSettings, deadline);
+        boolean sampled = diagnostics != null && diagnostics.sample();
+        if (sampled) {
+            diagnostics.record(HTTP_REQUEST_EVENT, describeRequest(method, address, locationId, cloudConnectorSettings));
+        }
 
+        OperationMetrics callMetrics = metrics != null ? metrics.operation(GenericAPIMetrics.HTTP_CALL) : null;
+        long start = callMetrics != null ? callMetrics.start() : 0L;
+        boolean failed = true;
+        // closing the response returns the connection to the pool
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            assertProxyAuthenticated(locationId, response);
             int statusCode = response.getStatusLine().getStatusCode();
-            LOGGER.error("Response Received! status code: {} and reason: {}", statusCode, response.getStatusLine().getReasonPhrase());
-
-            String responseBody = getString(response.getEntity().getContent());
-            LOGGER.error("response: {}", responseBody);
-            if (statusCode == 200) {
-                return getResult(locationId, responseBody, "success");
-            } else {
-                return getResult(locationId, responseBody, "failure");
+            LOGGER.debug("Response Received! status code: {} and reason: {}", statusCode, response.getStatusLine().getReasonPhrase());
+
+            // e.g. 204 has no entity
+            String responseBody = response.getEntity() != null
+                    ? getString(response.getEntity().getContent(), deadline) : "";
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("response: {}", abbreviate(responseBody));
+            }
+            if (sampled) {
+                diagnostics.record(HTTP_RESPONSE_EVENT, describeResponse(response, responseBody));
+            }
+            failed = statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+            String result = getResult(locationId, responseBody, statusCode == 200 ? "success" : "failure");
+            if (failed) {
+                // the proxy answers a call to an unreachable location with 502, 503 or 504, not with an I/O error
+                throw new ServerErrorException(statusCode, result);
+            }
+            return result;
+        } catch (ServerErrorException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            if (sampled) {
+                diagnostics.record(HTTP_FAILURE_EVENT, e.toString());
+            }
+            throw e;
+        } finally {
+            if (callMetrics != null) {
+                callMetrics.stop(start, failed);
             }
         }
     }
 
-    private String getResult(String locationId, String actualResponse, String ccResponse) {
+    /**
+     * Calls the server without reading the response entity. The connection stays leased until the returned stream
+     * is consumed, closed or discarded.
+     *
+     * @param spoolThreshold size in bytes up to which the response is cached in memory before it is spooled to disk
+     * @param spoolDirectory directory for the spool file, the default temp directory if null
+     */
+    public ResponseStreamCache callServerForStream(String address, String locationId, CloudConnectorSettings cloudConnectorSettings,
+                                                   long spoolThreshold, File spoolDirectory) throws IOException {
+        return callServerForStream(address, locationId, cloudConnectorSettings, spoolThreshold, spoolDirectory,
+                Deadline.NONE);
+    }
+
+    /**
+     * Like {@link #callServerForStream(String, String, CloudConnectorSettings, long, File)} with the timeouts of the
+     * deadline. The read timeout also applies to the reads of the returned stream.
+     */
+    public ResponseStreamCache callServerForStream(String address, String locationId, CloudConnectorSettings cloudConnectorSettings,
+                                                   long spoolThreshold, File spoolDirectory, Deadline deadline)
+            throws IOException {
+        return callServerForStream(HttpGet.METHOD_NAME, address, null, locationId, cloudConnectorSettings,
+                spoolThreshold, spoolDirectory, deadline);
+    }
+
+    /**
+     * Like {@link #callServerForStream(String, String, CloudConnectorSettings, long, File, Deadline)} with the given
+     * method and request entity.
+     *
+     * @param entity the request entity, null for none
+     */
+    public ResponseStreamCache callServerForStream(String method, String address, HttpEntity entity, String locationId,
+                                                   CloudConnectorSettings cloudConnectorSettings, long spoolThreshold,
+                                                   File spoolDirectory, Deadline deadline) throws IOException {
+
+        HttpRequestBase request = createRequest(method, address, entity, locationId, cloudConnectorSettings, deadline);
+        boolean sampled = diagnostics != null && diagnostics.sample();
+        if (sampled) {
+            diagnostics.record(HTTP_REQUEST_EVENT, describeRequest(method, address, locationId, cloudConnectorSettings));
+        }
+        // the stream is read by the route, only the time to the response head is measured
+        OperationMetrics callMetrics = metrics != null ? metrics.operation(GenericAPIMetrics.HTTP_CALL) : null;
+        long start = callMetrics != null ? callMetrics.start() : 0L;
+        CloseableHttpResponse response;
+        try {
+            response = httpClient.execute(request);
+        } catch (IOException | RuntimeException e) {
+            if (callMetrics != null) {
+                callMetrics.stop(start, true);
+            }
+            if (sampled) {
+                diagnostics.record(HTTP_FAILURE_EVENT, e.toString());
+            }
+            throw e;
+        }
+        if (callMetrics != null) {
+            callMetrics.stop(start, response.getStatusLine().getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+        LOGGER.debug("Response Received! status code: {} and reason: {}", response.getStatusLine().getStatusCode(),
+                response.getStatusLine().getReasonPhrase());
+        if (sampled) {
+            diagnostics.record(HTTP_RESPONSE_EVENT, describeResponse(response, null));
+        }
+        try {
+            assertProxyAuthenticated(locationId, response);
+            return new ResponseStreamCache(response, spoolThreshold, spoolDirectory);
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline has already passed
+     */
+    static HttpRequestBase createRequest(String address, String locationId, CloudConnectorSettings cloudConnectorSettings,
+                                         Deadline deadline) throws DeadlineExceededException {
+        return createRequest(HttpGet.METHOD_NAME, address, null, locationId, cloudConnectorSettings, deadline);
+    }
+
+    /**
+     * @param entity the request entity, null for none
+     * @throws DeadlineExceededException if the deadline has already passed
+     */
+    static HttpRequestBase createRequest(String method, String address, HttpEntity entity, String locationId,
+                                         CloudConnectorSettings cloudConnectorSettings, Deadline deadline)
+            throws DeadlineExceededException {
+        HttpRequestBase request;
+        if (entity != null) {
+            EntityEnclosingRequest enclosingRequest = new EntityEnclosingRequest(method, address);
+            enclosingRequest.setEntity(entity);
+            request = enclosingRequest;
+        } else {
+            request = new Request(method, address);
+        }
+        // waiting for a pooled connection counts towards the connection
+        int connectTimeout = deadline.getConnectTimeout();
+        RequestConfig.Builder config = RequestConfig.custom()
+                .setConnectionRequestTimeout(connectTimeout)
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(deadline.getReadTimeout());
+        if (locationId != null) {
+            LOGGER.debug("Calling {} through proxy {}:{}", address, cloudConnectorSettings.getProxyHost(),
+                    cloudConnectorSettings.getProxyPort());
+            HttpHost proxy = new HttpHost(cloudConnectorSettings.getProxyHost(), cloudConnectorSettings.getProxyPort());
+            config.setProxy(proxy);
+            String value = cloudConnectorSettings.getAdditionalHeaders().get(PROXY_AUTHORIZATION);
+            if (value != null) {
+                request.setHeader(PROXY_AUTHORIZATION, value);
+            }
+            request.setHeader("SAP-Connectivity-SCC-Location_ID", locationId);
+        }
+        request.setConfig(config.build());
+        return request;
+    }
+
+    /**
+     * @return the request as captured for diagnostics, header values are left out as they carry the proxy token
+     */
+    static String describeRequest(String method, String address, String locationId,
+                                  CloudConnectorSettings cloudConnectorSettings) {
+        if (locationId == null) {
+            return method + " " + address;
+        }
+        return method + " " + address + " through proxy " + cloudConnectorSettings.getProxyHost() + ":"
+                + cloudConnectorSettings.getProxyPort() + ", location ID: " + locationId + ", additional headers: "
+                + cloudConnectorSettings.getAdditionalHeaders().keySet();
+    }
+
+    /**
+     * @param responseBody the body if it was read, null otherwise
+     */
+    static String describeResponse(HttpResponse response, String responseBody) {
+        String status = response.getStatusLine().getStatusCode() + " " + response.getStatusLine().getReasonPhrase();
+        return responseBody == null ? status : status + ", body: " + abbreviate(responseBody);
+    }
+
+    static void assertProxyAuthenticated(String locationId, HttpResponse response) {
+        if (locationId != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_PROXY_AUTHENTICATION_REQUIRED) {
+            throw new ProxyAuthenticationException("Cloud Connector proxy rejected the authentication: "
+                    + response.getStatusLine().getReasonPhrase());
+        }
+    }
+
+    /**
+     * Opens a pooled connection for calls to the address without sending a request, so the next call skips the
+     * connection setup. Connections to https targets through the proxy are not opened, their tunnel is only
+     * established by a request.
+     *
+     * @return the connection, leased until it is closed, then it is kept in the pool; null if it cannot be opened in
+     * advance
+     */
+    public Closeable preOpenConnection(String address, String locationId, CloudConnectorSettings cloudConnectorSettings,
+                                       Deadline deadline) throws IOException {
+        HttpRequestBase request = createRequest(address, locationId, cloudConnectorSettings, deadline);
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(request.getConfig());
+        // the route the client takes for the request, so the connection is pooled under it
+        HttpRoute route;
+        try {
+            route = new DefaultRoutePlanner(DefaultSchemePortResolver.INSTANCE)
+                    .determineRoute(URIUtils.extractHost(request.getURI()), request, context);
+        } catch (HttpException e) {
+            throw new IOException("Cannot determine the route to " + address + ": " + e.getMessage(), e);
+        }
+        if (route.isTunnelled()) {
+            return null;
+        }
+        int connectTimeout = deadline.getConnectTimeout();
+        final HttpClientConnection connection;
+        try {
+            connection = connectionManager.requestConnection(route, null).get(connectTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a pooled connection");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not lease a pooled connection: " + e.getMessage(), e);
+        }
+        if (connection.isOpen()) {
+            // already pooled
+            return () -> connectionManager.releaseConnection(connection, null, keepAliveDuration, TimeUnit.MILLISECONDS);
+        }
+        try {
+            connectionManager.connect(connection, route, connectTimeout, context);
+            connectionManager.routeComplete(connection, route, context);
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            connectionManager.releaseConnection(connection, null, 0L, TimeUnit.MILLISECONDS);
+            throw e;
+        }
+        return () -> connectionManager.releaseConnection(connection, null, keepAliveDuration, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the number of leased and idle connections over all routes
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        LOGGER.debug("Closing http client and connection pool: {}", connectionManager.getTotalStats());
+        // also shuts down the connection manager and the idle connection evictor
+        httpClient.close();
+    }
+
+    static ConnectionKeepAliveStrategy createKeepAliveStrategy(final long keepAliveDuration) {
+        return (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : keepAliveDuration;
+        };
+    }
+
+    static String getResult(String locationId, String actualResponse, String ccResponse) {
         if(locationId != null) {
             return ccResponse;
         } else {
@@ -62,12 +398,65 @@ public class HttpClientHandler {
         }
     }
 
-    private String getString(InputStream inputStream) throws IOException {
+    static String abbreviate(String responseBody) {
+        if (responseBody.length() <= MAX_LOGGED_RESPONSE_LENGTH) {
+            return responseBody;
+        }
+        return responseBody.substring(0, MAX_LOGGED_RESPONSE_LENGTH) + "... (" + responseBody.length() + " chars)";
+    }
+
+    /**
+     * A request with any method and without entity.
+     */
+    static class Request extends HttpRequestBase {
+
+        private final String method;
+
+        Request(String method, String address) {
+            this.method = method;
+            setURI(URI.create(address));
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    /**
+     * A request with any method and an entity.
+     */
+    static class EntityEnclosingRequest extends HttpEntityEnclosingRequestBase {
+
+        private final String method;
+
+        EntityEnclosingRequest(String method, String address) {
+            this.method = method;
+            setURI(URI.create(address));
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    static String getString(InputStream inputStream) throws IOException {
+        return getString(inputStream, Deadline.NONE);
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline passes before the stream is read
+     */
+    static String getString(InputStream inputStream, Deadline deadline) throws IOException {
         ByteArrayOutputStream result = new ByteArrayOutputStream();
         byte[] buffer = new byte[1024];
         int length;
         while ((length = inputStream.read(buffer)) != -1) {
             result.write(buffer, 0, length);
+            if (deadline.isBounded()) {
+                deadline.check("rest of the response");
+            }
         }
         return result.toString("UTF-8");
     }
@@ -0,0 +1,138 @@
+package com.sap.adapter.adk.genericapi.httpclient;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.InvalidPayloadException;
+import org.apache.camel.StreamCache;
+import org.apache.camel.WrappedFile;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+/**
+ * Creates the entity of an http request from the body of an exchange.
+ * <p>
+ * Files and streams are sent as they are read, so large bodies are never held in memory. Files, byte arrays, strings
+ * and stream caches give repeatable entities; any other stream can be sent only once, chunked unless the exchange has
+ * a {@code Content-Length} header.
+ */
+public final class RequestEntities {
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    private RequestEntities() {
+    }
+
+    /**
+     * @return the entity, an empty one if the exchange has no body, with the {@code Content-Type} of the exchange
+     */
+    public static HttpEntity create(Exchange exchange) throws IOException {
+        Object body = exchange.getIn().getBody();
+        if (body instanceof WrappedFile) {
+            body = ((WrappedFile<?>) body).getFile();
+        }
+        if (body instanceof Path) {
+            body = ((Path) body).toFile();
+        }
+        String contentType = exchange.getIn().getHeader(Exchange.CONTENT_TYPE, String.class);
+        AbstractHttpEntity entity;
+        if (body == null) {
+            entity = new ByteArrayEntity(new byte[0]);
+        } else if (body instanceof File) {
+            entity = new FileEntity((File) body);
+        } else if (body instanceof byte[]) {
+            entity = new ByteArrayEntity((byte[]) body);
+        } else if (body instanceof String) {
+            entity = new ByteArrayEntity(((String) body).getBytes(getCharset(exchange, contentType)));
+        } else if (body instanceof StreamCache && body instanceof InputStream) {
+            entity = new StreamCacheEntity((StreamCache) body);
+        } else {
+            entity = createStreamEntity(exchange);
+        }
+        if (contentType != null) {
+            entity.setContentType(contentType);
+        }
+        return entity;
+    }
+
+    private static AbstractHttpEntity createStreamEntity(Exchange exchange) throws IOException {
+        InputStream in;
+        try {
+            in = exchange.getIn().getMandatoryBody(InputStream.class);
+        } catch (InvalidPayloadException e) {
+            throw new IOException("Body cannot be sent over http: " + e.getMessage(), e);
+        }
+        Long contentLength = exchange.getIn().getHeader(Exchange.CONTENT_LENGTH, Long.class);
+        InputStreamEntity entity = new InputStreamEntity(in, contentLength != null ? contentLength : -1L);
+        entity.setChunked(contentLength == null);
+        return entity;
+    }
+
+    private static Charset getCharset(Exchange exchange, String contentType) {
+        try {
+            Charset charset = contentType != null ? ContentType.parse(contentType).getCharset() : null;
+            if (charset != null) {
+                return charset;
+            }
+        } catch (RuntimeException e) {
+            // not a valid content type, it is sent as it is
+        }
+        return Charset.forName(exchange.getProperty(Exchange.CHARSET_NAME, "UTF-8", String.class));
+    }
+
+    /**
+     * A repeatable entity over a stream cache, reset before each time it is written.
+     */
+    static class StreamCacheEntity extends AbstractHttpEntity {
+
+        private final StreamCache cache;
+
+        StreamCacheEntity(StreamCache cache) {
+            this.cache = cache;
+            long length = cache.length();
+            // some caches do not know their length
+            setChunked(length <= 0);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            long length = cache.length();
+            return length > 0 ? length : -1L;
+        }
+
+        @Override
+        public InputStream getContent() {
+            cache.reset();
+            return (InputStream) cache;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            InputStream in = getContent();
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.sap.adapter.adk.genericapi.httpclient;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.StreamCache;
+import org.apache.camel.converter.stream.CachedOutputStream;
+import org.apache.camel.converter.stream.InputStreamCache;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * A {@link StreamCache} over the entity of an upstream http response.
+ * <p>
+ * The upstream entity is read lazily: every chunk handed to the reader is also written to a cache, which
+ * stays in memory up to the spool threshold and is moved to a temp file beyond it. This makes the stream
+ * re-readable via {@link #reset()} without reading the whole response up front. The pooled connection is
+ * released once the upstream entity is fully consumed, or when {@link #close()} is called.
+ * <p>
+ * {@link #discard()} has to be called when the exchange is done to release the connection and delete
+ * the spool file.
+ */
+public class ResponseStreamCache extends InputStream implements StreamCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResponseStreamCache.class);
+    private static final String RELEASED = "Response stream was released, its content is no longer available";
+
+    private final CloseableHttpResponse response;
+    private final InputStream upstream;
+    private final int statusCode;
+    private final long contentLength;
+    private final long spoolThreshold;
+    private final File spoolDirectory;
+    private final byte[] single = new byte[1];
+
+    private CacheBuffer memory = new CacheBuffer();
+    private File spoolFile;
+    private OutputStream spoolOut;
+    private long cachedLength;
+    private boolean upstreamDone;
+    private boolean upstreamClosed;
+    private InputStream replay;
+    private boolean closed;
+    private boolean discarded;
+
+    public ResponseStreamCache(CloseableHttpResponse response, long spoolThreshold, File spoolDirectory) throws IOException {
+        this.response = response;
+        HttpEntity entity = response.getEntity();
+        // e.g. 204 has no entity
+        this.upstream = entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+        this.statusCode = response.getStatusLine().getStatusCode();
+        this.contentLength = entity != null ? entity.getContentLength() : 0L;
+        this.spoolThreshold = spoolThreshold;
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkNotDiscarded();
+        if (closed) {
+            throw new IOException("Response stream is closed");
+        }
+        if (replay != null) {
+            int read = replay.read(b, off, len);
+            if (read != -1) {
+                return read;
+            }
+            // the cached part has been re-read, continue with the upstream where it stopped
+            replay.close();
+            replay = null;
+        }
+        if (upstreamDone) {
+            return -1;
+        }
+        if (upstreamClosed) {
+            throw new IOException("Response stream is already closed");
+        }
+        int read = upstream.read(b, off, len);
+        if (read == -1) {
+            upstreamDone = true;
+            closeUpstream();
+            return -1;
+        }
+        cache(b, off, read);
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (replay != null) {
+            return replay.available();
+        }
+        return upstreamDone || upstreamClosed ? 0 : upstream.available();
+    }
+
+    @Override
+    public void reset() {
+        if (discarded) {
+            throw new IllegalStateException(RELEASED);
+        }
+        try {
+            closeReplay();
+            closed = false;
+            if (spoolFile != null) {
+                spoolOut.flush();
+                replay = new FileInputStream(spoolFile);
+            } else {
+                replay = memory.toInputStream();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not reset the response stream: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        reset();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = read(buffer, 0, buffer.length)) != -1) {
+            os.write(buffer, 0, length);
+        }
+    }
+
+    @Override
+    public StreamCache copy(Exchange exchange) throws IOException {
+        checkNotDiscarded();
+        drain();
+        if (spoolFile == null) {
+            return new InputStreamCache(memory.toByteArray());
+        }
+        spoolOut.flush();
+        try (CachedOutputStream cos = new CachedOutputStream(exchange)) {
+            Files.copy(spoolFile.toPath(), cos);
+            return cos.newStreamCache();
+        }
+    }
+
+    @Override
+    public boolean inMemory() {
+        return spoolFile == null;
+    }
+
+    @Override
+    public long length() {
+        if (upstreamDone) {
+            return cachedLength;
+        }
+        return Math.max(contentLength, 0);
+    }
+
+    /**
+     * Releases the upstream connection. Reads fail until {@link #reset()}, which re-reads the already cached content.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        closeReplay();
+        closeUpstream();
+    }
+
+    /**
+     * Releases the upstream connection and deletes the spool file. The stream can neither be read nor reset afterwards.
+     */
+    public void discard() {
+        discarded = true;
+        try {
+            close();
+            if (spoolOut != null) {
+                spoolOut.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not close the response stream: {}", e.getMessage(), e);
+        }
+        if (spoolFile != null) {
+            try {
+                Files.deleteIfExists(spoolFile.toPath());
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete spool file {}: {}", spoolFile, e.getMessage(), e);
+            }
+            spoolFile = null;
+        }
+        memory = null;
+    }
+
+    private void checkNotDiscarded() throws IOException {
+        if (discarded) {
+            throw new IOException(RELEASED);
+        }
+    }
+
+    private void drain() throws IOException {
+        byte[] buffer = new byte[4096];
+        while (!upstreamDone) {
+            int read = upstream.read(buffer, 0, buffer.length);
+            if (read == -1) {
+                upstreamDone = true;
+                closeUpstream();
+            } else {
+                cache(buffer, 0, read);
+            }
+        }
+    }
+
+    private void cache(byte[] b, int off, int len) throws IOException {
+        if (spoolFile == null && cachedLength + len > spoolThreshold) {
+            spoolFile = File.createTempFile("genericapi-response-", ".tmp", spoolDirectory);
+            LOGGER.debug("Response exceeds spool threshold of {} bytes, spooling to {}", spoolThreshold, spoolFile);
+            spoolOut = new BufferedOutputStream(new FileOutputStream(spoolFile));
+            memory.writeTo(spoolOut);
+            memory = null;
+        }
+        if (spoolFile != null) {
+            spoolOut.write(b, off, len);
+        } else {
+            memory.write(b, off, len);
+        }
+        cachedLength += len;
+    }
+
+    private void closeReplay() throws IOException {
+        if (replay != null) {
+            replay.close();
+            replay = null;
+        }
+    }
+
+    private void closeUpstream() throws IOException {
+        if (!upstreamClosed) {
+            upstreamClosed = true;
+            // returns the connection to the pool if the entity was consumed, otherwise the connection is dropped
+            response.close();
+        }
+    }
+
+    /**
+     * Gives read access to the buffer without copying it.
+     */
+    private static class CacheBuffer extends ByteArrayOutputStream {
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
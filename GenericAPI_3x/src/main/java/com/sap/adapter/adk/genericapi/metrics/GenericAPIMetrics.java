@@ -0,0 +1,32 @@
+package com.sap.adapter.adk.genericapi.metrics;
+
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+
+/**
+ * The metrics of a GenericAPI endpoint, registered as
+ * {@code com.sap.adapter.adk.genericapi:type=EndpointMetrics,iflow=...,uri=...,operation=...}.
+ */
+public class GenericAPIMetrics extends EndpointMetrics {
+
+    public static final String JMX_DOMAIN = "com.sap.adapter.adk.genericapi";
+
+    public static final String POLL = "poll";
+    public static final String PROCESS = "process";
+    public static final String HTTP_CALL = "httpCall";
+    public static final String WARM_UP = "warmUp";
+    public static final String SOCKS5_CONNECT = "socks5.connect";
+    public static final String SOCKS5_NEGOTIATION = "socks5.negotiation";
+    public static final String SOCKS5_AUTHENTICATION = "socks5.authentication";
+    public static final String SOCKS5_CONNECT_COMMAND = "socks5.connectCommand";
+
+    public GenericAPIMetrics(String iflow, String uri) {
+        this(iflow, uri, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    GenericAPIMetrics(String iflow, String uri, MBeanServer mBeanServer) {
+        super(JMX_DOMAIN, iflow, uri, mBeanServer);
+    }
+}
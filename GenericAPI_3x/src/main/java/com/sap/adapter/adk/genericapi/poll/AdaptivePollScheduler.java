@@ -0,0 +1,367 @@
+package com.sap.adapter.adk.genericapi.poll;
+
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Consumer;
+import org.apache.camel.spi.ScheduledPollConsumerScheduler;
+import org.apache.camel.support.ScheduledPollConsumer;
+import org.apache.camel.support.service.ServiceSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Poll scheduler that adapts the delay between polls to the load instead of polling at a fixed rate.
+ * <p>
+ * The consumer reports the outcome of each poll with {@link #pollCompleted(int, long, boolean)}. The delay starts at
+ * the configured delay of the consumer and is
+ * <ul>
+ * <li>halved while polls find messages and their processing takes less time than the delay,</li>
+ * <li>raised to at least the processing time, and by half, while processing takes longer than the delay,</li>
+ * <li>multiplied by the backoff multiplier after failed or empty polls,</li>
+ * </ul>
+ * always within the minimum and maximum delay. Each delay is spread by a random jitter, so the polls of many iFlows
+ * do not fire in lockstep.
+ * <p>
+ * The backoff takes over the {@code backoffMultiplier}, {@code backoffIdleThreshold} and {@code backoffErrorThreshold}
+ * of the consumer, see {@link #setBackoff(int, int, int)}. The consumer must not skip polls on its own then. Without
+ * them, the delay is doubled after every failed or empty poll.
+ * <p>
+ * While started, the scheduler is exposed as MBean
+ * {@code com.sap.adapter.adk.genericapi:type=AdaptivePolling,iflow=...,uri=...}.
+ */
+public class AdaptivePollScheduler extends ServiceSupport
+        implements ScheduledPollConsumerScheduler, AdaptivePollSchedulerMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptivePollScheduler.class);
+
+    /**
+     * Direction the delay was last adapted to, steady if the last poll did not change it.
+     */
+    public enum State {
+        STEADY, ACCELERATING, SLOWING_DOWN, BACKING_OFF
+    }
+
+    static final int DEFAULT_BACKOFF_MULTIPLIER = 2;
+
+    private final String iflow;
+    private final String uri;
+    private final long minDelay;
+    private final long maxDelay;
+    private final double jitter;
+    private final Random random;
+    private final MBeanServer mBeanServer;
+    private ObjectName objectName;
+    private int backoffMultiplier = DEFAULT_BACKOFF_MULTIPLIER;
+    private int backoffIdleThreshold = 1;
+    private int backoffErrorThreshold = 1;
+
+    private CamelContext camelContext;
+    private ScheduledPollConsumer consumer;
+    private Runnable task;
+    private ScheduledExecutorService executor;
+    private volatile ScheduledFuture<?> future;
+
+    private volatile long currentDelay;
+    private volatile long lastScheduledDelay;
+    private volatile long lastProcessingTime;
+    private volatile int consecutiveErrors;
+    private volatile int consecutiveIdlePolls;
+    private volatile State state = State.STEADY;
+
+    /**
+     * @param minDelay minimum delay between polls in ms
+     * @param maxDelay maximum delay between polls in ms
+     * @param jitter   fraction by which each delay is randomly shortened or lengthened, between 0 and 1
+     */
+    public AdaptivePollScheduler(String iflow, String uri, long minDelay, long maxDelay, double jitter) {
+        this(iflow, uri, minDelay, maxDelay, jitter, null, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    AdaptivePollScheduler(String iflow, String uri, long minDelay, long maxDelay, double jitter, Random random,
+                          MBeanServer mBeanServer) {
+        if (minDelay < 0 || maxDelay < minDelay) {
+            throw new IllegalArgumentException("Invalid poll delay range: " + minDelay + " - " + maxDelay);
+        }
+        this.iflow = iflow;
+        this.uri = uri;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.jitter = Math.max(0d, Math.min(jitter, 1d));
+        this.random = random;
+        this.mBeanServer = mBeanServer;
+        this.currentDelay = minDelay;
+    }
+
+    /**
+     * Backs off like {@link ScheduledPollConsumer} would with the same settings.
+     *
+     * @param multiplier     factor the delay is multiplied with, 0 to keep doubling it after every failed or empty poll
+     * @param idleThreshold  number of consecutive empty polls after which the delay is raised, 0 for never
+     * @param errorThreshold number of consecutive failed polls after which the delay is raised, 0 for never
+     */
+    public void setBackoff(int multiplier, int idleThreshold, int errorThreshold) {
+        if (multiplier <= 0) {
+            return;
+        }
+        this.backoffMultiplier = multiplier;
+        this.backoffIdleThreshold = Math.max(idleThreshold, 0);
+        this.backoffErrorThreshold = Math.max(errorThreshold, 0);
+    }
+
+    @Override
+    public void onInit(Consumer consumer) {
+        this.consumer = (ScheduledPollConsumer) consumer;
+        this.currentDelay = clamp(this.consumer.getTimeUnit().toMillis(this.consumer.getDelay()));
+    }
+
+    @Override
+    public void scheduleTask(Runnable task) {
+        this.task = task;
+    }
+
+    @Override
+    public void unscheduleTask() {
+        ScheduledFuture<?> scheduled = future;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            future = null;
+        }
+    }
+
+    @Override
+    public void startScheduler() {
+        if (future == null) {
+            schedule(consumer.getTimeUnit().toMillis(consumer.getInitialDelay()));
+        }
+    }
+
+    @Override
+    public boolean isSchedulerStarted() {
+        return future != null;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    @Override
+    public void setCamelContext(CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    /**
+     * Adapts the delay to the outcome of a poll.
+     *
+     * @param messages       number of messages the poll found
+     * @param processingTime time in ms it took to process them
+     * @param failed         whether the poll or the processing of a message failed
+     */
+    public void pollCompleted(int messages, long processingTime, boolean failed) {
+        long delay = currentDelay;
+        lastProcessingTime = processingTime;
+        if (failed) {
+            consecutiveErrors++;
+            consecutiveIdlePolls = 0;
+            if (backoffErrorThreshold > 0 && consecutiveErrors >= backoffErrorThreshold) {
+                state = State.BACKING_OFF;
+                delay = delay * backoffMultiplier;
+            }
+        } else if (messages == 0) {
+            consecutiveErrors = 0;
+            consecutiveIdlePolls++;
+            if (backoffIdleThreshold > 0 && consecutiveIdlePolls >= backoffIdleThreshold) {
+                state = State.BACKING_OFF;
+                delay = delay * backoffMultiplier;
+            }
+        } else if (processingTime > delay) {
+            consecutiveErrors = 0;
+            consecutiveIdlePolls = 0;
+            state = State.SLOWING_DOWN;
+            delay = Math.max(delay + delay / 2, processingTime);
+        } else {
+            consecutiveErrors = 0;
+            consecutiveIdlePolls = 0;
+            state = State.ACCELERATING;
+            delay = delay / 2;
+        }
+        delay = clamp(Math.max(delay, 1L));
+        if (delay == currentDelay) {
+            // the delay is at its bound already or below the backoff threshold
+            state = State.STEADY;
+        } else {
+            LOG.debug("Poll delay of {} adapted from {} to {} ms, state: {}", getEndpointUri(), currentDelay, delay, state);
+        }
+        currentDelay = delay;
+    }
+
+    @Override
+    public String getIflow() {
+        return iflow;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public long getCurrentDelay() {
+        return currentDelay;
+    }
+
+    @Override
+    public long getLastScheduledDelay() {
+        return lastScheduledDelay;
+    }
+
+    @Override
+    public long getLastProcessingTime() {
+        return lastProcessingTime;
+    }
+
+    @Override
+    public int getConsecutiveErrors() {
+        return consecutiveErrors;
+    }
+
+    @Override
+    public int getConsecutiveIdlePolls() {
+        return consecutiveIdlePolls;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public String getBackoffState() {
+        return state.name();
+    }
+
+    @Override
+    public int getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    @Override
+    public int getBackoffIdleThreshold() {
+        return backoffIdleThreshold;
+    }
+
+    @Override
+    public int getBackoffErrorThreshold() {
+        return backoffErrorThreshold;
+    }
+
+    @Override
+    public long getMinDelay() {
+        return minDelay;
+    }
+
+    @Override
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptivePollScheduler[delay=" + currentDelay + ", state=" + state + ", errors=" + consecutiveErrors
+                + ", idlePolls=" + consecutiveIdlePolls + "]";
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        if (executor == null) {
+            executor = camelContext.getExecutorServiceManager()
+                    .newSingleThreadScheduledExecutor(consumer, getEndpointUri());
+        }
+        registerMBean();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        unscheduleTask();
+        if (executor != null) {
+            camelContext.getExecutorServiceManager().shutdown(executor);
+            executor = null;
+        }
+        unregisterMBean();
+    }
+
+    synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(GenericAPIMetrics.JMX_DOMAIN + ":type=AdaptivePolling,iflow="
+                    + ObjectName.quote(String.valueOf(iflow)) + ",uri=" + ObjectName.quote(String.valueOf(uri)));
+            if (mBeanServer.isRegistered(name)) {
+                // left over by a consumer of the same iFlow and URI that was not stopped cleanly
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            LOG.warn("Could not register the poll scheduler of {}: {}", uri, e.getMessage());
+        }
+    }
+
+    synchronized void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                mBeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOG.warn("Could not unregister the poll scheduler of {}: {}", uri, e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    long nextDelay() {
+        long delay = currentDelay;
+        if (jitter > 0 && delay > 0) {
+            double factor = 1d + jitter * (2d * nextRandom() - 1d);
+            delay = Math.round(delay * factor);
+        }
+        return delay;
+    }
+
+    private void run() {
+        try {
+            task.run();
+        } finally {
+            if (future != null && isRunAllowed()) {
+                schedule(nextDelay());
+            }
+        }
+    }
+
+    private void schedule(long delay) {
+        ScheduledExecutorService scheduledExecutor = executor;
+        if (scheduledExecutor == null || scheduledExecutor.isShutdown()) {
+            return;
+        }
+        lastScheduledDelay = delay;
+        future = scheduledExecutor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private double nextRandom() {
+        return random != null ? random.nextDouble() : ThreadLocalRandom.current().nextDouble();
+    }
+
+    private long clamp(long delay) {
+        return Math.max(minDelay, Math.min(delay, maxDelay));
+    }
+
+    private String getEndpointUri() {
+        return consumer != null ? consumer.getEndpoint().getEndpointUri() : "";
+    }
+}
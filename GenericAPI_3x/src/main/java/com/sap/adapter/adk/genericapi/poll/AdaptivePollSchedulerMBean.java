@@ -0,0 +1,42 @@
+package com.sap.adapter.adk.genericapi.poll;
+
+/**
+ * JMX view of the poll delay of one consumer.
+ */
+public interface AdaptivePollSchedulerMBean {
+
+    String getIflow();
+
+    String getUri();
+
+    /**
+     * @return the delay in ms the next poll is scheduled with, before the jitter is applied
+     */
+    long getCurrentDelay();
+
+    /**
+     * @return the delay in ms the pending poll was scheduled with, including the jitter
+     */
+    long getLastScheduledDelay();
+
+    long getLastProcessingTime();
+
+    long getMinDelay();
+
+    long getMaxDelay();
+
+    int getConsecutiveErrors();
+
+    int getConsecutiveIdlePolls();
+
+    /**
+     * @return {@code STEADY}, {@code ACCELERATING}, {@code SLOWING_DOWN} or {@code BACKING_OFF}
+     */
+    String getBackoffState();
+
+    int getBackoffMultiplier();
+
+    int getBackoffIdleThreshold();
+
+    int getBackoffErrorThreshold();
+}
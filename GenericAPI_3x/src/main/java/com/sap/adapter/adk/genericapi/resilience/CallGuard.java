@@ -0,0 +1,154 @@
+package com.sap.adapter.adk.genericapi.resilience;
+
+import com.sap.adapter.adk.genericapi.conn.Socks5AuthenticationException;
+import com.sap.adapter.adk.genericapi.exception.CircuitOpenException;
+import com.sap.adapter.adk.genericapi.exception.DeadlineExceededException;
+import com.sap.adapter.adk.genericapi.exception.ProxyAuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Guards the calls of an endpoint with a circuit breaker per location ID and target and retries calls that failed
+ * with an {@link IOException}.
+ * <p>
+ * Rejected credentials neither count against the breaker nor are retried, they say nothing about the target and the
+ * callers already retry them with refreshed connectivity properties.
+ */
+public class CallGuard {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CallGuard.class);
+
+    /**
+     * A call to a target.
+     */
+    public interface Call<T> {
+        T call() throws Exception; //NOSONAR
+    }
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final BreakerFactory breakerFactory;
+    private final RetryPolicy retryPolicy;
+
+    interface BreakerFactory {
+        CircuitBreaker create(String name);
+    }
+
+    /**
+     * @param breakerFactory creates the breaker of a target, null to call the targets without breakers
+     */
+    CallGuard(BreakerFactory breakerFactory, RetryPolicy retryPolicy) {
+        this.breakerFactory = breakerFactory;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return a guard with retries only
+     */
+    public static CallGuard withoutBreakers(RetryPolicy retryPolicy) {
+        return new CallGuard(null, retryPolicy);
+    }
+
+    /**
+     * @return a guard whose breakers are created with the given settings, see {@link CircuitBreaker}
+     */
+    public static CallGuard withBreakers(final int failureRateThreshold, final int slowCallRateThreshold,
+                                         final long slowCallDuration, final int windowSize, final long openDuration,
+                                         RetryPolicy retryPolicy) {
+        return new CallGuard(name -> new CircuitBreaker(name, failureRateThreshold, slowCallRateThreshold,
+                slowCallDuration, windowSize, openDuration), retryPolicy);
+    }
+
+    /**
+     * @return the breaker of the target, null if the guard has no breakers
+     */
+    public CircuitBreaker getBreaker(String locationId, String target) {
+        if (breakerFactory == null) {
+            return null;
+        }
+        String name = locationId != null ? locationId + "/" + target : target;
+        return breakers.computeIfAbsent(name, breakerFactory::create);
+    }
+
+    /**
+     * Makes the call, unless the breaker of the target is open, and retries it if it failed with an I/O error.
+     *
+     * @throws CircuitOpenException if the breaker of the target is open, the call is not made
+     */
+    public <T> T call(String locationId, String target, Call<T> call) throws Exception { //NOSONAR
+        return call(locationId, target, Deadline.NONE, call);
+    }
+
+    /**
+     * Like {@link #call(String, String, Call)}, without retries that could not start before the deadline.
+     */
+    public <T> T call(String locationId, String target, Deadline deadline, Call<T> call) throws Exception { //NOSONAR
+        return call(locationId, target, deadline, true, call);
+    }
+
+    /**
+     * Like {@link #call(String, String, Deadline, Call)}.
+     *
+     * @param retryable false if the call must not be made again, e.g. because its request body can be read only once
+     */
+    public <T> T call(String locationId, String target, Deadline deadline, boolean retryable, Call<T> call)
+            throws Exception { //NOSONAR
+        CircuitBreaker breaker = getBreaker(locationId, target);
+        long delay = retryPolicy.getBaseDelay();
+        for (int attempt = 0; ; attempt++) {
+            checkPermitted(breaker);
+            long start = System.nanoTime();
+            try {
+                T result = call.call();
+                if (breaker != null) {
+                    breaker.onSuccess(System.nanoTime() - start);
+                }
+                return result;
+            } catch (ProxyAuthenticationException | Socks5AuthenticationException e) {
+                if (breaker != null) {
+                    breaker.onIgnored();
+                }
+                throw e;
+            } catch (Exception e) {
+                if (breaker != null) {
+                    breaker.onFailure(System.nanoTime() - start);
+                }
+                if (!retryable || attempt >= retryPolicy.getMaxRetries() || !(e instanceof IOException)
+                        || e instanceof DeadlineExceededException) {
+                    throw e;
+                }
+                delay = retryPolicy.nextDelay(delay);
+                if (delay >= deadline.getRemainingTime()) {
+                    LOG.debug("Not retrying call to {}, the deadline passes before the retry", target);
+                    throw e;
+                }
+                LOG.debug("Retrying call to {} in {} ms after: {}", target, delay, e.getMessage());
+                sleep(delay, e);
+            }
+        }
+    }
+
+    /**
+     * @throws CircuitOpenException if the breaker is open
+     */
+    public static void checkPermitted(CircuitBreaker breaker) {
+        if (breaker != null && !breaker.tryAcquire()) {
+            long remaining = breaker.getRemainingOpenTime();
+            throw new CircuitOpenException("Circuit breaker of " + breaker.getName() + (remaining > 0
+                    ? " is open, calls fail fast for another " + remaining + " ms"
+                    : " is half open, calls fail fast until the trial calls completed"));
+        }
+    }
+
+    private static void sleep(long delay, Exception failure) throws Exception { //NOSONAR
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+}
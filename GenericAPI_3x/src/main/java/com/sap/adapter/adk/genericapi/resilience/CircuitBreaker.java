@@ -0,0 +1,189 @@
+package com.sap.adapter.adk.genericapi.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of the calls to one target.
+ * <p>
+ * Each call asks {@link #tryAcquire()} for permission and reports its outcome with {@link #onSuccess(long)},
+ * {@link #onFailure(long)} or, if the outcome says nothing about the target, {@link #onIgnored()}. The outcomes of
+ * the last calls are kept in a sliding window:
+ * <ul>
+ * <li>CLOSED: calls are permitted. Once the window holds at least half its size of calls and the share of failed or
+ * of slow calls reaches its threshold, the breaker opens.</li>
+ * <li>OPEN: calls are rejected without trying the target until the open duration has passed.</li>
+ * <li>HALF_OPEN: {@link #HALF_OPEN_CALLS} trial calls are permitted. If all of them succeed in time the breaker
+ * closes with an empty window, otherwise it opens again.</li>
+ * </ul>
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    static final int HALF_OPEN_CALLS = 3;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final LongSupplier clock;
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private final int minimumCalls;
+
+    private State state = State.CLOSED;
+    private int calls;
+    private int next;
+    private int failures;
+    private int slow;
+    private long openUntil;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    /**
+     * @param name                  name of the target for the log
+     * @param failureRateThreshold  share of failed calls in percent that opens the breaker
+     * @param slowCallRateThreshold share of slow calls in percent that opens the breaker
+     * @param slowCallDuration      time in ms from which on a call is slow
+     * @param windowSize            number of the most recent calls the rates are taken from
+     * @param openDuration          time in ms calls are rejected once the breaker opened
+     */
+    public CircuitBreaker(String name, int failureRateThreshold, int slowCallRateThreshold, long slowCallDuration,
+                          int windowSize, long openDuration) {
+        this(name, failureRateThreshold, slowCallRateThreshold, slowCallDuration, windowSize, openDuration,
+                System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureRateThreshold, int slowCallRateThreshold, long slowCallDuration,
+                   int windowSize, long openDuration, LongSupplier clock) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openDuration);
+        this.clock = clock;
+        this.failedCalls = new boolean[Math.max(windowSize, 1)];
+        this.slowCalls = new boolean[failedCalls.length];
+        this.minimumCalls = Math.max(failedCalls.length / 2, 1);
+    }
+
+    /**
+     * @return true if the call may be made, its outcome has to be reported
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openUntil < 0) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+            halfOpenPermits = HALF_OPEN_CALLS;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(long durationNanos) {
+        record(false, durationNanos >= slowCallNanos);
+    }
+
+    public synchronized void onFailure(long durationNanos) {
+        record(true, durationNanos >= slowCallNanos);
+    }
+
+    /**
+     * Reports a permitted call whose outcome does not count, for example because the call was not made.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    private void record(boolean failed, boolean slowCall) {
+        if (state == State.HALF_OPEN) {
+            if (failed || slowCall) {
+                open();
+            } else if (++halfOpenSuccesses >= HALF_OPEN_CALLS) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // a call permitted before the breaker opened
+            return;
+        }
+        if (calls == failedCalls.length) {
+            failures -= failedCalls[next] ? 1 : 0;
+            slow -= slowCalls[next] ? 1 : 0;
+        } else {
+            calls++;
+        }
+        failedCalls[next] = failed;
+        slowCalls[next] = slowCall;
+        failures += failed ? 1 : 0;
+        slow += slowCall ? 1 : 0;
+        next = (next + 1) % failedCalls.length;
+        if (calls >= minimumCalls && (failures * 100 >= failureRateThreshold * calls
+                || slow * 100 >= slowCallRateThreshold * calls)) {
+            open();
+        }
+    }
+
+    private void open() {
+        transitionTo(State.OPEN);
+        openUntil = clock.getAsLong() + openNanos;
+    }
+
+    private void close() {
+        transitionTo(State.CLOSED);
+        calls = 0;
+        next = 0;
+        failures = 0;
+        slow = 0;
+    }
+
+    private void transitionTo(State newState) {
+        if (newState == State.OPEN && state == State.HALF_OPEN) {
+            LOG.warn("Circuit breaker of {} opened again after a failed or slow trial call", name);
+        } else if (newState == State.OPEN) {
+            LOG.warn("Circuit breaker of {} opened, calls fail fast for {} ms (failed: {}, slow: {} of {} calls)",
+                    name, TimeUnit.NANOSECONDS.toMillis(openNanos), failures, slow, calls);
+        } else {
+            LOG.info("Circuit breaker of {} changed from {} to {}", name, state, newState);
+        }
+        state = newState;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the time in ms until an open breaker lets a trial call through, 0 if it is not open
+     */
+    public synchronized long getRemainingOpenTime() {
+        if (state != State.OPEN) {
+            return 0L;
+        }
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(openUntil - clock.getAsLong()));
+    }
+}
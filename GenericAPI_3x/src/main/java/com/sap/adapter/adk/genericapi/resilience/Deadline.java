@@ -0,0 +1,105 @@
+package com.sap.adapter.adk.genericapi.resilience;
+
+import com.sap.adapter.adk.genericapi.exception.DeadlineExceededException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeouts of the calls made for one exchange.
+ * <p>
+ * Each phase of a call (connecting, the SOCKS5 handshake, reading) gets its configured timeout, shortened to the time
+ * left until the deadline of the exchange. The time a phase takes is thus no longer available to the following
+ * phases and retries, and the call as a whole ends at the deadline at the latest. A phase that would start after the
+ * deadline fails with a {@link DeadlineExceededException} instead.
+ */
+public class Deadline {
+
+    /**
+     * No timeouts and no deadline.
+     */
+    public static final Deadline NONE = new Deadline(0L, 0L, 0L, Long.MAX_VALUE);
+
+    private final long connectTimeout;
+    private final long handshakeTimeout;
+    private final long readTimeout;
+    private final long expiresAt;
+    private final boolean bounded;
+
+    /**
+     * @param connectTimeout   timeout in ms to connect to the proxy or the target, 0 for none
+     * @param handshakeTimeout timeout in ms to open a tunnel including the connection to the proxy, 0 for none
+     * @param readTimeout      timeout in ms to wait for data, 0 for none
+     * @param budget           time in ms left until the deadline, {@link Long#MAX_VALUE} for no deadline
+     */
+    public Deadline(long connectTimeout, long handshakeTimeout, long readTimeout, long budget) {
+        this.connectTimeout = Math.max(connectTimeout, 0L);
+        this.handshakeTimeout = Math.max(handshakeTimeout, 0L);
+        this.readTimeout = Math.max(readTimeout, 0L);
+        this.bounded = budget != Long.MAX_VALUE;
+        this.expiresAt = bounded ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(budget, 0L)) : 0L;
+    }
+
+    /**
+     * @return true if the exchange has a deadline
+     */
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * @return the time in ms left until the deadline, 0 once it passed, {@link Long#MAX_VALUE} if there is none
+     */
+    public long getRemainingTime() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        long remainingNanos = expiresAt - System.nanoTime();
+        return remainingNanos <= 0 ? 0L : Math.max(TimeUnit.NANOSECONDS.toMillis(remainingNanos), 1L);
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public void check(String phase) throws DeadlineExceededException {
+        if (getRemainingTime() == 0L) {
+            throw new DeadlineExceededException("Deadline of the exchange exceeded before the " + phase);
+        }
+    }
+
+    /**
+     * @return the timeout in ms to connect, 0 for none
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public int getConnectTimeout() throws DeadlineExceededException {
+        return timeout(connectTimeout, "connection");
+    }
+
+    /**
+     * @return the timeout in ms to open a tunnel, 0 for none
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public int getHandshakeTimeout() throws DeadlineExceededException {
+        return timeout(handshakeTimeout, "handshake");
+    }
+
+    /**
+     * @return the timeout in ms to wait for data, 0 for none
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public int getReadTimeout() throws DeadlineExceededException {
+        return timeout(readTimeout, "response");
+    }
+
+    private int timeout(long configured, String phase) throws DeadlineExceededException {
+        long timeout = configured;
+        if (bounded) {
+            // taken once, a timeout of 0 would mean none
+            long remaining = getRemainingTime();
+            if (remaining == 0L) {
+                throw new DeadlineExceededException("Deadline of the exchange exceeded before the " + phase);
+            }
+            timeout = configured > 0 ? Math.min(configured, remaining) : remaining;
+        }
+        return (int) Math.min(timeout, Integer.MAX_VALUE);
+    }
+}
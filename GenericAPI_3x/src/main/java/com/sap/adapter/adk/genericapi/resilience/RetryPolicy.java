@@ -0,0 +1,54 @@
+package com.sap.adapter.adk.genericapi.resilience;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded retries with decorrelated jitter: each delay is drawn at random between the base delay and three times the
+ * previous delay, capped at the maximum delay. Unlike plain exponential backoff, callers that failed together do not
+ * retry in lockstep.
+ */
+public class RetryPolicy {
+
+    private final int maxRetries;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Random random;
+
+    /**
+     * @param maxRetries number of retries after the first attempt
+     * @param baseDelay  minimum delay in ms before a retry
+     * @param maxDelay   maximum delay in ms before a retry
+     */
+    public RetryPolicy(int maxRetries, long baseDelay, long maxDelay) {
+        this(maxRetries, baseDelay, maxDelay, null);
+    }
+
+    RetryPolicy(int maxRetries, long baseDelay, long maxDelay, Random random) {
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.baseDelay = Math.max(baseDelay, 0L);
+        this.maxDelay = Math.max(maxDelay, this.baseDelay);
+        this.random = random;
+    }
+
+    /**
+     * @param previousDelay the delay before the previous retry, the base delay before the first one
+     * @return the delay in ms before the next retry
+     */
+    public long nextDelay(long previousDelay) {
+        long upper = Math.min(maxDelay, Math.max(previousDelay, baseDelay) * 3);
+        if (upper <= baseDelay) {
+            return baseDelay;
+        }
+        double draw = random != null ? random.nextDouble() : ThreadLocalRandom.current().nextDouble();
+        return baseDelay + (long) (draw * (upper - baseDelay));
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getBaseDelay() {
+        return baseDelay;
+    }
+}
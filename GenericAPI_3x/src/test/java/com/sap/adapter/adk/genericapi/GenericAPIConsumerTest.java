@@ -0,0 +1,86 @@
+package com.sap.adapter.adk.genericapi;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+public class GenericAPIConsumerTest {
+
+    private final CamelContext context = new DefaultCamelContext();
+    private final List<Exchange> received = new ArrayList<>();
+    private GenericAPIEndpoint endpoint;
+    private GenericAPIConsumer consumer;
+
+    @Before
+    public void setUp() {
+        context.addComponent("sap-generic", new GenericAPIComponent());
+        endpoint = context.getEndpoint("sap-generic://batch", GenericAPIEndpoint.class);
+    }
+
+    @After
+    public void tearDown() {
+        if (consumer != null) {
+            consumer.stop();
+        }
+        context.stop();
+    }
+
+    @Test
+    public void testBatchPropertiesAreSet() throws Exception {
+        startConsumer();
+
+        Assert.assertEquals(3, consumer.processBatch(batch(3)));
+
+        Assert.assertEquals(3, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            Exchange exchange = received.get(i);
+            Assert.assertEquals(Integer.valueOf(i), exchange.getProperty(Exchange.BATCH_INDEX, Integer.class));
+            Assert.assertEquals(Integer.valueOf(3), exchange.getProperty(Exchange.BATCH_SIZE, Integer.class));
+            Assert.assertEquals(i == 2, exchange.getProperty(Exchange.BATCH_COMPLETE, Boolean.class));
+        }
+    }
+
+    @Test
+    public void testSingleExchangeCompletesBatch() throws Exception {
+        startConsumer();
+
+        Assert.assertEquals(1, consumer.processBatch(batch(1)));
+
+        Exchange exchange = received.get(0);
+        Assert.assertEquals(Integer.valueOf(0), exchange.getProperty(Exchange.BATCH_INDEX, Integer.class));
+        Assert.assertEquals(Integer.valueOf(1), exchange.getProperty(Exchange.BATCH_SIZE, Integer.class));
+        Assert.assertTrue(exchange.getProperty(Exchange.BATCH_COMPLETE, Boolean.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroMaxMessagesPerPollIsRejected() throws Exception {
+        endpoint.setMaxMessagesPerPoll(0);
+
+        endpoint.createConsumer(received::add);
+    }
+
+    private void startConsumer() throws Exception {
+        consumer = (GenericAPIConsumer) endpoint.createConsumer(received::add);
+        // the test hands in the batches, the greeting poll is not run
+        consumer.setStartScheduler(false);
+        consumer.start();
+    }
+
+    private Queue<Object> batch(int size) {
+        Queue<Object> batch = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            batch.add(new DefaultExchange(context));
+        }
+        return batch;
+    }
+}
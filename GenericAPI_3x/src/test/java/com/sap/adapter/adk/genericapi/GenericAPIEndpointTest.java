@@ -0,0 +1,52 @@
+package com.sap.adapter.adk.genericapi;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GenericAPIEndpointTest {
+
+    private final CamelContext context = new DefaultCamelContext();
+
+    @After
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Test
+    public void testEndpointMethodHasPriorityOverHeader() {
+        GenericAPIEndpoint endpoint = new GenericAPIEndpoint();
+
+        Assert.assertEquals("GET", endpoint.getHttpMethod(exchange("POST")));
+        endpoint.setHttpMethod("put");
+        Assert.assertEquals("PUT", endpoint.getHttpMethod(exchange("POST")));
+    }
+
+    @Test
+    public void testHeaderIsUsedWithoutEndpointMethod() {
+        GenericAPIEndpoint endpoint = new GenericAPIEndpoint();
+        endpoint.setHttpMethod("");
+
+        Assert.assertEquals("POST", endpoint.getHttpMethod(exchange("post")));
+        Assert.assertEquals("GET", endpoint.getHttpMethod(exchange(null)));
+    }
+
+    @Test
+    public void testHeaderIsUsedWhenEnabled() {
+        GenericAPIEndpoint endpoint = new GenericAPIEndpoint();
+        endpoint.setHttpMethodFromHeader(true);
+
+        Assert.assertEquals("POST", endpoint.getHttpMethod(exchange("POST")));
+        Assert.assertEquals("GET", endpoint.getHttpMethod(exchange(null)));
+    }
+
+    private Exchange exchange(String method) {
+        Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, method);
+        return exchange;
+    }
+}
@@ -0,0 +1,124 @@
+package com.sap.adapter.adk.genericapi.ccs;
+
+import com.sap.it.api.ccs.adapter.ConnectionType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CloudConnectorPropertiesCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private ScheduledExecutorService scheduler;
+    private volatile long tokenLifetime;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        tokenLifetime = 3600000L;
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testReturnsCachedSettings() throws Exception {
+        CloudConnectorPropertiesCache cache = new CloudConnectorPropertiesCache(this::load, scheduler);
+        CloudConnectorSettings first = cache.get(ConnectionType.HTTP, "loc");
+        CloudConnectorSettings second = cache.get(ConnectionType.HTTP, "loc");
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, loads.get());
+
+        cache.get(ConnectionType.HTTP, "other");
+        Assert.assertEquals(2, loads.get());
+        cache.close();
+    }
+
+    @Test
+    public void testReadsTokenExpiry() throws Exception {
+        CloudConnectorPropertiesCache cache = new CloudConnectorPropertiesCache(this::load, scheduler);
+        CloudConnectorSettings settings = cache.get(ConnectionType.HTTP, "loc");
+        long expected = System.currentTimeMillis() + tokenLifetime;
+        Assert.assertTrue(Math.abs(expected - settings.getTokenExpiryTime()) < 5000);
+        cache.close();
+    }
+
+    @Test
+    public void testReloadsExpiredSettings() throws Exception {
+        tokenLifetime = -10000L;
+        CloudConnectorPropertiesCache cache = new CloudConnectorPropertiesCache(this::load, null);
+        cache.get(ConnectionType.HTTP, "loc");
+        cache.get(ConnectionType.HTTP, "loc");
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testRefreshesInBackgroundBeforeExpiry() throws Exception {
+        tokenLifetime = CloudConnectorPropertiesCache.REFRESH_MARGIN + 1000L;
+        CloudConnectorPropertiesCache cache = new CloudConnectorPropertiesCache(this::load, scheduler, 500L);
+        cache.get(ConnectionType.TCP, "loc");
+        tokenLifetime = 3600000L;
+        for (int i = 0; i < 100 && loads.get() < 2; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(2, loads.get());
+        cache.get(ConnectionType.TCP, "loc");
+        Assert.assertEquals(2, loads.get());
+        cache.close();
+    }
+
+    @Test
+    public void testShortLivedTokenIsNotRefreshedInALoop() throws Exception {
+        tokenLifetime = CloudConnectorPropertiesCache.REFRESH_MARGIN / 2;
+        CloudConnectorPropertiesCache cache = new CloudConnectorPropertiesCache(this::load, scheduler, 200L);
+        cache.get(ConnectionType.TCP, "loc");
+        Thread.sleep(500);
+        Assert.assertTrue("refreshed " + loads.get() + " times", loads.get() <= 4);
+        cache.close();
+    }
+
+    @Test
+    public void testRefreshDelayHasMinimum() throws Exception {
+        CloudConnectorPropertiesCache cache = new CloudConnectorPropertiesCache(this::load, null);
+        tokenLifetime = CloudConnectorPropertiesCache.REFRESH_MARGIN / 2;
+        Assert.assertEquals(CloudConnectorPropertiesCache.MIN_REFRESH_DELAY,
+                cache.getRefreshDelay(load(ConnectionType.HTTP, "loc")));
+        tokenLifetime = 0L;
+        Assert.assertEquals(CloudConnectorPropertiesCache.MIN_REFRESH_DELAY,
+                cache.getRefreshDelay(load(ConnectionType.HTTP, "loc")));
+        tokenLifetime = 3600000L;
+        long delay = cache.getRefreshDelay(load(ConnectionType.HTTP, "loc"));
+        Assert.assertTrue(delay > 3600000L - CloudConnectorPropertiesCache.REFRESH_MARGIN - 5000L);
+    }
+
+    @Test
+    public void testRefreshAfterAuthenticationFailureOnlyOnce() throws Exception {
+        CloudConnectorPropertiesCache cache = new CloudConnectorPropertiesCache(this::load, scheduler);
+        cache.get(ConnectionType.HTTP, "loc");
+        Thread.sleep(1100);
+        CloudConnectorSettings refreshed = cache.refresh(ConnectionType.HTTP, "loc");
+        Assert.assertSame(refreshed, cache.refresh(ConnectionType.HTTP, "loc"));
+        Assert.assertSame(refreshed, cache.get(ConnectionType.HTTP, "loc"));
+        Assert.assertEquals(2, loads.get());
+        cache.close();
+    }
+
+    private CloudConnectorSettings load(ConnectionType connectionType, String locationId) {
+        loads.incrementAndGet();
+        long exp = (System.currentTimeMillis() + tokenLifetime) / 1000L;
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("{\"sub\":\"test\",\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8));
+        String token = "eyJhbGciOiJub25lIn0." + payload + ".sig";
+        return new CloudConnectorSettings("proxy", 20003, Collections.singletonMap("Proxy-Authorization", "Bearer " + token),
+                null, null, null);
+    }
+}
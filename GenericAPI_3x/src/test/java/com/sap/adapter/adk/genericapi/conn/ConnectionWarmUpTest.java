@@ -0,0 +1,93 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionWarmUpTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger maxOpening = new AtomicInteger();
+    private final AtomicInteger opening = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOpensConnectionsWithBoundedConcurrency() {
+        ConnectionWarmUp<String> warmUp = new ConnectionWarmUp<>(() -> "settings", settings -> {
+            Assert.assertEquals("settings", settings);
+            maxOpening.accumulateAndGet(opening.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            opening.decrementAndGet();
+            open.incrementAndGet();
+            return open::decrementAndGet;
+        });
+
+        ConnectionWarmUp.Report report = warmUp.run(5, executor, 10000);
+
+        Assert.assertEquals(5, report.getOpened());
+        Assert.assertEquals(0, report.getFailed());
+        Assert.assertFalse(report.isTimedOut());
+        Assert.assertTrue(report.getResolveTime() >= 0);
+        Assert.assertTrue(report.toString(), report.toString().contains("opened 5 of 5 connections"));
+        Assert.assertTrue("at most one connection per thread is opened at once", maxOpening.get() <= 2);
+        Assert.assertEquals("all connections are handed back", 0, open.get());
+    }
+
+    @Test
+    public void testDoesNotWaitBeyondTheBudget() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        ConnectionWarmUp<String> warmUp = new ConnectionWarmUp<>(() -> "settings", settings -> {
+            Thread.sleep(300);
+            return released::countDown;
+        });
+
+        long start = System.nanoTime();
+        ConnectionWarmUp.Report report = warmUp.run(1, executor, 50);
+
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 250);
+        Assert.assertTrue(report.isTimedOut());
+        Assert.assertEquals(0, report.getOpened());
+        Assert.assertTrue("a connection opened late is still handed back", released.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReportsFailures() {
+        ConnectionWarmUp<String> failedResolution = new ConnectionWarmUp<>(() -> {
+            throw new IOException("platform unavailable");
+        }, settings -> {
+            open.incrementAndGet();
+            return null;
+        });
+
+        ConnectionWarmUp.Report report = failedResolution.run(2, executor, 10000);
+
+        Assert.assertEquals("platform unavailable", report.getFailure());
+        Assert.assertEquals(0, open.get());
+
+        ConnectionWarmUp<String> failedConnections = new ConnectionWarmUp<>(() -> "settings", settings -> {
+            if (open.incrementAndGet() == 1) {
+                throw new IOException("refused");
+            }
+            return null;
+        });
+
+        report = failedConnections.run(2, executor, 10000);
+
+        Assert.assertNull(report.getFailure());
+        Assert.assertEquals(1, report.getFailed());
+        Assert.assertEquals(1, report.getSkipped());
+        Assert.assertEquals(0, report.getOpened());
+    }
+}
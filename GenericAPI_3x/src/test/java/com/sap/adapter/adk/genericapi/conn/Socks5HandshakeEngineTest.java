@@ -0,0 +1,201 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import com.sap.adapter.adk.common.diagnostics.DiagnosticSample;
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+import com.sap.adapter.adk.genericapi.metrics.GenericAPIMetrics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class Socks5HandshakeEngineTest {
+
+    private Socks5HandshakeEngine engine;
+
+    @Before
+    public void setUp() throws IOException {
+        engine = new Socks5HandshakeEngine(1);
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    public void testTunnelThroughProxy() throws IOException {
+        try (Socks5StubProxy proxy = new Socks5StubProxy(true, 0);
+             Socket socket = new AdapterSocketCF("location", "localhost", proxy.getPort(), "header.payload.signature", engine)) {
+            socket.connect(InetSocketAddress.createUnresolved("virtual.host", 4711), 5000);
+
+            byte[] message = "ping".getBytes(StandardCharsets.UTF_8);
+            OutputStream out = socket.getOutputStream();
+            out.write(message);
+            out.flush();
+            byte[] echo = new byte[message.length];
+            new DataInputStream(socket.getInputStream()).readFully(echo);
+            Assert.assertArrayEquals(message, echo);
+        }
+    }
+
+    @Test
+    public void testAuthenticationFailure() throws IOException {
+        try (Socks5StubProxy proxy = new Socks5StubProxy(false, 0);
+             Socket socket = new AdapterSocketCF("location", "localhost", proxy.getPort(), "token", engine)) {
+            socket.connect(InetSocketAddress.createUnresolved("10.0.0.1", 4711), 5000);
+            Assert.fail("Authentication should fail");
+        } catch (SocketException e) {
+            Assert.assertEquals("Authentication failed!", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPhasesAreRecorded() throws IOException {
+        EndpointMetrics metrics = new GenericAPIMetrics("iflow", "sap-generic:test");
+        DiagnosticsRecorder diagnostics = new DiagnosticsRecorder(GenericAPIMetrics.JMX_DOMAIN, "iflow", "sap-generic:test", 1d,
+                16);
+        try (Socks5StubProxy proxy = new Socks5StubProxy(true, 0);
+             Socket socket = new AdapterSocketCF("location", "localhost", proxy.getPort(), "token", engine, metrics,
+                     diagnostics)) {
+            socket.connect(InetSocketAddress.createUnresolved("virtual.host", 4711), 5000);
+        }
+        try (Socks5StubProxy proxy = new Socks5StubProxy(false, 0);
+             Socket socket = new AdapterSocketCF("location", "localhost", proxy.getPort(), "token", engine, metrics, null)) {
+            socket.connect(InetSocketAddress.createUnresolved("virtual.host", 4711), 5000);
+            Assert.fail("Authentication should fail");
+        } catch (SocketException e) {
+            Assert.assertEquals("Authentication failed!", e.getMessage());
+        }
+
+        Assert.assertEquals(2, metrics.operation(GenericAPIMetrics.SOCKS5_CONNECT).getRequestCount());
+        Assert.assertEquals(2, metrics.operation(GenericAPIMetrics.SOCKS5_NEGOTIATION).getRequestCount());
+        Assert.assertEquals(2, metrics.operation(GenericAPIMetrics.SOCKS5_AUTHENTICATION).getRequestCount());
+        Assert.assertEquals(1, metrics.operation(GenericAPIMetrics.SOCKS5_AUTHENTICATION).getErrorCount());
+        Assert.assertEquals(1, metrics.operation(GenericAPIMetrics.SOCKS5_CONNECT_COMMAND).getRequestCount());
+        Assert.assertEquals(0, metrics.operation(GenericAPIMetrics.SOCKS5_CONNECT_COMMAND).getErrorCount());
+        Assert.assertEquals(0, metrics.operation(GenericAPIMetrics.SOCKS5_CONNECT).getInFlight());
+
+        List<DiagnosticSample> steps = diagnostics.getLastSamples(16);
+        Assert.assertEquals(5, steps.size());
+        Assert.assertEquals("socks5Handshake", steps.get(0).getEvent());
+        Assert.assertEquals("Tunnel established", steps.get(4).getDetail());
+    }
+
+    @Test
+    public void testConnectionEstablishedAtOnce() throws Exception {
+        Socks5HandshakeEngine immediateEngine = new Socks5HandshakeEngine(1) {
+            @Override
+            boolean connect(SocketChannel channel, InetSocketAddress proxyAddress) throws IOException {
+                channel.configureBlocking(true);
+                channel.connect(proxyAddress);
+                channel.configureBlocking(false);
+                return true;
+            }
+        };
+        try (Socks5StubProxy proxy = new Socks5StubProxy(true, 0)) {
+            // without a timeout, the handshake would wait forever for OP_CONNECT
+            SocketChannel channel = immediateEngine.handshake(new InetSocketAddress("localhost", proxy.getPort()),
+                    "bG9jYXRpb24=", "token", "virtual.host", 4711, 0).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(channel.isConnected());
+            channel.close();
+        } finally {
+            immediateEngine.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentHandshakes() throws Exception {
+        try (Socks5StubProxy proxy = new Socks5StubProxy(true, 50)) {
+            List<CompletableFuture<SocketChannel>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(engine.handshake(new InetSocketAddress("localhost", proxy.getPort()), "bG9jYXRpb24=", "token",
+                        "virtual.host", 4711, 5000));
+            }
+            for (CompletableFuture<SocketChannel> future : futures) {
+                SocketChannel channel = future.get(10, TimeUnit.SECONDS);
+                Assert.assertTrue(channel.isConnected());
+                Assert.assertTrue(channel.isBlocking());
+                channel.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFailedConnectClosesChannel() throws Exception {
+        AtomicReference<SocketChannel> opened = new AtomicReference<>();
+        Socks5HandshakeEngine failingEngine = new Socks5HandshakeEngine(1) {
+            @Override
+            boolean connect(SocketChannel channel, InetSocketAddress proxyAddress) {
+                opened.set(channel);
+                throw new UnresolvedAddressException();
+            }
+        };
+        try {
+            CompletableFuture<SocketChannel> future = failingEngine.handshake(
+                    InetSocketAddress.createUnresolved("unknown.proxy", 20004), "bG9jYXRpb24=", "token",
+                    "virtual.host", 4711, 5000);
+            Assert.assertTrue(future.isCompletedExceptionally());
+            Assert.assertFalse("the channel of a failed connect must be closed", opened.get().isOpen());
+        } finally {
+            failingEngine.close();
+        }
+    }
+
+    @Test
+    public void testHandshakeAfterCloseFails() throws Exception {
+        try (ServerSocket proxy = new ServerSocket(0)) {
+            engine.close();
+            CompletableFuture<SocketChannel> future = engine.handshake(new InetSocketAddress("localhost", proxy.getLocalPort()),
+                    "bG9jYXRpb24=", "token", "virtual.host", 4711, 0);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("a closed engine must not accept handshakes");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof SocketException);
+            }
+        }
+    }
+
+    @Test
+    public void testSocketStopsWaitingForStalledHandshake() throws IOException {
+        Socks5HandshakeEngine stalledEngine = new Socks5HandshakeEngine(1) {
+            @Override
+            public CompletableFuture<SocketChannel> handshake(InetSocketAddress proxyAddress, String encodedLocationId,
+                                                              String jwtToken, String host, int port,
+                                                              long connectTimeout, long timeout,
+                                                              EndpointMetrics metrics, DiagnosticsRecorder diagnostics) {
+                return new CompletableFuture<>();
+            }
+        };
+        try (AdapterSocketCF socket = new AdapterSocketCF("location", "localhost", 20004, "token", stalledEngine)) {
+            long start = System.nanoTime();
+            try {
+                socket.connect(InetSocketAddress.createUnresolved("virtual.host", 4711), 100);
+                Assert.fail("the handshake never completes");
+            } catch (SocketTimeoutException e) {
+                Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+            }
+        } finally {
+            stalledEngine.close();
+        }
+    }
+}
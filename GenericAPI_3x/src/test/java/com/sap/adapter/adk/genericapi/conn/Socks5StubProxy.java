@@ -0,0 +1,90 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal SOCKS5 proxy with JWT authentication that echoes all tunnel data back to the client.
+ */
+class Socks5StubProxy implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final boolean acceptAuthentication;
+    private final long responseDelay;
+
+    Socks5StubProxy(boolean acceptAuthentication, long responseDelay) throws IOException {
+        this.serverSocket = new ServerSocket(0, 1000);
+        this.acceptAuthentication = acceptAuthentication;
+        this.responseDelay = responseDelay;
+        executor.execute(this::accept);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket client = socket) {
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            OutputStream out = client.getOutputStream();
+            in.readFully(new byte[3]);
+            out.write(new byte[] { 0x05, (byte) 0x80 });
+
+            in.readByte();
+            in.readFully(new byte[in.readInt()]);
+            in.readFully(new byte[in.readUnsignedByte()]);
+            out.write(new byte[] { 0x01, (byte) (acceptAuthentication ? 0x00 : 0x01) });
+            if (!acceptAuthentication) {
+                return;
+            }
+
+            in.readFully(new byte[3]);
+            int addressType = in.readUnsignedByte();
+            in.readFully(new byte[addressType == 0x01 ? 4 : in.readUnsignedByte()]);
+            in.readUnsignedShort();
+            if (responseDelay > 0) {
+                Thread.sleep(responseDelay);
+            }
+            out.write(new byte[] { 0x05, 0x00, 0x00, 0x01, 127, 0, 0, 1, 0x10, 0x00 });
+            echo(client.getInputStream(), out);
+        } catch (IOException e) {
+            // client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void echo(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
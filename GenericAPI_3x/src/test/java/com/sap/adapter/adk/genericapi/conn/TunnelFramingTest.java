@@ -0,0 +1,117 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import com.sap.adapter.adk.genericapi.conn.TunnelFraming.FrameInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class TunnelFramingTest {
+
+    @Test
+    public void testReadsLengthFrame() throws IOException {
+        TunnelFraming framing = TunnelFraming.of("length", null);
+        InputStream in = new ByteArrayInputStream(new byte[] { 0, 0, 0, 5, 'h', 'e', 'l', 'l', 'o', 'x' });
+
+        FrameInputStream frame = framing.readFrame(in);
+
+        Assert.assertEquals("hello", readFully(frame));
+        Assert.assertTrue(frame.isComplete());
+        // the next byte belongs to the next message
+        Assert.assertEquals('x', in.read());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedLengthFrameFails() throws IOException {
+        TunnelFraming framing = TunnelFraming.of("length", null);
+        readFully(framing.readFrame(new ByteArrayInputStream(new byte[] { 0, 0, 0, 5, 'h', 'e' })));
+    }
+
+    @Test
+    public void testReadsDelimitedFrame() throws IOException {
+        TunnelFraming framing = TunnelFraming.of("delimiter", "\\r\\n");
+
+        FrameInputStream frame = framing.readFrame(stream("line\rwith\r\r\nrest"));
+
+        Assert.assertEquals("line\rwith\r", readFully(frame));
+        Assert.assertTrue(frame.isComplete());
+        Assert.assertFalse("read ahead of the rest", frame.isReusable());
+    }
+
+    @Test
+    public void testDelimiterWithRepeatedPrefix() throws IOException {
+        TunnelFraming framing = TunnelFraming.of("delimiter", "abab");
+
+        Assert.assertEquals("abaabx", readFully(framing.readFrame(stream("abaabxabab"))));
+        Assert.assertEquals("aba", readFully(framing.readFrame(stream("abaabab"))));
+    }
+
+    @Test
+    public void testReadsDelimitedFrameReceivedInPieces() throws IOException {
+        TunnelFraming framing = TunnelFraming.of("delimiter", "abab");
+        InputStream in = new ByteArrayInputStream("xabaabyaba".concat("abab").getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                // the tunnel delivers one byte at a time
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        FrameInputStream frame = framing.readFrame(in);
+
+        Assert.assertEquals('x', frame.read());
+        Assert.assertEquals("abaabyaba", readFully(frame));
+        Assert.assertTrue(frame.isReusable());
+    }
+
+    @Test
+    public void testReadsDelimitedFrameLargerThanBuffer() throws IOException {
+        TunnelFraming framing = TunnelFraming.of("delimiter", "\\0");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append(i % 10);
+        }
+
+        FrameInputStream frame = framing.readFrame(stream(content + "\0"));
+
+        Assert.assertEquals(content.toString(), readFully(frame));
+        Assert.assertTrue(frame.isReusable());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testDelimitedFrameWithoutDelimiterFails() throws IOException {
+        TunnelFraming framing = TunnelFraming.of("delimiter", "\\n");
+        readFully(framing.readFrame(stream("no delimiter")));
+    }
+
+    @Test
+    public void testUnescapesDelimiter() {
+        Assert.assertEquals("\n", TunnelFraming.unescape("\\n"));
+        Assert.assertEquals("\r\n\t\0\\x", TunnelFraming.unescape("\\r\\n\\t\\0\\\\x"));
+        Assert.assertEquals("end\\", TunnelFraming.unescape("end\\"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownFraming() {
+        TunnelFraming.of("chunked", null);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
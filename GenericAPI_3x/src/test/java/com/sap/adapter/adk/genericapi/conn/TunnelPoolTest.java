@@ -0,0 +1,139 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import com.sap.adapter.adk.genericapi.conn.TunnelPool.PooledTunnel;
+import com.sap.it.api.ccs.adapter.enums.AuthType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class TunnelPoolTest {
+
+    private ServerSocket server;
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+    private TunnelKey key;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (!server.isClosed()) {
+                    accepted.add(server.accept());
+                }
+            } catch (IOException e) {
+                // server closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        key = new TunnelKey("loc", "virtualhost", 4711, AuthType.PasswordAuthentication);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testReusesReleasedTunnel() throws Exception {
+        TunnelPool pool = new TunnelPool(5, 60000);
+        PooledTunnel first = pool.borrow(key, this::connect);
+        pool.release(first);
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        PooledTunnel second = pool.borrow(key, this::connect);
+        Assert.assertSame(first.getSocket(), second.getSocket());
+        Assert.assertEquals(0, pool.getIdleCount());
+        pool.close();
+    }
+
+    @Test
+    public void testDoesNotReuseTunnelClosedByPeer() throws Exception {
+        TunnelPool pool = new TunnelPool(5, 60000);
+        PooledTunnel first = pool.borrow(key, this::connectChannel);
+        pool.release(first);
+        Assert.assertEquals(1, pool.getIdleCount());
+        waitForAccepted(1);
+        accepted.get(0).close();
+        Thread.sleep(50);
+
+        long start = System.nanoTime();
+        PooledTunnel second = pool.borrow(key, this::connectChannel);
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        Assert.assertNotSame(first.getSocket(), second.getSocket());
+        Assert.assertTrue(first.getSocket().isClosed());
+        // the probe leaves the channel usable by the blocking socket streams
+        Assert.assertTrue(second.getSocket().getChannel().isBlocking());
+        pool.release(second);
+        Assert.assertSame(second.getSocket(), pool.borrow(key, this::connectChannel).getSocket());
+        pool.close();
+    }
+
+    @Test
+    public void testDoesNotReuseChannelWithPendingData() throws Exception {
+        TunnelPool pool = new TunnelPool(5, 60000);
+        PooledTunnel first = pool.borrow(key, this::connectChannel);
+        pool.release(first);
+        waitForAccepted(1);
+        accepted.get(0).getOutputStream().write(42);
+        Thread.sleep(50);
+
+        PooledTunnel second = pool.borrow(key, this::connectChannel);
+        Assert.assertNotSame(first.getSocket(), second.getSocket());
+        pool.close();
+    }
+
+    @Test
+    public void testClosesTunnelsBeyondMaxSize() throws Exception {
+        TunnelPool pool = new TunnelPool(1, 60000);
+        PooledTunnel first = pool.borrow(key, this::connect);
+        PooledTunnel second = pool.borrow(key, this::connect);
+        pool.release(first);
+        pool.release(second);
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertTrue(second.getSocket().isClosed());
+        pool.close();
+        Assert.assertTrue(first.getSocket().isClosed());
+    }
+
+    @Test
+    public void testEvictsIdleTunnels() throws Exception {
+        TunnelPool pool = new TunnelPool(5, 0);
+        PooledTunnel tunnel = pool.borrow(key, this::connect);
+        pool.release(tunnel);
+        Thread.sleep(5);
+        pool.evictExpired();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertTrue(tunnel.getSocket().isClosed());
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress("localhost", server.getLocalPort()), 1000);
+        return socket;
+    }
+
+    private Socket connectChannel() throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getLocalPort()));
+        return channel.socket();
+    }
+
+    private void waitForAccepted(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && accepted.size() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.spi.ExecutorServiceManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many concurrent slow tunnel sessions through the executors of {@link TunnelSessionExecutors} and of the camel
+ * context, and checks the number of threads carrying them. The session latency is logged.
+ * <p>
+ * Only runs with {@code -Dgenericapi.loadTest=true}, the number of sessions is set with
+ * {@code -Dgenericapi.loadTest.sessions} and defaults to 5000.
+ */
+public class TunnelSessionLoadTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TunnelSessionLoadTest.class);
+
+    private static final int SESSIONS = Integer.getInteger("genericapi.loadTest.sessions", 5000);
+    private static final long PROXY_DELAY = 500L;
+    private static final int MAX_PLATFORM_THREADS = 200;
+    private static final String THREAD_NAME = "TunnelSessionLoad";
+
+    private Socks5StubProxy proxy;
+    private Socks5HandshakeEngine engine;
+    private DefaultCamelContext context;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("genericapi.loadTest"));
+        proxy = new Socks5StubProxy(true, PROXY_DELAY);
+        engine = new Socks5HandshakeEngine(2);
+        context = new DefaultCamelContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (context != null) {
+            context.stop();
+        }
+        if (engine != null) {
+            engine.close();
+        }
+        if (proxy != null) {
+            proxy.close();
+        }
+    }
+
+    @Test
+    public void testSessionExecutor() throws Exception {
+        ExecutorServiceManager manager = context.getExecutorServiceManager();
+        boolean virtualThreads = TunnelSessionExecutors.isVirtualThreadSupported();
+        Result result = run(TunnelSessionExecutors.newExecutor(manager, this, THREAD_NAME, MAX_PLATFORM_THREADS),
+                virtualThreads);
+        if (virtualThreads) {
+            Assert.assertTrue("Sessions should be carried by few threads, got " + result.peakThreads,
+                    result.peakThreads <= Runtime.getRuntime().availableProcessors() * 2);
+        } else {
+            // the fallback of JVMs without virtual threads
+            assertCarriedByPool(result);
+        }
+    }
+
+    @Test
+    public void testPlatformThreadPool() throws Exception {
+        ExecutorServiceManager manager = context.getExecutorServiceManager();
+        assertCarriedByPool(run(manager.newFixedThreadPool(this, THREAD_NAME, MAX_PLATFORM_THREADS), false));
+    }
+
+    private static void assertCarriedByPool(Result result) {
+        Assert.assertTrue("Sessions should be carried by the pool, got " + result.peakThreads,
+                result.peakThreads <= MAX_PLATFORM_THREADS);
+        // the sessions queue behind the pool, each batch of pooled sessions waits for the proxy delay
+        Assert.assertTrue("Sessions finished too early for a pool of " + MAX_PLATFORM_THREADS + " threads",
+                result.totalMillis >= (SESSIONS / MAX_PLATFORM_THREADS) * PROXY_DELAY);
+    }
+
+    private Result run(ExecutorService executor, boolean virtualThreads) throws Exception {
+        long[] latencies = new long[SESSIONS];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(SESSIONS);
+        ThreadCounter counter = new ThreadCounter(virtualThreads);
+        counter.start();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < SESSIONS; i++) {
+                final int session = i;
+                final long submitted = System.nanoTime();
+                executor.execute(() -> {
+                    try {
+                        runSession(session);
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        latencies[session] = System.nanoTime() - submitted;
+                        done.countDown();
+                    }
+                });
+            }
+            Assert.assertTrue("Sessions did not finish in time", done.await(5, TimeUnit.MINUTES));
+        } finally {
+            counter.interrupt();
+            counter.join();
+            context.getExecutorServiceManager().shutdownNow(executor);
+        }
+        long total = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        Result result = new Result(counter.peak, TimeUnit.NANOSECONDS.toMillis(total));
+        LOG.info("{}: {} sessions in {} ms, failures: {}, peak {} threads: {}, latency p50: {} ms, p99: {} ms, "
+                        + "max: {} ms", virtualThreads ? "virtual threads" : "platform pool", SESSIONS,
+                result.totalMillis, failures.get(), virtualThreads ? "carrier" : "pool", result.peakThreads,
+                percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 1.0));
+        Assert.assertEquals(0, failures.get());
+        Assert.assertTrue("Every session waits for the proxy", percentile(latencies, 0.5) >= PROXY_DELAY);
+        return result;
+    }
+
+    private void runSession(int session) throws IOException {
+        try (Socket socket = new AdapterSocketCF("location", "localhost", proxy.getPort(), "header.payload.signature",
+                engine)) {
+            socket.connect(InetSocketAddress.createUnresolved("virtual.host", 4711), 30000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            String message = "session " + session;
+            out.writeUTF(message);
+            out.flush();
+            if (!message.equals(new DataInputStream(socket.getInputStream()).readUTF())) {
+                throw new IOException("Unexpected echo in session " + session);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(index, 0)]);
+    }
+
+    private static final class Result {
+
+        private final int peakThreads;
+        private final long totalMillis;
+
+        Result(int peakThreads, long totalMillis) {
+            this.peakThreads = peakThreads;
+            this.totalMillis = totalMillis;
+        }
+    }
+
+    /**
+     * Samples the number of live carrier threads of the virtual thread scheduler, or of the platform pool threads.
+     */
+    private static final class ThreadCounter extends Thread {
+
+        private final boolean carriers;
+        private volatile int peak;
+
+        ThreadCounter(boolean carriers) {
+            super("load-thread-counter");
+            this.carriers = carriers;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                peak = Math.max(peak, count());
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private int count() {
+            ThreadGroup root = Thread.currentThread().getThreadGroup();
+            while (root.getParent() != null) {
+                root = root.getParent();
+            }
+            Thread[] threads = new Thread[root.activeCount() * 2 + 16];
+            int length = root.enumerate(threads, true);
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                Thread thread = threads[i];
+                if (carriers ? "jdk.internal.misc.CarrierThread".equals(thread.getClass().getName())
+                        : thread.getName().endsWith(" - " + THREAD_NAME)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
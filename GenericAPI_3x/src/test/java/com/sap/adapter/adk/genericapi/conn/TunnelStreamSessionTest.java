@@ -0,0 +1,154 @@
+package com.sap.adapter.adk.genericapi.conn;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TunnelStreamSessionTest {
+
+    // larger than the socket buffers, so request and response have to flow at the same time
+    private static final int BODY_LENGTH = 8 * 1024 * 1024;
+
+    private ServerSocketChannel server;
+    private ExecutorService executor;
+    private final AtomicReference<Boolean> released = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamsFileThroughEchoingServer() throws Exception {
+        startEchoServer();
+        byte[] body = new byte[BODY_LENGTH];
+        new Random(1).nextBytes(body);
+        File file = File.createTempFile("tunnel", ".bin");
+        try {
+            Files.write(file.toPath(), body);
+            final TunnelFraming framing = TunnelFraming.of("length", null);
+            Socket tunnel = connect();
+
+            byte[] response;
+            try (InputStream in = TunnelStreamSession.open(tunnel, framing, socket -> {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    framing.writeFrame(socket, channel, channel.size());
+                }
+            }, executor, released::set)) {
+                response = readAll(in);
+                Assert.assertEquals("released once read", Boolean.TRUE, released.get());
+            }
+
+            Assert.assertArrayEquals(body, response);
+            tunnel.close();
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    public void testUnreadResponseIsNotReusable() throws Exception {
+        startEchoServer();
+        final TunnelFraming framing = TunnelFraming.of("length", null);
+        Socket tunnel = connect();
+
+        InputStream in = TunnelStreamSession.open(tunnel, framing,
+                socket -> framing.writeFrame(socket, new ByteArrayInputStream(new byte[100]), 100),
+                executor, released::set);
+        Assert.assertNull(released.get());
+        in.close();
+
+        Assert.assertEquals(Boolean.FALSE, released.get());
+        tunnel.close();
+    }
+
+    @Test
+    public void testWriteFailureIsReported() throws Exception {
+        startEchoServer();
+        TunnelFraming framing = TunnelFraming.of("length", null);
+        Socket tunnel = connect();
+        try {
+            TunnelStreamSession.open(tunnel, framing, socket -> {
+                throw new IOException("body not readable");
+            }, executor, released::set);
+            Assert.fail("the request could not be written");
+        } catch (IOException e) {
+            Assert.assertEquals("body not readable", e.getMessage());
+        }
+        Assert.assertEquals(Boolean.FALSE, released.get());
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = SocketChannel.open(server.getLocalAddress()).socket();
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    /**
+     * Echoes each length framed message while it is still being received.
+     */
+    private void startEchoServer() {
+        executor.execute(() -> {
+            try (Socket socket = server.accept().socket()) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                int length = in.readInt();
+                out.writeInt(length);
+                byte[] buffer = new byte[4096];
+                int remaining = length;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                    if (read == -1) {
+                        break;
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+                out.flush();
+                // wait for the client to close
+                in.read();
+            } catch (IOException e) {
+                // client gone
+            }
+        });
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[65536];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,84 @@
+package com.sap.adapter.adk.genericapi.httpclient;
+
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorSettings;
+import com.sap.adapter.adk.genericapi.exception.ProxyAuthenticationException;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AsyncHttpClientHandlerTest {
+
+    private HttpServer server;
+    private AsyncHttpClientHandler handler;
+    private final AtomicReference<Headers> receivedHeaders = new AtomicReference<>();
+    private volatile int status = 200;
+
+    @Before
+    public void setUp() throws Exception {
+        // acts as target server and as Cloud Connector proxy
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            receivedHeaders.set(exchange.getRequestHeaders());
+            byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        handler = new AsyncHttpClientHandler(4, 2, 1000L, 1000L, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        handler.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testCallServerWithoutLocation() throws Exception {
+        String result = handler.callServer(getAddress() + "/direct", null, null).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("hello", result);
+    }
+
+    @Test
+    public void testCallServerThroughProxy() throws Exception {
+        String result = handler.callServer("http://onpremise:8080/path", "loc1", getProxySettings())
+                .get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals("success", result);
+        Assert.assertEquals("Bearer token", receivedHeaders.get().getFirst("Proxy-Authorization"));
+        Assert.assertEquals("loc1", receivedHeaders.get().getFirst("SAP-Connectivity-SCC-Location_ID"));
+    }
+
+    @Test
+    public void testProxyAuthenticationFailure() throws Exception {
+        status = 407;
+        try {
+            handler.callServer("http://onpremise:8080/path", "loc1", getProxySettings()).get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected a proxy authentication failure");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ProxyAuthenticationException);
+        }
+    }
+
+    private String getAddress() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private CloudConnectorSettings getProxySettings() {
+        return new CloudConnectorSettings("localhost", server.getAddress().getPort(),
+                Collections.singletonMap("Proxy-Authorization", "Bearer token"), null, null, null);
+    }
+}
@@ -1,10 +1,26 @@
 package com.sap.adapter.adk.genericapi.httpclient;
 
-import com.sap.it.api.ccs.adapter.exception.CloudConnectorPropertiesException;
+import com.sap.adapter.adk.genericapi.ccs.CloudConnectorSettings;
+import com.sap.adapter.adk.genericapi.exception.CircuitOpenException;
+import com.sap.adapter.adk.genericapi.exception.DeadlineExceededException;
+import com.sap.adapter.adk.genericapi.exception.ServerErrorException;
+import com.sap.adapter.adk.genericapi.resilience.CallGuard;
+import com.sap.adapter.adk.genericapi.resilience.CircuitBreaker;
+import com.sap.adapter.adk.genericapi.resilience.Deadline;
+import com.sap.adapter.adk.genericapi.resilience.RetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 
 /**
  * @author I061700 on 03-09-2021
@@ -12,10 +28,160 @@ import java.io.IOException;
 public class HttpClientHandlerTest {
 
     @Test
-    public void testCallServer() throws IOException, CloudConnectorPropertiesException {
-        HttpClientHandler httpClientHandler = new HttpClientHandler();
-        String result = httpClientHandler.callServer("https://www.sap.com/sea/index.model.json", null, null);
-        Assert.assertFalse(result.isEmpty());
+    public void testCallServer() throws IOException {
+        try (HttpClientHandler httpClientHandler = new HttpClientHandler()) {
+            String result = httpClientHandler.callServer("https://www.sap.com/sea/index.model.json", null, null);
+            Assert.assertFalse(result.isEmpty());
+        }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testRequestTimeoutsFollowTheDeadline() throws IOException {
+        RequestConfig config = HttpClientHandler.createRequest("http://localhost/", null, null,
+                new Deadline(1000, 2000, 3000, Long.MAX_VALUE)).getConfig();
+
+        Assert.assertEquals(1000, config.getConnectionRequestTimeout());
+        Assert.assertEquals(1000, config.getConnectTimeout());
+        Assert.assertEquals(3000, config.getSocketTimeout());
+        Assert.assertNull(config.getProxy());
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void testRequestAfterTheDeadlineFails() throws IOException {
+        HttpClientHandler.createRequest("http://localhost/", null, null, new Deadline(1000, 2000, 3000, 0));
+    }
+
+    @Test
+    public void testRequestWithEntityKeepsProxyHeaders() throws IOException {
+        ByteArrayEntity entity = new ByteArrayEntity(new byte[] {1, 2, 3});
+        CloudConnectorSettings settings = new CloudConnectorSettings("proxy", 20003,
+                Collections.singletonMap("Proxy-Authorization", "Bearer token"), null, null, null);
+
+        HttpRequestBase request = HttpClientHandler.createRequest("PUT", "http://virtual:8080/upload", entity, "loc",
+                settings, Deadline.NONE);
+
+        Assert.assertEquals("PUT", request.getMethod());
+        Assert.assertEquals("http://virtual:8080/upload", request.getURI().toString());
+        Assert.assertSame(entity, ((HttpEntityEnclosingRequest) request).getEntity());
+        Assert.assertEquals("Bearer token", request.getFirstHeader("Proxy-Authorization").getValue());
+        Assert.assertEquals("loc", request.getFirstHeader("SAP-Connectivity-SCC-Location_ID").getValue());
+        Assert.assertEquals("proxy", request.getConfig().getProxy().getHostName());
+    }
+
+    @Test
+    public void testPreOpenedConnectionsAreUsedByCalls() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try (HttpClientHandler handler = new HttpClientHandler()) {
+            String address = "http://localhost:" + server.getAddress().getPort() + "/";
+            Closeable first = handler.preOpenConnection(address, null, null, Deadline.NONE);
+            Closeable second = handler.preOpenConnection(address, null, null, Deadline.NONE);
+            first.close();
+            second.close();
+            Assert.assertEquals(2, handler.getPoolStats().getAvailable());
+
+            Assert.assertEquals("ok", handler.callServer(address, null, null));
+            Assert.assertEquals("the call took a pre-opened connection", 2, handler.getPoolStats().getAvailable());
+            Assert.assertEquals(0, handler.getPoolStats().getLeased());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testTunnelledConnectionIsNotPreOpened() throws IOException {
+        CloudConnectorSettings settings = new CloudConnectorSettings("localhost", 1,
+                Collections.<String, String>emptyMap(), null, null, null);
+        try (HttpClientHandler handler = new HttpClientHandler()) {
+            Assert.assertNull(handler.preOpenConnection("https://virtual/", "loc", settings, Deadline.NONE));
+        }
+    }
+
+    @Test
+    public void testServerErrorCarriesResult() throws IOException {
+        HttpServer server = startServer(503, "unavailable");
+        try (HttpClientHandler handler = new HttpClientHandler()) {
+            handler.callServer("http://localhost:" + server.getAddress().getPort() + "/", null, null);
+            Assert.fail("a server error must be reported");
+        } catch (ServerErrorException e) {
+            Assert.assertEquals(503, e.getStatusCode());
+            Assert.assertEquals("unavailable", e.getResult());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testServerErrorsOpenTheBreaker() throws Exception {
+        HttpServer server = startServer(503, "unavailable");
+        CallGuard guard = CallGuard.withBreakers(50, 100, 60000, 4, 60000, new RetryPolicy(0, 1, 1));
+        try (HttpClientHandler handler = new HttpClientHandler()) {
+            String address = "http://localhost:" + server.getAddress().getPort() + "/";
+            for (int i = 0; i < 2; i++) {
+                try {
+                    guard.call("loc", address, () -> handler.callServer(address, null, null));
+                    Assert.fail("a server error must be reported");
+                } catch (ServerErrorException e) {
+                    // counted as failure
+                }
+            }
+
+            Assert.assertEquals(CircuitBreaker.State.OPEN, guard.getBreaker("loc", address).getState());
+            try {
+                guard.call("loc", address, () -> handler.callServer(address, null, null));
+                Assert.fail("the open breaker must fail the call fast");
+            } catch (CircuitOpenException e) {
+                // not called
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testResponseWithoutContent() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            while (exchange.getRequestBody().read() != -1) {
+                // the request body is consumed, the connection is reused
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        try (HttpClientHandler handler = new HttpClientHandler()) {
+            String address = "http://localhost:" + server.getAddress().getPort() + "/";
+            Assert.assertEquals("", handler.callServer("PUT", address, new ByteArrayEntity(new byte[] {1}), null, null,
+                    Deadline.NONE));
+            Assert.assertEquals("", handler.callServer("DELETE", address, null, null, null, Deadline.NONE));
+
+            ResponseStreamCache stream = handler.callServerForStream("PUT", address, new ByteArrayEntity(new byte[] {1}),
+                    null, null, 1024, null, Deadline.NONE);
+            Assert.assertEquals(204, stream.getStatusCode());
+            Assert.assertEquals(-1, stream.read());
+            stream.discard();
+            Assert.assertEquals(0, handler.getPoolStats().getLeased());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer startServer(int statusCode, String response) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(statusCode, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+}
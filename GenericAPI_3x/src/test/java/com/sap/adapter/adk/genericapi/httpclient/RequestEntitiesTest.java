@@ -0,0 +1,102 @@
+package com.sap.adapter.adk.genericapi.httpclient;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.converter.stream.CachedOutputStream;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class RequestEntitiesTest {
+
+    private final CamelContext context = new DefaultCamelContext();
+
+    @After
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Test
+    public void testFileIsStreamedFromDisk() throws IOException {
+        File file = File.createTempFile("request", ".bin");
+        try {
+            Files.write(file.toPath(), "file content".getBytes(StandardCharsets.UTF_8));
+            Exchange exchange = exchange(file);
+            exchange.getIn().setHeader(Exchange.CONTENT_TYPE, "application/octet-stream");
+
+            HttpEntity entity = RequestEntities.create(exchange);
+
+            Assert.assertTrue(entity instanceof FileEntity);
+            Assert.assertTrue(entity.isRepeatable());
+            Assert.assertEquals(file.length(), entity.getContentLength());
+            Assert.assertEquals("application/octet-stream", entity.getContentType().getValue());
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testStringUsesCharsetOfContentType() throws IOException {
+        Exchange exchange = exchange("\u00e4");
+        exchange.getIn().setHeader(Exchange.CONTENT_TYPE, "text/plain; charset=ISO-8859-1");
+
+        HttpEntity entity = RequestEntities.create(exchange);
+
+        Assert.assertArrayEquals(new byte[] {(byte) 0xE4}, EntityUtils.toByteArray(entity));
+    }
+
+    @Test
+    public void testStreamIsSentOnceAndChunked() throws IOException {
+        Exchange exchange = exchange(new ByteArrayInputStream("streamed".getBytes(StandardCharsets.UTF_8)));
+
+        HttpEntity entity = RequestEntities.create(exchange);
+
+        Assert.assertTrue(entity instanceof InputStreamEntity);
+        Assert.assertFalse(entity.isRepeatable());
+        Assert.assertTrue(entity.isChunked());
+        Assert.assertEquals("streamed", EntityUtils.toString(entity, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStreamWithContentLengthIsNotChunked() throws IOException {
+        Exchange exchange = exchange(new ByteArrayInputStream("streamed".getBytes(StandardCharsets.UTF_8)));
+        exchange.getIn().setHeader(Exchange.CONTENT_LENGTH, 8);
+
+        HttpEntity entity = RequestEntities.create(exchange);
+
+        Assert.assertFalse(entity.isChunked());
+        Assert.assertEquals(8, entity.getContentLength());
+    }
+
+    @Test
+    public void testStreamCacheCanBeSentAgain() throws IOException {
+        Exchange exchange = exchange(null);
+        CachedOutputStream out = new CachedOutputStream(exchange);
+        out.write("cached".getBytes(StandardCharsets.UTF_8));
+        exchange.getIn().setBody(out.newStreamCache());
+
+        HttpEntity entity = RequestEntities.create(exchange);
+
+        Assert.assertTrue(entity.isRepeatable());
+        Assert.assertEquals("cached", EntityUtils.toString(entity, StandardCharsets.UTF_8));
+        Assert.assertEquals("cached", EntityUtils.toString(entity, StandardCharsets.UTF_8));
+    }
+
+    private Exchange exchange(Object body) {
+        Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(body);
+        return exchange;
+    }
+}
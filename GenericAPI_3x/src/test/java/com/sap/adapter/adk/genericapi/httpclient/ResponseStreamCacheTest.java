@@ -0,0 +1,159 @@
+package com.sap.adapter.adk.genericapi.httpclient;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class ResponseStreamCacheTest {
+
+    private static final String BODY = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @Test
+    public void testReadAndResetInMemory() throws IOException {
+        TestResponse response = new TestResponse(BODY);
+        ResponseStreamCache cache = new ResponseStreamCache(response, 1024, null);
+
+        Assert.assertEquals(BODY, readFully(cache));
+        Assert.assertTrue("Connection should be released once the entity is consumed", response.closed);
+        Assert.assertTrue(cache.inMemory());
+        Assert.assertEquals(BODY.length(), cache.length());
+
+        cache.reset();
+        Assert.assertEquals(BODY, readFully(cache));
+        cache.discard();
+    }
+
+    @Test
+    public void testSpoolsAboveThreshold() throws IOException {
+        TestResponse response = new TestResponse(BODY);
+        ResponseStreamCache cache = new ResponseStreamCache(response, 8, null);
+
+        byte[] head = new byte[4];
+        Assert.assertEquals(4, cache.read(head, 0, head.length));
+        Assert.assertTrue(cache.inMemory());
+        Assert.assertFalse(response.closed);
+
+        // re-read the cached head and continue with the upstream
+        cache.reset();
+        Assert.assertEquals(BODY, readFully(cache));
+        Assert.assertFalse(cache.inMemory());
+        Assert.assertTrue(response.closed);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.writeTo(out);
+        Assert.assertEquals(BODY, out.toString("UTF-8"));
+        cache.discard();
+    }
+
+    @Test
+    public void testCloseReleasesUnconsumedConnection() throws IOException {
+        TestResponse response = new TestResponse(BODY);
+        ResponseStreamCache cache = new ResponseStreamCache(response, 1024, null);
+        cache.close();
+        Assert.assertTrue(response.closed);
+        Assert.assertEquals(200, cache.getStatusCode());
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        ResponseStreamCache cache = new ResponseStreamCache(new TestResponse(BODY), 8, null);
+        StringBuilder read = new StringBuilder();
+        int b;
+        while ((b = cache.read()) != -1) {
+            read.append((char) b);
+        }
+        Assert.assertEquals(BODY, read.toString());
+
+        cache.reset();
+        Assert.assertEquals(BODY, readFully(cache));
+        cache.discard();
+    }
+
+    @Test
+    public void testReadAfterCloseFails() throws IOException {
+        ResponseStreamCache cache = new ResponseStreamCache(new TestResponse(BODY), 1024, null);
+        Assert.assertEquals(BODY, readFully(cache));
+        cache.reset();
+        Assert.assertEquals('0', cache.read());
+
+        cache.close();
+        try {
+            cache.read();
+            Assert.fail("a closed stream must not look like a stream at its end");
+        } catch (IOException e) {
+            // the rest of the cached content is not returned as if it was all
+        }
+
+        // the cached content can be re-read from the start
+        cache.reset();
+        Assert.assertEquals(BODY, readFully(cache));
+        cache.discard();
+    }
+
+    @Test
+    public void testReadAfterDiscardFails() throws IOException {
+        ResponseStreamCache cache = new ResponseStreamCache(new TestResponse(BODY), 4, null);
+        Assert.assertEquals(BODY, readFully(cache));
+
+        cache.discard();
+        try {
+            cache.reset();
+            Assert.fail("a released stream must not be re-read as if it was empty");
+        } catch (IllegalStateException e) {
+            // the spooled content is gone
+        }
+        try {
+            cache.read();
+            Assert.fail("a released stream must not look like a stream at its end");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testResponseWithoutEntity() throws IOException {
+        TestResponse response = new TestResponse(null);
+        response.setStatusCode(204);
+        ResponseStreamCache cache = new ResponseStreamCache(response, 1024, null);
+
+        Assert.assertEquals(204, cache.getStatusCode());
+        Assert.assertEquals("", readFully(cache));
+        Assert.assertEquals(0, cache.length());
+        Assert.assertTrue("Connection should be released once the empty response is consumed", response.closed);
+        cache.discard();
+    }
+
+    private String readFully(ResponseStreamCache cache) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[5];
+        int length;
+        while ((length = cache.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static class TestResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        private boolean closed;
+
+        TestResponse(String body) {
+            super(HttpVersion.HTTP_1_1, 200, "OK");
+            if (body != null) {
+                setEntity(new ByteArrayEntity(body.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
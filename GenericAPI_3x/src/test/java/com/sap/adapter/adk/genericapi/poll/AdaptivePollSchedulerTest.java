@@ -0,0 +1,124 @@
+package com.sap.adapter.adk.genericapi.poll;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.Random;
+
+public class AdaptivePollSchedulerTest {
+
+    private final MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+
+    @Test
+    public void testAcceleratesWhileProcessingKeepsUp() {
+        AdaptivePollScheduler scheduler = scheduler(100, 10000);
+        scheduler.pollCompleted(10, 1600, false);
+        scheduler.pollCompleted(10, 5, false);
+        Assert.assertEquals(800, scheduler.getCurrentDelay());
+        Assert.assertEquals(AdaptivePollScheduler.State.ACCELERATING, scheduler.getState());
+        for (int i = 0; i < 10; i++) {
+            scheduler.pollCompleted(10, 5, false);
+        }
+        Assert.assertEquals(100, scheduler.getCurrentDelay());
+        Assert.assertEquals(AdaptivePollScheduler.State.STEADY, scheduler.getState());
+    }
+
+    @Test
+    public void testSlowsDownWithProcessingLatency() {
+        AdaptivePollScheduler scheduler = scheduler(100, 10000);
+        scheduler.pollCompleted(10, 150, false);
+        Assert.assertEquals(AdaptivePollScheduler.State.SLOWING_DOWN, scheduler.getState());
+        Assert.assertEquals(150, scheduler.getCurrentDelay());
+
+        scheduler.pollCompleted(10, 1000, false);
+        Assert.assertEquals(1000, scheduler.getCurrentDelay());
+        Assert.assertEquals(1000, scheduler.getLastProcessingTime());
+    }
+
+    @Test
+    public void testBacksOffOnErrorsAndIdlePolls() {
+        AdaptivePollScheduler scheduler = scheduler(100, 1000);
+        scheduler.pollCompleted(0, 0, true);
+        scheduler.pollCompleted(0, 0, true);
+        Assert.assertEquals(AdaptivePollScheduler.State.BACKING_OFF, scheduler.getState());
+        Assert.assertEquals(2, scheduler.getConsecutiveErrors());
+        Assert.assertEquals(400, scheduler.getCurrentDelay());
+
+        scheduler.pollCompleted(0, 0, false);
+        scheduler.pollCompleted(0, 0, false);
+        Assert.assertEquals(0, scheduler.getConsecutiveErrors());
+        Assert.assertEquals(2, scheduler.getConsecutiveIdlePolls());
+        Assert.assertEquals(1000, scheduler.getCurrentDelay());
+
+        scheduler.pollCompleted(5, 10, false);
+        Assert.assertEquals(0, scheduler.getConsecutiveIdlePolls());
+        Assert.assertEquals(500, scheduler.getCurrentDelay());
+    }
+
+    @Test
+    public void testJitterStaysWithinBounds() {
+        AdaptivePollScheduler scheduler = new AdaptivePollScheduler("iflow", "generic-api:/test", 1000, 1000, 0.2,
+                new Random(42), mBeanServer);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long delay = scheduler.nextDelay();
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        Assert.assertTrue(min >= 800 && min < 850);
+        Assert.assertTrue(max <= 1200 && max > 1150);
+    }
+
+    @Test
+    public void testBacksOffWithConsumerSettings() {
+        AdaptivePollScheduler scheduler = scheduler(100, 10000);
+        scheduler.setBackoff(3, 2, 0);
+
+        scheduler.pollCompleted(0, 0, false);
+        Assert.assertEquals(AdaptivePollScheduler.State.STEADY, scheduler.getState());
+        Assert.assertEquals(100, scheduler.getCurrentDelay());
+        scheduler.pollCompleted(0, 0, false);
+        Assert.assertEquals(AdaptivePollScheduler.State.BACKING_OFF, scheduler.getState());
+        Assert.assertEquals(300, scheduler.getCurrentDelay());
+
+        // errors do not raise the delay without an error threshold
+        scheduler.pollCompleted(0, 0, true);
+        scheduler.pollCompleted(0, 0, true);
+        Assert.assertEquals(300, scheduler.getCurrentDelay());
+        Assert.assertEquals(2, scheduler.getConsecutiveErrors());
+    }
+
+    @Test
+    public void testKeepsDoublingWithoutBackoffMultiplier() {
+        AdaptivePollScheduler scheduler = scheduler(100, 10000);
+        scheduler.setBackoff(0, 5, 5);
+
+        scheduler.pollCompleted(0, 0, false);
+        Assert.assertEquals(200, scheduler.getCurrentDelay());
+        Assert.assertEquals(AdaptivePollScheduler.DEFAULT_BACKOFF_MULTIPLIER, scheduler.getBackoffMultiplier());
+    }
+
+    @Test
+    public void testExposesStateOverJmx() throws Exception {
+        AdaptivePollScheduler scheduler = scheduler(100, 1000);
+        scheduler.registerMBean();
+        ObjectName name = new ObjectName("com.sap.adapter.adk.genericapi:type=AdaptivePolling,iflow="
+                + ObjectName.quote("iflow") + ",uri=" + ObjectName.quote("generic-api:/test"));
+
+        scheduler.pollCompleted(0, 0, true);
+        Assert.assertEquals(200L, mBeanServer.getAttribute(name, "CurrentDelay"));
+        Assert.assertEquals("BACKING_OFF", mBeanServer.getAttribute(name, "BackoffState"));
+        Assert.assertEquals(1, mBeanServer.getAttribute(name, "ConsecutiveErrors"));
+
+        scheduler.unregisterMBean();
+        Assert.assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    private AdaptivePollScheduler scheduler(long minDelay, long maxDelay) {
+        return new AdaptivePollScheduler("iflow", "generic-api:/test", minDelay, maxDelay, 0, null, mBeanServer);
+    }
+}
@@ -0,0 +1,139 @@
+package com.sap.adapter.adk.genericapi.resilience;
+
+import com.sap.adapter.adk.genericapi.exception.CircuitOpenException;
+import com.sap.adapter.adk.genericapi.exception.ProxyAuthenticationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CallGuardTest {
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    public void testRetriesIoFailures() throws Exception {
+        CallGuard guard = CallGuard.withoutBreakers(new RetryPolicy(2, 1, 5));
+
+        String result = guard.call("loc", "target", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ConnectException("refused");
+            }
+            return "success";
+        });
+
+        Assert.assertEquals("success", result);
+        Assert.assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testRetriesAreBounded() {
+        CallGuard guard = CallGuard.withoutBreakers(new RetryPolicy(2, 1, 5));
+        try {
+            guard.call("loc", "target", failing(new ConnectException("refused")));
+            Assert.fail("all attempts fail");
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof ConnectException);
+        }
+        Assert.assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testDoesNotRetryOtherFailures() {
+        CallGuard guard = CallGuard.withoutBreakers(new RetryPolicy(2, 1, 5));
+        try {
+            guard.call("loc", "target", failing(new IllegalStateException("bug")));
+            Assert.fail("the call fails");
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof IllegalStateException);
+        }
+        Assert.assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testDoesNotRetryPastTheDeadline() {
+        CallGuard guard = CallGuard.withoutBreakers(new RetryPolicy(5, 500, 1000));
+        try {
+            guard.call("loc", "target", new Deadline(0, 0, 0, 200), failing(new ConnectException("refused")));
+            Assert.fail("the retry would start after the deadline");
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof ConnectException);
+        }
+        Assert.assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testDoesNotRetryCallsThatCannotBeRepeated() {
+        CallGuard guard = CallGuard.withoutBreakers(new RetryPolicy(2, 1, 5));
+        try {
+            guard.call("loc", "target", Deadline.NONE, false, failing(new ConnectException("refused")));
+            Assert.fail("the call fails");
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof ConnectException);
+        }
+        Assert.assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testFailsFastOnceOpen() throws Exception {
+        CallGuard guard = CallGuard.withBreakers(50, 100, 10000, 4, 60000, new RetryPolicy(0, 1, 5));
+        for (int i = 0; i < 2; i++) {
+            try {
+                guard.call("loc", "target", failing(new ConnectException("refused")));
+                Assert.fail("the call fails");
+            } catch (ConnectException e) {
+                // counted by the breaker
+            }
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, guard.getBreaker("loc", "target").getState());
+
+        try {
+            guard.call("loc", "target", failing(new ConnectException("refused")));
+            Assert.fail("the breaker is open");
+        } catch (CircuitOpenException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("loc/target"));
+        }
+        Assert.assertEquals(2, attempts.get());
+        // other targets have their own breaker
+        Assert.assertEquals("success", guard.call("loc", "other", () -> "success"));
+    }
+
+    @Test
+    public void testRejectedCredentialsDoNotCount() {
+        CallGuard guard = CallGuard.withBreakers(50, 100, 10000, 2, 60000, new RetryPolicy(2, 1, 5));
+        for (int i = 0; i < 3; i++) {
+            try {
+                guard.call("loc", "target", failing(new ProxyAuthenticationException("rejected")));
+                Assert.fail("the call fails");
+            } catch (Exception e) {
+                Assert.assertTrue(e instanceof ProxyAuthenticationException);
+            }
+        }
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, guard.getBreaker("loc", "target").getState());
+    }
+
+    @Test
+    public void testDelaysAreJitteredWithinBounds() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000, new Random(42));
+        long delay = 100;
+        for (int i = 0; i < 20; i++) {
+            long next = policy.nextDelay(delay);
+            Assert.assertTrue(String.valueOf(next), next >= 100 && next <= Math.min(1000, delay * 3));
+            delay = next;
+        }
+    }
+
+    private <T> CallGuard.Call<T> failing(final Exception failure) {
+        return () -> {
+            attempts.incrementAndGet();
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw failure;
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package com.sap.adapter.adk.genericapi.resilience;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("loc/target", 50, 80, 100, 10, 1000, now::get);
+
+    @Test
+    public void testOpensAtFailureRate() {
+        // needs half the window before it decides
+        for (int i = 0; i < 4; i++) {
+            call(true, FAST);
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(false, FAST);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryAcquire());
+        Assert.assertEquals(1000, breaker.getRemainingOpenTime());
+    }
+
+    @Test
+    public void testStaysClosedBelowFailureRate() {
+        for (int i = 0; i < 30; i++) {
+            call(i % 3 == 0, FAST);
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testOpensAtSlowCallRate() {
+        for (int i = 0; i < 5; i++) {
+            call(false, SLOW);
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulTrialCalls() {
+        open();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        for (int i = 0; i < CircuitBreaker.HALF_OPEN_CALLS; i++) {
+            Assert.assertTrue(breaker.tryAcquire());
+        }
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // only the trial calls are permitted
+        Assert.assertFalse(breaker.tryAcquire());
+
+        for (int i = 0; i < CircuitBreaker.HALF_OPEN_CALLS; i++) {
+            breaker.onSuccess(FAST);
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // the window starts empty
+        for (int i = 0; i < 4; i++) {
+            call(true, FAST);
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testReopensAfterFailedTrialCall() {
+        open();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        Assert.assertTrue(breaker.tryAcquire());
+        breaker.onFailure(FAST);
+
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testIgnoredTrialCallReturnsItsPermit() {
+        open();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        for (int i = 0; i < CircuitBreaker.HALF_OPEN_CALLS; i++) {
+            Assert.assertTrue(breaker.tryAcquire());
+        }
+
+        breaker.onIgnored();
+
+        Assert.assertTrue(breaker.tryAcquire());
+    }
+
+    private void open() {
+        for (int i = 0; i < 5; i++) {
+            call(true, FAST);
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void call(boolean failed, long duration) {
+        Assert.assertTrue(breaker.tryAcquire());
+        if (failed) {
+            breaker.onFailure(duration);
+        } else {
+            breaker.onSuccess(duration);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.sap.adapter.adk.genericapi.resilience;
+
+import com.sap.adapter.adk.genericapi.exception.DeadlineExceededException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeadlineTest {
+
+    @Test
+    public void testConfiguredTimeoutsWithoutDeadline() throws Exception {
+        Deadline deadline = new Deadline(1000, 2000, 3000, Long.MAX_VALUE);
+
+        Assert.assertFalse(deadline.isBounded());
+        Assert.assertEquals(Long.MAX_VALUE, deadline.getRemainingTime());
+        Assert.assertEquals(1000, deadline.getConnectTimeout());
+        Assert.assertEquals(2000, deadline.getHandshakeTimeout());
+        Assert.assertEquals(3000, deadline.getReadTimeout());
+        Assert.assertEquals(0, Deadline.NONE.getReadTimeout());
+    }
+
+    @Test
+    public void testTimeoutsShrinkToTheRemainingTime() throws Exception {
+        Deadline deadline = new Deadline(1000, 60000, 0, 5000);
+
+        Assert.assertTrue(deadline.isBounded());
+        Assert.assertEquals(1000, deadline.getConnectTimeout());
+        int handshakeTimeout = deadline.getHandshakeTimeout();
+        Assert.assertTrue(String.valueOf(handshakeTimeout), handshakeTimeout > 4000 && handshakeTimeout <= 5000);
+        // no read timeout configured, the deadline still applies
+        int readTimeout = deadline.getReadTimeout();
+        Assert.assertTrue(String.valueOf(readTimeout), readTimeout > 4000 && readTimeout <= 5000);
+    }
+
+    @Test
+    public void testRemainingTimeCarriesAcrossPhases() throws Exception {
+        Deadline deadline = new Deadline(0, 0, 0, 200);
+        Thread.sleep(120);
+
+        Assert.assertTrue(deadline.getReadTimeout() <= 80);
+    }
+
+    @Test
+    public void testFailsOncePassed() throws Exception {
+        Deadline deadline = new Deadline(1000, 1000, 1000, 0);
+
+        Assert.assertEquals(0, deadline.getRemainingTime());
+        try {
+            deadline.getConnectTimeout();
+            Assert.fail("the deadline has passed");
+        } catch (DeadlineExceededException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("connection"));
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.sap.adapter.adk.common.cache;
+
+import com.sap.it.api.ITApiFactory;
+import com.sap.it.api.exception.InvalidContextException;
+import com.sap.it.api.keystore.KeystoreService;
+import com.sap.it.api.keystore.exception.KeystoreException;
+import com.sap.it.api.securestore.SecureStoreService;
+import com.sap.it.api.securestore.UserCredential;
+import com.sap.it.api.securestore.exception.SecureStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.cert.Certificate;
+
+/**
+ * Caches the credentials of the secure store and the key material of the keystore, so exchanges do not call the
+ * platform services for every message.
+ * <p>
+ * The time to live of found and missing aliases can be set in ms with the system properties
+ * {@code <domain>}{@value #TTL_PROPERTY_SUFFIX} and {@code <domain>}{@value #NEGATIVE_TTL_PROPERTY_SUFFIX}, where
+ * the domain is the JMX domain of the adapter. While registered, the cache is exposed as MBean
+ * {@code <domain>:type=KeyMaterialCache}, so its hit rate can be watched and aliases can be reloaded after the
+ * security material was updated.
+ */
+public class KeyMaterialCache implements KeyMaterialCacheMBean, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyMaterialCache.class);
+
+    public static final String TTL_PROPERTY_SUFFIX = ".keyMaterialCache.ttl";
+    public static final String NEGATIVE_TTL_PROPERTY_SUFFIX = ".keyMaterialCache.negativeTtl";
+    static final long DEFAULT_TTL = 300000L;
+    static final long DEFAULT_NEGATIVE_TTL = 30000L;
+
+    private static KeyMaterialCache defaultCache;
+    private static int defaultCacheUsers;
+
+    private final String jmxDomain;
+    private final MBeanServer mBeanServer;
+    private final TtlCache<String, UserCredential> credentials;
+    private final TtlCache<String, Key> keys;
+    private final TtlCache<String, Certificate> certificates;
+    private final TtlCache<String, KeyPair> keyPairs;
+    private ObjectName objectName;
+
+    /**
+     * @param jmxDomain domain of the adapter, also the prefix of the time to live properties
+     */
+    public KeyMaterialCache(String jmxDomain) {
+        this(jmxDomain, Long.getLong(jmxDomain + TTL_PROPERTY_SUFFIX, DEFAULT_TTL),
+                Long.getLong(jmxDomain + NEGATIVE_TTL_PROPERTY_SUFFIX, DEFAULT_NEGATIVE_TTL),
+                ManagementFactory.getPlatformMBeanServer());
+    }
+
+    protected KeyMaterialCache(String jmxDomain, long timeToLive, long negativeTimeToLive, MBeanServer mBeanServer) {
+        this.jmxDomain = jmxDomain;
+        this.mBeanServer = mBeanServer;
+        credentials = new TtlCache<>(this::loadUserCredential, timeToLive, negativeTimeToLive);
+        keys = new TtlCache<>(this::loadKey, timeToLive, negativeTimeToLive);
+        certificates = new TtlCache<>(this::loadCertificate, timeToLive, negativeTimeToLive);
+        keyPairs = new TtlCache<>(this::loadKeyPair, timeToLive, negativeTimeToLive);
+    }
+
+    /**
+     * @return the cache shared by the endpoints of the bundle, registered as MBean while retained
+     */
+    public static synchronized KeyMaterialCache getDefault() {
+        if (defaultCache == null) {
+            // only used without a started component, e.g. in tests
+            defaultCache = new KeyMaterialCache("com.sap.adapter.adk");
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Registers a user of the default cache, typically the component of an adapter. The first user creates the cache
+     * and registers its MBean under the given domain.
+     */
+    public static synchronized void retainDefault(String jmxDomain) {
+        if (defaultCacheUsers++ == 0) {
+            defaultCache = new KeyMaterialCache(jmxDomain);
+            defaultCache.register();
+        }
+    }
+
+    /**
+     * Unregisters a user of the default cache. Once the last user is gone the MBean is unregistered and the cached
+     * secrets are dropped, so they do not outlive the bundle.
+     */
+    public static synchronized void releaseDefault() {
+        if (defaultCacheUsers > 0 && --defaultCacheUsers == 0 && defaultCache != null) {
+            defaultCache.close();
+            defaultCache = null;
+        }
+    }
+
+    public UserCredential getUserCredential(String alias) throws InvalidContextException, SecureStoreException {
+        try {
+            return credentials.get(alias);
+        } catch (InvalidContextException | SecureStoreException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Key getKey(String alias) throws InvalidContextException, KeystoreException {
+        return get(keys, alias);
+    }
+
+    public Certificate getCertificate(String alias) throws InvalidContextException, KeystoreException {
+        return get(certificates, alias);
+    }
+
+    public KeyPair getKeyPair(String alias) throws InvalidContextException, KeystoreException {
+        return get(keyPairs, alias);
+    }
+
+    @Override
+    public void invalidateCredential(String alias) {
+        credentials.invalidate(alias);
+    }
+
+    @Override
+    public void invalidateKeyMaterial(String alias) {
+        keys.invalidate(alias);
+        certificates.invalidate(alias);
+        keyPairs.invalidate(alias);
+    }
+
+    @Override
+    public void invalidateAll() {
+        credentials.invalidateAll();
+        keys.invalidateAll();
+        certificates.invalidateAll();
+        keyPairs.invalidateAll();
+    }
+
+    @Override
+    public long getHitCount() {
+        return credentials.getHitCount() + keys.getHitCount() + certificates.getHitCount() + keyPairs.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return credentials.getMissCount() + keys.getMissCount() + certificates.getMissCount() + keyPairs.getMissCount();
+    }
+
+    @Override
+    public int getSize() {
+        return credentials.size() + keys.size() + certificates.size() + keyPairs.size();
+    }
+
+    public ObjectName getObjectName() throws JMException {
+        return new ObjectName(jmxDomain + ":type=KeyMaterialCache");
+    }
+
+    /**
+     * Registers the MBean of the cache.
+     */
+    public synchronized void register() {
+        try {
+            ObjectName name = getObjectName();
+            if (mBeanServer.isRegistered(name)) {
+                // left over by a bundle that was not stopped cleanly
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            LOG.warn("Could not register the key material cache of {}: {}", jmxDomain, e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters the MBean and drops all cached entries.
+     */
+    @Override
+    public synchronized void close() {
+        invalidateAll();
+        if (objectName != null) {
+            try {
+                mBeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOG.warn("Could not unregister the key material cache of {}: {}", jmxDomain, e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    protected UserCredential loadUserCredential(String alias) throws InvalidContextException, SecureStoreException {
+        return getSecureStoreService().getUserCredential(alias);
+    }
+
+    protected Key loadKey(String alias) throws InvalidContextException, KeystoreException {
+        return getKeystoreService().getKey(alias);
+    }
+
+    protected Certificate loadCertificate(String alias) throws InvalidContextException, KeystoreException {
+        return getKeystoreService().getCertificate(alias);
+    }
+
+    protected KeyPair loadKeyPair(String alias) throws InvalidContextException, KeystoreException {
+        return getKeystoreService().getKeyPair(alias);
+    }
+
+    private static <V> V get(TtlCache<String, V> cache, String alias) throws InvalidContextException, KeystoreException {
+        try {
+            return cache.get(alias);
+        } catch (InvalidContextException | KeystoreException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SecureStoreService getSecureStoreService() throws InvalidContextException {
+        return ITApiFactory.getService(SecureStoreService.class, null);
+    }
+
+    private static KeystoreService getKeystoreService() throws InvalidContextException {
+        return ITApiFactory.getService(KeystoreService.class, null);
+    }
+}
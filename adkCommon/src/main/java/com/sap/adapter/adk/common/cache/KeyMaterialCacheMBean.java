@@ -0,0 +1,25 @@
+package com.sap.adapter.adk.common.cache;
+
+/**
+ * JMX view of the {@link KeyMaterialCache} of an adapter.
+ */
+public interface KeyMaterialCacheMBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    int getSize();
+
+    /**
+     * Drops the cached credential of the alias, so it is read from the secure store again.
+     */
+    void invalidateCredential(String alias);
+
+    /**
+     * Drops the cached key material of the alias, so it is read from the keystore again.
+     */
+    void invalidateKeyMaterial(String alias);
+
+    void invalidateAll();
+}
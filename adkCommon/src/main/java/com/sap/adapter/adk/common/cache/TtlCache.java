@@ -0,0 +1,121 @@
+package com.sap.adapter.adk.common.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent cache whose entries expire a fixed time after they were loaded.
+ * <p>
+ * Missing values ({@code null}) are cached as well, with their own, usually shorter, time to live. Concurrent
+ * requests for a key that is not cached share a single load. Failed loads are not cached.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class TtlCache<K, V> {
+
+    /**
+     * Loads the value of a key, may return null if there is none.
+     */
+    public interface Loader<K, V> {
+        V load(K key) throws Exception; //NOSONAR
+    }
+
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Loader<K, V> loader;
+    private final long timeToLive;
+    private final long negativeTimeToLive;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param loader             loads missing or expired values
+     * @param timeToLive         time in ms a loaded value is kept
+     * @param negativeTimeToLive time in ms a missing value is kept
+     */
+    public TtlCache(Loader<K, V> loader, long timeToLive, long negativeTimeToLive) {
+        this.loader = loader;
+        this.timeToLive = timeToLive;
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+
+    public V get(K key) throws Exception { //NOSONAR
+        while (true) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && !entry.isExpired(System.nanoTime())) {
+                hits.increment();
+                return entry.await();
+            }
+            Entry<V> loading = new Entry<>();
+            boolean owner = entry == null ? entries.putIfAbsent(key, loading) == null : entries.replace(key, entry, loading);
+            if (owner) {
+                misses.increment();
+                return load(key, loading);
+            }
+            // another thread started loading the key in the meantime, wait for it
+        }
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private V load(K key, Entry<V> loading) throws Exception { //NOSONAR
+        try {
+            V value = loader.load(key);
+            long ttl = value == null ? negativeTimeToLive : timeToLive;
+            loading.expiresAt = System.nanoTime() + ttl * 1000000L;
+            loading.value.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            entries.remove(key, loading);
+            loading.value.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        // still loading until the expiry is set
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+        }
+
+        V await() throws Exception { //NOSONAR
+            try {
+                return value.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw e;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.sap.adapter.adk.common.diagnostics;
+
+import java.time.Instant;
+
+/**
+ * A single captured diagnostics event.
+ */
+public final class DiagnosticSample {
+
+    private final long sequence;
+    private final long timestamp;
+    private final String thread;
+    private final String event;
+    private final String detail;
+
+    DiagnosticSample(long sequence, long timestamp, String thread, String event, String detail) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.thread = thread;
+        this.event = event;
+        this.detail = detail;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the capture time in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(timestamp) + " [" + thread + "] " + event + ": " + detail;
+    }
+}
@@ -0,0 +1,111 @@
+package com.sap.adapter.adk.common.diagnostics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the samples of all started {@link DiagnosticsRecorder}s to the log from a single background thread, so
+ * the appenders never run on a request thread.
+ */
+public class DiagnosticsDrainer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiagnosticsDrainer.class);
+
+    static final long DRAIN_INTERVAL = 1000L;
+
+    private static DiagnosticsDrainer defaultDrainer;
+    private static int defaultDrainerUsers;
+
+    private final Set<DiagnosticsRecorder> recorders = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService executor;
+
+    /**
+     * @return the drainer shared by the endpoints of the bundle, it only drains in the background while retained
+     */
+    public static synchronized DiagnosticsDrainer getDefault() {
+        if (defaultDrainer == null) {
+            defaultDrainer = new DiagnosticsDrainer();
+        }
+        return defaultDrainer;
+    }
+
+    /**
+     * Registers a user of the default drainer, typically the component of an adapter. The first user starts the
+     * background thread.
+     *
+     * @param threadName name of the background thread
+     */
+    public static synchronized void retainDefault(String threadName) {
+        if (defaultDrainerUsers++ == 0) {
+            getDefault().start(threadName);
+        }
+    }
+
+    /**
+     * Unregisters a user of the default drainer, the background thread is stopped once the last user is gone, so it
+     * does not outlive the bundle.
+     */
+    public static synchronized void releaseDefault() {
+        if (defaultDrainerUsers > 0 && --defaultDrainerUsers == 0 && defaultDrainer != null) {
+            defaultDrainer.stop();
+        }
+    }
+
+    /**
+     * Starts writing the samples of the registered recorders every {@link #DRAIN_INTERVAL} ms.
+     */
+    public synchronized void start(String threadName) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::drainAll, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background thread and writes the samples that are still buffered.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+            drainAll();
+        }
+    }
+
+    synchronized boolean isStarted() {
+        return executor != null;
+    }
+
+    void register(DiagnosticsRecorder recorder) {
+        recorders.add(recorder);
+    }
+
+    void unregister(DiagnosticsRecorder recorder) {
+        recorders.remove(recorder);
+    }
+
+    protected void drainAll() {
+        for (DiagnosticsRecorder recorder : recorders) {
+            try {
+                recorder.drainTo(sample -> write(recorder, sample));
+            } catch (RuntimeException e) {
+                // the drainer must keep running for the other endpoints
+                LOG.warn("Could not drain the diagnostics of {}: {}", recorder.getUri(), e.getMessage());
+            }
+        }
+    }
+
+    protected void write(DiagnosticsRecorder recorder, DiagnosticSample sample) {
+        LOG.info("{} {}", recorder.getUri(), sample);
+    }
+}
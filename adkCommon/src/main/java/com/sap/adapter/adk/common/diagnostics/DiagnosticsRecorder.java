@@ -0,0 +1,170 @@
+package com.sap.adapter.adk.common.diagnostics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Captures request, response and handshake details of a sampled share of the operations of an endpoint.
+ * <p>
+ * Callers decide once per operation with {@link #sample()} whether it is captured and then {@link #record} its
+ * details. Recording only publishes the sample into a ring buffer, the {@link DiagnosticsDrainer} writes the samples
+ * to the log in the background. With a sampling rate of 0 the hot path costs a single volatile read.
+ * <p>
+ * While started, the recorder is exposed as MBean
+ * {@code <domain>:type=Diagnostics,iflow=...,uri=...}, so the sampling rate can be changed
+ * and the last samples can be dumped at runtime.
+ */
+public class DiagnosticsRecorder implements DiagnosticsRecorderMBean, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiagnosticsRecorder.class);
+
+    private final String jmxDomain;
+    private final String iflow;
+    private final String uri;
+    private final DiagnosticsRingBuffer buffer;
+    private final MBeanServer mBeanServer;
+    private final DiagnosticsDrainer drainer;
+    private volatile double samplingRate;
+    private ObjectName objectName;
+
+    /**
+     * @param jmxDomain domain of the adapter the MBean is registered under
+     */
+    public DiagnosticsRecorder(String jmxDomain, String iflow, String uri, double samplingRate, int capacity) {
+        this(jmxDomain, iflow, uri, samplingRate, capacity, ManagementFactory.getPlatformMBeanServer(),
+                DiagnosticsDrainer.getDefault());
+    }
+
+    protected DiagnosticsRecorder(String jmxDomain, String iflow, String uri, double samplingRate, int capacity,
+                                  MBeanServer mBeanServer, DiagnosticsDrainer drainer) {
+        this.jmxDomain = jmxDomain;
+        this.iflow = iflow;
+        this.uri = uri;
+        this.buffer = new DiagnosticsRingBuffer(capacity);
+        this.mBeanServer = mBeanServer;
+        this.drainer = drainer;
+        setSamplingRate(samplingRate);
+    }
+
+    /**
+     * @return true if the current operation is to be captured
+     */
+    public boolean sample() {
+        double rate = samplingRate;
+        return rate > 0d && (rate >= 1d || ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Captures a detail of an operation that was sampled.
+     */
+    public void record(String event, String detail) {
+        buffer.add(event, detail);
+    }
+
+    /**
+     * Registers the MBean and starts writing the samples to the log.
+     */
+    public synchronized void start() {
+        drainer.register(this);
+        try {
+            ObjectName name = getObjectName();
+            if (mBeanServer.isRegistered(name)) {
+                // left over by an endpoint of the same iFlow and URI that was not stopped cleanly
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            LOG.warn("Could not register the diagnostics of {}: {}", uri, e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters the MBean and writes the remaining samples to the log.
+     */
+    @Override
+    public synchronized void close() {
+        drainer.unregister(this);
+        drainTo(sample -> drainer.write(this, sample));
+        if (objectName != null) {
+            try {
+                mBeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOG.warn("Could not unregister the diagnostics of {}: {}", uri, e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * @return the name the MBean is registered under while started
+     */
+    public ObjectName getObjectName() throws JMException {
+        return new ObjectName(jmxDomain + ":type=Diagnostics,iflow=" + ObjectName.quote(String.valueOf(iflow))
+                + ",uri=" + ObjectName.quote(String.valueOf(uri)));
+    }
+
+    int drainTo(Consumer<DiagnosticSample> consumer) {
+        return buffer.drainTo(consumer);
+    }
+
+    /**
+     * @return up to the given number of the most recent samples, oldest first
+     */
+    public List<DiagnosticSample> getLastSamples(int count) {
+        return buffer.last(count);
+    }
+
+    @Override
+    public String dump(int count) {
+        StringBuilder dump = new StringBuilder();
+        for (DiagnosticSample sample : getLastSamples(count)) {
+            dump.append(sample).append('\n');
+        }
+        return dump.toString();
+    }
+
+    @Override
+    public String getIflow() {
+        return iflow;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    @Override
+    public void setSamplingRate(double samplingRate) {
+        this.samplingRate = Math.max(0d, Math.min(samplingRate, 1d));
+    }
+
+    @Override
+    public int getCapacity() {
+        return buffer.getCapacity();
+    }
+
+    @Override
+    public long getRecordedCount() {
+        return buffer.getAddedCount();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return buffer.getDroppedCount();
+    }
+}
@@ -0,0 +1,32 @@
+package com.sap.adapter.adk.common.diagnostics;
+
+/**
+ * JMX view of the diagnostics of one endpoint.
+ */
+public interface DiagnosticsRecorderMBean {
+
+    String getIflow();
+
+    String getUri();
+
+    /**
+     * @return the share of operations captured, between 0 (off) and 1 (all)
+     */
+    double getSamplingRate();
+
+    void setSamplingRate(double samplingRate);
+
+    int getCapacity();
+
+    long getRecordedCount();
+
+    /**
+     * @return the number of samples overwritten before they were written to the log
+     */
+    long getDroppedCount();
+
+    /**
+     * @return the most recent samples, oldest first, one per line
+     */
+    String dump(int count);
+}
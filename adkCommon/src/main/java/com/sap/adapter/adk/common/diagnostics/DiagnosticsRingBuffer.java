@@ -0,0 +1,98 @@
+package com.sap.adapter.adk.common.diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lossy ring buffer of diagnostic samples.
+ * <p>
+ * Writers claim a sequence number and publish their sample into the slot of that sequence without locking, the
+ * oldest samples are overwritten when the buffer is full. Draining does not remove the samples, so the last samples
+ * can still be dumped afterwards. Samples overwritten before they were drained are counted as dropped.
+ */
+final class DiagnosticsRingBuffer {
+
+    private final AtomicReferenceArray<DiagnosticSample> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    // only accessed while holding the lock of the buffer
+    private long drained;
+
+    DiagnosticsRingBuffer(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    void add(String event, String detail) {
+        long sequence = head.getAndIncrement();
+        slots.set(index(sequence), new DiagnosticSample(sequence, System.currentTimeMillis(),
+                Thread.currentThread().getName(), event, detail));
+    }
+
+    /**
+     * Passes the samples added since the last drain to the consumer, in the order they were added.
+     *
+     * @return the number of drained samples
+     */
+    synchronized int drainTo(Consumer<DiagnosticSample> consumer) {
+        long end = head.get();
+        if (end - drained > slots.length()) {
+            dropped.add(end - slots.length() - drained);
+            drained = end - slots.length();
+        }
+        int count = 0;
+        while (drained < end) {
+            DiagnosticSample sample = slots.get(index(drained));
+            if (sample == null || sample.getSequence() < drained) {
+                // claimed but not published yet, drained with the next call
+                break;
+            }
+            if (sample.getSequence() == drained) {
+                consumer.accept(sample);
+                count++;
+            } else {
+                dropped.increment();
+            }
+            drained++;
+        }
+        return count;
+    }
+
+    /**
+     * @return up to the given number of the most recent samples, oldest first
+     */
+    List<DiagnosticSample> last(int count) {
+        long end = head.get();
+        long start = Math.max(0L, end - Math.min(count, slots.length()));
+        List<DiagnosticSample> samples = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            DiagnosticSample sample = slots.get(index(sequence));
+            if (sample != null && sample.getSequence() == sequence) {
+                samples.add(sample);
+            }
+        }
+        return samples;
+    }
+
+    long getAddedCount() {
+        return head.get();
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    int getCapacity() {
+        return slots.length();
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
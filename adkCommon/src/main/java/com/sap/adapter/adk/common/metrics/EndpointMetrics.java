@@ -0,0 +1,136 @@
+package com.sap.adapter.adk.common.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The metrics of the operations of one endpoint, tagged by iFlow and URI.
+ * <p>
+ * Once registered, every operation is exposed as MBean
+ * {@code <domain>:type=EndpointMetrics,iflow=...,uri=...,operation=...} on the platform MBean server, so the values
+ * can be read with any JMX client while the iFlow runs. Each adapter uses its own domain and operation names.
+ */
+public class EndpointMetrics implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EndpointMetrics.class);
+
+    private final String jmxDomain;
+    private final String iflow;
+    private final String uri;
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final MBeanServer mBeanServer;
+    private volatile boolean registered;
+
+    /**
+     * @param jmxDomain domain of the MBeans, usually the package of the adapter
+     */
+    public EndpointMetrics(String jmxDomain, String iflow, String uri) {
+        this(jmxDomain, iflow, uri, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    protected EndpointMetrics(String jmxDomain, String iflow, String uri, MBeanServer mBeanServer) {
+        this.jmxDomain = jmxDomain;
+        this.iflow = iflow;
+        this.uri = uri;
+        this.mBeanServer = mBeanServer;
+    }
+
+    /**
+     * Registers the MBeans of the operations measured so far and of all operations measured later on.
+     */
+    public synchronized void register() {
+        registered = true;
+        for (OperationMetrics metrics : operations.values()) {
+            registerMBean(metrics);
+        }
+    }
+
+    /**
+     * @return the metrics of the operation, created on first use
+     */
+    public OperationMetrics operation(String operation) {
+        OperationMetrics metrics = operations.get(operation);
+        if (metrics != null) {
+            return metrics;
+        }
+        synchronized (this) {
+            metrics = operations.get(operation);
+            if (metrics == null) {
+                metrics = new OperationMetrics(iflow, uri, operation);
+                operations.put(operation, metrics);
+                if (registered) {
+                    registerMBean(metrics);
+                }
+            }
+            return metrics;
+        }
+    }
+
+    public Collection<OperationMetrics> getOperations() {
+        return Collections.unmodifiableCollection(operations.values());
+    }
+
+    public String getJmxDomain() {
+        return jmxDomain;
+    }
+
+    public String getIflow() {
+        return iflow;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * Unregisters the MBeans, the metrics themselves stay readable.
+     */
+    @Override
+    public synchronized void close() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        for (OperationMetrics metrics : operations.values()) {
+            try {
+                ObjectName name = getObjectName(metrics.getOperation());
+                if (mBeanServer.isRegistered(name)) {
+                    mBeanServer.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                LOG.warn("Could not unregister the metrics of {}: {}", metrics.getOperation(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the name the MBean of the operation is registered under
+     */
+    public ObjectName getObjectName(String operation) throws JMException {
+        return new ObjectName(jmxDomain + ":type=EndpointMetrics,iflow=" + ObjectName.quote(String.valueOf(iflow))
+                + ",uri=" + ObjectName.quote(String.valueOf(uri)) + ",operation=" + ObjectName.quote(operation));
+    }
+
+    private void registerMBean(OperationMetrics metrics) {
+        try {
+            ObjectName name = getObjectName(metrics.getOperation());
+            if (mBeanServer.isRegistered(name)) {
+                // left over by an endpoint of the same iFlow and URI that was not stopped cleanly
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(metrics, name);
+        } catch (JMException e) {
+            LOG.warn("Could not register the metrics of {} for {}: {}", metrics.getOperation(), uri, e.getMessage());
+        }
+    }
+}
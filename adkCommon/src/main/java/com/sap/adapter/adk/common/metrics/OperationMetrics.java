@@ -0,0 +1,134 @@
+package com.sap.adapter.adk.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request count, error count, in-flight gauge and latency histogram of one operation of an endpoint.
+ * <p>
+ * A measurement is started with {@link #start()} and has to be finished with {@link #stop(long, boolean)}:
+ * <pre>
+ * long start = metrics.start();
+ * boolean failed = true;
+ * try {
+ *     ...
+ *     failed = false;
+ * } finally {
+ *     metrics.stop(start, failed);
+ * }
+ * </pre>
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private static final double MICROS_PER_MILLI = 1000d;
+
+    private final String iflow;
+    private final String uri;
+    private final String operation;
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationMetrics(String iflow, String uri, String operation) {
+        this.iflow = iflow;
+        this.uri = uri;
+        this.operation = operation;
+    }
+
+    /**
+     * @return the start time to pass to {@link #stop(long, boolean)}
+     */
+    public long start() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    public void stop(long start, boolean failed) {
+        inFlight.decrement();
+        record(System.nanoTime() - start, failed);
+    }
+
+    /**
+     * Records an operation that was timed by the caller, without touching the in-flight gauge.
+     */
+    public void record(long durationNanos, boolean failed) {
+        requestCount.increment();
+        if (failed) {
+            errorCount.increment();
+        }
+        latency.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String getIflow() {
+        return iflow;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return latency.getMeanMicros() / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyMax() {
+        return latency.getMaxMicros() / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP50() {
+        return latency.getValueAtPercentile(50d) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP99() {
+        return latency.getValueAtPercentile(99d) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP999() {
+        return latency.getValueAtPercentile(99.9d) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public void reset() {
+        requestCount.reset();
+        errorCount.reset();
+        latency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return operation + "[count=" + getRequestCount() + ", errors=" + getErrorCount() + ", inFlight=" + getInFlight()
+                + ", p50=" + getLatencyP50() + "ms, p99=" + getLatencyP99() + "ms]";
+    }
+}
@@ -0,0 +1,34 @@
+package com.sap.adapter.adk.common.metrics;
+
+/**
+ * JMX view of the metrics of one operation of an endpoint. Latencies are in milliseconds.
+ */
+public interface OperationMetricsMBean {
+
+    String getIflow();
+
+    String getUri();
+
+    String getOperation();
+
+    long getRequestCount();
+
+    long getErrorCount();
+
+    long getInFlight();
+
+    double getLatencyMean();
+
+    double getLatencyMax();
+
+    double getLatencyP50();
+
+    double getLatencyP99();
+
+    double getLatencyP999();
+
+    /**
+     * Clears the counters and the latency histogram, the in-flight gauge is kept.
+     */
+    void reset();
+}
@@ -0,0 +1,70 @@
+package com.sap.adapter.adk.common.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.security.Key;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KeyMaterialCacheTest {
+
+    private static final String JMX_DOMAIN = "com.sap.adapter.adk.test";
+
+    @Test
+    public void testStatisticsAndInvalidationOverJmx() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        final AtomicInteger loads = new AtomicInteger();
+        KeyMaterialCache cache = new KeyMaterialCache(JMX_DOMAIN, 60000, 60000, mBeanServer) {
+            @Override
+            protected Key loadKey(String alias) {
+                loads.incrementAndGet();
+                return new TestKey(alias);
+            }
+        };
+        cache.register();
+        ObjectName name = cache.getObjectName();
+        Assert.assertEquals(JMX_DOMAIN, name.getDomain());
+
+        Assert.assertEquals("picouser", cache.getKey("picouser").getFormat());
+        cache.getKey("picouser");
+        Assert.assertEquals(1L, mBeanServer.getAttribute(name, "HitCount"));
+        Assert.assertEquals(1L, mBeanServer.getAttribute(name, "MissCount"));
+        Assert.assertEquals(1, mBeanServer.getAttribute(name, "Size"));
+
+        mBeanServer.invoke(name, "invalidateKeyMaterial", new Object[]{"picouser"}, new String[]{String.class.getName()});
+        Assert.assertEquals(0, mBeanServer.getAttribute(name, "Size"));
+        cache.getKey("picouser");
+        Assert.assertEquals(2, loads.get());
+
+        cache.close();
+        Assert.assertFalse(mBeanServer.isRegistered(name));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    static final class TestKey implements Key {
+
+        private final String alias;
+
+        TestKey(String alias) {
+            this.alias = alias;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "RSA";
+        }
+
+        @Override
+        public String getFormat() {
+            return alias;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return new byte[0];
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.sap.adapter.adk.common.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TtlCacheTest {
+
+    @Test
+    public void testCachesValuesUntilExpired() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TtlCache<String, String> cache = new TtlCache<>(key -> key + loads.incrementAndGet(), 100, 100);
+
+        Assert.assertEquals("a1", cache.get("a"));
+        Assert.assertEquals("a1", cache.get("a"));
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+
+        Thread.sleep(150);
+        Assert.assertEquals("a2", cache.get("a"));
+
+        cache.invalidate("a");
+        Assert.assertEquals("a3", cache.get("a"));
+    }
+
+    @Test
+    public void testCachesMissingValues() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TtlCache<String, String> cache = new TtlCache<>(key -> {
+            loads.incrementAndGet();
+            return null;
+        }, 60000, 100);
+
+        Assert.assertNull(cache.get("missing"));
+        Assert.assertNull(cache.get("missing"));
+        Assert.assertEquals(1, loads.get());
+
+        Thread.sleep(150);
+        Assert.assertNull(cache.get("missing"));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testDoesNotCacheFailures() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TtlCache<String, String> cache = new TtlCache<>(key -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IllegalStateException("unavailable");
+            }
+            return key;
+        }, 60000, 60000);
+
+        try {
+            cache.get("a");
+            Assert.fail("Expected the load failure");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("unavailable", e.getMessage());
+        }
+        Assert.assertEquals("a", cache.get("a"));
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        TtlCache<String, String> cache = new TtlCache<>(key -> {
+            loads.incrementAndGet();
+            release.await();
+            return key;
+        }, 60000, 60000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get("cold")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                Assert.assertEquals("cold", result.get(5, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sap.adapter.adk.common.diagnostics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DiagnosticsRecorderTest {
+
+    private static final String JMX_DOMAIN = "com.sap.adapter.adk.test";
+
+    @Test
+    public void testSamplingRate() {
+        DiagnosticsRecorder recorder = new DiagnosticsRecorder(JMX_DOMAIN, "iflow", "sap-generic://test", 0d, 16,
+                MBeanServerFactory.newMBeanServer(), new DiagnosticsDrainer());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertFalse(recorder.sample());
+        }
+        recorder.setSamplingRate(5d);
+        Assert.assertEquals(1d, recorder.getSamplingRate(), 0d);
+        Assert.assertTrue(recorder.sample());
+
+        recorder.setSamplingRate(0.5d);
+        int sampled = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (recorder.sample()) {
+                sampled++;
+            }
+        }
+        Assert.assertTrue(sampled > 4000 && sampled < 6000);
+    }
+
+    @Test
+    public void testDumpOverJmxAndDrainOnClose() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        final List<DiagnosticSample> written = new ArrayList<>();
+        DiagnosticsDrainer drainer = new DiagnosticsDrainer() {
+            @Override
+            protected void write(DiagnosticsRecorder recorder, DiagnosticSample sample) {
+                written.add(sample);
+            }
+        };
+        DiagnosticsRecorder recorder = new DiagnosticsRecorder(JMX_DOMAIN, "iflow", "sap-generic://test", 1d, 16, mBeanServer, drainer);
+        recorder.start();
+        recorder.record("httpRequest", "GET http://target");
+        recorder.record("httpResponse", "200 OK");
+
+        ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Diagnostics,iflow=\"iflow\",uri=\"sap-generic://test\"");
+        Assert.assertEquals(name, recorder.getObjectName());
+        String dump = (String) mBeanServer.invoke(name, "dump", new Object[]{1}, new String[]{int.class.getName()});
+        Assert.assertTrue(dump, dump.endsWith("httpResponse: 200 OK\n"));
+        Assert.assertFalse(dump.contains("httpRequest"));
+        Assert.assertEquals(2L, mBeanServer.getAttribute(name, "RecordedCount"));
+
+        drainer.drainAll();
+        Assert.assertEquals(2, written.size());
+        recorder.record("httpFailure", "timeout");
+        recorder.close();
+        Assert.assertEquals(3, written.size());
+        Assert.assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    @Test
+    public void testBackgroundThreadStopsWithLastUser() throws Exception {
+        final List<DiagnosticSample> written = new ArrayList<>();
+        DiagnosticsDrainer drainer = new DiagnosticsDrainer() {
+            @Override
+            protected void write(DiagnosticsRecorder recorder, DiagnosticSample sample) {
+                written.add(sample);
+            }
+        };
+        DiagnosticsRecorder recorder = new DiagnosticsRecorder(JMX_DOMAIN, "iflow", "sap-generic://test", 1d, 16,
+                MBeanServerFactory.newMBeanServer(), drainer);
+        recorder.start();
+        drainer.start("TestDiagnosticsDrainer");
+        Assert.assertTrue(drainer.isStarted());
+        Assert.assertTrue(isRunning("TestDiagnosticsDrainer"));
+
+        recorder.record("httpRequest", "GET http://target");
+        drainer.stop();
+        Assert.assertFalse(drainer.isStarted());
+        Assert.assertEquals(1, written.size());
+        for (int i = 0; i < 50 && isRunning("TestDiagnosticsDrainer"); i++) {
+            Thread.sleep(20);
+        }
+        Assert.assertFalse(isRunning("TestDiagnosticsDrainer"));
+        recorder.close();
+    }
+
+    @Test
+    public void testDefaultDrainerIsReferenceCounted() {
+        DiagnosticsDrainer.retainDefault("TestDefaultDiagnosticsDrainer");
+        DiagnosticsDrainer.retainDefault("TestDefaultDiagnosticsDrainer");
+        DiagnosticsDrainer.releaseDefault();
+        Assert.assertTrue(DiagnosticsDrainer.getDefault().isStarted());
+        DiagnosticsDrainer.releaseDefault();
+        Assert.assertFalse(DiagnosticsDrainer.getDefault().isStarted());
+        DiagnosticsDrainer.releaseDefault();
+        Assert.assertFalse(DiagnosticsDrainer.getDefault().isStarted());
+    }
+
+    static boolean isRunning(String threadName) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (threadName.equals(thread.getName()) && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package com.sap.adapter.adk.common.diagnostics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DiagnosticsRingBufferTest {
+
+    @Test
+    public void testDrainsInOrderAndKeepsLastSamples() {
+        DiagnosticsRingBuffer buffer = new DiagnosticsRingBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.add("event", "detail" + i);
+        }
+        List<DiagnosticSample> drained = new ArrayList<>();
+        Assert.assertEquals(5, buffer.drainTo(drained::add));
+        Assert.assertEquals("detail0", drained.get(0).getDetail());
+        Assert.assertEquals("detail4", drained.get(4).getDetail());
+        Assert.assertEquals(0, buffer.drainTo(drained::add));
+
+        List<DiagnosticSample> last = buffer.last(2);
+        Assert.assertEquals(2, last.size());
+        Assert.assertEquals("detail3", last.get(0).getDetail());
+        Assert.assertEquals("detail4", last.get(1).getDetail());
+    }
+
+    @Test
+    public void testOverwritesOldestAndCountsDropped() {
+        DiagnosticsRingBuffer buffer = new DiagnosticsRingBuffer(6);
+        Assert.assertEquals(8, buffer.getCapacity());
+        for (int i = 0; i < 20; i++) {
+            buffer.add("event", "detail" + i);
+        }
+        List<DiagnosticSample> drained = new ArrayList<>();
+        Assert.assertEquals(8, buffer.drainTo(drained::add));
+        Assert.assertEquals(12, buffer.getDroppedCount());
+        Assert.assertEquals("detail12", drained.get(0).getDetail());
+        Assert.assertEquals(8, buffer.last(100).size());
+        Assert.assertEquals(20, buffer.getAddedCount());
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        final DiagnosticsRingBuffer buffer = new DiagnosticsRingBuffer(1 << 14);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int writer = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    buffer.add("event", writer + "-" + i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<String> details = new HashSet<>();
+        buffer.drainTo(sample -> details.add(sample.getDetail()));
+        Assert.assertEquals(8000, details.size());
+        Assert.assertEquals(0, buffer.getDroppedCount());
+    }
+}
@@ -0,0 +1,44 @@
+package com.sap.adapter.adk.common.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+public class EndpointMetricsTest {
+
+    private static final String JMX_DOMAIN = "com.sap.adapter.adk.test";
+    private static final String POLL = "poll";
+    private static final String PROCESS = "process";
+
+    @Test
+    public void testOperationsAreExposedOverJmx() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        EndpointMetrics metrics = new EndpointMetrics(JMX_DOMAIN, "Test-iFlow", "sap-generic://host:8080?a=b",
+                mBeanServer);
+        OperationMetrics poll = metrics.operation(POLL);
+        metrics.register();
+        OperationMetrics process = metrics.operation(PROCESS);
+
+        poll.stop(poll.start(), false);
+        process.record(4000000, true);
+        long start = process.start();
+
+        ObjectName name = metrics.getObjectName(PROCESS);
+        Assert.assertTrue(mBeanServer.isRegistered(metrics.getObjectName(POLL)));
+        Assert.assertEquals(1L, mBeanServer.getAttribute(name, "RequestCount"));
+        Assert.assertEquals(1L, mBeanServer.getAttribute(name, "ErrorCount"));
+        Assert.assertEquals(1L, mBeanServer.getAttribute(name, "InFlight"));
+        Assert.assertEquals(4d, (Double) mBeanServer.getAttribute(name, "LatencyP99"), 0.1);
+        Assert.assertEquals("Test-iFlow", mBeanServer.getAttribute(name, "Iflow"));
+        process.stop(start, false);
+
+        mBeanServer.invoke(name, "reset", null, null);
+        Assert.assertEquals(0L, mBeanServer.getAttribute(name, "RequestCount"));
+
+        metrics.close();
+        Assert.assertEquals(0, mBeanServer.queryNames(new ObjectName(JMX_DOMAIN + ":*"), null).size());
+    }
+}
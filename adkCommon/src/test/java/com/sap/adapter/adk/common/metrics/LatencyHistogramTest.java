@@ -0,0 +1,87 @@
+package com.sap.adapter.adk.common.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100000; micros++) {
+            histogram.recordMicros(micros);
+        }
+        Assert.assertEquals(100000, histogram.getCount());
+        Assert.assertEquals(100000, histogram.getMaxMicros());
+        Assert.assertEquals(50000.5, histogram.getMeanMicros(), 0.001);
+        assertWithinRelativeError(50000, histogram.getValueAtPercentile(50));
+        assertWithinRelativeError(99000, histogram.getValueAtPercentile(99));
+        assertWithinRelativeError(99900, histogram.getValueAtPercentile(99.9));
+        Assert.assertEquals(100000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3, TimeUnit.MICROSECONDS);
+        histogram.record(5, TimeUnit.MICROSECONDS);
+        histogram.record(7, TimeUnit.MICROSECONDS);
+        Assert.assertEquals(5, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(7, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testOutliersAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 999; i++) {
+            histogram.record(2, TimeUnit.MILLISECONDS);
+        }
+        histogram.record(5, TimeUnit.SECONDS);
+        assertWithinRelativeError(2000, histogram.getValueAtPercentile(99));
+        Assert.assertEquals(5000000, histogram.getValueAtPercentile(99.99));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testBucketsCoverTheWholeRange() {
+        int previous = -1;
+        for (long value = 0; value < (1L << 37); value = value * 3 / 2 + 1) {
+            int index = LatencyHistogram.bucketIndex(value);
+            Assert.assertTrue(index >= previous);
+            Assert.assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 1; i <= 10000; i++) {
+                    histogram.recordMicros(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(40000, histogram.getCount());
+        Assert.assertEquals(10000, histogram.getMaxMicros());
+        assertWithinRelativeError(5000, histogram.getValueAtPercentile(50));
+    }
+
+    private static void assertWithinRelativeError(long expected, long actual) {
+        Assert.assertEquals(expected, actual, expected * 0.02);
+    }
+}
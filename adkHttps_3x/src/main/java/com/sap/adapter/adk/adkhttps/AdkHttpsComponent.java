@@ -18,6 +18,9 @@
 package com.sap.adapter.adk.adkhttps;
 
 import com.sap.adapter.adk.adkhttps.exception.DuplicateConsumerException;
+import com.sap.adapter.adk.adkhttps.metrics.AdkHttpsMetrics;
+import com.sap.adapter.adk.common.cache.KeyMaterialCache;
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsDrainer;
 import org.apache.camel.Endpoint;
 import org.apache.camel.component.servlet.ServletComponent;
 import org.apache.camel.component.servlet.ServletConsumer;
@@ -26,7 +29,7 @@ import org.apache.camel.http.common.HttpConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Locale;
+import java.net.URI;
 import java.util.Map;
 
 /**
@@ -37,6 +40,7 @@ public class AdkHttpsComponent extends ServletComponent { //NOSONAR //it has mor
     private static final String SERVLET_NAME = "AdkHttpsConsumer";
     private static final Logger logger = LoggerFactory.getLogger(AdkHttpsComponent.class);
     private static final String SEPARATOR = "//";
+    static final String DIAGNOSTICS_THREAD_NAME = "AdkHttpsDiagnosticsDrainer";
 
     public AdkHttpsComponent() {
         new AdkHttpsComponent(ServletEndpoint.class);
@@ -58,14 +62,36 @@ public class AdkHttpsComponent extends ServletComponent { //NOSONAR //it has mor
         }
         String currentURI = getUriPart(uri);
         logger.info("Uri for endpoint : {}", currentURI);
-        duplicateContext = registry.checkDuplicateAndGetDuplicateContext(currentURI.toLowerCase(Locale.ENGLISH));
+        String contextName = getCamelContext().getName();
+        duplicateContext = registry.claim(currentURI, contextName);
         if (duplicateContext != null) {
             logger.error("Registry contains above uri.");
             throw new DuplicateConsumerException("Error occurred during starting bundle -'"
-                    + getCamelContext().getName() + "' : Http Address '"
+                    + contextName + "' : Http Address '"
                     + "' already registered for another iflow '" + duplicateContext + "'");
         }
-        return super.createEndpoint(uri, remaining, parameters);
+        for (Map.Entry<String, String> overlap : registry.findOverlappingUris(currentURI, contextName).entrySet()) {
+            logger.warn("Uri {} overlaps with uri {} of iflow {}, the more specific one takes precedence", currentURI,
+                    overlap.getKey(), overlap.getValue());
+        }
+        Endpoint endpoint;
+        try {
+            endpoint = super.createEndpoint(uri, remaining, parameters);
+        } catch (Exception e) {
+            registry.release(currentURI, contextName);
+            throw e;
+        }
+        if (endpoint instanceof AdkHttpsEndpoint) {
+            // released when the endpoint fails to start or is stopped, even if its consumer never connected
+            ((AdkHttpsEndpoint) endpoint).setClaimedUri(currentURI);
+        }
+        return endpoint;
+    }
+
+    @Override
+    protected ServletEndpoint createServletEndpoint(String endpointUri, ServletComponent component, URI httpUri)
+            throws Exception {
+        return new AdkHttpsEndpoint(endpointUri, component, httpUri);
     }
 
     @Override
@@ -73,7 +99,7 @@ public class AdkHttpsComponent extends ServletComponent { //NOSONAR //it has mor
         super.disconnect(consumer);
         AdkHttpsConsumerRegistry registry = AdkHttpsConsumerRegistry.getRegistry();
         String uri = getUriPart(consumer.getEndpoint().getHttpUri().toString());
-        registry.removeFromRegistry(uri);
+        registry.release(uri, getCamelContext().getName());
         logger.debug("Removing uri from registry : {} Registry: {}", uri, registry);
 
     }
@@ -89,6 +115,22 @@ public class AdkHttpsComponent extends ServletComponent { //NOSONAR //it has mor
         AdkHttpsConsumerRegistry.getRegistry().addToRegistry(uri, getCamelContext().getName());
     }
 
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        DiagnosticsDrainer.retainDefault(DIAGNOSTICS_THREAD_NAME);
+        KeyMaterialCache.retainDefault(AdkHttpsMetrics.JMX_DOMAIN);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        // the diagnostics thread is stopped, and the cached key material is dropped, with the last component of the
+        // bundle
+        DiagnosticsDrainer.releaseDefault();
+        KeyMaterialCache.releaseDefault();
+        super.doStop();
+    }
+
     private String getUriPart(String uri) {
         final String separator = (uri.contains(SEPARATOR)) ? SEPARATOR : ":";
         int index = uri.lastIndexOf(separator) + 1;
@@ -16,38 +16,54 @@
  */
 package com.sap.adapter.adk.adkhttps;
 
+import com.sap.adapter.adk.adkhttps.endpoint.PathTrieResolveConsumerStrategy;
 import com.sap.adapter.adk.adkhttps.exception.HttpResponseException;
-import com.sap.it.api.ITApiFactory;
+import com.sap.adapter.adk.adkhttps.exception.PayloadTooLargeException;
+import com.sap.adapter.adk.adkhttps.limit.AdaptiveConcurrencyLimiter;
+import com.sap.adapter.adk.adkhttps.metrics.AdkHttpsMetrics;
+import com.sap.adapter.adk.adkhttps.spool.BodySpooler;
+import com.sap.adapter.adk.adkhttps.spool.SpooledBody;
+import com.sap.adapter.adk.adkhttps.trace.InboundTraceCapture;
+import com.sap.adapter.adk.common.cache.KeyMaterialCache;
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+import com.sap.adapter.adk.common.metrics.OperationMetrics;
 import com.sap.it.api.exception.InvalidContextException;
-import com.sap.it.api.keystore.KeystoreService;
 import com.sap.it.api.keystore.exception.KeystoreException;
 import com.sap.it.api.msglog.adapter.AdapterMessageLogFactory;
 import com.sap.it.api.msglog.adapter.AdapterMessageLogWithStatus;
-import com.sap.it.api.msglog.adapter.AdapterTraceMessage;
-import com.sap.it.api.msglog.adapter.AdapterTraceMessageType;
-import com.sap.it.api.securestore.SecureStoreService;
 import com.sap.it.api.securestore.UserCredential;
 import com.sap.it.api.securestore.exception.SecureStoreException;
+import org.apache.camel.AsyncCallback;
 import org.apache.camel.Exchange;
+import org.apache.camel.Message;
 import org.apache.camel.component.servlet.CamelHttpTransportServlet;
 import org.apache.camel.http.common.HttpConsumer;
 import org.apache.camel.http.common.HttpHelper;
-import org.apache.camel.impl.DefaultCamelContext;
-import org.apache.camel.support.DefaultMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.security.Key;
 import java.security.KeyPair;
 import java.security.cert.Certificate;
+import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The Sample.com consumer.
@@ -56,11 +72,43 @@ public class AdkHttpsConsumer extends CamelHttpTransportServlet {
 
     private static final long serialVersionUID = 1L;
     private static final Logger logger = LoggerFactory.getLogger(AdkHttpsConsumer.class);
+    private static final Set<String> MASKED_HEADERS = new HashSet<>(Arrays.asList("authorization",
+            "proxy-authorization", "cookie"));
+    static final String CREDENTIAL_ALIAS = "APITest";
+    static final String PRIVATE_KEY_ALIAS = "picouser";
+    private final transient PathTrieResolveConsumerStrategy resolveConsumerStrategy = new PathTrieResolveConsumerStrategy();
+    private final transient Map<HttpConsumer, AdapterMessageLogFactory> messageLogFactories = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        setServletResolveConsumerStrategy(resolveConsumerStrategy);
+    }
+
+    @Override
+    public void connect(HttpConsumer consumer) {
+        super.connect(consumer);
+        // the servlet ignores consumers of other servlet names
+        if (getConsumers().get(consumer.getEndpoint().getEndpointUri()) == consumer) {
+            resolveConsumerStrategy.addConsumer(consumer);
+        }
+        // a (re)deployed iFlow picks up security material that was updated since it was cached
+        KeyMaterialCache keyMaterialCache = KeyMaterialCache.getDefault();
+        keyMaterialCache.invalidateCredential(CREDENTIAL_ALIAS);
+        keyMaterialCache.invalidateKeyMaterial(PRIVATE_KEY_ALIAS);
+    }
+
+    @Override
+    public void disconnect(HttpConsumer consumer) {
+        resolveConsumerStrategy.removeConsumer(consumer);
+        messageLogFactories.remove(consumer);
+        super.disconnect(consumer);
+    }
 
     @Override
     protected void service(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        logger.error("Service: {}", request); //$NON-NLS-1$
+        logger.debug("Service: {}", request); //$NON-NLS-1$
 
         // Is there a consumer registered for the request.
         HttpConsumer consumer = getServletResolveConsumerStrategy().resolve(request, getConsumers());
@@ -70,38 +118,85 @@ public class AdkHttpsConsumer extends CamelHttpTransportServlet {
             return;
         }
 
-        Enumeration<String> headerNames = request.getHeaderNames();
-        logger.debug("***************************************");
-        while (headerNames.hasMoreElements()) {
-            String headerName = headerNames.nextElement();
-            logger.error("Header - {}: {}", headerName, request.getHeader(headerName));
+        DiagnosticsRecorder diagnostics = getDiagnostics(consumer);
+        if (diagnostics != null && diagnostics.sample()) {
+            diagnostics.record("request", describeRequest(request));
+        }
+        long maxBodySize = getMaxBodySize(consumer);
+        if (maxBodySize > 0 && request.getContentLengthLong() > maxBodySize) {
+            // rejected before anything is read or an exchange is created
+            rejectTooLarge(request, response, maxBodySize);
+            return;
         }
-        logger.debug("***************************************");
-        Exchange exchange = consumer.getEndpoint().createExchange();
-        HttpHelper.setCharsetFromContentType(request.getContentType(), exchange);
-        DefaultMessage defaultMessage = new DefaultMessage(new DefaultCamelContext());
-        defaultMessage.setExchange(exchange);
-        exchange.setIn(defaultMessage);
+        OperationMetrics serviceMetrics = getServiceMetrics(consumer);
+        long start = serviceMetrics != null ? serviceMetrics.start() : 0L;
+        boolean async = false;
+        boolean failed = true;
+        RequestCompletion completion = new RequestCompletion();
+        try {
+            AdaptiveConcurrencyLimiter limiter = getConcurrencyLimiter(consumer);
+            if (limiter != null) {
+                // shed the request before its body is read or an exchange is created for it
+                if (!limiter.acquire()) {
+                    rejectOverloaded((AdkHttpsEndpoint) consumer.getEndpoint(), response);
+                    return;
+                }
+                completion.admitted(limiter);
+            }
 
-        // set context path as header
-        String contextPath = consumer.getEndpoint().getPath();
-        exchange.getIn().setHeader("CamelServletContextPath", contextPath); //$NON-NLS-1$
+            InputStream body = request.getInputStream();
+            BodySpooler bodySpooler = getBodySpooler(consumer);
+            if (bodySpooler != null) {
+                try {
+                    // the spool buffers and files are only taken by admitted requests; a body without a declared
+                    // length that turns out too large releases its permit as failed when the request completes
+                    completion.spooledBody = bodySpooler.spool(body, request.getContentLengthLong());
+                } catch (PayloadTooLargeException e) {
+                    rejectTooLarge(request, response, e.getMaxBodySize());
+                    return;
+                }
+                body = completion.spooledBody;
+            }
 
-        String httpPath = (String) exchange.getIn().getHeader(Exchange.HTTP_PATH);
-        // here we just remove the CamelServletContextPath part from the HTTP_PATH
-        if (httpPath != null && httpPath.startsWith(contextPath)) {
-            exchange.getIn().setHeader(Exchange.HTTP_PATH, httpPath.substring(contextPath.length()));
-        }
+            // the message created with the exchange is already bound to the endpoint's camel context
+            Exchange exchange = consumer.getEndpoint().createExchange();
+            HttpHelper.setCharsetFromContentType(request.getContentType(), exchange);
+            Message in = exchange.getIn();
+
+            // set context path as header
+            String contextPath = consumer.getEndpoint().getPath();
+            in.setHeader("CamelServletContextPath", contextPath); //$NON-NLS-1$
 
-        // get Adapter Message Log Factory
-        AdapterMessageLogFactory msgLogFactory = (AdapterMessageLogFactory) consumer.getEndpoint().getCamelContext()
-                .getRegistry().lookupByName(AdapterMessageLogFactory.class.getName());
-        addPublicApiHeaders(exchange);
-        try (AdapterMessageLogWithStatus msgLog = msgLogFactory.getMessageLogWithStatus(exchange,
-                "ADK HTTPS Incoming Message", "ADKHttpsSender", exchange.getExchangeId())) {
+            String httpPath = (String) in.getHeader(Exchange.HTTP_PATH);
+            // here we just remove the CamelServletContextPath part from the HTTP_PATH
+            if (httpPath != null && httpPath.startsWith(contextPath)) {
+                in.setHeader(Exchange.HTTP_PATH, httpPath.substring(contextPath.length()));
+            }
+
+            AdapterMessageLogFactory msgLogFactory = getMessageLogFactory(consumer);
+            addPublicApiHeaders(exchange);
+            AdapterMessageLogWithStatus msgLog = msgLogFactory.getMessageLogWithStatus(exchange,
+                    "ADK HTTPS Incoming Message", "ADKHttpsSender", exchange.getExchangeId());
+            completion.msgLog = msgLog;
 
             if (msgLog.isTraceActive()) {
-                writeTraceMessage(msgLog);
+                completion.trace = createTraceCapture(consumer, request, msgLog);
+                if (completion.spooledBody != null) {
+                    completion.trace.captureRead(completion.spooledBody);
+                    completion.spooledBody.reset();
+                } else {
+                    // the trace is taken from what the route reads, the body is not buffered for it: a part the
+                    // route does not read is missing from the trace
+                    body = completion.trace.capture(body, request.getContentLengthLong());
+                }
+            }
+            in.setBody(body);
+
+            if (consumer.getEndpoint().isAsync() && request.isAsyncSupported()) {
+                // the message log is closed and the metrics are recorded once the response is written
+                processAsync(consumer, exchange, completion, request, response, serviceMetrics, start);
+                async = true;
+                return;
             }
 
             try {
@@ -111,33 +206,173 @@ public class AdkHttpsConsumer extends CamelHttpTransportServlet {
                 logger.error("Error processing request", e);
                 exchange.setException(e);
             }
+            failed = exchange.getException() != null;
+            writeResponse(consumer, exchange, response);
+        } finally {
+            if (!async) {
+                stopMetrics(serviceMetrics, start, failed);
+                completion.complete(true, failed);
+            }
+        }
 
-            if (exchange.getException() != null) {
-                Exception exception = (Exception) ((exchange.getException().getCause() == null)
-                        ? exchange.getException()
-                        : exchange.getException().getCause());
-                StringBuilder errorMessage = new StringBuilder();
-                errorMessage.append("An internal server error occurred: ");
-                errorMessage.append(exception.getMessage()).append(".\n");
+    }
 
-                String mplId = (String) exchange.getProperty("SAP_MessageProcessingLogID");
-                errorMessage.append("The MPL ID for the failed message is : ").append(mplId).append("\n");
-                errorMessage.append("For more details please check tail LOG.");
-                exchange.setException(new HttpResponseException(errorMessage.toString()));
-            }
+    /**
+     * Releases the container thread while the exchange is processed, the response is written by the completion
+     * callback or, if the exchange takes longer than the async timeout, by the timeout listener.
+     */
+    void processAsync(HttpConsumer consumer, Exchange exchange, RequestCompletion completion,
+                      HttpServletRequest request, HttpServletResponse response,
+                      OperationMetrics serviceMetrics, long start) {
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(getAsyncTimeout(consumer));
+        AtomicBoolean answered = new AtomicBoolean();
+        asyncContext.addListener(new AsyncTimeoutListener(exchange, completion, answered, serviceMetrics, start));
 
-            String message = "Error during write of the response: ";
+        AsyncCallback callback = doneSync -> {
+            if (!answered.compareAndSet(false, true)) {
+                logger.warn("Exchange {} completed after the request was already answered", exchange.getExchangeId());
+                return;
+            }
+            boolean failed = exchange.getException() != null;
             try {
-                consumer.getBinding().writeResponse(exchange, response);
-            } catch (Exception e) {
-                logger.error(message, e);
-                ServletException servletException = new ServletException(message, e);
-                exchange.setException(servletException);
-                throw servletException;
+                writeResponse(consumer, exchange, response);
+            } catch (ServletException e) {
+                failed = true;
+                logger.debug("Response of exchange {} could not be written", exchange.getExchangeId());
+            } finally {
+                stopMetrics(serviceMetrics, start, failed);
+                completion.complete(true, failed);
+                asyncContext.complete();
             }
+        };
+        try {
+            consumer.getAsyncProcessor().process(exchange, callback);
+        } catch (Throwable e) { // NOSONAR
+            logger.error("Error processing request", e);
+            exchange.setException(e);
+            callback.done(true);
+        }
+    }
+
+    private void writeResponse(HttpConsumer consumer, Exchange exchange, HttpServletResponse response)
+            throws ServletException {
+        if (exchange.getException() != null) {
+            Exception exception = (Exception) ((exchange.getException().getCause() == null)
+                    ? exchange.getException()
+                    : exchange.getException().getCause());
+            StringBuilder errorMessage = new StringBuilder();
+            errorMessage.append("An internal server error occurred: ");
+            errorMessage.append(exception.getMessage()).append(".\n");
+
+            String mplId = (String) exchange.getProperty("SAP_MessageProcessingLogID");
+            errorMessage.append("The MPL ID for the failed message is : ").append(mplId).append("\n");
+            errorMessage.append("For more details please check tail LOG.");
+            exchange.setException(new HttpResponseException(errorMessage.toString()));
+        }
+
+        String message = "Error during write of the response: ";
+        try {
+            consumer.getBinding().writeResponse(exchange, response);
+        } catch (Exception e) {
+            logger.error(message, e);
+            ServletException servletException = new ServletException(message, e);
+            exchange.setException(servletException);
+            throw servletException;
+        }
+    }
+
+    /**
+     * @return the metrics the requests of the consumer are recorded in, null if its endpoint has none
+     */
+    private static OperationMetrics getServiceMetrics(HttpConsumer consumer) {
+        if (consumer.getEndpoint() instanceof AdkHttpsEndpoint) {
+            EndpointMetrics metrics = ((AdkHttpsEndpoint) consumer.getEndpoint()).getMetrics();
+            return metrics != null ? metrics.operation(AdkHttpsMetrics.SERVICE) : null;
+        }
+        return null;
+    }
+
+    private static void stopMetrics(OperationMetrics serviceMetrics, long start, boolean failed) {
+        if (serviceMetrics != null) {
+            serviceMetrics.stop(start, failed);
+        }
+    }
+
+    private static long getMaxBodySize(HttpConsumer consumer) {
+        if (consumer.getEndpoint() instanceof AdkHttpsEndpoint) {
+            return ((AdkHttpsEndpoint) consumer.getEndpoint()).getMaxBodySize();
+        }
+        return 0L;
+    }
+
+    private static AdaptiveConcurrencyLimiter getConcurrencyLimiter(HttpConsumer consumer) {
+        if (consumer.getEndpoint() instanceof AdkHttpsEndpoint) {
+            return ((AdkHttpsEndpoint) consumer.getEndpoint()).getConcurrencyLimiter();
+        }
+        return null;
+    }
+
+    private static void rejectOverloaded(AdkHttpsEndpoint endpoint, HttpServletResponse response) throws IOException {
+        // not logged above debug, shedding a burst would flood the log
+        logger.debug("Rejecting request to {}, the endpoint is at its concurrency limit", endpoint.getPath());
+        response.setHeader("Retry-After", String.valueOf(endpoint.getRetryAfter()));
+        response.sendError(endpoint.getOverloadStatusCode(), "The endpoint is overloaded");
+    }
 
+    private static BodySpooler getBodySpooler(HttpConsumer consumer) {
+        if (consumer.getEndpoint() instanceof AdkHttpsEndpoint) {
+            return ((AdkHttpsEndpoint) consumer.getEndpoint()).getBodySpooler();
         }
+        return null;
+    }
+
+    private static void rejectTooLarge(HttpServletRequest request, HttpServletResponse response, long maxBodySize)
+            throws IOException {
+        logger.warn("Rejecting request {} with a body of more than {} bytes", request.getRequestURI(), maxBodySize);
+        // the rest of the body is not read, the connection cannot be reused
+        response.setHeader("Connection", "close");
+        response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Payload Too Large");
+    }
+
+    private static long getAsyncTimeout(HttpConsumer consumer) {
+        if (consumer.getEndpoint() instanceof AdkHttpsEndpoint) {
+            return ((AdkHttpsEndpoint) consumer.getEndpoint()).getAsyncTimeout();
+        }
+        return AdkHttpsEndpoint.DEFAULT_ASYNC_TIMEOUT;
+    }
 
+    private AdapterMessageLogFactory getMessageLogFactory(HttpConsumer consumer) {
+        return messageLogFactories.computeIfAbsent(consumer, c -> (AdapterMessageLogFactory) c.getEndpoint()
+                .getCamelContext().getRegistry().lookupByName(AdapterMessageLogFactory.class.getName()));
+    }
+
+    private static DiagnosticsRecorder getDiagnostics(HttpConsumer consumer) {
+        if (consumer.getEndpoint() instanceof AdkHttpsEndpoint) {
+            return ((AdkHttpsEndpoint) consumer.getEndpoint()).getDiagnostics();
+        }
+        return null;
+    }
+
+    /**
+     * @return the request line and headers as captured for diagnostics, credentials are masked
+     */
+    static String describeRequest(HttpServletRequest request) {
+        StringBuilder description = new StringBuilder();
+        description.append(request.getMethod()).append(' ').append(request.getRequestURI()).append(", headers: {");
+        Enumeration<String> headerNames = request.getHeaderNames();
+        boolean first = true;
+        while (headerNames != null && headerNames.hasMoreElements()) {
+            String headerName = headerNames.nextElement();
+            if (!first) {
+                description.append(", ");
+            }
+            first = false;
+            description.append(headerName).append('=');
+            description.append(MASKED_HEADERS.contains(headerName.toLowerCase(Locale.ROOT))
+                    ? "***" : request.getHeader(headerName));
+        }
+        return description.append('}').toString();
     }
 
     private void addPublicApiHeaders(Exchange exchange) {
@@ -150,8 +385,7 @@ public class AdkHttpsConsumer extends CamelHttpTransportServlet {
     }
 
     private void checkSecureStoreService(Exchange exchange) throws InvalidContextException, SecureStoreException {
-        SecureStoreService secureStoreService = ITApiFactory.getService(SecureStoreService.class, null);
-        UserCredential userCredential = secureStoreService.getUserCredential("APITest");
+        UserCredential userCredential = KeyMaterialCache.getDefault().getUserCredential(CREDENTIAL_ALIAS);
         if (userCredential != null) {
             char[] password = userCredential.getPassword();
             String passPhrase = new String(password);
@@ -161,26 +395,26 @@ public class AdkHttpsConsumer extends CamelHttpTransportServlet {
             Map<String, String> credentialProperties = userCredential.getCredentialProperties();
             logger.debug("credentialProperties: {}", credentialProperties);
         } else {
-            logger.error("Error in Get UserCredential: {} not found", "APITest");
+            logger.error("Error in Get UserCredential: {} not found", CREDENTIAL_ALIAS);
         }
     }
 
     private void checkKeyStoreService(Exchange exchange) throws InvalidContextException, KeystoreException {
-        KeystoreService keystoreService = ITApiFactory.getService(KeystoreService.class, null);
-        String privateKey = "picouser";
-        Key key = keystoreService.getKey(privateKey);
+        KeyMaterialCache keyMaterialCache = KeyMaterialCache.getDefault();
+        String privateKey = PRIVATE_KEY_ALIAS;
+        Key key = keyMaterialCache.getKey(privateKey);
         if (key == null) {
             logger.error("Error in keystoreService while getting key: {}", privateKey);
         } else {
             exchange.setProperty("ADKPrivateKeyAlgorithm", key.getAlgorithm());
         }
-        Certificate certificate = keystoreService.getCertificate(privateKey);
+        Certificate certificate = keyMaterialCache.getCertificate(privateKey);
         if (certificate == null) {
             logger.error("Error in keystoreService while getting certificate: {}", privateKey);
         } else {
             exchange.setProperty("ADKCertificateAlgorithm", certificate.getPublicKey().getAlgorithm());
         }
-        KeyPair keyPair = keystoreService.getKeyPair(privateKey);
+        KeyPair keyPair = keyMaterialCache.getKeyPair(privateKey);
         if (keyPair == null) {
             logger.error("Error in keystoreService while getting keyPair: {}", privateKey);
         } else {
@@ -188,22 +422,138 @@ public class AdkHttpsConsumer extends CamelHttpTransportServlet {
         }
     }
 
-    private void writeTraceMessage(final AdapterMessageLogWithStatus msgLog) {
+    /**
+     * Answers requests whose exchange did not complete within the async timeout.
+     */
+    private static final class AsyncTimeoutListener implements AsyncListener {
 
-        // create header
-        Map<String, String> traceHeader = new HashMap<>();
-        traceHeader.put("traceHeader1", "traceHeaderValue1");
-        logger.debug("Entered trace blocked");
+        private final Exchange exchange;
+        private final RequestCompletion completion;
+        private final AtomicBoolean answered;
+        private final OperationMetrics serviceMetrics;
+        private final long start;
 
-        // create payload
-        byte[] payload = String.format("Trace Payload for type: %s", AdapterTraceMessageType.SENDER_INBOUND).getBytes(StandardCharsets.UTF_8);
+        AsyncTimeoutListener(Exchange exchange, RequestCompletion completion, AtomicBoolean answered,
+                             OperationMetrics serviceMetrics, long start) {
+            this.exchange = exchange;
+            this.completion = completion;
+            this.answered = answered;
+            this.serviceMetrics = serviceMetrics;
+            this.start = start;
+        }
 
-		// create trace message to write to the msg LOG
-        AdapterTraceMessage traceMsg = msgLog.createTraceMessage(AdapterTraceMessageType.SENDER_INBOUND, payload, false);
-        traceMsg.setHeaders(traceHeader);
-        msgLog.writeTrace(traceMsg);
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            if (!answered.compareAndSet(false, true)) {
+                return;
+            }
+            logger.error("Exchange {} did not complete within the async timeout", exchange.getExchangeId());
+            stopMetrics(serviceMetrics, start, true);
+            try {
+                ((HttpServletResponse) event.getAsyncContext().getResponse()).sendError(
+                        HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The request timed out");
+            } finally {
+                // the route may still read the body
+                completion.complete(false, true);
+                event.getAsyncContext().complete();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            if (!answered.compareAndSet(false, true)) {
+                return;
+            }
+            logger.error("Error in asynchronous request of exchange {}", exchange.getExchangeId(), event.getThrowable());
+            stopMetrics(serviceMetrics, start, true);
+            try {
+                completion.complete(false, true);
+            } finally {
+                event.getAsyncContext().complete();
+            }
+        }
 
-        logger.debug("Trace written");
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // the response was written
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // not restarted
+        }
+    }
+
+    private static InboundTraceCapture createTraceCapture(HttpConsumer consumer, HttpServletRequest request,
+                                                          AdapterMessageLogWithStatus msgLog) {
+        int maxTraceSize = AdkHttpsEndpoint.DEFAULT_MAX_TRACE_SIZE;
+        String truncationMarker = AdkHttpsEndpoint.DEFAULT_TRACE_TRUNCATION_MARKER;
+        if (consumer.getEndpoint() instanceof AdkHttpsEndpoint) {
+            AdkHttpsEndpoint endpoint = (AdkHttpsEndpoint) consumer.getEndpoint();
+            maxTraceSize = endpoint.getMaxTraceSize();
+            truncationMarker = endpoint.getTraceTruncationMarker();
+        }
+        return new InboundTraceCapture(msgLog, getTraceHeaders(request), request.getCharacterEncoding(), maxTraceSize,
+                truncationMarker);
+    }
+
+    static Map<String, String> getTraceHeaders(HttpServletRequest request) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        Enumeration<String> headerNames = request.getHeaderNames();
+        while (headerNames != null && headerNames.hasMoreElements()) {
+            String headerName = headerNames.nextElement();
+            headers.put(headerName, MASKED_HEADERS.contains(headerName.toLowerCase(Locale.ROOT))
+                    ? "***" : request.getHeader(headerName));
+        }
+        return headers;
+    }
+
+    /**
+     * What has to be done once a request is answered: the trace, if the request is traced, is written before the
+     * message log is closed, a spooled body is released and the request leaves the concurrency limit.
+     */
+    static final class RequestCompletion {
+
+        private AdapterMessageLogWithStatus msgLog;
+        private InboundTraceCapture trace;
+        private SpooledBody spooledBody;
+        private AdaptiveConcurrencyLimiter limiter;
+        private long admittedAt;
+
+        void admitted(AdaptiveConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+            this.admittedAt = System.nanoTime();
+        }
+
+        /**
+         * @param recycle whether the buffer of the spooled body may be reused, false if the exchange is still running
+         * @param failed  whether the request was not answered with the response of the route
+         */
+        void complete(boolean recycle, boolean failed) {
+            try {
+                closeMessageLog();
+            } finally {
+                if (spooledBody != null) {
+                    spooledBody.release(recycle);
+                }
+                if (limiter != null) {
+                    limiter.release(System.nanoTime() - admittedAt, failed);
+                }
+            }
+        }
+
+        private void closeMessageLog() {
+            if (msgLog == null) {
+                return;
+            }
+            try {
+                if (trace != null) {
+                    trace.write();
+                }
+            } finally {
+                msgLog.close();
+            }
+        }
     }
 
 }
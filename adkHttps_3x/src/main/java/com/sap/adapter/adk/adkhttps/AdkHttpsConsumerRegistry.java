@@ -1,28 +1,39 @@
 package com.sap.adapter.adk.adkhttps;
 
 import com.sap.adapter.adk.adkhttps.endpoint.EndpointUriUtil;
+import com.sap.adapter.adk.adkhttps.endpoint.PathTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Registry of the endpoint URIs of all deployed integration flows, used to reject an endpoint whose URI is
+ * already owned by another integration flow.
+ * <p>
+ * The registry is safe for concurrent deployments. Next to the URI owners it keeps the endpoint URIs per
+ * integration flow, which is updated on every change instead of being rebuilt on every read.
+ */
 public class AdkHttpsConsumerRegistry {
 
-    private static AdkHttpsConsumerRegistry registry;
+    private static final AdkHttpsConsumerRegistry registry = new AdkHttpsConsumerRegistry();
     private static final Logger logger = LoggerFactory.getLogger(AdkHttpsConsumerRegistry.class);
-    private final Map<String, String> uriMap;
+    private final ConcurrentMap<String, String> uriMap = new ConcurrentHashMap<>();
+    // integration flow id vs. immutable set of endpoint URIs, replaced on every change
+    private final ConcurrentMap<String, Set<String>> integrationFlowVsEndpointUris = new ConcurrentHashMap<>();
+    // URI patterns vs. integration flow id, detects templates that only differ in their variable names
+    private final PathTrie<String> uriPatterns = new PathTrie<>();
 
-
-    private AdkHttpsConsumerRegistry() {
-        uriMap = new HashMap<>();
+    AdkHttpsConsumerRegistry() {
     }
 
     public static AdkHttpsConsumerRegistry getRegistry() {
-        if (registry == null) {
-            registry = new AdkHttpsConsumerRegistry();
-        }
         return registry;
     }
 
@@ -30,32 +41,106 @@ public class AdkHttpsConsumerRegistry {
      * Provides a map of iflow id Vs end point Urls configured in Http Adapter
      * This is extracted from the registry which gets populated during iflow deployment
      *
-     * @return the map of
+     * @return an unmodifiable view of the map
      */
     public Map<String, Set<String>> getMapOfIntegrationFlowVsEndpointUris() {
-        return EndpointUriUtil.getMapOfIntegrationFlowVsEndpointUris(uriMap);
+        return Collections.unmodifiableMap(integrationFlowVsEndpointUris);
     }
 
+    /**
+     * Registers the URI for the integration flow unless it or an equivalent URI pattern is owned by another one.
+     *
+     * @return the integration flow that owns the URI, or null if it is owned by the given one now
+     */
+    public String claim(final String uri, final String contextName) {
+        String[] owner = new String[1];
+        uriMap.compute(normalize(uri), (key, current) -> {
+            if (current == null) {
+                String patternOwner = uriPatterns.putIfAbsent(key, contextName);
+                if (patternOwner != null && !patternOwner.equals(contextName)) {
+                    owner[0] = patternOwner;
+                    return null;
+                }
+                link(contextName, key);
+                return contextName;
+            }
+            if (!current.equals(contextName)) {
+                owner[0] = current;
+            }
+            return current;
+        });
+        return owner[0];
+    }
 
     public void addToRegistry(final String uri, final String contextName) {
-        uriMap.put(uri.toLowerCase(), contextName);
+        String owner = claim(uri, contextName);
+        if (owner != null) {
+            logger.warn("Uri {} is already registered for another iflow {}", uri, owner);
+        }
+    }
+
+    /**
+     * Removes the URI if it is owned by the given integration flow, a URI claimed by another one is kept.
+     *
+     * @return true if the URI was removed
+     */
+    public boolean release(final String uri, final String contextName) {
+        boolean[] released = new boolean[1];
+        uriMap.computeIfPresent(normalize(uri), (key, current) -> {
+            if (!current.equals(contextName)) {
+                return current;
+            }
+            uriPatterns.remove(key);
+            unlink(current, key);
+            released[0] = true;
+            return null;
+        });
+        return released[0];
     }
 
     public void removeFromRegistry(final String uri) {
-        uriMap.remove(uri.toLowerCase());
+        uriMap.computeIfPresent(normalize(uri), (key, current) -> {
+            uriPatterns.remove(key);
+            unlink(current, key);
+            return null;
+        });
+    }
+
+    /**
+     * @return the URIs of other integration flows that match some of the requests the given URI matches, with
+     * their integration flow
+     */
+    public Map<String, String> findOverlappingUris(final String uri, final String contextName) {
+        Map<String, String> overlaps = uriPatterns.findOverlaps(normalize(uri));
+        overlaps.values().removeIf(contextName::equals);
+        return overlaps;
     }
 
     public String checkDuplicateAndGetDuplicateContext(final String uri) {
-        final Set<String> uriSet = uriMap.keySet();
-        for (String uris : uriSet) {
-            logger.info("UriMap contains: {}", uris);
-        }
-        // Check complete url
-        if (uriSet.contains(uri)) {
-            return uriMap.get(uri);
-        }
-        logger.info("Current URI : {}", uri);
-        return null;
+        logger.debug("Current URI : {}", uri);
+        return uriMap.get(normalize(uri));
+    }
+
+    private void link(String contextName, String uri) {
+        String endpointUri = EndpointUriUtil.getEndpointUri(uri);
+        integrationFlowVsEndpointUris.compute(contextName, (key, uris) -> {
+            Set<String> updated = uris == null ? new HashSet<>() : new HashSet<>(uris);
+            updated.add(endpointUri);
+            return Collections.unmodifiableSet(updated);
+        });
+    }
+
+    private void unlink(String contextName, String uri) {
+        String endpointUri = EndpointUriUtil.getEndpointUri(uri);
+        integrationFlowVsEndpointUris.computeIfPresent(contextName, (key, uris) -> {
+            Set<String> updated = new HashSet<>(uris);
+            updated.remove(endpointUri);
+            return updated.isEmpty() ? null : Collections.unmodifiableSet(updated);
+        });
+    }
+
+    private static String normalize(String uri) {
+        return uri.toLowerCase(Locale.ENGLISH);
     }
 
 }
@@ -0,0 +1,319 @@
+package com.sap.adapter.adk.adkhttps;
+
+import com.sap.adapter.adk.adkhttps.limit.AdaptiveConcurrencyLimiter;
+import com.sap.adapter.adk.adkhttps.metrics.AdkHttpsMetrics;
+import com.sap.adapter.adk.adkhttps.spool.BodySpooler;
+import com.sap.adapter.adk.adkhttps.spool.BufferPool;
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+import org.apache.camel.component.servlet.ServletComponent;
+import org.apache.camel.component.servlet.ServletEndpoint;
+import org.apache.camel.spi.UriParam;
+
+import javax.servlet.http.HttpServletResponse;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Servlet endpoint with the settings specific to the adkHttps sender.
+ */
+public class AdkHttpsEndpoint extends ServletEndpoint {
+
+    static final long DEFAULT_ASYNC_TIMEOUT = 60000L;
+    static final int DEFAULT_MAX_TRACE_SIZE = 262144;
+    static final String DEFAULT_TRACE_TRUNCATION_MARKER = "...[truncated]";
+    static final int DEFAULT_SPOOL_THRESHOLD = 1048576;
+    static final int SPOOL_BUFFERS = 8;
+    static final int TOO_MANY_REQUESTS = 429;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "60000",
+            description = "Time in ms an asynchronously processed request may take before it is answered with 503, 0 disables the timeout")
+    private long asyncTimeout = DEFAULT_ASYNC_TIMEOUT;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "0",
+            description = "Share of requests whose request line and headers are captured for diagnostics, between 0 (off) and 1 (all)")
+    private double diagnosticsSamplingRate;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "256",
+            description = "Number of most recent diagnostic samples kept for the dump")
+    private int diagnosticsBufferSize = 256;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "262144",
+            description = "Maximum number of body bytes written to the MPL trace of a request")
+    private int maxTraceSize = DEFAULT_MAX_TRACE_SIZE;
+
+    @UriParam(label = "consumer,advanced", defaultValue = DEFAULT_TRACE_TRUNCATION_MARKER,
+            description = "Text appended to the traced body if the body exceeds the maximum trace size")
+    private String traceTruncationMarker = DEFAULT_TRACE_TRUNCATION_MARKER;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "false",
+            description = "Whether the request body is read completely before the route is called, large bodies are spooled"
+                    + " to a memory-mapped temp file instead of the heap")
+    private boolean streamingIntake;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "1048576",
+            description = "Size in bytes up to which a request body is kept in a pooled heap buffer in streaming intake mode")
+    private int spoolThreshold = DEFAULT_SPOOL_THRESHOLD;
+
+    @UriParam(label = "consumer,advanced",
+            description = "Directory of the temp files of spooled request bodies, the default temp directory if not set")
+    private String spoolDirectory;
+
+    @UriParam(label = "consumer", defaultValue = "0",
+            description = "Maximum size in bytes of a request body, larger requests are rejected with 413, 0 for no limit."
+                    + " Without streaming intake only the declared Content-Length is checked")
+    private long maxBodySize;
+
+    @UriParam(label = "consumer", defaultValue = "0",
+            description = "Maximum number of requests processed concurrently, the actual limit adapts to the measured latency"
+                    + " below it. 0 disables the admission control")
+    private int maxConcurrentRequests;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "10",
+            description = "Maximum number of requests waiting for admission once the concurrency limit is reached")
+    private int maxQueuedRequests = 10;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "100",
+            description = "Time in ms a request waits for admission before it is rejected")
+    private long queueTimeout = 100L;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "503", enums = "429,503",
+            description = "Status code of rejected requests")
+    private int overloadStatusCode = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+
+    @UriParam(label = "consumer,advanced", defaultValue = "1",
+            description = "Seconds sent in the Retry-After header of rejected requests")
+    private int retryAfter = 1;
+
+    private EndpointMetrics metrics;
+
+    private DiagnosticsRecorder diagnostics;
+
+    private BodySpooler bodySpooler;
+
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private String claimedUri;
+
+    public AdkHttpsEndpoint() {
+    }
+
+    public AdkHttpsEndpoint(String endPointURI, ServletComponent component, URI httpUri) throws URISyntaxException {
+        super(endPointURI, component, httpUri);
+    }
+
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public void setAsyncTimeout(long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    public int getMaxTraceSize() {
+        return maxTraceSize;
+    }
+
+    public void setMaxTraceSize(int maxTraceSize) {
+        this.maxTraceSize = maxTraceSize;
+    }
+
+    public String getTraceTruncationMarker() {
+        return traceTruncationMarker;
+    }
+
+    public void setTraceTruncationMarker(String traceTruncationMarker) {
+        this.traceTruncationMarker = traceTruncationMarker;
+    }
+
+    public boolean isStreamingIntake() {
+        return streamingIntake;
+    }
+
+    public void setStreamingIntake(boolean streamingIntake) {
+        this.streamingIntake = streamingIntake;
+    }
+
+    public int getSpoolThreshold() {
+        return spoolThreshold;
+    }
+
+    public void setSpoolThreshold(int spoolThreshold) {
+        this.spoolThreshold = spoolThreshold;
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    public void setMaxQueuedRequests(int maxQueuedRequests) {
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    public void setQueueTimeout(long queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
+    public int getOverloadStatusCode() {
+        return overloadStatusCode;
+    }
+
+    public void setOverloadStatusCode(int overloadStatusCode) {
+        this.overloadStatusCode = overloadStatusCode;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public double getDiagnosticsSamplingRate() {
+        return diagnosticsSamplingRate;
+    }
+
+    public void setDiagnosticsSamplingRate(double diagnosticsSamplingRate) {
+        this.diagnosticsSamplingRate = diagnosticsSamplingRate;
+    }
+
+    public int getDiagnosticsBufferSize() {
+        return diagnosticsBufferSize;
+    }
+
+    public void setDiagnosticsBufferSize(int diagnosticsBufferSize) {
+        this.diagnosticsBufferSize = diagnosticsBufferSize;
+    }
+
+    /**
+     * @return the diagnostics recorder of this endpoint, only available while the endpoint is started
+     */
+    public DiagnosticsRecorder getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return the spooler of the request bodies in streaming intake mode, null if the endpoint is stopped or the mode
+     * is off
+     */
+    public BodySpooler getBodySpooler() {
+        return bodySpooler;
+    }
+
+    /**
+     * @return the admission control of this endpoint, null if the endpoint is stopped or has no concurrency limit
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * @return the metrics of this endpoint, only available while the endpoint is started
+     */
+    public EndpointMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param claimedUri the URI this endpoint owns in the {@link AdkHttpsConsumerRegistry}
+     */
+    void setClaimedUri(String claimedUri) {
+        this.claimedUri = claimedUri;
+    }
+
+    String getClaimedUri() {
+        return claimedUri;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        try {
+            startServices();
+        } catch (Exception e) {
+            // the route does not start, so its consumer never releases the URI
+            releaseClaim();
+            throw e;
+        }
+    }
+
+    private void startServices() throws Exception {
+        if (overloadStatusCode != TOO_MANY_REQUESTS && overloadStatusCode != HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+            throw new IllegalArgumentException("overloadStatusCode must be 429 or 503: " + overloadStatusCode);
+        }
+        super.doStart();
+        metrics = new AdkHttpsMetrics(getCamelContext().getName(), getEndpointBaseUri());
+        metrics.register();
+        diagnostics = new DiagnosticsRecorder(AdkHttpsMetrics.JMX_DOMAIN, getCamelContext().getName(), getEndpointBaseUri(),
+                diagnosticsSamplingRate, diagnosticsBufferSize);
+        diagnostics.start();
+        if (streamingIntake) {
+            bodySpooler = new BodySpooler(new BufferPool(spoolThreshold, SPOOL_BUFFERS), maxBodySize, spoolDirectory);
+        }
+        if (maxConcurrentRequests > 0) {
+            concurrencyLimiter = new AdaptiveConcurrencyLimiter(getCamelContext().getName(), getEndpointBaseUri(),
+                    maxConcurrentRequests, maxQueuedRequests, queueTimeout);
+            concurrencyLimiter.start();
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        bodySpooler = null;
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.close();
+            concurrencyLimiter = null;
+        }
+        if (metrics != null) {
+            metrics.close();
+            metrics = null;
+        }
+        if (diagnostics != null) {
+            diagnostics.close();
+            diagnostics = null;
+        }
+        releaseClaim();
+        super.doStop();
+    }
+
+    @Override
+    protected void doShutdown() throws Exception {
+        // an endpoint that was never started is shut down without being stopped
+        releaseClaim();
+        super.doShutdown();
+    }
+
+    private void releaseClaim() {
+        if (claimedUri != null && getCamelContext() != null) {
+            AdkHttpsConsumerRegistry.getRegistry().release(claimedUri, getCamelContext().getName());
+        }
+    }
+}
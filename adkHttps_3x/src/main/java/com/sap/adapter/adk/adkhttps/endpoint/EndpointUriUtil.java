@@ -1,10 +1,5 @@
 package com.sap.adapter.adk.adkhttps.endpoint;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
 public class EndpointUriUtil {
 
     private static final String ADAPTER_ENDPOINT_PREFIX = "adkHttps";
@@ -15,32 +10,9 @@ public class EndpointUriUtil {
     }
 
     /**
-     * Constructs a map of integration flow id Vs entry point URLs from a map of endpoint URL vs integration flow id
-     * @return a map of integration flow id Vs Set<endpointUri>
+     * @return the endpoint URI relative to the worker node
      */
-    public static Map<String, Set<String>> getMapOfIntegrationFlowVsEndpointUris(Map<String, String> mapOfUriVsIntegrationFlowId) {
-        Map<String, Set<String>> integrationFlowVsEndpointUris = new HashMap<>();
-        for (Map.Entry<String, String> entry : mapOfUriVsIntegrationFlowId.entrySet()) {
-            String endpointUriWithNoPrefix = entry.getKey();
-            String integrationFlowId = entry.getValue();
-            String endpointUri = getEndPointUri(endpointUriWithNoPrefix);
-            linkUriToIntegrationFlowId(integrationFlowVsEndpointUris, integrationFlowId, endpointUri);
-        }
-        return integrationFlowVsEndpointUris;
-    }
-
-    private static void linkUriToIntegrationFlowId(Map<String, Set<String>> integrationFlowVsEndpointUris, String integrationFlowId,
-                                                   String endpointUri) {
-        if (integrationFlowVsEndpointUris.get(integrationFlowId) == null) {
-            Set<String> endpointUris = new HashSet<>();
-            endpointUris.add(endpointUri);
-            integrationFlowVsEndpointUris.put(integrationFlowId, endpointUris);
-        } else {
-            integrationFlowVsEndpointUris.get(integrationFlowId).add(endpointUri);
-        }
-    }
-
-    private static String getEndPointUri(String endpointUriWithNoPrefix) {
+    public static String getEndpointUri(String endpointUriWithNoPrefix) {
         return getUriRelativeToWorkerNode(endpointUriWithNoPrefix);
     }
 
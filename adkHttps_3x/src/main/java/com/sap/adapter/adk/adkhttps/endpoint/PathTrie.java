@@ -0,0 +1,254 @@
+package com.sap.adapter.adk.adkhttps.endpoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Segment trie of URI path patterns, resolving a request path in time proportional to its length.
+ * <p>
+ * A pattern segment is either a literal, a template like {@code {id}} matching any single segment, or a trailing
+ * {@code *} matching the rest of the path including nothing. Literals are matched case insensitive and take
+ * precedence over templates, templates over wildcards.
+ * <p>
+ * The trie is immutable, changes build a new one that replaces it, so lookups never lock.
+ */
+public class PathTrie<T> {
+
+    private static final String TEMPLATE = "{}";
+    private static final String WILDCARD = "*";
+
+    private volatile Node<T> root = new Node<>(Collections.emptyMap(), null, null, null);
+
+    /**
+     * Registers the value for the pattern unless an equivalent pattern is registered already.
+     *
+     * @return the value of the equivalent pattern, or null if the given value was registered
+     */
+    public synchronized T putIfAbsent(String pattern, T value) {
+        Entry<T> existing = find(pattern);
+        if (existing != null) {
+            return existing.value;
+        }
+        root = insert(root, parse(pattern), 0, new Entry<>(pattern, value));
+        return null;
+    }
+
+    /**
+     * Registers the value for the pattern, replacing the one of an equivalent pattern.
+     */
+    public synchronized void put(String pattern, T value) {
+        root = insert(root, parse(pattern), 0, new Entry<>(pattern, value));
+    }
+
+    /**
+     * Removes the pattern, an equivalent pattern registered with a different spelling is kept.
+     */
+    public synchronized void remove(String pattern) {
+        Entry<T> existing = find(pattern);
+        if (existing != null && existing.pattern.equals(pattern)) {
+            root = insert(root, parse(pattern), 0, null);
+        }
+    }
+
+    /**
+     * @return the value of the most specific pattern that matches the path, or null if none matches
+     */
+    public T resolve(String path) {
+        Entry<T> entry = resolve(root, split(path), 0);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * @return the registered patterns with their values that match at least one path the given pattern matches
+     */
+    public Map<String, T> findOverlaps(String pattern) {
+        List<Entry<T>> overlaps = new ArrayList<>();
+        collectOverlaps(root, parse(pattern), 0, overlaps);
+        Map<String, T> result = new LinkedHashMap<>();
+        for (Entry<T> entry : overlaps) {
+            result.put(entry.pattern, entry.value);
+        }
+        return result;
+    }
+
+    private Entry<T> find(String pattern) {
+        Node<T> node = root;
+        for (String segment : parse(pattern)) {
+            node = node.child(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.entry;
+    }
+
+    private static <T> Node<T> insert(Node<T> node, String[] segments, int index, Entry<T> entry) {
+        Node<T> current = node != null ? node : new Node<>(Collections.emptyMap(), null, null, null);
+        if (index == segments.length) {
+            return new Node<>(current.literals, current.template, current.wildcard, entry);
+        }
+        String segment = segments[index];
+        Node<T> child = insert(current.child(segment), segments, index + 1, entry);
+        if (child.isEmpty()) {
+            child = null;
+        }
+        if (TEMPLATE.equals(segment)) {
+            return new Node<>(current.literals, child, current.wildcard, current.entry);
+        }
+        if (WILDCARD.equals(segment)) {
+            return new Node<>(current.literals, current.template, child, current.entry);
+        }
+        Map<String, Node<T>> literals = new HashMap<>(current.literals);
+        if (child == null) {
+            literals.remove(segment);
+        } else {
+            literals.put(segment, child);
+        }
+        return new Node<>(literals, current.template, current.wildcard, current.entry);
+    }
+
+    private static <T> Entry<T> resolve(Node<T> node, String[] segments, int index) {
+        if (index == segments.length) {
+            if (node.entry != null) {
+                return node.entry;
+            }
+            return node.wildcard != null ? node.wildcard.entry : null;
+        }
+        Node<T> literal = node.literals.get(segments[index]);
+        if (literal != null) {
+            Entry<T> entry = resolve(literal, segments, index + 1);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        if (node.template != null) {
+            Entry<T> entry = resolve(node.template, segments, index + 1);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return node.wildcard != null ? node.wildcard.entry : null;
+    }
+
+    private static <T> void collectOverlaps(Node<T> node, String[] segments, int index, List<Entry<T>> overlaps) {
+        if (node.wildcard != null) {
+            overlaps.add(node.wildcard.entry);
+        }
+        if (index == segments.length) {
+            if (node.entry != null) {
+                overlaps.add(node.entry);
+            }
+            return;
+        }
+        String segment = segments[index];
+        if (WILDCARD.equals(segment)) {
+            collectAll(node, overlaps);
+            return;
+        }
+        if (TEMPLATE.equals(segment)) {
+            for (Node<T> literal : node.literals.values()) {
+                collectOverlaps(literal, segments, index + 1, overlaps);
+            }
+        } else {
+            Node<T> literal = node.literals.get(segment);
+            if (literal != null) {
+                collectOverlaps(literal, segments, index + 1, overlaps);
+            }
+        }
+        if (node.template != null) {
+            collectOverlaps(node.template, segments, index + 1, overlaps);
+        }
+    }
+
+    private static <T> void collectAll(Node<T> node, List<Entry<T>> entries) {
+        if (node.entry != null) {
+            entries.add(node.entry);
+        }
+        if (node.wildcard != null) {
+            entries.add(node.wildcard.entry);
+        }
+        for (Node<T> literal : node.literals.values()) {
+            collectAll(literal, entries);
+        }
+        if (node.template != null) {
+            collectAll(node.template, entries);
+        }
+    }
+
+    private static String[] parse(String pattern) {
+        String[] segments = split(pattern);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                segments[i] = TEMPLATE;
+            } else if (WILDCARD.equals(segment)) {
+                if (i != segments.length - 1) {
+                    throw new IllegalArgumentException("Wildcard is only allowed as last segment: " + pattern);
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static String[] split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                segments.add(path.substring(start, end).toLowerCase(Locale.ENGLISH));
+            }
+            start = end + 1;
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static final class Entry<T> {
+
+        private final String pattern;
+        private final T value;
+
+        Entry(String pattern, T value) {
+            this.pattern = pattern;
+            this.value = value;
+        }
+    }
+
+    private static final class Node<T> {
+
+        private final Map<String, Node<T>> literals;
+        private final Node<T> template;
+        private final Node<T> wildcard;
+        private final Entry<T> entry;
+
+        Node(Map<String, Node<T>> literals, Node<T> template, Node<T> wildcard, Entry<T> entry) {
+            this.literals = literals;
+            this.template = template;
+            this.wildcard = wildcard;
+            this.entry = entry;
+        }
+
+        Node<T> child(String segment) {
+            if (TEMPLATE.equals(segment)) {
+                return template;
+            }
+            if (WILDCARD.equals(segment)) {
+                return wildcard;
+            }
+            return literals.get(segment);
+        }
+
+        boolean isEmpty() {
+            return entry == null && template == null && wildcard == null && literals.isEmpty();
+        }
+    }
+}
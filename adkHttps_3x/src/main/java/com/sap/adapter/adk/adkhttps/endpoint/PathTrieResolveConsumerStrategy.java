@@ -0,0 +1,49 @@
+package com.sap.adapter.adk.adkhttps.endpoint;
+
+import org.apache.camel.http.common.HttpConsumer;
+import org.apache.camel.http.common.HttpServletResolveConsumerStrategy;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves the consumer of a request through a {@link PathTrie} of the connected consumer paths instead of
+ * scanning all consumers.
+ */
+public class PathTrieResolveConsumerStrategy extends HttpServletResolveConsumerStrategy {
+
+    private final PathTrie<HttpConsumer> consumers = new PathTrie<>();
+
+    public void addConsumer(HttpConsumer consumer) {
+        consumers.put(getPattern(consumer), consumer);
+    }
+
+    public void removeConsumer(HttpConsumer consumer) {
+        consumers.remove(getPattern(consumer));
+    }
+
+    @Override
+    public HttpConsumer resolve(HttpServletRequest request, Map<String, HttpConsumer> consumerMap) {
+        String path = request.getPathInfo();
+        if (path == null) {
+            return null;
+        }
+        HttpConsumer consumer = consumers.resolve(path);
+        if (consumer == null || !isMethodAllowed(consumer, request.getMethod())) {
+            return null;
+        }
+        return consumer;
+    }
+
+    private static boolean isMethodAllowed(HttpConsumer consumer, String method) {
+        String restrict = consumer.getEndpoint().getHttpMethodRestrict();
+        return restrict == null || method == null
+                || restrict.toUpperCase(Locale.ENGLISH).contains(method.toUpperCase(Locale.ENGLISH));
+    }
+
+    private static String getPattern(HttpConsumer consumer) {
+        String path = consumer.getPath();
+        return consumer.getEndpoint().isMatchOnUriPrefix() ? path + "/*" : path;
+    }
+}
@@ -0,0 +1,18 @@
+package com.sap.adapter.adk.adkhttps.exception;
+
+import java.io.IOException;
+
+public class PayloadTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long maxBodySize;
+
+    public PayloadTooLargeException(long maxBodySize) {
+        super("The request body exceeds the maximum size of " + maxBodySize + " bytes");
+        this.maxBodySize = maxBodySize;
+    }
+
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+}
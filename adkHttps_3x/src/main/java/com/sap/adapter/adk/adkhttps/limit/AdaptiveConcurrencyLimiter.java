@@ -0,0 +1,294 @@
+package com.sap.adapter.adk.adkhttps.limit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control of the requests of one endpoint with a limit that adapts to the measured latency (AIMD).
+ * <p>
+ * A request is admitted with {@link #acquire()} while fewer requests than the limit are in flight. Otherwise it waits
+ * in a bounded queue for at most the queue timeout and is rejected if no request completes in time, so a burst is
+ * shed instead of piling up on the container threads. Every admitted request has to be finished with
+ * {@link #release(long, boolean)}, passing its latency and whether it failed:
+ * <ul>
+ * <li>a latency above {@link #LATENCY_TOLERANCE} times the baseline, the lowest latency of the recent successful
+ * requests, decreases the limit by {@link #BACKOFF_RATIO}, unless it exceeds the baseline by less than
+ * {@link #MIN_LATENCY_INCREASE} ms, which is jitter rather than load. After a decrease the limit is only decreased
+ * again by the slow request after as many slow requests as the new limit, so the requests that were slowed down by
+ * the same overload decrease it once and not each on their own</li>
+ * <li>otherwise the limit grows by one per limit successful requests, as long as at least half of it is used</li>
+ * </ul>
+ * Failed requests, such as rejected bodies or route errors, are often answered much faster than the route works,
+ * so they do not lower the baseline and do not grow the limit; a slow failure still decreases it. The limit stays
+ * between 1 and the maximum limit. The baseline is renewed every {@link #BASELINE_WINDOW} successful requests, so a
+ * lasting change of the latency does not keep the limit down.
+ * <p>
+ * While started, the limiter is exposed as MBean {@code com.sap.adapter.adk.adkhttps:type=ConcurrencyLimit,iflow=...,
+ * uri=...}.
+ */
+public class AdaptiveConcurrencyLimiter implements AdaptiveConcurrencyLimiterMBean, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    static final String JMX_DOMAIN = "com.sap.adapter.adk.adkhttps";
+    static final double LATENCY_TOLERANCE = 2d;
+    static final double BACKOFF_RATIO = 0.9d;
+    static final int BASELINE_WINDOW = 500;
+    static final long MIN_LATENCY_INCREASE = 5L;
+    private static final int MIN_LIMIT = 1;
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final String iflow;
+    private final String uri;
+    private final int maxQueued;
+    private final long queueTimeoutNanos;
+    private final MBeanServer mBeanServer;
+    private final long minLatencyIncreaseNanos = TimeUnit.MILLISECONDS.toNanos(MIN_LATENCY_INCREASE);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private int maxLimit;
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private int releasesUntilDecrease;
+    private ObjectName objectName;
+
+    /**
+     * @param maxLimit     upper bound of the limit, the limit starts there
+     * @param maxQueued    maximum number of requests waiting for admission, 0 to reject at once
+     * @param queueTimeout time in ms a request waits for admission at most
+     */
+    public AdaptiveConcurrencyLimiter(String iflow, String uri, int maxLimit, int maxQueued, long queueTimeout) {
+        this(iflow, uri, maxLimit, maxQueued, queueTimeout, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    AdaptiveConcurrencyLimiter(String iflow, String uri, int maxLimit, int maxQueued, long queueTimeout,
+                               MBeanServer mBeanServer) {
+        this.iflow = iflow;
+        this.uri = uri;
+        this.maxQueued = Math.max(maxQueued, 0);
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(queueTimeout, 0L));
+        this.mBeanServer = mBeanServer;
+        this.maxLimit = Math.max(maxLimit, MIN_LIMIT);
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * @return true if the request is admitted, false if it has to be rejected
+     */
+    public boolean acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                return admit();
+            }
+            if (queued >= maxQueued || queueTimeoutNanos == 0) {
+                return reject();
+            }
+            queued++;
+            try {
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return reject();
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                return admit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return reject();
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finishes an admitted request and adapts the limit to its latency.
+     *
+     * @param failed whether the request failed or was rejected after admission, its latency is not representative
+     *               of the route then
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            boolean used = inFlight * 2 >= (int) limit;
+            inFlight--;
+            adapt(latencyNanos, failed, used);
+            if (inFlight < (int) limit) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt(long latencyNanos, boolean failed, boolean used) {
+        if (!failed) {
+            baselineNanos = Math.min(baselineNanos, latencyNanos);
+            windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+            if (++windowSamples >= BASELINE_WINDOW) {
+                baselineNanos = windowMinNanos;
+                windowMinNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+        if (baselineNanos != Long.MAX_VALUE && latencyNanos > baselineNanos * LATENCY_TOLERANCE
+                && latencyNanos - baselineNanos > minLatencyIncreaseNanos) {
+            if (releasesUntilDecrease == 0) {
+                limit = Math.max(MIN_LIMIT, Math.floor(limit * BACKOFF_RATIO));
+                releasesUntilDecrease = (int) limit;
+            } else {
+                releasesUntilDecrease--;
+            }
+        } else if (used && !failed) {
+            limit = Math.min(maxLimit, limit + 1d / limit);
+        }
+    }
+
+    private boolean admit() {
+        inFlight++;
+        admitted.increment();
+        return true;
+    }
+
+    private boolean reject() {
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Registers the MBean.
+     */
+    public synchronized void start() {
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=ConcurrencyLimit,iflow="
+                    + ObjectName.quote(String.valueOf(iflow)) + ",uri=" + ObjectName.quote(String.valueOf(uri)));
+            if (mBeanServer.isRegistered(name)) {
+                // left over by an endpoint of the same iFlow and URI that was not stopped cleanly
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            LOG.warn("Could not register the concurrency limit of {}: {}", uri, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (objectName != null) {
+            try {
+                mBeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOG.warn("Could not unregister the concurrency limit of {}: {}", uri, e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public String getIflow() {
+        return iflow;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMaxLimit() {
+        lock.lock();
+        try {
+            return maxLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setMaxLimit(int maxLimit) {
+        lock.lock();
+        try {
+            this.maxLimit = Math.max(maxLimit, MIN_LIMIT);
+            limit = Math.min(limit, this.maxLimit);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    @Override
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public double getBaselineLatency() {
+        lock.lock();
+        try {
+            return baselineNanos == Long.MAX_VALUE ? 0d : baselineNanos / NANOS_PER_MILLI;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.sap.adapter.adk.adkhttps.limit;
+
+/**
+ * JMX view of the admission control of one endpoint.
+ */
+public interface AdaptiveConcurrencyLimiterMBean {
+
+    String getIflow();
+
+    String getUri();
+
+    /**
+     * @return the number of requests currently admitted concurrently, adapted to the measured latency
+     */
+    int getLimit();
+
+    /**
+     * @return the upper bound of the limit
+     */
+    int getMaxLimit();
+
+    void setMaxLimit(int maxLimit);
+
+    int getInFlight();
+
+    int getQueued();
+
+    int getMaxQueued();
+
+    long getAdmittedCount();
+
+    long getRejectedCount();
+
+    /**
+     * @return the lowest latency measured recently in ms, the reference for detecting overload
+     */
+    double getBaselineLatency();
+}
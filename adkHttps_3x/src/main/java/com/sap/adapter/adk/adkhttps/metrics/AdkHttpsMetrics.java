@@ -0,0 +1,25 @@
+package com.sap.adapter.adk.adkhttps.metrics;
+
+import com.sap.adapter.adk.common.metrics.EndpointMetrics;
+
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+
+/**
+ * The metrics of an adkHttps endpoint, registered as
+ * {@code com.sap.adapter.adk.adkhttps:type=EndpointMetrics,iflow=...,uri=...,operation=...}.
+ */
+public class AdkHttpsMetrics extends EndpointMetrics {
+
+    public static final String JMX_DOMAIN = "com.sap.adapter.adk.adkhttps";
+
+    public static final String SERVICE = "service";
+
+    public AdkHttpsMetrics(String iflow, String uri) {
+        this(iflow, uri, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    AdkHttpsMetrics(String iflow, String uri, MBeanServer mBeanServer) {
+        super(JMX_DOMAIN, iflow, uri, mBeanServer);
+    }
+}
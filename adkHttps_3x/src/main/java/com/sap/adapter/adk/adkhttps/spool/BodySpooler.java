@@ -0,0 +1,154 @@
+package com.sap.adapter.adk.adkhttps.spool;
+
+import com.sap.adapter.adk.adkhttps.exception.PayloadTooLargeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads request bodies into {@link SpooledBody SpooledBodies}.
+ * <p>
+ * Bodies up to the buffer size of the pool stay in a pooled heap buffer. The buffer is taken from the smallest size
+ * class that holds the declared length, or, if the length is unknown, grows through the size classes while the body
+ * is read. Larger bodies, and bodies whose declared length already exceeds the buffer size, are written to a temp file
+ * that is memory-mapped, so their content is kept off the heap. A pooled buffer is used to copy them.
+ */
+public class BodySpooler {
+
+    static final String TEMP_FILE_PREFIX = "adkhttps-body-";
+    static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final BufferPool pool;
+    private final long maxBodySize;
+    private final Path directory;
+
+    /**
+     * @param pool        pool of the in-memory buffers, its buffer size is the spool threshold
+     * @param maxBodySize maximum number of bytes of a body, 0 for no limit
+     * @param directory   directory of the temp files, null for the default temp directory
+     */
+    public BodySpooler(BufferPool pool, long maxBodySize, String directory) {
+        this.pool = pool;
+        this.maxBodySize = Math.max(maxBodySize, 0L);
+        this.directory = directory == null || directory.isEmpty() ? null : Paths.get(directory);
+    }
+
+    /**
+     * Reads the body completely.
+     *
+     * @param contentLength declared length of the body, -1 if unknown
+     * @throws PayloadTooLargeException if the body is longer than the maximum body size, nothing of it is kept
+     */
+    public SpooledBody spool(InputStream body, long contentLength) throws IOException {
+        checkSize(contentLength);
+        if (contentLength > pool.getBufferSize()) {
+            byte[] buffer = pool.acquire();
+            try {
+                return new SpooledBody(spoolToFile(body, buffer, 0, -1));
+            } finally {
+                pool.release(buffer);
+            }
+        }
+        // the buffer is sized from the declared length, for an unknown length it starts small and grows
+        byte[] buffer = pool.acquire(contentLength > 0 ? (int) contentLength : 1);
+        boolean pooled = false;
+        try {
+            int length = 0;
+            while (true) {
+                length = fill(body, buffer, length);
+                checkSize(length);
+                int next = length < buffer.length ? -1 : body.read();
+                if (next < 0) {
+                    pooled = true;
+                    return new SpooledBody(new SpooledBody.HeapContent(pool, buffer, length));
+                }
+                if (buffer.length >= pool.getBufferSize()) {
+                    return new SpooledBody(spoolToFile(body, buffer, length, next));
+                }
+                byte[] larger = pool.acquire(buffer.length + 1);
+                System.arraycopy(buffer, 0, larger, 0, length);
+                pool.release(buffer);
+                buffer = larger;
+                buffer[length++] = (byte) next;
+            }
+        } finally {
+            if (!pooled) {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    private SpooledBody.MappedContent spoolToFile(InputStream body, byte[] buffer, int buffered, int next)
+            throws IOException {
+        Path file = directory != null ? Files.createTempFile(directory, TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX)
+                : Files.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+        boolean spooled = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = buffered;
+            writeFully(channel, buffer, buffered);
+            if (next >= 0) {
+                length++;
+                checkSize(length);
+                buffer[0] = (byte) next;
+                writeFully(channel, buffer, 1);
+            }
+            int read;
+            while ((read = fill(body, buffer, 0)) > 0) {
+                length += read;
+                checkSize(length);
+                writeFully(channel, buffer, read);
+            }
+            // the mappings stay valid after the channel is closed
+            int segmentCount = (int) ((length + SpooledBody.MappedContent.SEGMENT_SIZE - 1)
+                    >>> SpooledBody.MappedContent.SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long position = i * SpooledBody.MappedContent.SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(SpooledBody.MappedContent.SEGMENT_SIZE, length - position));
+            }
+            spooled = true;
+            return new SpooledBody.MappedContent(file, segments, length);
+        } finally {
+            if (!spooled) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void checkSize(long length) throws PayloadTooLargeException {
+        if (maxBodySize > 0 && length > maxBodySize) {
+            throw new PayloadTooLargeException(maxBodySize);
+        }
+    }
+
+    /**
+     * @param length number of bytes already in the buffer
+     * @return the number of bytes in the buffer, less than the buffer size only at the end of the body
+     */
+    private static int fill(InputStream body, byte[] buffer, int length) throws IOException {
+        int read;
+        while (length < buffer.length && (read = body.read(buffer, length, buffer.length - length)) >= 0) {
+            length += read;
+        }
+        return length;
+    }
+
+    private static void writeFully(FileChannel channel, byte[] buffer, int length) throws IOException {
+        ByteBuffer source = ByteBuffer.wrap(buffer, 0, length);
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+}
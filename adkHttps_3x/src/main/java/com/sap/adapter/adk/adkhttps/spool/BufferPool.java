@@ -0,0 +1,101 @@
+package com.sap.adapter.adk.adkhttps.spool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of heap buffers in size classes.
+ * <p>
+ * The classes start at {@link #MIN_BUFFER_SIZE} bytes by default and double up to the maximum buffer size, so a small
+ * body only takes a small buffer. At most {@code maxPooled} released buffers are kept per class, buffers released beyond that
+ * are left to the garbage collector. Acquiring never blocks, a new buffer is allocated if the class is empty.
+ */
+public class BufferPool {
+
+    static final int MIN_BUFFER_SIZE = 8192;
+
+    private final int bufferSize;
+    private final int[] classSizes;
+    private final BlockingQueue<byte[]>[] buffers;
+
+    /**
+     * @param bufferSize size of the largest buffers
+     * @param maxPooled  number of released buffers kept per size class
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this(bufferSize, MIN_BUFFER_SIZE, maxPooled);
+    }
+
+    /**
+     * @param bufferSize    size of the largest buffers
+     * @param minBufferSize size of the smallest buffers
+     * @param maxPooled     number of released buffers kept per size class
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int bufferSize, int minBufferSize, int maxPooled) {
+        if (bufferSize <= 0 || minBufferSize <= 0) {
+            throw new IllegalArgumentException("buffer sizes must be positive: " + minBufferSize + ", " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        int classes = 1;
+        for (long size = minBufferSize; size < bufferSize; size <<= 1) {
+            classes++;
+        }
+        classSizes = new int[classes];
+        buffers = new BlockingQueue[classes];
+        for (int i = 0; i < classes; i++) {
+            classSizes[i] = i == classes - 1 ? bufferSize : minBufferSize << i;
+            buffers[i] = new ArrayBlockingQueue<>(Math.max(maxPooled, 1));
+        }
+    }
+
+    /**
+     * @return a buffer of the largest size
+     */
+    public byte[] acquire() {
+        return acquire(bufferSize);
+    }
+
+    /**
+     * @param minSize number of bytes needed, at most the buffer size
+     * @return a buffer of the smallest class that holds the given number of bytes
+     */
+    public byte[] acquire(int minSize) {
+        int index = indexOf(minSize);
+        byte[] buffer = buffers[index].poll();
+        return buffer != null ? buffer : new byte[classSizes[index]];
+    }
+
+    /**
+     * Returns a buffer acquired from this pool. The caller must not use the buffer afterwards.
+     */
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length <= bufferSize) {
+            int index = indexOf(buffer.length);
+            if (classSizes[index] == buffer.length) {
+                buffers[index].offer(buffer);
+            }
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    int getPooled() {
+        int pooled = 0;
+        for (BlockingQueue<byte[]> queue : buffers) {
+            pooled += queue.size();
+        }
+        return pooled;
+    }
+
+    private int indexOf(int size) {
+        for (int i = 0; i < classSizes.length - 1; i++) {
+            if (size <= classSizes[i]) {
+                return i;
+            }
+        }
+        return classSizes.length - 1;
+    }
+}
@@ -0,0 +1,241 @@
+package com.sap.adapter.adk.adkhttps.spool;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.StreamCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Request body read completely by {@link BodySpooler}, either held in a pooled heap buffer or in a memory-mapped temp
+ * file.
+ * <p>
+ * The body can be read repeatedly, {@link #reset()} and {@link #copy(Exchange)} do not copy the content. Closing the
+ * stream does not free anything, the content stays readable until {@link #release(boolean)} is called once the
+ * exchange is done.
+ */
+public class SpooledBody extends InputStream implements StreamCache {
+
+    private final Content content;
+    private final byte[] single = new byte[1];
+    private long position;
+
+    SpooledBody(Content content) {
+        this.content = content;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= content.length) {
+            return -1;
+        }
+        int read = (int) Math.min(len, content.length - position);
+        content.get(position, b, off, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public synchronized long skip(long n) {
+        long skipped = Math.max(0L, Math.min(n, content.length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public synchronized int available() {
+        return (int) Math.min(content.length - position, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Rewinds to the beginning of the body, as required by {@link StreamCache#reset()}.
+     */
+    @Override
+    public synchronized void reset() {
+        position = 0L;
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        content.writeTo(os);
+    }
+
+    @Override
+    public StreamCache copy(Exchange exchange) {
+        return new SpooledBody(content);
+    }
+
+    @Override
+    public boolean inMemory() {
+        return content.inMemory();
+    }
+
+    @Override
+    public long length() {
+        return content.length;
+    }
+
+    @Override
+    public void close() {
+        // the content is released with the exchange, the route may read the body again
+    }
+
+    /**
+     * Frees the content of this body and of all its copies. Only the first call has an effect.
+     *
+     * @param recycle whether an in-memory buffer may be reused, false if the body might still be read
+     */
+    public void release(boolean recycle) {
+        content.release(recycle);
+    }
+
+    abstract static class Content {
+
+        final long length;
+        private boolean released;
+
+        Content(long length) {
+            this.length = length;
+        }
+
+        abstract boolean inMemory();
+
+        abstract void get(long position, byte[] b, int off, int len) throws IOException;
+
+        abstract void writeTo(OutputStream os) throws IOException;
+
+        abstract void free(boolean recycle);
+
+        final void checkReadable() throws IOException {
+            if (released) {
+                throw new IOException("The request body was already released");
+            }
+        }
+
+        final synchronized void release(boolean recycle) {
+            if (!released) {
+                released = true;
+                free(recycle);
+            }
+        }
+    }
+
+    /**
+     * Body held in a buffer of the pool.
+     */
+    static final class HeapContent extends Content {
+
+        private final BufferPool pool;
+        private final byte[] buffer;
+
+        HeapContent(BufferPool pool, byte[] buffer, int length) {
+            super(length);
+            this.pool = pool;
+            this.buffer = buffer;
+        }
+
+        @Override
+        boolean inMemory() {
+            return true;
+        }
+
+        @Override
+        void get(long position, byte[] b, int off, int len) throws IOException {
+            checkReadable();
+            System.arraycopy(buffer, (int) position, b, off, len);
+        }
+
+        @Override
+        void writeTo(OutputStream os) throws IOException {
+            checkReadable();
+            os.write(buffer, 0, (int) length);
+        }
+
+        @Override
+        void free(boolean recycle) {
+            if (recycle) {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Body spooled to a temp file that is mapped in segments of {@link #SEGMENT_SIZE} bytes.
+     */
+    static final class MappedContent extends Content {
+
+        static final int SEGMENT_SHIFT = 30;
+        static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+        private static final int WRITE_CHUNK_SIZE = 65536;
+        private static final Logger LOG = LoggerFactory.getLogger(MappedContent.class);
+
+        private final Path file;
+        private final MappedByteBuffer[] segments;
+
+        MappedContent(Path file, MappedByteBuffer[] segments, long length) {
+            super(length);
+            this.file = file;
+            this.segments = segments;
+        }
+
+        @Override
+        boolean inMemory() {
+            return false;
+        }
+
+        @Override
+        void get(long position, byte[] b, int off, int len) throws IOException {
+            checkReadable();
+            while (len > 0) {
+                // every read works on its own view, the copies of the body read concurrently
+                ByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+                segment.position((int) (position & (SEGMENT_SIZE - 1)));
+                int read = Math.min(len, segment.remaining());
+                segment.get(b, off, read);
+                position += read;
+                off += read;
+                len -= read;
+            }
+        }
+
+        @Override
+        void writeTo(OutputStream os) throws IOException {
+            byte[] chunk = new byte[(int) Math.min(WRITE_CHUNK_SIZE, Math.max(length, 1L))];
+            for (long position = 0; position < length; position += chunk.length) {
+                int len = (int) Math.min(chunk.length, length - position);
+                get(position, chunk, 0, len);
+                os.write(chunk, 0, len);
+            }
+        }
+
+        @Override
+        void free(boolean recycle) {
+            // the mapping is unmapped by the garbage collector, on Unix the file can be deleted while it is mapped
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.warn("Could not delete the spooled request body {}: {}", file, e.getMessage());
+                file.toFile().deleteOnExit();
+            }
+        }
+
+        Path getFile() {
+            return file;
+        }
+    }
+}
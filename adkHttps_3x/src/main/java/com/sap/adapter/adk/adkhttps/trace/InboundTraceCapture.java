@@ -0,0 +1,168 @@
+package com.sap.adapter.adk.adkhttps.trace;
+
+import com.sap.it.api.msglog.adapter.AdapterMessageLog;
+import com.sap.it.api.msglog.adapter.AdapterTraceMessage;
+import com.sap.it.api.msglog.adapter.AdapterTraceMessageType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Captures the inbound request for the MPL trace.
+ * <p>
+ * A spooled body is captured at intake by {@link #captureRead(InputStream)}, so its trace does not depend on the
+ * route. A body that is not spooled is wrapped by {@link #capture(InputStream, long)}, which copies at most
+ * {@code maxTraceSize} bytes of what the route reads into the trace buffer: if the route reads only part of the body,
+ * or none of it, the trace holds only that part. The body itself is not buffered, so a traced large payload costs at
+ * most {@code maxTraceSize} bytes of additional heap. The trace message is written by {@link #write()} once the
+ * exchange is done, with the truncation marker appended if more was read than captured.
+ */
+public class InboundTraceCapture {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final AdapterMessageLog msgLog;
+    private final Map<String, String> headers;
+    private final String encoding;
+    private final int maxTraceSize;
+    private final byte[] truncationMarker;
+    private ByteArrayOutputStream payload;
+    private long bytesRead;
+    private boolean written;
+
+    /**
+     * @param headers          the request headers to add to the trace
+     * @param encoding         the charset of the body, null if unknown
+     * @param maxTraceSize     maximum number of body bytes in the trace
+     * @param truncationMarker text appended to the payload if the body was longer than the maximum trace size
+     */
+    public InboundTraceCapture(AdapterMessageLog msgLog, Map<String, String> headers, String encoding, int maxTraceSize,
+                               String truncationMarker) {
+        this.msgLog = msgLog;
+        this.headers = headers;
+        this.encoding = encoding;
+        this.maxTraceSize = Math.max(maxTraceSize, 0);
+        this.truncationMarker = truncationMarker != null ? truncationMarker.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    /**
+     * @param contentLength length of the body if known, -1 otherwise
+     * @return the body that copies what is read from it into the trace, unread parts of the body are not traced
+     */
+    public InputStream capture(InputStream body, long contentLength) {
+        int initialSize = contentLength > 0 ? (int) Math.min(contentLength, maxTraceSize) : DEFAULT_BUFFER_SIZE;
+        synchronized (this) {
+            payload = new ByteArrayOutputStream(Math.max(Math.min(initialSize, maxTraceSize), 0));
+        }
+        return new CapturingInputStream(body);
+    }
+
+    /**
+     * Captures a body that was already read completely, it is read up to the maximum trace size. The caller rewinds
+     * the body before it is passed to the route.
+     */
+    public void captureRead(InputStream body) throws IOException {
+        synchronized (this) {
+            payload = new ByteArrayOutputStream(maxTraceSize);
+        }
+        // one byte more than the maximum tells whether the marker has to be appended
+        byte[] buffer = new byte[(int) Math.min(maxTraceSize + 1L, DEFAULT_BUFFER_SIZE)];
+        long captured = 0;
+        int read;
+        while (captured <= maxTraceSize
+                && (read = body.read(buffer, 0, (int) Math.min(buffer.length, maxTraceSize + 1L - captured))) >= 0) {
+            captured(buffer, 0, read);
+            captured += read;
+        }
+    }
+
+    synchronized void captured(byte[] buffer, int offset, int length) {
+        if (written || payload == null) {
+            return;
+        }
+        int remaining = (int) Math.max(0L, maxTraceSize - bytesRead);
+        if (remaining > 0) {
+            payload.write(buffer, offset, Math.min(length, remaining));
+        }
+        bytesRead += length;
+    }
+
+    /**
+     * Writes the trace message with the body read so far. Only the first call writes the trace.
+     */
+    public synchronized void write() {
+        if (written) {
+            return;
+        }
+        written = true;
+        AdapterTraceMessage traceMessage = msgLog.createTraceMessage(AdapterTraceMessageType.SENDER_INBOUND,
+                getPayload(), false);
+        traceMessage.setHeaders(headers);
+        if (encoding != null) {
+            traceMessage.setEncoding(encoding);
+        }
+        msgLog.writeTrace(traceMessage);
+    }
+
+    synchronized byte[] getPayload() {
+        if (payload == null) {
+            return new byte[0];
+        }
+        if (bytesRead <= maxTraceSize) {
+            return payload.toByteArray();
+        }
+        byte[] captured = payload.toByteArray();
+        byte[] truncated = Arrays.copyOf(captured, captured.length + truncationMarker.length);
+        System.arraycopy(truncationMarker, 0, truncated, captured.length, truncationMarker.length);
+        return truncated;
+    }
+
+    private final class CapturingInputStream extends FilterInputStream {
+
+        private final byte[] single = new byte[1];
+
+        CapturingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                captured(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes have to be read to end up in the trace
+            byte[] buffer = new byte[(int) Math.min(Math.max(n, 0L), DEFAULT_BUFFER_SIZE)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.sap.adapter.adk.adkhttps;
+
+import com.sap.adapter.adk.adkhttps.limit.AdaptiveConcurrencyLimiter;
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.Exchange;
+import org.apache.camel.http.common.DefaultHttpBinding;
+import org.apache.camel.http.common.HttpConsumer;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.AsyncProcessorSupport;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AdkHttpsConsumerAsyncTest {
+
+    private static final long ASYNC_TIMEOUT = 5000L;
+
+    private DefaultCamelContext context;
+    private AdkHttpsEndpoint endpoint;
+    private AdaptiveConcurrencyLimiter limiter;
+    private final CapturingProcessor processor = new CapturingProcessor();
+    private final AtomicInteger writtenResponses = new AtomicInteger();
+    private final AtomicInteger completedContexts = new AtomicInteger();
+    private final AtomicInteger sentError = new AtomicInteger();
+    private long timeout;
+    private AsyncListener listener;
+    private AsyncContext asyncContext;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new DefaultCamelContext();
+        context.addComponent("adkHttps", new AdkHttpsComponent());
+        endpoint = (AdkHttpsEndpoint) context.getEndpoint("adkHttps:/asyncAnswer");
+        endpoint.setAsyncTimeout(ASYNC_TIMEOUT);
+        endpoint.setHttpBinding(new DefaultHttpBinding() {
+            @Override
+            public void writeResponse(Exchange exchange, HttpServletResponse response) {
+                writtenResponses.incrementAndGet();
+            }
+        });
+        limiter = new AdaptiveConcurrencyLimiter("iflow", "/asyncAnswer", 4, 0, 0L);
+    }
+
+    @After
+    public void tearDown() {
+        endpoint.shutdown();
+        context.stop();
+    }
+
+    @Test
+    public void testCompletionAnswersWithRouteResponse() throws Exception {
+        Exchange exchange = processAsync();
+
+        Assert.assertEquals(ASYNC_TIMEOUT, timeout);
+        Assert.assertEquals("the container thread must not wait for the route", 0, writtenResponses.get());
+        Assert.assertEquals(1, limiter.getInFlight());
+
+        processor.callback.done(false);
+
+        Assert.assertNull(exchange.getException());
+        Assert.assertEquals(1, writtenResponses.get());
+        Assert.assertEquals(1, completedContexts.get());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testTimeoutAnswersServiceUnavailable() throws Exception {
+        processAsync();
+
+        listener.onTimeout(new AsyncEvent(asyncContext));
+
+        Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, sentError.get());
+        Assert.assertEquals(0, writtenResponses.get());
+        Assert.assertEquals(1, completedContexts.get());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLateCompletionAfterTimeoutIsIgnored() throws Exception {
+        processAsync();
+        listener.onTimeout(new AsyncEvent(asyncContext));
+
+        processor.callback.done(false);
+
+        Assert.assertEquals("the timed out request must not be answered twice", 0, writtenResponses.get());
+        Assert.assertEquals(1, completedContexts.get());
+        Assert.assertEquals("the request must leave the limit once", 0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testTimeoutAfterCompletionIsIgnored() throws Exception {
+        processAsync();
+        processor.callback.done(false);
+
+        listener.onTimeout(new AsyncEvent(asyncContext));
+        listener.onError(new AsyncEvent(asyncContext, new IllegalStateException("connection reset")));
+
+        Assert.assertEquals(0, sentError.get());
+        Assert.assertEquals(1, writtenResponses.get());
+        Assert.assertEquals(1, completedContexts.get());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testFailingRouteIsAnsweredOnce() throws Exception {
+        Exchange exchange = processAsync();
+        exchange.setException(new IllegalStateException("route failed"));
+
+        processor.callback.done(false);
+        processor.callback.done(false);
+
+        Assert.assertEquals(1, writtenResponses.get());
+        Assert.assertEquals(1, completedContexts.get());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    private Exchange processAsync() throws Exception {
+        HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    if ("sendError".equals(method.getName())) {
+                        sentError.set((Integer) args[0]);
+                    }
+                    return null;
+                });
+        asyncContext = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AsyncContext.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setTimeout":
+                            timeout = (Long) args[0];
+                            return null;
+                        case "addListener":
+                            listener = (AsyncListener) args[0];
+                            return null;
+                        case "complete":
+                            completedContexts.incrementAndGet();
+                            return null;
+                        case "getResponse":
+                            return response;
+                        default:
+                            return null;
+                    }
+                });
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) ->
+                        "startAsync".equals(method.getName()) ? asyncContext : null);
+
+        HttpConsumer consumer = (HttpConsumer) endpoint.createConsumer(processor);
+        Exchange exchange = new DefaultExchange(context);
+        Assert.assertTrue(limiter.acquire());
+        AdkHttpsConsumer.RequestCompletion completion = new AdkHttpsConsumer.RequestCompletion();
+        completion.admitted(limiter);
+
+        new AdkHttpsConsumer().processAsync(consumer, exchange, completion, request, response, null, System.nanoTime());
+        Assert.assertNotNull("the exchange must be handed to the route", processor.callback);
+        Assert.assertNotNull(listener);
+        return exchange;
+    }
+
+    /**
+     * A route that completes only when the test calls its callback.
+     */
+    private static final class CapturingProcessor extends AsyncProcessorSupport {
+
+        private AsyncCallback callback;
+
+        @Override
+        public boolean process(Exchange exchange, AsyncCallback callback) {
+            this.callback = callback;
+            return false;
+        }
+    }
+}
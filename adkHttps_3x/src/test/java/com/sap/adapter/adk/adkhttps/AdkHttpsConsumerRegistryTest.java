@@ -0,0 +1,161 @@
+package com.sap.adapter.adk.adkhttps;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AdkHttpsConsumerRegistryTest {
+
+    private static final int THREADS = 16;
+    private static final int ENDPOINTS = 5000;
+
+    @Test
+    public void testClaimReturnsOwner() {
+        AdkHttpsConsumerRegistry registry = new AdkHttpsConsumerRegistry();
+
+        Assert.assertNull(registry.claim("/Orders", "iflow1"));
+        Assert.assertNull("Claiming the own uri again should succeed", registry.claim("/orders", "iflow1"));
+        Assert.assertEquals("iflow1", registry.claim("/ORDERS", "iflow2"));
+        Assert.assertEquals("iflow1", registry.checkDuplicateAndGetDuplicateContext("/orders"));
+
+        Map<String, Set<String>> uris = registry.getMapOfIntegrationFlowVsEndpointUris();
+        Assert.assertEquals(1, uris.size());
+        Assert.assertTrue(uris.get("iflow1").contains("/adkHttps/orders"));
+
+        registry.removeFromRegistry("/Orders");
+        Assert.assertNull(registry.checkDuplicateAndGetDuplicateContext("/orders"));
+        Assert.assertTrue(registry.getMapOfIntegrationFlowVsEndpointUris().isEmpty());
+        Assert.assertNull(registry.claim("/orders", "iflow2"));
+    }
+
+    @Test
+    public void testReleaseKeepsUriOfOtherOwner() {
+        AdkHttpsConsumerRegistry registry = new AdkHttpsConsumerRegistry();
+        Assert.assertNull(registry.claim("/orders", "iflow1"));
+
+        Assert.assertFalse(registry.release("/Orders", "iflow2"));
+        Assert.assertEquals("iflow1", registry.checkDuplicateAndGetDuplicateContext("/orders"));
+        Assert.assertTrue(registry.release("/Orders", "iflow1"));
+        Assert.assertNull(registry.checkDuplicateAndGetDuplicateContext("/orders"));
+        Assert.assertTrue(registry.getMapOfIntegrationFlowVsEndpointUris().isEmpty());
+    }
+
+    @Test
+    public void testEndpointThatFailsToStartReleasesUri() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        context.addComponent("adkHttps", new AdkHttpsComponent());
+        AdkHttpsConsumerRegistry registry = AdkHttpsConsumerRegistry.getRegistry();
+
+        AdkHttpsEndpoint endpoint = (AdkHttpsEndpoint) context.getEndpoint("adkHttps:/claimOnFailure");
+        Assert.assertEquals(context.getName(), registry.checkDuplicateAndGetDuplicateContext("/claimonfailure"));
+        endpoint.setOverloadStatusCode(500);
+        try {
+            endpoint.start();
+            Assert.fail("the endpoint must not start with an invalid overload status code");
+        } catch (RuntimeException e) {
+            // the route does not start
+        }
+
+        Assert.assertNull(registry.checkDuplicateAndGetDuplicateContext("/claimonfailure"));
+    }
+
+    @Test
+    public void testStoppedEndpointReleasesUri() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        context.addComponent("adkHttps", new AdkHttpsComponent());
+        AdkHttpsConsumerRegistry registry = AdkHttpsConsumerRegistry.getRegistry();
+
+        AdkHttpsEndpoint endpoint = (AdkHttpsEndpoint) context.getEndpoint("adkHttps:/claimOnStop");
+        Assert.assertEquals("/claimOnStop", endpoint.getClaimedUri());
+        endpoint.shutdown();
+
+        Assert.assertNull(registry.checkDuplicateAndGetDuplicateContext("/claimonstop"));
+    }
+
+    @Test
+    public void testConcurrentClaimsHaveSingleOwner() throws Exception {
+        AdkHttpsConsumerRegistry registry = new AdkHttpsConsumerRegistry();
+        AtomicInteger owners = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (int i = 0; i < ENDPOINTS; i++) {
+                if (registry.claim("/shared/" + i, "iflow" + thread) == null) {
+                    owners.incrementAndGet();
+                }
+            }
+        });
+
+        Assert.assertEquals(ENDPOINTS, owners.get());
+        int indexed = 0;
+        for (Map.Entry<String, Set<String>> entry : registry.getMapOfIntegrationFlowVsEndpointUris().entrySet()) {
+            for (String uri : entry.getValue()) {
+                String owner = registry.checkDuplicateAndGetDuplicateContext(uri.substring("/adkHttps".length()));
+                Assert.assertEquals(entry.getKey(), owner);
+                indexed++;
+            }
+        }
+        Assert.assertEquals(ENDPOINTS, indexed);
+    }
+
+    @Test
+    public void testConcurrentDeployAndUndeploy() throws Exception {
+        AdkHttpsConsumerRegistry registry = new AdkHttpsConsumerRegistry();
+        runConcurrently(thread -> {
+            String contextName = "iflow" + (thread % 4);
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < ENDPOINTS / THREADS; i++) {
+                    registry.addToRegistry("/t" + thread + "/e" + i, contextName);
+                }
+                for (int i = 0; i < ENDPOINTS / THREADS; i++) {
+                    registry.removeFromRegistry("/t" + thread + "/e" + i);
+                }
+            }
+            // leave one endpoint per thread deployed
+            registry.addToRegistry("/t" + thread + "/last", contextName);
+        });
+
+        Map<String, Set<String>> uris = registry.getMapOfIntegrationFlowVsEndpointUris();
+        Assert.assertEquals(4, uris.size());
+        int deployed = 0;
+        for (Set<String> endpointUris : uris.values()) {
+            deployed += endpointUris.size();
+        }
+        Assert.assertEquals(THREADS, deployed);
+    }
+
+    private interface Task {
+        void run(int thread);
+    }
+
+    private void runConcurrently(Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
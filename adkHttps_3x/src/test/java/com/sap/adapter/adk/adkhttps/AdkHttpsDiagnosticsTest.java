@@ -0,0 +1,46 @@
+package com.sap.adapter.adk.adkhttps;
+
+import com.sap.adapter.adk.adkhttps.metrics.AdkHttpsMetrics;
+import com.sap.adapter.adk.common.diagnostics.DiagnosticsRecorder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdkHttpsDiagnosticsTest {
+
+    @Test
+    public void testDrainerThreadStopsWithComponent() throws Exception {
+        DefaultCamelContext context = new DefaultCamelContext();
+        AdkHttpsComponent component = new AdkHttpsComponent();
+        component.setCamelContext(context);
+        component.start();
+        try {
+            Assert.assertTrue(isRunning(AdkHttpsComponent.DIAGNOSTICS_THREAD_NAME));
+        } finally {
+            component.stop();
+        }
+        for (int i = 0; i < 50 && isRunning(AdkHttpsComponent.DIAGNOSTICS_THREAD_NAME); i++) {
+            Thread.sleep(20);
+        }
+        Assert.assertFalse(isRunning(AdkHttpsComponent.DIAGNOSTICS_THREAD_NAME));
+    }
+
+    @Test
+    public void testRecorderIsExposedUnderAdkHttpsDomain() throws Exception {
+        DiagnosticsRecorder recorder = new DiagnosticsRecorder(AdkHttpsMetrics.JMX_DOMAIN, "Test-iFlow", "adkHttps:/test",
+                1d, 16);
+        Assert.assertEquals(AdkHttpsMetrics.JMX_DOMAIN, recorder.getObjectName().getDomain());
+        recorder.record("request", "POST /test");
+        Assert.assertEquals(1, recorder.getLastSamples(16).size());
+        recorder.close();
+    }
+
+    private static boolean isRunning(String threadName) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (threadName.equals(thread.getName()) && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+package com.sap.adapter.adk.adkhttps;
+
+import com.sap.adapter.adk.adkhttps.metrics.AdkHttpsMetrics;
+import com.sap.adapter.adk.common.cache.KeyMaterialCache;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class AdkHttpsKeyMaterialCacheTest {
+
+    @Test
+    public void testCacheIsExposedWhileComponentIsStarted() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(AdkHttpsMetrics.JMX_DOMAIN + ":type=KeyMaterialCache");
+        AdkHttpsComponent component = new AdkHttpsComponent();
+        component.setCamelContext(new DefaultCamelContext());
+        component.start();
+        try {
+            Assert.assertTrue(mBeanServer.isRegistered(name));
+            Assert.assertEquals(name, KeyMaterialCache.getDefault().getObjectName());
+            Assert.assertEquals(0L, mBeanServer.getAttribute(name, "HitCount"));
+            Assert.assertEquals(0, mBeanServer.getAttribute(name, "Size"));
+            mBeanServer.invoke(name, "invalidateCredential", new Object[]{AdkHttpsConsumer.CREDENTIAL_ALIAS},
+                    new String[]{String.class.getName()});
+        } finally {
+            component.stop();
+        }
+        Assert.assertFalse(mBeanServer.isRegistered(name));
+    }
+}
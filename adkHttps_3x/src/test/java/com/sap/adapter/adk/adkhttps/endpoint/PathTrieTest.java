@@ -0,0 +1,71 @@
+package com.sap.adapter.adk.adkhttps.endpoint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class PathTrieTest {
+
+    @Test
+    public void testResolvePrecedence() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/orders", "orders");
+        trie.put("/orders/{id}", "order");
+        trie.put("/orders/new", "newOrder");
+        trie.put("/files/*", "files");
+
+        Assert.assertEquals("orders", trie.resolve("/orders"));
+        Assert.assertEquals("orders", trie.resolve("/Orders/"));
+        Assert.assertEquals("order", trie.resolve("/orders/4711"));
+        Assert.assertEquals("newOrder", trie.resolve("/orders/NEW"));
+        Assert.assertNull(trie.resolve("/orders/4711/items"));
+        Assert.assertEquals("files", trie.resolve("/files"));
+        Assert.assertEquals("files", trie.resolve("/files/a/b/c"));
+        Assert.assertNull(trie.resolve("/unknown"));
+    }
+
+    @Test
+    public void testBacktracksToTemplate() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/a/b/c", "literal");
+        trie.put("/a/{x}/d", "template");
+
+        Assert.assertEquals("literal", trie.resolve("/a/b/c"));
+        Assert.assertEquals("template", trie.resolve("/a/b/d"));
+    }
+
+    @Test
+    public void testPutIfAbsentAndRemove() {
+        PathTrie<String> trie = new PathTrie<>();
+        Assert.assertNull(trie.putIfAbsent("/orders/{id}", "iflow1"));
+        Assert.assertEquals("iflow1", trie.putIfAbsent("/orders/{orderId}", "iflow2"));
+
+        // an equivalent pattern with a different spelling does not remove the registered one
+        trie.remove("/orders/{orderId}");
+        Assert.assertEquals("iflow1", trie.resolve("/orders/1"));
+
+        trie.remove("/orders/{id}");
+        Assert.assertNull(trie.resolve("/orders/1"));
+        Assert.assertNull(trie.putIfAbsent("/orders/{orderId}", "iflow2"));
+    }
+
+    @Test
+    public void testFindOverlaps() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/orders/{id}", "order");
+        trie.put("/orders/new", "newOrder");
+        trie.put("/customers", "customers");
+        trie.put("/files/*", "files");
+
+        Map<String, String> overlaps = trie.findOverlaps("/orders/*");
+        Assert.assertEquals(2, overlaps.size());
+        Assert.assertTrue(overlaps.containsKey("/orders/{id}"));
+        Assert.assertTrue(overlaps.containsKey("/orders/new"));
+
+        Assert.assertEquals(2, trie.findOverlaps("/orders/{x}").size());
+        Assert.assertEquals(1, trie.findOverlaps("/orders/4711").size());
+        Assert.assertTrue(trie.findOverlaps("/files/a/b").containsKey("/files/*"));
+        Assert.assertTrue(trie.findOverlaps("/customers/1").isEmpty());
+    }
+}
@@ -0,0 +1,172 @@
+package com.sap.adapter.adk.adkhttps.limit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+
+    @Test
+    public void testRejectsAtOnceWithoutQueue() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 0, 1000);
+
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertFalse(limiter.acquire());
+        Assert.assertEquals(2, limiter.getInFlight());
+        Assert.assertEquals(1, limiter.getRejectedCount());
+
+        limiter.release(FAST, false);
+        Assert.assertTrue(limiter.acquire());
+    }
+
+    @Test
+    public void testQueuedRequestIsRejectedAfterTimeout() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 20);
+        Assert.assertTrue(limiter.acquire());
+
+        long start = System.nanoTime();
+        Assert.assertFalse(limiter.acquire());
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        Assert.assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void testQueuedRequestIsAdmittedOnRelease() throws InterruptedException {
+        final AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 5000);
+        Assert.assertTrue(limiter.acquire());
+
+        final AtomicBoolean admitted = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread waiting = new Thread(() -> {
+            admitted.set(limiter.acquire());
+            done.countDown();
+        });
+        waiting.start();
+        while (limiter.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+        limiter.release(FAST, false);
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(admitted.get());
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitDecreasesOnLatencyAndRecovers() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0, 0);
+        runAt(limiter, 1, FAST);
+        Assert.assertEquals(10, limiter.getLimit());
+
+        runAt(limiter, 1, SLOW);
+        Assert.assertEquals(9, limiter.getLimit());
+        Assert.assertEquals(10d, limiter.getBaselineLatency(), 0.001d);
+
+        // grows by one per limit requests that use the limit
+        for (int i = 0; i < 20; i++) {
+            runAt(limiter, limiter.getLimit(), FAST);
+        }
+        Assert.assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitDecreasesOncePerWindow() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0, 0);
+        runAt(limiter, 1, FAST);
+
+        // the requests slowed down by the same overload decrease the limit once
+        runAt(limiter, 10, SLOW);
+        Assert.assertEquals(9, limiter.getLimit());
+
+        runAt(limiter, 9, SLOW);
+        Assert.assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void testFastFailureDoesNotLowerBaseline() {
+        AdaptiveConcurrencyLimiter limiter = limiter(100, 0, 0);
+        long normal = TimeUnit.MILLISECONDS.toNanos(50);
+
+        Assert.assertTrue(limiter.acquire());
+        limiter.release(TimeUnit.MICROSECONDS.toNanos(200), true);
+        Assert.assertEquals(0d, limiter.getBaselineLatency(), 0.001d);
+
+        for (int i = 0; i < 200; i++) {
+            runAt(limiter, 1, normal);
+        }
+        Assert.assertEquals(50d, limiter.getBaselineLatency(), 0.001d);
+        Assert.assertEquals(100, limiter.getLimit());
+
+        // a fast failure in the middle of normal traffic does not make the normal latency look like overload
+        Assert.assertTrue(limiter.acquire());
+        limiter.release(TimeUnit.MICROSECONDS.toNanos(200), true);
+        for (int i = 0; i < 200; i++) {
+            runAt(limiter, 1, normal);
+        }
+        Assert.assertEquals(50d, limiter.getBaselineLatency(), 0.001d);
+        Assert.assertEquals(100, limiter.getLimit());
+    }
+
+    @Test
+    public void testSlowFailureDecreasesLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0, 0);
+        runAt(limiter, 1, FAST);
+
+        Assert.assertTrue(limiter.acquire());
+        limiter.release(SLOW, true);
+        Assert.assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    public void testJitterDoesNotDecreaseLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 0, 0);
+        runAt(limiter, 1, TimeUnit.MICROSECONDS.toNanos(50));
+        runAt(limiter, 1, TimeUnit.MICROSECONDS.toNanos(500));
+
+        Assert.assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testIsRegisteredWhileStarted() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 0, 0);
+        ObjectName name = new ObjectName(AdaptiveConcurrencyLimiter.JMX_DOMAIN + ":type=ConcurrencyLimit,iflow="
+                + ObjectName.quote("iflow") + ",uri=" + ObjectName.quote("adkHttps:/test"));
+
+        limiter.start();
+        Assert.assertEquals(4, mBeanServer.getAttribute(name, "Limit"));
+        mBeanServer.setAttribute(name, new Attribute("MaxLimit", 2));
+        Assert.assertEquals(2, limiter.getLimit());
+
+        limiter.close();
+        Assert.assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    /**
+     * Runs the given number of concurrent requests that all take the given latency.
+     */
+    private static void runAt(AdaptiveConcurrencyLimiter limiter, int concurrency, long latency) {
+        for (int i = 0; i < concurrency; i++) {
+            Assert.assertTrue(limiter.acquire());
+        }
+        for (int i = 0; i < concurrency; i++) {
+            limiter.release(latency, false);
+        }
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int maxLimit, int maxQueued, long queueTimeout) {
+        return new AdaptiveConcurrencyLimiter("iflow", "adkHttps:/test", maxLimit, maxQueued, queueTimeout, mBeanServer);
+    }
+}
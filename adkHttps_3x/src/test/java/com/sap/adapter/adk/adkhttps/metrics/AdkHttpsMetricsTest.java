@@ -0,0 +1,31 @@
+package com.sap.adapter.adk.adkhttps.metrics;
+
+import com.sap.adapter.adk.common.metrics.OperationMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+public class AdkHttpsMetricsTest {
+
+    @Test
+    public void testServiceIsExposedUnderAdkHttpsDomain() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        AdkHttpsMetrics metrics = new AdkHttpsMetrics("Test-iFlow", "adkHttps:/test", mBeanServer);
+        metrics.register();
+        OperationMetrics service = metrics.operation(AdkHttpsMetrics.SERVICE);
+        service.record(2000000, false);
+        service.record(3000000, true);
+
+        ObjectName name = metrics.getObjectName(AdkHttpsMetrics.SERVICE);
+        Assert.assertEquals(AdkHttpsMetrics.JMX_DOMAIN, name.getDomain());
+        Assert.assertEquals(ObjectName.quote(AdkHttpsMetrics.SERVICE), name.getKeyProperty("operation"));
+        Assert.assertEquals(2L, mBeanServer.getAttribute(name, "RequestCount"));
+        Assert.assertEquals(1L, mBeanServer.getAttribute(name, "ErrorCount"));
+
+        metrics.close();
+        Assert.assertEquals(0, mBeanServer.queryNames(new ObjectName(AdkHttpsMetrics.JMX_DOMAIN + ":*"), null).size());
+    }
+}
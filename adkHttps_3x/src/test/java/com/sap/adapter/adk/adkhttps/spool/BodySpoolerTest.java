@@ -0,0 +1,177 @@
+package com.sap.adapter.adk.adkhttps.spool;
+
+import com.sap.adapter.adk.adkhttps.exception.PayloadTooLargeException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class BodySpoolerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BufferPool pool = new BufferPool(8, 2);
+
+    @Test
+    public void testSmallBodyStaysInPooledBuffer() throws IOException {
+        BodySpooler spooler = new BodySpooler(pool, 0, folder.getRoot().getPath());
+        SpooledBody body = spooler.spool(stream("hello"), -1);
+
+        Assert.assertTrue(body.inMemory());
+        Assert.assertEquals(5, body.length());
+        Assert.assertEquals("hello", read(body));
+        body.reset();
+        Assert.assertEquals("hello", read(body));
+        Assert.assertEquals(0, spooledFiles());
+
+        body.release(true);
+        Assert.assertEquals(1, pool.getPooled());
+    }
+
+    @Test
+    public void testBodyOfThresholdSizeStaysInMemory() throws IOException {
+        SpooledBody body = new BodySpooler(pool, 0, folder.getRoot().getPath()).spool(stream("12345678"), -1);
+
+        Assert.assertTrue(body.inMemory());
+        Assert.assertEquals("12345678", read(body));
+    }
+
+    @Test
+    public void testBufferIsSizedFromContentLength() throws IOException {
+        BufferPool classes = new BufferPool(64, 8, 2);
+        SpooledBody body = new BodySpooler(classes, 0, folder.getRoot().getPath()).spool(stream("hello"), 5);
+
+        Assert.assertTrue(body.inMemory());
+        Assert.assertEquals("hello", read(body));
+        body.release(true);
+        Assert.assertEquals(1, classes.getPooled());
+        // the body only took a buffer of the smallest class
+        Assert.assertEquals(8, classes.acquire(1).length);
+        Assert.assertEquals(0, classes.getPooled());
+    }
+
+    @Test
+    public void testBufferGrowsForUnknownLength() throws IOException {
+        BufferPool classes = new BufferPool(64, 8, 2);
+        String content = "0123456789abcdefghijklmnopqrstuvwxyzABCD";
+        SpooledBody body = new BodySpooler(classes, 0, folder.getRoot().getPath()).spool(stream(content), -1);
+
+        Assert.assertTrue(body.inMemory());
+        Assert.assertEquals(40, body.length());
+        Assert.assertEquals(content, read(body));
+        // the outgrown buffers of 8, 16 and 32 bytes went back to the pool
+        Assert.assertEquals(3, classes.getPooled());
+        body.release(true);
+        Assert.assertEquals(4, classes.getPooled());
+        Assert.assertEquals(0, spooledFiles());
+    }
+
+    @Test
+    public void testResetRewindsToBeginning() throws IOException {
+        SpooledBody body = new BodySpooler(pool, 0, folder.getRoot().getPath()).spool(stream("hello"), 5);
+
+        Assert.assertEquals('h', body.read());
+        Assert.assertEquals('e', body.read());
+        Assert.assertFalse(body.markSupported());
+        body.mark(16);
+        Assert.assertEquals('l', body.read());
+        body.reset();
+        Assert.assertEquals("hello", read(body));
+    }
+
+    @Test
+    public void testInMemoryBodyAboveMaximumIsRejected() throws IOException {
+        BodySpooler spooler = new BodySpooler(new BufferPool(64, 8, 2), 12, folder.getRoot().getPath());
+        try {
+            spooler.spool(stream("0123456789abcdefghij"), -1);
+            Assert.fail("body exceeds the maximum size");
+        } catch (PayloadTooLargeException e) {
+            Assert.assertEquals(12, e.getMaxBodySize());
+        }
+    }
+
+    @Test
+    public void testLargeBodyIsSpooledToMappedFile() throws IOException {
+        BodySpooler spooler = new BodySpooler(pool, 0, folder.getRoot().getPath());
+        SpooledBody body = spooler.spool(stream("0123456789abcdefghij"), -1);
+
+        Assert.assertFalse(body.inMemory());
+        Assert.assertEquals(20, body.length());
+        Assert.assertEquals(1, spooledFiles());
+        // the copy buffer went back to the pool
+        Assert.assertEquals(1, pool.getPooled());
+
+        SpooledBody copy = (SpooledBody) body.copy(null);
+        Assert.assertEquals("0123456789abcdefghij", read(body));
+        Assert.assertEquals("0123456789abcdefghij", read(copy));
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        body.writeTo(written);
+        Assert.assertEquals("0123456789abcdefghij", new String(written.toByteArray(), StandardCharsets.UTF_8));
+
+        body.release(true);
+        Assert.assertEquals(0, spooledFiles());
+    }
+
+    @Test
+    public void testDeclaredLargeBodyGoesToFileDirectly() throws IOException {
+        SpooledBody body = new BodySpooler(pool, 0, folder.getRoot().getPath()).spool(stream("0123456789"), 10);
+
+        Assert.assertFalse(body.inMemory());
+        Assert.assertEquals("0123456789", read(body));
+        body.release(true);
+    }
+
+    @Test(expected = PayloadTooLargeException.class)
+    public void testDeclaredLengthAboveMaximumIsRejected() throws IOException {
+        new BodySpooler(pool, 10, folder.getRoot().getPath()).spool(stream("01234567890"), 11);
+    }
+
+    @Test
+    public void testUndeclaredLengthAboveMaximumIsRejected() throws IOException {
+        BodySpooler spooler = new BodySpooler(pool, 12, folder.getRoot().getPath());
+        try {
+            spooler.spool(stream("0123456789abcdefghij"), -1);
+            Assert.fail("body exceeds the maximum size");
+        } catch (PayloadTooLargeException e) {
+            Assert.assertEquals(12, e.getMaxBodySize());
+        }
+        Assert.assertEquals(0, spooledFiles());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReleasedBodyCannotBeRead() throws IOException {
+        SpooledBody body = new BodySpooler(pool, 0, folder.getRoot().getPath()).spool(stream("hello"), 5);
+        body.release(false);
+        body.read();
+    }
+
+    private long spooledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.count();
+        }
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package com.sap.adapter.adk.adkhttps.trace;
+
+import com.sap.it.api.msglog.adapter.AdapterMessageLog;
+import com.sap.it.api.msglog.adapter.AdapterTraceMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class InboundTraceCaptureTest {
+
+    private final List<byte[]> payloads = new ArrayList<>();
+    private final List<Object> headers = new ArrayList<>();
+    private final AdapterMessageLog msgLog = fakeMessageLog();
+
+    @Test
+    public void testCapturesBodyWhileItIsRead() throws IOException {
+        Map<String, String> requestHeaders = Collections.singletonMap("Content-Type", "text/plain");
+        InboundTraceCapture trace = new InboundTraceCapture(msgLog, requestHeaders, "UTF-8", 1024, "[truncated]");
+        InputStream body = trace.capture(stream("Hello trace"), 11);
+
+        Assert.assertEquals("Hello trace", read(body));
+        trace.write();
+        trace.write();
+
+        Assert.assertEquals(1, payloads.size());
+        Assert.assertEquals("Hello trace", new String(payloads.get(0), StandardCharsets.UTF_8));
+        Assert.assertEquals(requestHeaders, headers.get(0));
+    }
+
+    @Test
+    public void testTruncatesAtMaximumSize() throws IOException {
+        InboundTraceCapture trace = new InboundTraceCapture(msgLog, Collections.<String, String>emptyMap(), null, 5,
+                "[truncated]");
+        InputStream body = trace.capture(stream("0123456789"), -1);
+
+        Assert.assertEquals('0', body.read());
+        Assert.assertEquals("123456789", read(body));
+        trace.write();
+
+        Assert.assertEquals("01234[truncated]", new String(payloads.get(0), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTracesOnlyWhatWasRead() throws IOException {
+        InboundTraceCapture trace = new InboundTraceCapture(msgLog, Collections.<String, String>emptyMap(), null, 1024,
+                "[truncated]");
+        InputStream body = trace.capture(stream("0123456789"), 10);
+
+        Assert.assertEquals(4, body.skip(4));
+        Assert.assertEquals('4', body.read());
+        trace.write();
+        // reading after the trace was written does not change it
+        read(body);
+
+        Assert.assertEquals("01234", new String(payloads.get(0), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCapturesBinaryBodyReadByteByByte() throws IOException {
+        byte[] binary = {0, (byte) 0x7F, (byte) 0x80, (byte) 0xFF};
+        InboundTraceCapture trace = new InboundTraceCapture(msgLog, Collections.<String, String>emptyMap(), null, 1024,
+                "[truncated]");
+        InputStream body = trace.capture(new ByteArrayInputStream(binary), binary.length);
+
+        for (byte expected : binary) {
+            Assert.assertEquals(expected & 0xFF, body.read());
+        }
+        Assert.assertEquals(-1, body.read());
+        trace.write();
+
+        Assert.assertArrayEquals(binary, payloads.get(0));
+    }
+
+    @Test
+    public void testCapturesReadBodyUpToMaximumSize() throws IOException {
+        InboundTraceCapture trace = new InboundTraceCapture(msgLog, Collections.<String, String>emptyMap(), null, 5,
+                "[truncated]");
+        InputStream body = stream("0123456789");
+        trace.captureRead(body);
+        trace.write();
+
+        Assert.assertEquals("01234[truncated]", new String(payloads.get(0), StandardCharsets.UTF_8));
+        // only one byte more than the maximum was read
+        Assert.assertEquals("6789", read(body));
+    }
+
+    @Test
+    public void testCapturesReadBodyOfMaximumSize() throws IOException {
+        InboundTraceCapture trace = new InboundTraceCapture(msgLog, Collections.<String, String>emptyMap(), null, 5,
+                "[truncated]");
+        trace.captureRead(stream("01234"));
+        trace.write();
+
+        Assert.assertEquals("01234", new String(payloads.get(0), StandardCharsets.UTF_8));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        StringBuilder content = new StringBuilder();
+        byte[] buffer = new byte[3];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            content.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+        }
+        return content.toString();
+    }
+
+    private AdapterMessageLog fakeMessageLog() {
+        final AdapterTraceMessage traceMessage = (AdapterTraceMessage) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{AdapterTraceMessage.class}, (proxy, method, args) -> {
+                    if ("setHeaders".equals(method.getName())) {
+                        headers.add(args[0]);
+                    }
+                    return null;
+                });
+        return (AdapterMessageLog) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AdapterMessageLog.class}, (proxy, method, args) -> {
+                    if ("createTraceMessage".equals(method.getName())) {
+                        payloads.add((byte[]) args[1]);
+                        return traceMessage;
+                    }
+                    return null;
+                });
+    }
+}
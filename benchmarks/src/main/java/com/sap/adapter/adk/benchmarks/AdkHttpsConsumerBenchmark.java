@@ -0,0 +1,96 @@
+package com.sap.adapter.adk.benchmarks;
+
+import com.sap.adapter.adk.adkhttps.AdkHttpsComponent;
+import com.sap.adapter.adk.adkhttps.AdkHttpsConsumer;
+import com.sap.adapter.adk.benchmarks.support.PlatformFakes;
+import com.sap.adapter.adk.benchmarks.support.ServletFakes;
+import com.sap.it.api.msglog.adapter.AdapterMessageLogFactory;
+import org.apache.camel.CamelContext;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives {@link AdkHttpsConsumer#service} with in-memory requests against a trivial route, so the numbers show the
+ * cost of the adapter's request intake.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdkHttpsConsumerBenchmark {
+
+    private static final String SERVLET_NAME = "AdkHttpsConsumer";
+
+    @Param({"4", "32"})
+    public int headerCount;
+
+    @Param({"false", "true"})
+    public boolean traceActive;
+
+    private CamelContext camelContext;
+    private AdkHttpsConsumer servlet;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PlatformFakes.bindServices();
+
+        servlet = new AdkHttpsConsumer();
+        servlet.init(ServletFakes.config(SERVLET_NAME));
+
+        camelContext = new DefaultCamelContext();
+        camelContext.getRegistry().bind(AdapterMessageLogFactory.class.getName(),
+                PlatformFakes.messageLogFactory(traceActive));
+        AdkHttpsComponent component = new AdkHttpsComponent();
+        component.setServletName(SERVLET_NAME);
+        camelContext.addComponent("adkHttps", component);
+        camelContext.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("adkHttps:/benchmark").setBody(constant("OK"));
+            }
+        });
+        camelContext.start();
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "text/plain; charset=UTF-8");
+        for (int i = 1; i < headerCount; i++) {
+            headers.put("X-Benchmark-Header-" + i, "value-" + i);
+        }
+        request = ServletFakes.request("POST", "/benchmark", headers, "Hello from the benchmark");
+        response = ServletFakes.response();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        camelContext.stop();
+        servlet.destroy();
+    }
+
+    @Benchmark
+    public void service() throws Exception {
+        servlet.service(request, response);
+    }
+}
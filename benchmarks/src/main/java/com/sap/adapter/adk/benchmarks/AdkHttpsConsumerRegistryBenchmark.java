@@ -0,0 +1,94 @@
+package com.sap.adapter.adk.benchmarks;
+
+import com.sap.adapter.adk.adkhttps.AdkHttpsConsumerRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and deployments against {@link AdkHttpsConsumerRegistry} with a growing number of registered URIs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdkHttpsConsumerRegistryBenchmark {
+
+    private static final int INTEGRATION_FLOWS = 50;
+
+    @Param({"10", "1000", "10000"})
+    public int uriCount;
+
+    private AdkHttpsConsumerRegistry registry;
+    private String[] uris;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = AdkHttpsConsumerRegistry.getRegistry();
+        uris = new String[uriCount];
+        for (int i = 0; i < uriCount; i++) {
+            uris[i] = "/benchmark/flow" + (i % INTEGRATION_FLOWS) + "/uri" + i;
+            registry.addToRegistry(uris[i], getIntegrationFlow(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (String uri : uris) {
+            registry.removeFromRegistry(uri);
+        }
+    }
+
+    /**
+     * Per thread position in the registered URIs.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        int next(int bound) {
+            index = index + 1 < bound ? index + 1 : 0;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public String lookup(Cursor cursor) {
+        return registry.checkDuplicateAndGetDuplicateContext(uris[cursor.next(uriCount)]);
+    }
+
+    @Benchmark
+    public String claimOwnUri(Cursor cursor) {
+        int index = cursor.next(uriCount);
+        return registry.claim(uris[index], getIntegrationFlow(index));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String deployAndUndeploy() {
+        String uri = "/benchmark/deployed/" + Thread.currentThread().getId();
+        String owner = registry.claim(uri, "deployedFlow");
+        registry.removeFromRegistry(uri);
+        return owner;
+    }
+
+    private static String getIntegrationFlow(int index) {
+        return "flow" + (index % INTEGRATION_FLOWS);
+    }
+}
@@ -0,0 +1,29 @@
+package com.sap.adapter.adk.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line and always attaches the GC profiler, so every result
+ * includes the allocation rate per operation.
+ * <p>
+ * Build with {@code mvn -pl benchmarks -am package} and run {@code java -jar benchmarks/target/benchmarks.jar}
+ * followed by the usual JMH options, e.g. a benchmark name pattern.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        // should not be instantiated
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList() || options.shouldListProfilers()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
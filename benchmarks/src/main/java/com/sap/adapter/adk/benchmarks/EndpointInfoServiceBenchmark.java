@@ -0,0 +1,69 @@
+package com.sap.adapter.adk.benchmarks;
+
+import com.sap.adapter.adk.adkhttps.AdkHttpsConsumerRegistry;
+import com.sap.adapter.adk.adkhttps.endpoint.HttpSenderAdapterEndpointInfoService;
+import com.sap.it.api.adapter.monitoring.AdapterEndpointInformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HttpSenderAdapterEndpointInfoService#getAdapterEndpointInformation()} as called by the monitoring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndpointInfoServiceBenchmark {
+
+    private static final int URIS_PER_FLOW = 2;
+
+    @Param({"10", "1000"})
+    public int integrationFlowCount;
+
+    private final HttpSenderAdapterEndpointInfoService service = new HttpSenderAdapterEndpointInfoService();
+    private AdkHttpsConsumerRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = AdkHttpsConsumerRegistry.getRegistry();
+        for (int flow = 0; flow < integrationFlowCount; flow++) {
+            for (int uri = 0; uri < URIS_PER_FLOW; uri++) {
+                registry.addToRegistry(getUri(flow, uri), "flow" + flow);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (int flow = 0; flow < integrationFlowCount; flow++) {
+            for (int uri = 0; uri < URIS_PER_FLOW; uri++) {
+                registry.removeFromRegistry(getUri(flow, uri));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<AdapterEndpointInformation> getAdapterEndpointInformation() {
+        return service.getAdapterEndpointInformation();
+    }
+
+    private static String getUri(int flow, int uri) {
+        return "/monitoring/flow" + flow + "/uri" + uri;
+    }
+}
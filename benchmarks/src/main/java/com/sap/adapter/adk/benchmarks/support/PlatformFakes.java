@@ -0,0 +1,139 @@
+package com.sap.adapter.adk.benchmarks.support;
+
+import com.sap.it.api.ITApi;
+import com.sap.it.api.impl.ITApiFactoryRegistry;
+import com.sap.it.api.keystore.KeystoreService;
+import com.sap.it.api.msglog.adapter.AdapterMessageLogFactory;
+import com.sap.it.api.msglog.adapter.AdapterMessageLogWithStatus;
+import com.sap.it.api.msglog.adapter.AdapterTraceMessage;
+import com.sap.it.api.securestore.SecureStoreService;
+import com.sap.it.api.securestore.UserCredential;
+import com.sap.it.spi.ITApiHandler;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fakes of the platform services the adapters look up, answering without any I/O.
+ */
+public final class PlatformFakes {
+
+    private PlatformFakes() {
+        // should not be instantiated
+    }
+
+    /**
+     * Binds a secure store and a keystore to the {@link com.sap.it.api.ITApiFactory}.
+     */
+    public static void bindServices() throws GeneralSecurityException {
+        KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        Certificate certificate = new FakeCertificate(keyPair.getPublic());
+        UserCredential credential = new FakeUserCredential();
+
+        SecureStoreService secureStore = alias -> credential;
+        Map<String, Proxies.Answer> keystoreAnswers = new HashMap<>();
+        keystoreAnswers.put("getKey", args -> keyPair.getPrivate());
+        keystoreAnswers.put("getKeyPair", args -> keyPair);
+        keystoreAnswers.put("getCertificate", args -> certificate);
+        KeystoreService keystore = Proxies.create(KeystoreService.class, keystoreAnswers);
+
+        ApiRegistry registry = new ApiRegistry();
+        registry.bind(SecureStoreService.class, secureStore);
+        registry.bind(KeystoreService.class, keystore);
+    }
+
+    /**
+     * @param traceActive whether the message logs report an active trace
+     */
+    public static AdapterMessageLogFactory messageLogFactory(boolean traceActive) {
+        Map<String, Proxies.Answer> logAnswers = new HashMap<>();
+        logAnswers.put("isTraceActive", args -> traceActive);
+        logAnswers.put("createTraceMessage", args -> Proxies.create(AdapterTraceMessage.class,
+                Collections.<String, Proxies.Answer>emptyMap()));
+        AdapterMessageLogWithStatus messageLog = Proxies.create(AdapterMessageLogWithStatus.class, logAnswers);
+        return Proxies.create(AdapterMessageLogFactory.class,
+                Collections.singletonMap("getMessageLogWithStatus", args -> messageLog));
+    }
+
+    private static final class ApiRegistry extends ITApiFactoryRegistry {
+
+        void bind(Class<? extends ITApi> type, ITApi api) {
+            bindApiFactory(new FixedApiHandler(api), Collections.singletonMap("apiType", type.getName()));
+        }
+    }
+
+    private static final class FixedApiHandler implements ITApiHandler<ITApi> {
+
+        private final ITApi api;
+
+        FixedApiHandler(ITApi api) {
+            this.api = api;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends ITApi> T getApi(Object context) {
+            return (T) api;
+        }
+    }
+
+    private static final class FakeUserCredential implements UserCredential {
+
+        @Override
+        public String getUsername() {
+            return "benchmark";
+        }
+
+        @Override
+        public char[] getPassword() {
+            return "benchmark".toCharArray();
+        }
+
+        @Override
+        public Map<String, String> getCredentialProperties() {
+            return Collections.emptyMap();
+        }
+    }
+
+    private static final class FakeCertificate extends Certificate {
+
+        private static final long serialVersionUID = 1L;
+        private final transient PublicKey publicKey;
+
+        FakeCertificate(PublicKey publicKey) {
+            super("X.509");
+            this.publicKey = publicKey;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return publicKey.getEncoded();
+        }
+
+        @Override
+        public void verify(PublicKey key) {
+            // trusted
+        }
+
+        @Override
+        public void verify(PublicKey key, String sigProvider) {
+            // trusted
+        }
+
+        @Override
+        public String toString() {
+            return "FakeCertificate";
+        }
+
+        @Override
+        public PublicKey getPublicKey() {
+            return publicKey;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.sap.adapter.adk.benchmarks.support;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Creates in-memory fakes of wide interfaces, only the answered methods do anything.
+ */
+final class Proxies {
+
+    /**
+     * Answers a call of a faked method.
+     */
+    interface Answer {
+        Object answer(Object[] args) throws Throwable; //NOSONAR
+    }
+
+    private Proxies() {
+        // should not be instantiated
+    }
+
+    static <T> T create(Class<T> type, Map<String, Answer> answers) {
+        Object fake = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Answer answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.answer(args);
+            }
+            switch (method.getName()) {
+                case "toString":
+                    return "Fake" + type.getSimpleName();
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+        return type.cast(fake);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        if (type == float.class) {
+            return 0F;
+        }
+        if (type == double.class) {
+            return 0D;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,141 @@
+package com.sap.adapter.adk.benchmarks.support;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory servlet container objects, so the servlet can be driven without a container.
+ */
+public final class ServletFakes {
+
+    private ServletFakes() {
+        // should not be instantiated
+    }
+
+    public static ServletConfig config(String servletName) {
+        ServletContext context = Proxies.create(ServletContext.class, Collections.emptyMap());
+        Map<String, Proxies.Answer> answers = new HashMap<>();
+        answers.put("getServletName", args -> servletName);
+        answers.put("getServletContext", args -> context);
+        answers.put("getInitParameterNames", args -> Collections.emptyEnumeration());
+        return Proxies.create(ServletConfig.class, answers);
+    }
+
+    /**
+     * @param headers request headers, iterated in the given order
+     * @param body    request body, replayed for every request
+     */
+    public static HttpServletRequest request(String method, String path, Map<String, String> headers, String body) {
+        Map<String, String> requestHeaders = new LinkedHashMap<>(headers);
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> attributes = new HashMap<>();
+        Map<String, Proxies.Answer> answers = new HashMap<>();
+        answers.put("getMethod", args -> method);
+        answers.put("getPathInfo", args -> path);
+        answers.put("getRequestURI", args -> "/adkHttps" + path);
+        answers.put("getContextPath", args -> "/adkHttps");
+        answers.put("getServletPath", args -> "");
+        answers.put("getRequestURL", args -> new StringBuffer("http://localhost/adkHttps").append(path));
+        answers.put("getProtocol", args -> "HTTP/1.1");
+        answers.put("getContentType", args -> requestHeaders.get("Content-Type"));
+        answers.put("getCharacterEncoding", args -> "UTF-8");
+        answers.put("getContentLength", args -> content.length);
+        answers.put("getContentLengthLong", args -> (long) content.length);
+        answers.put("getHeaderNames", args -> Collections.enumeration(requestHeaders.keySet()));
+        answers.put("getHeader", args -> requestHeaders.get((String) args[0]));
+        answers.put("getHeaders", args -> requestHeaders.containsKey((String) args[0])
+                ? Collections.enumeration(Collections.singleton(requestHeaders.get((String) args[0])))
+                : Collections.emptyEnumeration());
+        answers.put("getParameterNames", args -> Collections.emptyEnumeration());
+        answers.put("getParameterMap", args -> Collections.emptyMap());
+        answers.put("getAttribute", args -> attributes.get((String) args[0]));
+        answers.put("setAttribute", args -> attributes.put((String) args[0], args[1]));
+        answers.put("removeAttribute", args -> attributes.remove((String) args[0]));
+        answers.put("getInputStream", args -> new ReplayInputStream(content));
+        return Proxies.create(HttpServletRequest.class, answers);
+    }
+
+    /**
+     * @return a response that discards everything written to it
+     */
+    public static HttpServletResponse response() {
+        ServletOutputStream outputStream = new DiscardingOutputStream();
+        PrintWriter writer = new PrintWriter(outputStream);
+        Map<String, Proxies.Answer> answers = new HashMap<>();
+        answers.put("getOutputStream", args -> outputStream);
+        answers.put("getWriter", args -> writer);
+        answers.put("getCharacterEncoding", args -> "UTF-8");
+        answers.put("getStatus", args -> HttpServletResponse.SC_OK);
+        return Proxies.create(HttpServletResponse.class, answers);
+    }
+
+    private static final class ReplayInputStream extends ServletInputStream {
+
+        private final ByteArrayInputStream content;
+
+        ReplayInputStream(byte[] content) {
+            this.content = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public int read() {
+            return content.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return content.read(b, off, len);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return content.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class DiscardingOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) {
+            // discarded
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // discarded
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}